@@ -21,6 +21,7 @@ import com.thoughtworks.go.api.spring.ApiAuthenticationHelper;
 import com.thoughtworks.go.api.util.MessageJson;
 import com.thoughtworks.go.apiv4.dashboard.representers.DashboardFor;
 import com.thoughtworks.go.apiv4.dashboard.representers.DashboardRepresenter;
+import com.thoughtworks.go.config.PluginRoleUsersStore;
 import com.thoughtworks.go.server.dashboard.GoDashboardEnvironment;
 import com.thoughtworks.go.server.dashboard.GoDashboardPipelineGroup;
 import com.thoughtworks.go.server.domain.Username;
@@ -40,6 +41,7 @@ import spark.Response;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static com.thoughtworks.go.server.domain.user.DashboardFilter.DEFAULT_NAME;
@@ -54,6 +56,8 @@ public class DashboardControllerV4 extends ApiController implements SparkSpringC
     private static final String COOKIE_NAME = "selected_pipelines";
     private static final String SEP_CHAR = "/";
     private static final String VIEW_NAME = "viewName";
+    private static final String SINCE = "since";
+    private static final String DELTA_TOKEN_SEP_CHAR = ".";
 
     private final PipelineSelectionsService pipelineSelectionsService;
     private final GoDashboardService goDashboardService;
@@ -98,10 +102,21 @@ public class DashboardControllerV4 extends ApiController implements SparkSpringC
         final boolean allowEmpty = Toggles.isToggleOn(Toggles.ALLOW_EMPTY_PIPELINE_GROUPS_DASHBOARD) &&
                 "true".equalsIgnoreCase(request.queryParams("allowEmpty"));
 
+        // taken before looking at the pipelines, so that anything that changes meanwhile is in the next delta too
+        final long lastUpdatedTimeStamp = goDashboardService.lastUpdatedTimeStamp();
+        final String deltaFingerprint = deltaFingerprint(userName, personalization, getViewName(request), allowEmpty);
+        final String deltaToken = lastUpdatedTimeStamp + DELTA_TOKEN_SEP_CHAR + deltaFingerprint;
+
         List<GoDashboardPipelineGroup> pipelineGroups = goDashboardService.allPipelineGroupsForDashboard(filter, userName, allowEmpty);
         List<GoDashboardEnvironment> environments = goDashboardService.allEnvironmentsForDashboard(filter, userName);
 
-        String etag = calcEtag(userName, pipelineGroups, environments);
+        final Long since = changedSince(request, deltaFingerprint);
+        final Optional<List<String>> removedPipelines = since == null ? Optional.empty() : goDashboardService.pipelinesRemovedSince(since, userName);
+        final DashboardFor dashboard = removedPipelines
+                .map(removed -> new DashboardFor(pipelineGroups, environments, userName, personalization.etag(), deltaToken, since, removed))
+                .orElseGet(() -> new DashboardFor(pipelineGroups, environments, userName, personalization.etag(), deltaToken));
+
+        String etag = calcEtag(userName, pipelineGroups, environments, dashboard.isDelta() ? since : null);
 
         if (fresh(request, etag)) {
             return notModified(response);
@@ -109,20 +124,44 @@ public class DashboardControllerV4 extends ApiController implements SparkSpringC
 
         setEtagHeader(response, etag);
 
-        return writerForTopLevelObject(request, response, outputWriter ->
-                DashboardRepresenter.toJSON(
-                        outputWriter,
-                        new DashboardFor(pipelineGroups, environments, userName, personalization.etag())
-                )
-        );
+        return writerForTopLevelObject(request, response, outputWriter -> DashboardRepresenter.toJSON(outputWriter, dashboard));
     }
 
-    private String calcEtag(Username username, List<GoDashboardPipelineGroup> pipelineGroups, List<GoDashboardEnvironment> environments) {
+    private String calcEtag(Username username, List<GoDashboardPipelineGroup> pipelineGroups, List<GoDashboardEnvironment> environments, Long changedSince) {
         final String pipelineSegment = pipelineGroups.stream().
                 map(GoDashboardPipelineGroup::etag).collect(Collectors.joining(SEP_CHAR));
         final String environmentSegment = environments.stream().
                 map(GoDashboardEnvironment::etag).collect(Collectors.joining(SEP_CHAR));
-        return DigestUtils.md5Hex(StringUtils.joinWith(SEP_CHAR, username.getUsername(), pipelineSegment, environmentSegment));
+        if (changedSince == null) {
+            return DigestUtils.md5Hex(StringUtils.joinWith(SEP_CHAR, username.getUsername(), pipelineSegment, environmentSegment));
+        }
+        return DigestUtils.md5Hex(StringUtils.joinWith(SEP_CHAR, username.getUsername(), pipelineSegment, environmentSegment, changedSince));
+    }
+
+    /**
+     * A delta token is only good for the same user, looking at the same view of the same personalization, while the
+     * plugin roles the user may be in stay the same; anything else can change which pipelines are visible without
+     * those pipelines changing.
+     */
+    private String deltaFingerprint(Username username, PipelineSelections personalization, String viewName, boolean allowEmpty) {
+        return DigestUtils.md5Hex(StringUtils.joinWith(SEP_CHAR, username.getUsername(), personalization.etag(), viewName, allowEmpty,
+                PluginRoleUsersStore.instance().version()));
+    }
+
+    /**
+     * @return the time stamp of the delta token the client sent, or null if it did not send one the current
+     * dashboard can be told as a delta from
+     */
+    private Long changedSince(Request request, String deltaFingerprint) {
+        final String since = request.queryParams(SINCE);
+        if (StringUtils.isBlank(since) || !deltaFingerprint.equals(StringUtils.substringAfter(since, DELTA_TOKEN_SEP_CHAR))) {
+            return null;
+        }
+        try {
+            return Long.parseLong(StringUtils.substringBefore(since, DELTA_TOKEN_SEP_CHAR));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     private String getViewName(Request request) {
@@ -27,12 +27,31 @@ public class DashboardFor {
     private final Username username;
     private List<? extends DashboardGroup> environments;
     private String personalizationEtag;
+    private String deltaToken;
+    private Long changedSince;
+    private List<String> removedPipelines;
 
     public DashboardFor(List<? extends DashboardGroup> pipelineGroups, List<? extends DashboardGroup> environments, Username username, String personalizationEtag) {
+        this(pipelineGroups, environments, username, personalizationEtag, null);
+    }
+
+    public DashboardFor(List<? extends DashboardGroup> pipelineGroups, List<? extends DashboardGroup> environments, Username username, String personalizationEtag, String deltaToken) {
         this.pipelineGroups = pipelineGroups;
         this.environments = environments;
         this.username = username;
         this.personalizationEtag = personalizationEtag;
+        this.deltaToken = deltaToken;
+    }
+
+    /**
+     * A dashboard that only has the pipelines changed after the given time stamp, and the names of the pipelines
+     * removed since then.
+     */
+    public DashboardFor(List<? extends DashboardGroup> pipelineGroups, List<? extends DashboardGroup> environments, Username username, String personalizationEtag,
+                        String deltaToken, long changedSince, List<String> removedPipelines) {
+        this(pipelineGroups, environments, username, personalizationEtag, deltaToken);
+        this.changedSince = changedSince;
+        this.removedPipelines = removedPipelines;
     }
 
     public List<? extends DashboardGroup> getPipelineGroups() {
@@ -44,7 +63,22 @@ public class DashboardFor {
     }
 
     public List<GoDashboardPipeline> getPipelines() {
-        return pipelineGroups.stream().flatMap(group -> group.allPipelines().stream()).collect(Collectors.toList());
+        return pipelineGroups.stream()
+                .flatMap(group -> group.allPipelines().stream())
+                .filter(pipeline -> changedSince == null || pipeline.getLastUpdatedTimeStamp() > changedSince)
+                .collect(Collectors.toList());
+    }
+
+    public boolean isDelta() {
+        return changedSince != null;
+    }
+
+    public List<String> getRemovedPipelines() {
+        return removedPipelines;
+    }
+
+    public String getDeltaToken() {
+        return deltaToken;
     }
 
     public Username getUsername() {
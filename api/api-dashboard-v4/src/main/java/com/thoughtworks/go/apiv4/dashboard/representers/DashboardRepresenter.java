@@ -25,13 +25,26 @@ public class DashboardRepresenter {
                 .addLinks(linksWriter -> linksWriter.addLink("self", Routes.Dashboard.SELF)
                         .addAbsoluteLink("doc", Routes.Dashboard.DOC))
                 .add("_personalization", dashboardFor.getPersonalizationEtag())
-                .addChild("_embedded", childWriter -> childWriter
+                .addIfNotNull("_delta_token", dashboardFor.getDeltaToken());
 
-                        .addChildList("pipeline_groups", listWriter -> dashboardFor.getPipelineGroups().forEach(group -> listWriter.addChild(childItemWriter -> DashboardGroupRepresenter.toJSON(childItemWriter, group, dashboardFor.getUsername()))))
+        if (dashboardFor.isDelta()) {
+            jsonOutputWriter.add("_delta", true);
+        }
 
-                        .addChildList("environments", listWriter -> dashboardFor.getEnvironments().forEach(group -> listWriter.addChild(childItemWriter -> DashboardGroupRepresenter.toJSON(childItemWriter, group, dashboardFor.getUsername()))))
+        jsonOutputWriter
+                .addChild("_embedded", childWriter -> {
+                    childWriter
+                            .addChildList("pipeline_groups", listWriter -> dashboardFor.getPipelineGroups().forEach(group -> listWriter.addChild(childItemWriter -> DashboardGroupRepresenter.toJSON(childItemWriter, group, dashboardFor.getUsername()))))
+
+                            .addChildList("environments", listWriter -> dashboardFor.getEnvironments().forEach(group -> listWriter.addChild(childItemWriter -> DashboardGroupRepresenter.toJSON(childItemWriter, group, dashboardFor.getUsername()))))
+
+                            .addChildList("pipelines", listWriter -> dashboardFor.getPipelines()
+                                    .forEach(pipeline -> listWriter.addChild(childItemWriter -> PipelineRepresenter.toJSON(childItemWriter, pipeline, dashboardFor.getUsername()))));
 
-                        .addChildList("pipelines", listWriter -> dashboardFor.getPipelines()
-                                    .forEach(pipeline -> listWriter.addChild(childItemWriter -> PipelineRepresenter.toJSON(childItemWriter, pipeline, dashboardFor.getUsername())))));
+                    // only a delta says which pipelines are gone; a full dashboard just does not have them
+                    if (dashboardFor.isDelta()) {
+                        childWriter.addChildList("removed_pipelines", dashboardFor.getRemovedPipelines());
+                    }
+                });
     }
 }
@@ -19,11 +19,13 @@ import com.thoughtworks.go.api.SecurityTestTrait
 import com.thoughtworks.go.api.spring.ApiAuthenticationHelper
 import com.thoughtworks.go.apiv4.dashboard.representers.DashboardFor
 import com.thoughtworks.go.apiv4.dashboard.representers.DashboardRepresenter
+import com.thoughtworks.go.config.PluginRoleUsersStore
 import com.thoughtworks.go.config.security.Permissions
 import com.thoughtworks.go.config.security.permissions.EveryonePermission
 import com.thoughtworks.go.config.security.users.Everyone
 import com.thoughtworks.go.server.dashboard.GoDashboardEnvironment
 import com.thoughtworks.go.server.dashboard.GoDashboardPipelineGroup
+import com.thoughtworks.go.server.domain.user.DashboardFilter
 import com.thoughtworks.go.server.domain.user.Filters
 import com.thoughtworks.go.server.domain.user.PipelineSelections
 import com.thoughtworks.go.server.service.GoDashboardService
@@ -42,6 +44,7 @@ import org.mockito.Mock
 import org.mockito.junit.jupiter.MockitoSettings
 import org.mockito.quality.Strictness
 
+import static org.assertj.core.api.Assertions.assertThat
 import static org.mockito.ArgumentMatchers.*
 import static org.mockito.Mockito.*
 
@@ -107,7 +110,7 @@ class DashboardControllerV4Test implements SecurityServiceTrait, ControllerTrait
 
         assertThatResponse()
           .isOk()
-          .hasBodyWithJsonObject(DashboardRepresenter, new DashboardFor([group], [env], currentUsername(), PipelineSelections.ALL.etag()))
+          .hasBodyWithJsonObject(DashboardRepresenter, new DashboardFor([group], [env], currentUsername(), PipelineSelections.ALL.etag(), deltaToken(0L)))
       }
 
       @Test
@@ -145,7 +148,7 @@ class DashboardControllerV4Test implements SecurityServiceTrait, ControllerTrait
         assertThatResponse()
           .isOk()
           .hasContentType(controller.mimeType)
-          .hasBodyWithJsonObject(DashboardRepresenter, new DashboardFor([], [], currentUsername(), pipelineSelections.etag()))
+          .hasBodyWithJsonObject(DashboardRepresenter, new DashboardFor([], [], currentUsername(), pipelineSelections.etag(), deltaToken(0L)))
       }
 
       @Test
@@ -165,6 +168,66 @@ class DashboardControllerV4Test implements SecurityServiceTrait, ControllerTrait
       }
     }
 
+    @Nested
+    class Delta {
+      @BeforeEach
+      void setUp() {
+        loginAsUser()
+        when(pipelineSelectionsService.load((String) isNull(), any(Long.class))).thenReturn(PipelineSelections.ALL)
+        when(goDashboardService.hasEverLoadedCurrentState()).thenReturn(true)
+        when(goDashboardService.lastUpdatedTimeStamp()).thenReturn(200L)
+      }
+
+      @Test
+      void 'should render only pipelines changed since the delta token, along with removed pipelines'() {
+        def changed = GoDashboardPipelineMother.dashboardPipeline('pipeline1', 'group1', permissions(), 100L)
+        def unchanged = GoDashboardPipelineMother.dashboardPipeline('pipeline2', 'group1', permissions(), 10L)
+        def group = new GoDashboardPipelineGroup('group1', permissions(), true)
+        group.addPipeline(changed)
+        group.addPipeline(unchanged)
+
+        when(goDashboardService.allPipelineGroupsForDashboard(eq(Filters.WILDCARD_FILTER), eq(currentUsername()), anyBoolean())).thenReturn([group])
+        when(goDashboardService.allEnvironmentsForDashboard(eq(Filters.WILDCARD_FILTER), eq(currentUsername()))).thenReturn([])
+        when(goDashboardService.pipelinesRemovedSince(50L, currentUsername())).thenReturn(Optional.of(['pipeline3']))
+
+        getWithApiHeader(controller.controllerPath([since: deltaToken(50L)]))
+
+        def expected = new DashboardFor([group], [], currentUsername(), PipelineSelections.ALL.etag(), deltaToken(200L), 50L, ['pipeline3'])
+        assertThat(expected.getPipelines()).containsExactly(changed)
+        assertThatResponse()
+          .isOk()
+          .hasBodyWithJsonObject(DashboardRepresenter, expected)
+      }
+
+      @Test
+      void 'should render the whole dashboard when removed pipelines are no longer known'() {
+        def group = pipelineGroup('group1')
+        when(goDashboardService.allPipelineGroupsForDashboard(eq(Filters.WILDCARD_FILTER), eq(currentUsername()), anyBoolean())).thenReturn([group])
+        when(goDashboardService.allEnvironmentsForDashboard(eq(Filters.WILDCARD_FILTER), eq(currentUsername()))).thenReturn([])
+        when(goDashboardService.pipelinesRemovedSince(50L, currentUsername())).thenReturn(Optional.empty())
+
+        getWithApiHeader(controller.controllerPath([since: deltaToken(50L)]))
+
+        assertThatResponse()
+          .isOk()
+          .hasBodyWithJsonObject(DashboardRepresenter, new DashboardFor([group], [], currentUsername(), PipelineSelections.ALL.etag(), deltaToken(200L)))
+      }
+
+      @Test
+      void 'should render the whole dashboard for a delta token of another user or personalization'() {
+        def group = pipelineGroup('group1')
+        when(goDashboardService.allPipelineGroupsForDashboard(eq(Filters.WILDCARD_FILTER), eq(currentUsername()), anyBoolean())).thenReturn([group])
+        when(goDashboardService.allEnvironmentsForDashboard(eq(Filters.WILDCARD_FILTER), eq(currentUsername()))).thenReturn([])
+
+        getWithApiHeader(controller.controllerPath([since: '50.some-other-fingerprint']))
+
+        verify(goDashboardService, never()).pipelinesRemovedSince(anyLong(), any())
+        assertThatResponse()
+          .isOk()
+          .hasBodyWithJsonObject(DashboardRepresenter, new DashboardFor([group], [], currentUsername(), PipelineSelections.ALL.etag(), deltaToken(200L)))
+      }
+    }
+
     @Nested
     class Etag {
       @Test
@@ -215,6 +278,16 @@ class DashboardControllerV4Test implements SecurityServiceTrait, ControllerTrait
     new Permissions(Everyone.INSTANCE, Everyone.INSTANCE, Everyone.INSTANCE, EveryonePermission.INSTANCE)
   }
 
+  private String deltaToken(long timeStamp) {
+    timeStamp + '.' + DigestUtils.md5Hex([
+      currentUsernameString(),
+      PipelineSelections.ALL.etag(),
+      DashboardFilter.DEFAULT_NAME,
+      false,
+      PluginRoleUsersStore.instance().version()
+    ].join('/'))
+  }
+
   private String computeEtag(List<GoDashboardPipelineGroup> pipelineGroups, List<GoDashboardEnvironment> envs) {
     '"' + DigestUtils.md5Hex([
       currentUsernameString(),
@@ -54,6 +54,12 @@ public class GoAgentServerHttpClientBuilder extends GoAgentServerClientBuilder<C
                 )
                 .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE);
 
+        int fetchConnections = systemEnvironment.get(SystemEnvironment.ARTIFACT_FETCH_CONNECTIONS);
+        if (fetchConnections > 1) {
+            // artifacts fetched file by file should not have to wait for each other, nor hold up console output
+            builder.setMaxConnPerRoute(fetchConnections + 2).setMaxConnTotal(2 * (fetchConnections + 2));
+        }
+
         HostnameVerifier hostnameVerifier = sslVerificationMode.verifier();
         TrustStrategy trustStrategy = sslVerificationMode.trustStrategy();
         KeyStore trustStore = agentTruststore();
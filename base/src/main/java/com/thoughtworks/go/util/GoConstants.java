@@ -59,6 +59,8 @@ public class GoConstants {
     public static final String REGULAR_MULTIPART_FILENAME = "file";
     public static final String CHECKSUM_MULTIPART_FILENAME = "file_checksum";
     public static final String ZIP_MULTIPART_FILENAME = "zipfile";
+    // no artifact can be unzipped under a name with "..", so this one is left alone for the checksums of streamed uploads
+    public static final String CHECKSUM_ZIP_ENTRY = "..md5.checksum";
     public static final String AGENT_JAR_MD5 = "agent.binary.md5";
     public static final String AGENT_PLUGINS_MD5 = "agent.plugins.md5";
     public static final String AGENT_BOOTSTRAPPER_VERSION = "agent.bootstrapper.version";
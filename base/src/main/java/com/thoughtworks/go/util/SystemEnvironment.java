@@ -124,6 +124,9 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
     public static final GoSystemProperty<Long> GO_SERVER_CONNECTION_IDLE_TIMEOUT_IN_MILLIS = new GoLongSystemProperty("idle.timeout", SECONDS.toMillis(30));
     public static final GoSystemProperty<Integer> RESPONSE_BUFFER_SIZE = new GoIntSystemProperty("response.buffer.size", 32 * 1024);
     public static final GoSystemProperty<Integer> ARTIFACT_COPY_BUFFER_SIZE = new GoIntSystemProperty("artifact.copy.buffer.size", 8 * 1024);
+    public static final GoSystemProperty<Boolean> ARTIFACT_STREAMING_UPLOAD = new GoBooleanSystemProperty("go.artifact.upload.streaming", false);
+    public static final GoSystemProperty<Boolean> ARTIFACT_DEDUPLICATION = new GoBooleanSystemProperty("go.artifacts.deduplicate", false);
+    public static final GoSystemProperty<Integer> ARTIFACT_FETCH_CONNECTIONS = new GoIntSystemProperty("go.artifact.fetch.connections", 1);
     public static final GoSystemProperty<Integer> API_REQUEST_IDLE_TIMEOUT_IN_SECONDS = new GoIntSystemProperty("api.request.idle.timeout.seconds", (int) MINUTES.toSeconds(5));
     public static final GoSystemProperty<Integer> AGENT_REQUEST_IDLE_TIMEOUT_IN_SECONDS = new GoIntSystemProperty("agent.request.idle.timeout.seconds", 30);
     public static final GoSystemProperty<Integer> GO_SERVER_SESSION_TIMEOUT_IN_SECONDS = new GoIntSystemProperty("go.server.session.timeout.seconds", (int) DAYS.toSeconds(14));
@@ -131,6 +134,13 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
     public static final GoSystemProperty<Boolean> GO_SERVER_SESSION_COOKIE_SECURE = new GoBooleanSystemProperty("go.sessioncookie.secure", false);
     public static final GoSystemProperty<String> AGENT_EXTRA_PROPERTIES = new GoStringSystemProperty("gocd.agent.extra.properties", "");
     public static final GoSystemProperty<Long> JMS_LISTENER_BACKOFF_TIME_IN_MILLIS = new GoLongSystemProperty("go.jms.listener.backoff.time.in.milliseconds", SECONDS.toMillis(5));
+    public static final GoSystemProperty<Boolean> IN_MEMORY_MESSAGING = new GoBooleanSystemProperty("go.messaging.in.memory", false);
+    public static final GoSystemProperty<Integer> IN_MEMORY_MESSAGING_CAPACITY = new GoIntSystemProperty("go.messaging.in.memory.capacity", 10000);
+    public static final GoSystemProperty<Long> SECRETS_CACHE_TTL_IN_MILLIS = new GoLongSystemProperty("go.secrets.cache.ttl", 0L);
+    public static final GoSystemProperty<Integer> SECRETS_CACHE_MAX_ENTRIES = new GoIntSystemProperty("go.secrets.cache.max.entries", 10000);
+    public static final GoSystemProperty<Integer> PLUGIN_MAX_CONCURRENT_CALLS = new GoIntSystemProperty("go.plugin.max.concurrent.calls", 0);
+    public static final GoSystemProperty<Long> PLUGIN_CALL_TIMEOUT_IN_MILLIS = new GoLongSystemProperty("go.plugin.call.timeout", 0L);
+    public static final GoSystemProperty<Boolean> PIPELINE_TIMELINE_SNAPSHOT = new GoBooleanSystemProperty("go.pipeline.timeline.snapshot", false);
 
     public static final GoSystemProperty<Integer> GO_SERVER_AUTHORIZATION_EXTENSION_CALLS_CACHE_TIMEOUT_IN_SECONDS = new GoIntSystemProperty("go.server.authorization.extension.calls.cache.timeout.in.secs", 60);
 
@@ -160,10 +170,14 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
     public static final GoSystemProperty<Boolean> AUTO_REGISTER_LOCAL_AGENT_ENABLED = new GoBooleanSystemProperty("go.auto.register.local.agent.enabled", true);
 
     public static final GoSystemProperty<Boolean> GO_SERVER_SHALLOW_CLONE = new GoBooleanSystemProperty("go.server.shallowClone", false);
+    public static final GoSystemProperty<Boolean> MDU_SHARE_GIT_REPOSITORIES = new GoBooleanSystemProperty("go.mdu.git.shareRepositories", true);
+    public static final GoSystemProperty<Long> MDU_MAX_POLLING_INTERVAL_IN_MILLIS = new GoLongSystemProperty("go.mdu.maxPollingInterval", 0L);
 
     public static final GoSystemProperty<Boolean> GO_API_WITH_SAFE_MODE = new GoBooleanSystemProperty("go.api.with.safe.mode", true);
     public static final GoSystemProperty<Integer> MAX_PENDING_AGENTS_ALLOWED = new GoIntSystemProperty("max.pending.agents.allowed", 100);
     public static final GoSystemProperty<Boolean> CHECK_AND_REMOVE_DUPLICATE_MODIFICATIONS = new GoBooleanSystemProperty("go.modifications.removeDuplicates", true);
+    public static final GoSystemProperty<Integer> MODIFICATIONS_BULK_INSERT_THRESHOLD = new GoIntSystemProperty("go.modifications.bulkInsert.threshold", 100);
+    public static final GoSystemProperty<Integer> MODIFICATIONS_BULK_INSERT_BATCH_SIZE = new GoIntSystemProperty("go.modifications.bulkInsert.batchSize", 500);
     public static final GoSystemProperty<Boolean> GO_DIAGNOSTICS_MODE = new GoBooleanSystemProperty("go.diagnostics.mode", false);
 
     public static final GoIntSystemProperty DEPENDENCY_MATERIAL_UPDATE_LISTENERS = new GoIntSystemProperty("dependency.material.check.threads", 3);
@@ -176,6 +190,9 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
     public static final GoSystemProperty<Boolean> CONSOLE_OUT_TO_STDOUT = new GoBooleanSystemProperty("go.console.stdout", false);
     private static final GoSystemProperty<String> CONSOLE_LOG_CHARSET = new GoStringSystemProperty("go.console.log.charset", "utf-8");
     public static final GoSystemProperty<Integer> CONSOLE_LOG_MAX_LINE_LENGTH = new GoIntSystemProperty("go.console.log.max.line.length", 1_000_000);
+    private static final GoSystemProperty<Boolean> CONSOLE_LOG_SHARED_TAIL_ENABLED = new GoBooleanSystemProperty("go.console.log.shared.tail.enabled", true);
+    private static final GoSystemProperty<Long> SCHEDULED_JOBS_RECONCILIATION_INTERVAL_IN_MILLIS = new GoLongSystemProperty("go.scheduled.jobs.reconciliation.interval", MINUTES.toMillis(1));
+    private static final GoSystemProperty<Long> SCHEDULING_FULL_CHECK_INTERVAL_IN_MILLIS = new GoLongSystemProperty("go.scheduling.full.check.interval", 0L);
     private static final GoSystemProperty<Boolean> AGENT_STATUS_API_ENABLED = new GoBooleanSystemProperty("go.agent.status.api.enabled", true);
     private static final GoSystemProperty<String> AGENT_STATUS_API_BIND_HOST = new GoStringSystemProperty("go.agent.status.api.bind.host", "localhost");
     private static final GoSystemProperty<Integer> AGENT_STATUS_API_BIND_PORT = new GoIntSystemProperty("go.agent.status.api.bind.port", 8152);
@@ -281,6 +298,27 @@ public class SystemEnvironment implements Serializable, ConfigDirProvider {
         return get(CONSOLE_OUT_TO_STDOUT);
     }
 
+    public boolean isConsoleLogSharedTailEnabled() {
+        return get(CONSOLE_LOG_SHARED_TAIL_ENABLED);
+    }
+
+    /**
+     * How often the queue of scheduled jobs that agents are assigned from is reloaded in full from the database.
+     * In between, the queue is kept up to date from job status changes. 0 reloads it on every build assignment tick.
+     */
+    public long getScheduledJobsReconciliationInterval() {
+        return get(SCHEDULED_JOBS_RECONCILIATION_INTERVAL_IN_MILLIS);
+    }
+
+    /**
+     * How often every idle pipeline is checked for scheduling. In between, only pipelines whose materials have changed,
+     * whose upstream stages have completed or whose config has changed are checked. 0 checks every idle pipeline on
+     * every scheduling tick.
+     */
+    public long getSchedulingFullCheckInterval() {
+        return get(SCHEDULING_FULL_CHECK_INTERVAL_IN_MILLIS);
+    }
+
     @TestOnly
     public void setDiskSpaceCacheRefresherInterval(long interval) {
         diskSpaceCacheRefresherInterval = interval;
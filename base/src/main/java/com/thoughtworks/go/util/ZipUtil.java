@@ -20,6 +20,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -66,38 +69,50 @@ public class ZipUtil {
         new ZipBuilder(this, level, output, excludeRootDir).add("", file).done();
     }
 
-    private void addFolderToZip(ZipPath path, File source, ZipOutputStream zip, boolean excludeRootDir) throws IOException {
+    /**
+     * Adds the file, or the directory and everything in it, to the zip. The content of every file is read through the
+     * filter, so that it can be looked at on its way into the zip.
+     */
+    public void addToZip(File source, ZipOutputStream zip, ZipSourceFilter filter) throws IOException {
+        addToZip(new ZipPath(), source, zip, false, filter);
+    }
+
+    private void addFolderToZip(ZipPath path, File source, ZipOutputStream zip, boolean excludeRootDir, ZipSourceFilter filter) throws IOException {
         ZipPath newPath = path.with(source);
         if (source.isFile()) {
-            addToZip(newPath, source, zip, false);
+            addToZip(newPath, source, zip, false, filter);
         } else {
-            addDirectory(path, source, zip, excludeRootDir);
+            addDirectory(path, source, zip, excludeRootDir, filter);
         }
     }
 
-    private void addDirectory(ZipPath path, File source, ZipOutputStream zip, boolean excludeRootDir) throws IOException {
+    private void addDirectory(ZipPath path, File source, ZipOutputStream zip, boolean excludeRootDir, ZipSourceFilter filter) throws IOException {
         if (excludeRootDir) {
-            addDirContents(path, source, zip);
+            addDirContents(path, source, zip, filter);
             return;
         }
         ZipPath newPath = path.with(source);
         zip.putNextEntry(newPath.asZipEntryDirectory());
-        addDirContents(newPath, source, zip);
+        addDirContents(newPath, source, zip, filter);
     }
 
-    private void addDirContents(ZipPath path, File source, ZipOutputStream zip) throws IOException {
+    private void addDirContents(ZipPath path, File source, ZipOutputStream zip, ZipSourceFilter filter) throws IOException {
         for (File file : source.listFiles()) {
-            addToZip(path, file, zip, false);
+            addToZip(path, file, zip, false, filter);
         }
     }
 
     void addToZip(ZipPath path, File srcFile, ZipOutputStream zip, boolean excludeRootDir) throws IOException {
+        addToZip(path, srcFile, zip, excludeRootDir, (entry, source) -> source);
+    }
+
+    private void addToZip(ZipPath path, File srcFile, ZipOutputStream zip, boolean excludeRootDir, ZipSourceFilter filter) throws IOException {
         if (srcFile.isDirectory()) {
-            addFolderToZip(path, srcFile, zip, excludeRootDir);
+            addFolderToZip(path, srcFile, zip, excludeRootDir, filter);
         } else {
             byte[] buff = new byte[4096];
-            try (BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(srcFile))) {
-                ZipEntry zipEntry = path.with(srcFile).asZipEntry();
+            ZipEntry zipEntry = path.with(srcFile).asZipEntry();
+            try (InputStream inputStream = filter.filter(zipEntry, new BufferedInputStream(new FileInputStream(srcFile)))) {
                 zipEntry.setTime(srcFile.lastModified());
                 zip.putNextEntry(zipEntry);
                 int len;
@@ -114,32 +129,71 @@ public class ZipUtil {
         }
     }
 
-    public void unzip(ZipInputStream zipInputStream, File destDir) throws IOException {
+    /**
+     * @return the files extracted
+     */
+    public List<File> unzip(ZipInputStream zipInputStream, File destDir) throws IOException {
+        List<File> extracted = new ArrayList<>();
         try(ZipInputStream zis = zipInputStream) {
             destDir.mkdirs();
             ZipEntry zipEntry = zis.getNextEntry();
             while (zipEntry != null) {
-                extractTo(zipEntry, zis, destDir);
+                addIfFile(extracted, extractTo(zipEntry, zis, destDir));
                 zipEntry = zis.getNextEntry();
             }
         }
+        return extracted;
+    }
+
+    /**
+     * Unzips the stream into the directory, but for the entry with the given name, which is handed to the handler
+     * instead of being extracted.
+     *
+     * @return the files extracted
+     */
+    public List<File> unzip(ZipInputStream zipInputStream, File destDir, String entryName, ZipEntryHandler handler) throws IOException {
+        List<File> extracted = new ArrayList<>();
+        try (ZipInputStream zis = zipInputStream) {
+            destDir.mkdirs();
+            ZipEntry zipEntry = zis.getNextEntry();
+            while (zipEntry != null) {
+                if (zipEntry.getName().equals(entryName)) {
+                    handler.handleEntry(zipEntry, zis);
+                } else {
+                    addIfFile(extracted, extractTo(zipEntry, zis, destDir));
+                }
+                zipEntry = zis.getNextEntry();
+            }
+        }
+        return extracted;
+    }
+
+    private static void addIfFile(List<File> extracted, File file) {
+        if (file != null) {
+            extracted.add(file);
+        }
     }
 
     public void unzip(File zip, File destDir) throws IOException {
         unzip(new ZipInputStream(new BufferedInputStream(new FileInputStream(zip))), destDir);
     }
 
-    private void extractTo(ZipEntry entry, InputStream entryInputStream, File toDir) throws IOException {
+    /**
+     * @return the file extracted, or null if the entry is a directory
+     */
+    private File extractTo(ZipEntry entry, InputStream entryInputStream, File toDir) throws IOException {
         bombIfZipEntryPathContainsDirectoryTraversalCharacters(entry.getName());
         String entryName = nonRootedEntryName(entry);
 
         File outputFile = new File(toDir, entryName);
         if (isDirectory(entryName)) {
             outputFile.mkdirs();
-            return;
+            return null;
         }
         try {
             outputFile.getParentFile().mkdirs();
+            // replace rather than write through a file already there, which may be a hard link shared with other files
+            Files.deleteIfExists(outputFile.toPath());
             try (FileOutputStream os = new FileOutputStream(outputFile)) {
                 IOUtils.copy(entryInputStream, os, BUFFER_SIZE);
                 if (zipEntryHandler != null) {
@@ -162,6 +216,7 @@ public class ZipUtil {
             LOGGER.error("Failed to unzip file [{}] to directory [{}]", entryName, toDir.getAbsolutePath(), e);
             throw e;
         }
+        return outputFile;
     }
 
     private String nonRootedEntryName(ZipEntry entry) {
@@ -191,4 +246,8 @@ public class ZipUtil {
         void handleEntry(ZipEntry entry, InputStream stream) throws IOException;
     }
 
+    public interface ZipSourceFilter {
+        InputStream filter(ZipEntry entry, InputStream source) throws IOException;
+    }
+
 }
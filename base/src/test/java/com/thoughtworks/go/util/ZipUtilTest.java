@@ -23,6 +23,8 @@ import org.junit.jupiter.api.condition.EnabledOnOs;
 import org.junit.jupiter.api.condition.OS;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -30,13 +32,18 @@ import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.fail;
 
 public class ZipUtilTest {
@@ -91,6 +98,44 @@ public class ZipUtilTest {
         assertThat(fileContent(actual2)).isEqualTo(fileContent(file2));
     }
 
+    @Test
+    void shouldReadFilesThroughTheFilterWhileZippingAndHandTheGivenEntryToTheHandlerWhileUnzipping() throws IOException {
+        Map<String, String> read = new TreeMap<>();
+        ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(zipped)) {
+            zipUtil.addToZip(srcDir, zip, (entry, source) -> {
+                read.put(entry.getName(), IOUtils.toString(source, UTF_8));
+                return new ByteArrayInputStream(read.get(entry.getName()).getBytes(UTF_8));
+            });
+            zip.putNextEntry(new ZipEntry("..special"));
+            zip.write("special".getBytes(UTF_8));
+        }
+        assertThat(read).containsOnly(
+                entry(srcDir.getName() + "/_file1", "_file1"),
+                entry(srcDir.getName() + "/_child1/_file2", "_file2"));
+
+        ByteArrayOutputStream special = new ByteArrayOutputStream();
+        zipUtil.unzip(new ZipInputStream(new ByteArrayInputStream(zipped.toByteArray())), destDir, "..special", (entry, stream) -> IOUtils.copy(stream, special));
+
+        assertThat(special.toString(UTF_8)).isEqualTo("special");
+        assertThat(fileContent(new File(destDir, srcDir.getName() + "/_child1/_file2"))).isEqualTo("_file2");
+    }
+
+    @Test
+    void shouldReplaceAFileAlreadyThereRatherThanWriteThroughItAndReturnTheFilesExtracted() throws IOException {
+        zipFile = zipUtil.zip(srcDir, createFileInTempDir(), Deflater.NO_COMPRESSION);
+        File existing = new File(destDir, srcDir.getName() + "/_file1");
+        FileUtils.writeStringToFile(existing, "linked", UTF_8);
+        File link = tempDir.resolve("link").toFile();
+        Files.createLink(link.toPath(), existing.toPath());
+
+        List<File> extracted = zipUtil.unzip(new ZipInputStream(new FileInputStream(zipFile)), destDir);
+
+        assertThat(fileContent(existing)).isEqualTo("_file1");
+        assertThat(fileContent(link)).isEqualTo("linked");
+        assertThat(extracted).containsExactlyInAnyOrder(existing, new File(destDir, srcDir.getName() + "/_child1/_file2"));
+    }
+
     private File createFileInTempDir() throws IOException {
         return Files.createFile(tempDir.resolve("file.txt")).toFile();
     }
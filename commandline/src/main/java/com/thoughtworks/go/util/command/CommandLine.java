@@ -385,6 +385,26 @@ public class CommandLine {
         return runOrBomb(true, processTag, input);
     }
 
+    /**
+     * Runs the command like {@link #runOrBomb(ProcessTag, String...)}, but hands every line of standard output to the
+     * consumer as soon as it is read, instead of keeping all of it in memory. The result only has the error output.
+     * <p>
+     * The consumer is called on the thread reading the output, and must not throw.
+     */
+    public ConsoleResult runOrBomb(StreamConsumer outputConsumer, ProcessTag processTag, String... input) {
+        LOG.debug("Running {}", this);
+        addInput(input);
+        InMemoryConsumer errors = new InMemoryConsumer();
+        ProcessWrapper process = execute(new ProcessOutputStreamConsumer<>(outputConsumer, errors), new EnvironmentVariableContext(), processTag);
+        int returnValue = process.waitForExit();
+
+        ConsoleResult result = new ConsoleResult(returnValue, new ArrayList<>(), errors.asList(), arguments, secrets, true);
+        if (result.failed()) {
+            throw new CommandLineException(this, result);
+        }
+        return result;
+    }
+
     /**
      * Returns the executable and all defined arguments.
      */
@@ -330,6 +330,32 @@ public class CommandLineTest {
         assertThat(result.outputAsString(), is(expectedValue));
     }
 
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void shouldHandOverOutputLinesToTheConsumerWhenStreaming() throws IOException {
+        File file = Files.writeString(temporaryFolder.resolve("test.sh"), "echo line1 && echo line2 && echo oops >&2", UTF_8).toFile();
+        InMemoryConsumer output = new InMemoryConsumer();
+
+        ConsoleResult result = CommandLine.createCommandLine("/bin/sh").withArg(file.getAbsolutePath()).withEncoding(UTF_8).runOrBomb(output, null);
+
+        assertThat(output.asList(), contains("line1", "line2"));
+        assertThat(result.output(), is(empty()));
+        assertThat(result.error(), contains("STDERR: oops"));
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void shouldThrowWithTheErrorOutputWhenStreamingCommandFails() throws IOException {
+        File file = Files.writeString(temporaryFolder.resolve("test.sh"), "echo line1 && echo oops >&2 && exit 10", UTF_8).toFile();
+        InMemoryConsumer output = new InMemoryConsumer();
+
+        assertThatThrownBy(() -> CommandLine.createCommandLine("/bin/sh").withArg(file.getAbsolutePath()).withEncoding(UTF_8).runOrBomb(output, null))
+                .isExactlyInstanceOf(CommandLineException.class)
+                .hasMessageContaining("EXIT CODE (10)")
+                .hasMessageContaining("oops");
+        assertThat(output.asList(), contains("line1"));
+    }
+
     @Test
     void shouldReturnThrowExceptionWhenCommandNotExist() {
         assertThatCode(() -> CommandLine.createCommandLine("something").withEncoding(UTF_8).runOrBomb(null))
@@ -17,7 +17,8 @@ package com.thoughtworks.go.agent;
 
 import com.thoughtworks.go.agent.common.ssl.GoAgentServerHttpClient;
 import com.thoughtworks.go.config.AgentRegistry;
-import com.thoughtworks.go.domain.FetchHandler;
+import com.thoughtworks.go.domain.DownloadHandler;
+import com.thoughtworks.go.domain.ResumableDownloadHandler;
 import com.thoughtworks.go.util.GoConstants;
 import com.thoughtworks.go.util.PerfTimer;
 import org.apache.http.HttpEntity;
@@ -74,6 +75,26 @@ public class HttpService {
         }
     }
 
+    /**
+     * Uploads an artifact as it is being made, rather than from a file, in a request body of unknown length.
+     */
+    public int upload(String url, long size, HttpEntity artifactStream) throws IOException {
+        LOGGER.info("Streaming upload to url [{}]", url);
+
+        HttpPost filePost = httpClientFactory.createPost(url);
+        setSizeHeader(filePost, size);
+        filePost.setHeader("Confirm", "true");
+        filePost.setEntity(artifactStream);
+        try (CloseableHttpResponse response = execute(filePost)) {
+            return response.getStatusLine().getStatusCode();
+        } catch (IOException e) {
+            LOGGER.error("Error while streaming upload to url [{}]", url, e);
+            throw e;
+        } finally {
+            filePost.releaseConnection();
+        }
+    }
+
     private HttpPost createHttpPostForUpload(String url, long size, File artifactFile, Properties artifactChecksums) throws IOException {
         HttpPost filePost = httpClientFactory.createPost(url);
         setSizeHeader(filePost, size);
@@ -82,19 +103,27 @@ public class HttpService {
         return filePost;
     }
 
-    public int download(String url, FetchHandler handler) throws IOException {
+    public int download(String url, DownloadHandler handler) throws IOException {
         HttpGet toGet = null;
         try {
             toGet = httpClientFactory.createGet(url);
+            long offset = handler instanceof ResumableDownloadHandler ? ((ResumableDownloadHandler) handler).bytesAlreadyFetched() : 0;
+            if (offset > 0) {
+                toGet.setHeader("Range", "bytes=" + offset + "-");
+            }
             PerfTimer timer = PerfTimer.start(String.format("Downloading from url [%s]", url));
             try (CloseableHttpResponse response = execute(toGet)) {
                 timer.stop();
                 int statusCode = response.getStatusLine().getStatusCode();
 
-                if (statusCode == HttpURLConnection.HTTP_OK) {
+                if (statusCode == HttpURLConnection.HTTP_OK || (statusCode == HttpURLConnection.HTTP_PARTIAL && offset > 0)) {
                     if (response.getEntity() != null) {
                         try (InputStream is = response.getEntity().getContent()) {
-                            handler.handle(is);
+                            if (statusCode == HttpURLConnection.HTTP_PARTIAL) {
+                                ((ResumableDownloadHandler) handler).handleRemaining(is);
+                            } else {
+                                handler.handle(is);
+                            }
                         }
                     }
                 }
@@ -305,20 +305,23 @@ public class AgentInstance implements Comparable<AgentInstance> {
 
     public JobPlan firstMatching(List<JobPlan> jobPlans) {
         for (JobPlan jobPlan : jobPlans) {
-            if (jobPlan.requiresElasticAgent()) {
-                continue;
-            }
-            if (jobPlan.assignedToAgent() && isNotElasticAndResourcesMatchForNonElasticAgents(jobPlan)) {
+            if (canRun(jobPlan)) {
                 return jobPlan;
-            } else {
-                if (agent.getUuid().equals(jobPlan.getAgentUuid())) {
-                    return jobPlan;
-                }
             }
         }
         return null;
     }
 
+    public boolean canRun(JobPlan jobPlan) {
+        if (jobPlan.requiresElasticAgent()) {
+            return false;
+        }
+        if (jobPlan.assignedToAgent()) {
+            return isNotElasticAndResourcesMatchForNonElasticAgents(jobPlan);
+        }
+        return agent.getUuid().equals(jobPlan.getAgentUuid());
+    }
+
     private boolean isNotElasticAndResourcesMatchForNonElasticAgents(JobPlan jobPlan) {
         return !jobPlan.requiresElasticAgent() && !isElastic() && agent.hasAllResources(jobPlan.getResources().toResourceConfigs().resourceNames());
     }
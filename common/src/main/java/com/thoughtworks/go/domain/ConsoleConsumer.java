@@ -16,6 +16,7 @@
 package com.thoughtworks.go.domain;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.function.Consumer;
 
 /**
@@ -24,5 +25,19 @@ import java.util.function.Consumer;
 public interface ConsoleConsumer extends AutoCloseable {
     long stream(Consumer<String> action) throws IOException;
 
+    /**
+     * Like {@link #stream(Consumer)}, but stops after at most {@code maxLines} lines.
+     */
+    long stream(Consumer<String> action, long maxLines) throws IOException;
+
+    /**
+     * Byte oriented equivalent of {@link #stream(Consumer, long)} that does not decode lines. The action receives
+     * the raw bytes of the lines, each terminated by a single {@code \n}, in chunks backed by a buffer that is reused
+     * once the action returns. A chunk may end in the middle of a line when the buffer fills up, so callers that need
+     * whole lines must carry the partial line over to the next chunk; the last chunk of an invocation always ends
+     * with a complete line.
+     */
+    long streamBytes(Consumer<ByteBuffer> action, long maxLines) throws IOException;
+
     long totalLinesConsumed();
 }
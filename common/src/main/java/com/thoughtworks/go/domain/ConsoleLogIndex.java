@@ -0,0 +1,241 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A sparse line number to byte offset index for a console log, so that readers can seek close to a requested line
+ * instead of decoding every line before it.
+ * <p>
+ * The index file is a flat, append-only sequence of longs; entry {@code i} holds the byte offset at which line
+ * {@code (i + 1) * LINES_PER_ENTRY} of the log starts. Because console logs are only ever appended to, every entry
+ * remains valid once written, and extending the index only needs to rescan the log from its last entry.
+ * <p>
+ * Line boundaries follow {@link java.io.BufferedReader#readLine()}: a line is terminated by {@code \n}, {@code \r}
+ * or {@code \r\n}.
+ */
+public class ConsoleLogIndex {
+    public static final int LINES_PER_ENTRY = 1000;
+
+    private static final int ENTRY_SIZE = Long.BYTES;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final Path log;
+    private final Path index;
+
+    public ConsoleLogIndex(Path log, Path index) {
+        this.log = log;
+        this.index = index;
+    }
+
+    /**
+     * Byte level scanning only works when line terminators are encoded as their single byte ASCII values.
+     */
+    public static boolean supports(Charset charset) {
+        return Arrays.equals("\r\n".getBytes(charset), new byte[]{'\r', '\n'});
+    }
+
+    public boolean exists() {
+        return Files.exists(index);
+    }
+
+    /**
+     * Appends entries for any content added to the log since the last indexed line. Creates the index if it does
+     * not exist yet.
+     */
+    public void update() throws IOException {
+        Files.createDirectories(index.getParent());
+
+        try (FileChannel channel = FileChannel.open(index, CREATE, READ, WRITE)) {
+            long entries = channel.size() / ENTRY_SIZE;
+
+            // drop a partially written trailing entry, if any
+            channel.truncate(entries * ENTRY_SIZE);
+
+            long offset = entries == 0 ? 0L : readEntry(channel, entries - 1);
+            if (offset > Files.size(log)) {
+                // the index does not describe this log; start over
+                channel.truncate(0L);
+                entries = 0;
+                offset = 0L;
+            }
+
+            channel.position(entries * ENTRY_SIZE);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            scan(offset, entries * LINES_PER_ENTRY, out);
+            out.flush();
+        }
+    }
+
+    /**
+     * Builds the index for the whole log from scratch, replacing any existing index atomically.
+     */
+    public void rebuild() throws IOException {
+        Files.createDirectories(index.getParent());
+        Path temp = Files.createTempFile(index.getParent(), index.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                scan(0L, 0L, out);
+            }
+
+            try {
+                Files.move(temp, index, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, index, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Finds the closest indexed position at or before the given line.
+     *
+     * @param line the line a reader wants to start from
+     * @return the byte offset to seek to and the line number found at that offset
+     */
+    public Position positionFor(long line) throws IOException {
+        long wanted = line / LINES_PER_ENTRY;
+
+        if (wanted <= 0 || !Files.exists(index)) {
+            return Position.START;
+        }
+
+        try (FileChannel channel = FileChannel.open(index, READ)) {
+            long entry = Math.min(wanted, channel.size() / ENTRY_SIZE);
+
+            if (entry == 0) {
+                return Position.START;
+            }
+
+            long offset = readEntry(channel, entry - 1);
+            if (offset > Files.size(log)) {
+                return Position.START;
+            }
+
+            return new Position(offset, entry * LINES_PER_ENTRY);
+        }
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(index);
+    }
+
+    public void moveTo(Path destination) throws IOException {
+        if (exists()) {
+            Files.createDirectories(destination.getParent());
+            Files.move(index, destination, REPLACE_EXISTING);
+        }
+    }
+
+    private long readEntry(FileChannel channel, long entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+        long position = entry * ENTRY_SIZE;
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of console log index " + index);
+            }
+        }
+
+        buffer.flip();
+        return buffer.getLong();
+    }
+
+    /**
+     * Scans the log from {@code offset} (which must be the start of line {@code line}) to EOF, writing an entry for
+     * every line number that is a multiple of {@link #LINES_PER_ENTRY}.
+     */
+    private void scan(long offset, long line, DataOutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long position = offset;
+            boolean previousWasCR = false;
+            long pendingEntry = -1L;
+
+            while (channel.read(buffer, position) > 0) {
+                buffer.flip();
+                byte[] bytes = buffer.array();
+                int limit = buffer.limit();
+
+                for (int i = 0; i < limit; i++, position++) {
+                    byte b = bytes[i];
+
+                    if (pendingEntry >= 0 && !(previousWasCR && b == '\n')) {
+                        // the line starting at `pendingEntry` is now known not to be the tail of a \r\n pair
+                        out.writeLong(pendingEntry);
+                        pendingEntry = -1L;
+                    }
+
+                    if (b == '\r' || (b == '\n' && !previousWasCR)) {
+                        line++;
+                        if (line % LINES_PER_ENTRY == 0) {
+                            pendingEntry = position + 1;
+                        }
+                    } else if (b == '\n' && pendingEntry >= 0) {
+                        // \r\n: the next line starts after the \n
+                        pendingEntry = position + 1;
+                    }
+
+                    previousWasCR = b == '\r';
+                }
+
+                buffer.clear();
+            }
+
+            // a trailing \r may yet be followed by \n, so its entry is written by a later scan instead
+            if (pendingEntry >= 0 && !previousWasCR) {
+                out.writeLong(pendingEntry);
+            }
+        }
+    }
+
+    public static class Position {
+        public static final Position START = new Position(0L, 0L);
+
+        private final long byteOffset;
+        private final long line;
+
+        public Position(long byteOffset, long line) {
+            this.byteOffset = byteOffset;
+            this.line = line;
+        }
+
+        public long byteOffset() {
+            return byteOffset;
+        }
+
+        public long line() {
+            return line;
+        }
+    }
+}
@@ -17,28 +17,57 @@ package com.thoughtworks.go.domain;
 
 import com.thoughtworks.go.util.SystemEnvironment;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
+import static java.nio.file.StandardOpenOption.READ;
+
 /**
  * Encapsulates a stream of lines from a console log file while keeping track of the number of lines processed
  * as well as the starting line to read.
+ * <p>
+ * A streamer reads either lines ({@link #stream(Consumer)}) or raw bytes ({@link #streamBytes(Consumer, long)}),
+ * but not both.
  */
 public class ConsoleStreamer implements ConsoleConsumer {
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+
     private Path path;
+    private ConsoleLogIndex index;
     private Stream stream;
     private Iterator iterator;
 
+    private FileChannel channel;
+    private ByteBuffer readBuffer;
+    private ByteBuffer lineBuffer;
+    private long position;
+    private long linesToSkip;
+    private boolean previousWasCR;
+    private boolean lineOpen;
+
     private long start;
     private long count = 0L;
 
     public ConsoleStreamer(Path path, long start) {
+        this(path, start, null);
+    }
+
+    /**
+     * @param index an optional {@link ConsoleLogIndex} used to seek close to {@code start} instead of reading every
+     *              line before it
+     */
+    public ConsoleStreamer(Path path, long start, ConsoleLogIndex index) {
         this.path = path;
         this.start = (start < 0L) ? 0L : start;
+        this.index = index;
     }
 
     /**
@@ -52,12 +81,19 @@ public class ConsoleStreamer implements ConsoleConsumer {
      */
     @Override
     public long stream(Consumer<String> action) throws IOException {
+        return stream(action, Long.MAX_VALUE);
+    }
+
+    @Override
+    public long stream(Consumer<String> action, long maxLines) throws IOException {
+        if (null != channel) throw new IllegalStateException("Cannot stream lines after streaming bytes");
+
         long linesStreamed = 0L;
 
-        if (null == stream) stream = Files.lines(path, new SystemEnvironment().consoleLogCharset()).skip(start);
+        if (null == stream) stream = openStream();
         if (null == iterator) iterator = stream.iterator();
 
-        while (iterator.hasNext()) {
+        while (linesStreamed < maxLines && iterator.hasNext()) {
             action.accept((String) iterator.next());
             ++linesStreamed;
             ++count;
@@ -66,6 +102,113 @@ public class ConsoleStreamer implements ConsoleConsumer {
         return linesStreamed;
     }
 
+    /**
+     * Reads the log straight into a reusable direct buffer and counts lines on the raw bytes. Line boundaries follow
+     * {@link BufferedReader#readLine()}: {@code \r}, {@code \n} and {@code \r\n} all end a line and are passed on
+     * as a single {@code \n}, and unterminated content at EOF is treated as a line. This only works for charsets
+     * that encode line terminators as single ASCII bytes; see {@link ConsoleLogIndex#supports(Charset)}.
+     */
+    @Override
+    public long streamBytes(Consumer<ByteBuffer> action, long maxLines) throws IOException {
+        if (null != stream) throw new IllegalStateException("Cannot stream bytes after streaming lines");
+
+        if (null == channel) openChannel();
+
+        long linesStreamed = 0L;
+        boolean eof = false;
+        lineBuffer.clear();
+
+        reading:
+        while (linesStreamed < maxLines) {
+            readBuffer.clear();
+            if (channel.read(readBuffer, position) <= 0) {
+                eof = true;
+                break;
+            }
+            readBuffer.flip();
+
+            while (readBuffer.hasRemaining()) {
+                byte b = readBuffer.get();
+                position++;
+
+                if (previousWasCR) {
+                    previousWasCR = false;
+                    if (b == '\n') continue;
+                }
+
+                if (b == '\n' || b == '\r') {
+                    previousWasCR = b == '\r';
+                    lineOpen = false;
+                    if (endLine(action)) {
+                        if (++linesStreamed == maxLines) break reading;
+                    }
+                } else {
+                    lineOpen = true;
+                    if (linesToSkip == 0L) put(action, b);
+                }
+            }
+        }
+
+        if (eof && lineOpen && linesStreamed < maxLines) {
+            lineOpen = false;
+            if (endLine(action)) ++linesStreamed;
+        }
+
+        if (lineBuffer.position() > 0) {
+            action.accept(lineBuffer.flip());
+        }
+
+        return linesStreamed;
+    }
+
+    /**
+     * @return true if the line was streamed, false if it was skipped
+     */
+    private boolean endLine(Consumer<ByteBuffer> action) {
+        if (linesToSkip > 0L) {
+            --linesToSkip;
+            return false;
+        }
+
+        put(action, (byte) '\n');
+        ++count;
+        return true;
+    }
+
+    private void put(Consumer<ByteBuffer> action, byte b) {
+        // hands over a partial line when the buffer is full; the line continues in the next chunk
+        if (!lineBuffer.hasRemaining()) {
+            action.accept(lineBuffer.flip());
+            lineBuffer.clear();
+        }
+        lineBuffer.put(b);
+    }
+
+    private void openChannel() throws IOException {
+        ConsoleLogIndex.Position seek = (null == index) ? ConsoleLogIndex.Position.START : index.positionFor(start);
+
+        channel = FileChannel.open(path, READ);
+        position = seek.byteOffset();
+        linesToSkip = start - seek.line();
+        readBuffer = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+        lineBuffer = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+    }
+
+    private Stream<String> openStream() throws IOException {
+        Charset charset = new SystemEnvironment().consoleLogCharset();
+        ConsoleLogIndex.Position position = (null == index) ? ConsoleLogIndex.Position.START : index.positionFor(start);
+
+        // not Files.lines(), which may stop at the file size seen when it was opened and miss appended content
+        FileChannel channel = FileChannel.open(path, READ).position(position.byteOffset());
+        BufferedReader reader = new BufferedReader(Channels.newReader(channel, charset.newDecoder(), -1));
+        return reader.lines().skip(start - position.line()).onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+            }
+        });
+    }
+
     @Override
     public void close() {
         if (null != stream) {
@@ -74,6 +217,17 @@ public class ConsoleStreamer implements ConsoleConsumer {
 
         stream = null;
         iterator = null;
+
+        if (null != channel) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        channel = null;
+        readBuffer = null;
+        lineBuffer = null;
     }
 
     @Override
@@ -15,24 +15,33 @@
  */
 package com.thoughtworks.go.domain;
 
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.thoughtworks.go.util.IllegalPathException;
 import com.thoughtworks.go.util.ZipUtil;
 import com.thoughtworks.go.validation.ChecksumValidator;
 import com.thoughtworks.go.work.GoPublisher;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import static com.thoughtworks.go.util.CachedDigestUtils.md5Hex;
 import static java.lang.String.format;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 public class DirHandler implements FetchHandler {
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
     private final String srcFile;
     private final File destOnAgent;
     private static final Logger LOG = LoggerFactory.getLogger(DirHandler.class);
@@ -64,6 +73,62 @@ public class DirHandler implements FetchHandler {
         }
     }
 
+    /**
+     * Fetches the directory file by file, over as many connections as the download action may make, rather than as a
+     * zip which the server has to make first. Files left behind by an earlier attempt are kept when their checksums
+     * match, and those it fetched only part of are fetched from where it left off.
+     */
+    public void fetchFiles(DownloadAction downloadAction, String remoteHost, String workingUrl) throws IOException, InterruptedException {
+        FileListHandler fileList = new FileListHandler();
+        downloadAction.perform(format("%s/remoting/files/%s.json", remoteHost, workingUrl), fileList);
+
+        String folderName = new File(srcFile).getName();
+        Map<String, DirFileHandler> downloads = new LinkedHashMap<>();
+        for (String path : fileList.paths) {
+            bombIfPathContainsDirectoryTraversalCharacters(path);
+            File file = new File(destOnAgent, folderName + "/" + path);
+            String srcFilePath = FilenameUtils.separatorsToUnix(new File(srcFile, path).getPath());
+            if (!alreadyFetched(file, srcFilePath)) {
+                downloads.put(format("%s/remoting/files/%s/%s", remoteHost, workingUrl, encode(path)), new DirFileHandler(file, srcFilePath));
+            }
+        }
+        LOG.info("[Agent Fetch Artifact] Downloading {} of the {} files in '{}' to '{}'", downloads.size(), fileList.paths.size(), srcFile, destOnAgent.getAbsolutePath());
+        downloadAction.performAll(downloads, this);
+    }
+
+    // the listing comes from the server, so a path in it must not lead out of the destination, just as a zip entry may not
+    private static void bombIfPathContainsDirectoryTraversalCharacters(String path) {
+        if (path.contains("..")) {
+            throw new IllegalPathException(format("File %s is outside the fetch destination directory", path));
+        }
+    }
+
+    private boolean alreadyFetched(File file, String srcFilePath) throws IOException {
+        if (artifactMd5Checksums == null || !file.isFile()) {
+            return false;
+        }
+        String expectedMd5 = artifactMd5Checksums.md5For(srcFilePath);
+        try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
+            if (expectedMd5 == null || !expectedMd5.equals(md5Hex(stream))) {
+                return false;
+            }
+        }
+        validate(srcFilePath, expectedMd5);
+        return true;
+    }
+
+    private synchronized void validate(String srcFilePath, String md5) {
+        new ChecksumValidator(artifactMd5Checksums).validate(srcFilePath, md5, checksumValidationPublisher);
+    }
+
+    private static String encode(String path) {
+        StringJoiner encoded = new StringJoiner("/");
+        for (String segment : path.split("/")) {
+            encoded.add(URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20"));
+        }
+        return encoded.toString();
+    }
+
     private String getSrcFilePath(ZipEntry entry) {
         String parent = new File(srcFile).getParent();
         return FilenameUtils.separatorsToUnix(new File(parent, entry.getName()).getPath());
@@ -107,4 +172,81 @@ public class DirHandler implements FetchHandler {
         result = 31 * result + (destOnAgent != null ? destOnAgent.hashCode() : 0);
         return result;
     }
+
+    // the listing of the directory the server gives, as the paths of the files in it
+    private static class FileListHandler implements DownloadHandler {
+        private final List<String> paths = new ArrayList<>();
+
+        @Override
+        public void handle(InputStream stream) throws IOException {
+            List<Map<String, Object>> entries = new Gson().fromJson(IOUtils.toString(stream, StandardCharsets.UTF_8), new TypeToken<List<Map<String, Object>>>() {}.getType());
+            paths.clear();
+            addPaths("", entries);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void addPaths(String parent, List<Map<String, Object>> entries) {
+            for (Map<String, Object> entry : entries) {
+                String path = parent + entry.get("name");
+                if ("folder".equals(entry.get("type"))) {
+                    addPaths(path + "/", (List<Map<String, Object>>) entry.get("files"));
+                } else {
+                    paths.add(path);
+                }
+            }
+        }
+
+        @Override
+        public boolean handleResult(int returncode, GoPublisher goPublisher) {
+            return returncode < HttpURLConnection.HTTP_BAD_REQUEST;
+        }
+    }
+
+    // a file of the directory, kept in a part file next to it until all of it has been fetched
+    private class DirFileHandler implements ResumableDownloadHandler {
+        private final File file;
+        private final File partFile;
+        private final String srcFilePath;
+
+        private DirFileHandler(File file, String srcFilePath) {
+            this.file = file;
+            this.partFile = new File(file.getParentFile(), file.getName() + ".part");
+            this.srcFilePath = srcFilePath;
+        }
+
+        @Override
+        public long bytesAlreadyFetched() {
+            return partFile.isFile() ? partFile.length() : 0;
+        }
+
+        @Override
+        public void handle(InputStream stream) throws IOException {
+            FileUtils.copyInputStreamToFile(stream, partFile);
+            fetched();
+        }
+
+        @Override
+        public void handleRemaining(InputStream stream) throws IOException {
+            try (OutputStream out = FileUtils.openOutputStream(partFile, true)) {
+                IOUtils.copy(stream, out);
+            }
+            fetched();
+        }
+
+        private void fetched() throws IOException {
+            try (InputStream stream = new BufferedInputStream(new FileInputStream(partFile))) {
+                validate(srcFilePath, md5Hex(stream));
+            }
+            Files.move(partFile.toPath(), file.toPath(), REPLACE_EXISTING);
+        }
+
+        @Override
+        public boolean handleResult(int returncode, GoPublisher goPublisher) {
+            if (returncode == HTTP_RANGE_NOT_SATISFIABLE) {
+                // the server has no more of the file than was fetched already, so fetch all of it again
+                FileUtils.deleteQuietly(partFile);
+            }
+            return returncode < HttpURLConnection.HTTP_BAD_REQUEST;
+        }
+    }
 }
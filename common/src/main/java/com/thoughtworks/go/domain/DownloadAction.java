@@ -22,23 +22,68 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DownloadAction {
 
     private final HttpService httpService;
     private final GoPublisher goPublisher;
     private final Clock clock;
+    private final int connections;
     private static final int DOWNLOAD_SLEEP_MILLIS = 5000;
     private static final Logger LOG = LoggerFactory.getLogger(DownloadAction.class);
 
 
     public DownloadAction(HttpService httpService, GoPublisher goPublisher, Clock clock) {
+        this(httpService, goPublisher, clock, 1);
+    }
+
+    public DownloadAction(HttpService httpService, GoPublisher goPublisher, Clock clock, int connections) {
         this.httpService = httpService;
         this.goPublisher = goPublisher;
         this.clock = clock;
+        this.connections = Math.max(1, connections);
+    }
+
+    public boolean canDownloadInParallel() {
+        return connections > 1;
+    }
+
+    /**
+     * Performs the downloads, as many at a time as there are connections to the server to be had, giving up on the
+     * rest of them as soon as one of them fails. The handler of everything downloaded then publishes the result.
+     */
+    public void performAll(Map<String, ? extends DownloadHandler> downloads, DownloadHandler handler) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(connections, downloads.size())));
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            downloads.forEach((url, download) -> results.add(executor.submit(() -> {
+                perform(url, download);
+                return null;
+            })));
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        if (!handler.handleResult(HttpURLConnection.HTTP_OK, goPublisher)) {
+            throw new RuntimeException(String.format("Giving up fetching %s resources.", downloads.size()));
+        }
     }
 
-    public void perform(String url, FetchHandler handler) throws InterruptedException {
+    public void perform(String url, DownloadHandler handler) throws InterruptedException {
         int retryCount = 0;
         while (true) {
             retryCount++;
@@ -69,7 +114,7 @@ public class DownloadAction {
         LOG.warn(message);
     }
 
-    private int download(HttpService httpService, String url, FetchHandler handler) throws Exception {
+    private int download(HttpService httpService, String url, DownloadHandler handler) throws Exception {
         int returnCode = httpService.download(url, handler);
         while (returnCode == HttpURLConnection.HTTP_ACCEPTED) {
             clock.sleepForMillis(DOWNLOAD_SLEEP_MILLIS);
@@ -15,19 +15,12 @@
  */
 package com.thoughtworks.go.domain;
 
-import com.thoughtworks.go.work.GoPublisher;
-
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.Serializable;
 
-public interface FetchHandler extends Serializable {
+public interface FetchHandler extends DownloadHandler, Serializable {
     String url(String remoteHost, String workingUrl) throws IOException;
 
-    void handle(InputStream stream) throws IOException;
-
-    boolean handleResult(int returncode, GoPublisher goPublisher);
-
     void useArtifactMd5Checksums(ArtifactMd5Checksums artifactMd5Checksums);
 
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Understands carrying on with a download from where an earlier attempt left off
+ */
+public interface ResumableDownloadHandler extends DownloadHandler {
+    /**
+     * @return how many bytes of the resource were fetched by an earlier attempt, so that only the rest is asked for
+     */
+    long bytesAlreadyFetched();
+
+    /**
+     * Handles the rest of the resource, after the {@link #bytesAlreadyFetched()} bytes an earlier attempt fetched.
+     */
+    void handleRemaining(InputStream stream) throws IOException;
+}
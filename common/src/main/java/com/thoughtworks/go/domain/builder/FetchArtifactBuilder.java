@@ -55,6 +55,10 @@ public class FetchArtifactBuilder extends Builder {
 
     private void downloadArtifact(DownloadAction downloadAction, String baseRemoteUrl) throws Exception {
         handler.useArtifactMd5Checksums(checksumFileHandler.getArtifactMd5Checksums());
+        if (handler instanceof DirHandler && downloadAction.canDownloadInParallel()) {
+            ((DirHandler) handler).fetchFiles(downloadAction, baseRemoteUrl, artifactLocator());
+            return;
+        }
         pullArtifact(downloadAction, handler.url(baseRemoteUrl, artifactLocator()), handler);
     }
 
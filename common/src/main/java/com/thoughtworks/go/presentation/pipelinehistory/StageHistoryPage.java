@@ -17,18 +17,20 @@ package com.thoughtworks.go.presentation.pipelinehistory;
 
 import com.thoughtworks.go.server.util.Pagination;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Understands a single page of the stagehistory
+ * Understands a single page of the stagehistory. Pages are cached and shared between requests, so a page cannot be
+ * changed once made.
  */
 public class StageHistoryPage {
-    private List<StageHistoryEntry> stages;
-    private Pagination pagination;
+    private final List<StageHistoryEntry> stages;
+    private final Pagination pagination;
     private final StageHistoryEntry immediateChronologicallyForwardStageHistoryEntry;
 
     public StageHistoryPage(List<StageHistoryEntry> stages, Pagination pagination, StageHistoryEntry immediateChronologicallyForwardStageHistoryEntry) {
-        this.stages = stages;
+        this.stages = Collections.unmodifiableList(stages);
         this.pagination = pagination;
         this.immediateChronologicallyForwardStageHistoryEntry = immediateChronologicallyForwardStageHistoryEntry;
     }
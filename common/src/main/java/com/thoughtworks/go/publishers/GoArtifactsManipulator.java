@@ -24,6 +24,7 @@ import com.thoughtworks.go.remote.AgentIdentifier;
 import com.thoughtworks.go.remote.work.ConsoleOutputTransmitter;
 import com.thoughtworks.go.remote.work.RemoteConsoleAppender;
 import com.thoughtworks.go.util.FileUtil;
+import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.SystemTimeClock;
 import com.thoughtworks.go.util.ZipUtil;
 import com.thoughtworks.go.work.DefaultGoPublisher;
@@ -73,6 +74,7 @@ public class GoArtifactsManipulator {
             bomb(message);
         }
 
+        boolean streaming = new SystemEnvironment().get(SystemEnvironment.ARTIFACT_STREAMING_UPLOAD);
         int publishingAttempts = 0;
         Throwable lastException = null;
         while (publishingAttempts < PUBLISH_MAX_RETRIES) {
@@ -80,10 +82,6 @@ public class GoArtifactsManipulator {
             try {
                 publishingAttempts++;
 
-                tmpDir = FileUtil.createTempFolder();
-                File dataToUpload = new File(tmpDir, source.getName() + ".zip");
-                zipUtil.zip(source, dataToUpload, Deflater.BEST_SPEED);
-
                 long size = 0;
                 if (source.isDirectory()) {
                     size = FileUtils.sizeOfDirectory(source);
@@ -96,7 +94,15 @@ public class GoArtifactsManipulator {
                 String normalizedDestPath = FilenameUtils.separatorsToUnix(destPath);
                 String url = urlService.getUploadUrlOfAgent(jobIdentifier, normalizedDestPath, publishingAttempts);
 
-                int statusCode = httpService.upload(url, size, dataToUpload, artifactChecksums(source, normalizedDestPath));
+                int statusCode;
+                if (streaming) {
+                    statusCode = httpService.upload(url, size, new StreamingZipEntity(zipUtil, source, entryName -> getEffectiveFileName(normalizedDestPath, entryName)));
+                } else {
+                    tmpDir = FileUtil.createTempFolder();
+                    File dataToUpload = new File(tmpDir, source.getName() + ".zip");
+                    zipUtil.zip(source, dataToUpload, Deflater.BEST_SPEED);
+                    statusCode = httpService.upload(url, size, dataToUpload, artifactChecksums(source, normalizedDestPath));
+                }
 
                 if (statusCode == HttpURLConnection.HTTP_ENTITY_TOO_LARGE) {
                     String message = String.format("Artifact upload for file %s (Size: %s) was denied by the server. This usually happens when server runs out of disk space.",
@@ -170,7 +176,8 @@ public class GoArtifactsManipulator {
             String fetchMsg = String.format("Fetching artifact [%s] from [%s]", fetchArtifactBuilder.getSrc(),
                     fetchArtifactBuilder.jobLocatorForDisplay());
             goPublisher.taggedConsumeLineWithPrefix(DefaultGoPublisher.OUT, fetchMsg);
-            fetchArtifactBuilder.fetch(new DownloadAction(httpService, goPublisher, new SystemTimeClock()), urlService);
+            int connections = new SystemEnvironment().get(SystemEnvironment.ARTIFACT_FETCH_CONNECTIONS);
+            fetchArtifactBuilder.fetch(new DownloadAction(httpService, goPublisher, new SystemTimeClock(), connections), urlService);
         } catch (Exception e) {
             String fetchMsg = String.format("Failed to save artifact [%s] to [%s]",
                     fetchArtifactBuilder.getSrc(), fetchArtifactBuilder.getDest());
@@ -191,6 +198,6 @@ public class GoArtifactsManipulator {
     public ConsoleOutputTransmitter createConsoleOutputTransmitter(JobIdentifier jobIdentifier,
                                                                    AgentIdentifier agentIdentifier, Charset consoleLogCharset) {
         String consoleUrl = urlService.getUploadUrlOfAgent(jobIdentifier, getConsoleOutputFolderAndFileNameUrl());
-        return new ConsoleOutputTransmitter(new RemoteConsoleAppender(consoleUrl, httpService, consoleLogCharset));
+        return new ConsoleOutputTransmitter(new RemoteConsoleAppender(consoleUrl, httpService), consoleLogCharset);
     }
 }
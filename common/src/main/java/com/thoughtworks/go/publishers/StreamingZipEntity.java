@@ -0,0 +1,147 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.publishers;
+
+import com.thoughtworks.go.util.GoConstants;
+import com.thoughtworks.go.util.ZipUtil;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.UnaryOperator;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Understands sending a file or directory to the server as a zip, made while it is being sent.
+ * <p>
+ * The md5 of each file is worked out as it is zipped, and the checksums go last, as the entry named
+ * {@link GoConstants#CHECKSUM_ZIP_ENTRY}, so that the files are read once and nothing is written to disk on the way.
+ */
+class StreamingZipEntity extends AbstractHttpEntity {
+    static final String CONTENT_TYPE = "application/zip";
+
+    private final ZipUtil zipUtil;
+    private final File source;
+    private final UnaryOperator<String> checksumNameOfEntry;
+
+    StreamingZipEntity(ZipUtil zipUtil, File source, UnaryOperator<String> checksumNameOfEntry) {
+        this.zipUtil = zipUtil;
+        this.source = source;
+        this.checksumNameOfEntry = checksumNameOfEntry;
+        setContentType(CONTENT_TYPE);
+        setChunked(true);
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(outputStream);
+        ZipOutputStream zip = new ZipOutputStream(buffered);
+        zip.setLevel(Deflater.BEST_SPEED);
+
+        Map<String, MessageDigest> digests = new LinkedHashMap<>();
+        zipUtil.addToZip(source, zip, (entry, in) -> {
+            MessageDigest digest = md5();
+            digests.put(entry.getName(), digest);
+            return new DigestInputStream(in, digest);
+        });
+
+        Properties checksums = new Properties();
+        digests.forEach((name, digest) -> checksums.setProperty(checksumNameOfEntry.apply(name), Hex.encodeHexString(digest.digest())));
+        zip.putNextEntry(new ZipEntry(GoConstants.CHECKSUM_ZIP_ENTRY));
+        checksums.store(zip, "");
+        zip.closeEntry();
+
+        // the request body is closed by the client once it has been written
+        zip.finish();
+        buffered.flush();
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Makes the zip on another thread, piped into the stream returned, since it is only made as it is written out.
+     * A failure to make it fails the reads of the stream rather than ending it early.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ZipPipe pipe = new ZipPipe();
+        PipedOutputStream out = new PipedOutputStream(pipe);
+        Thread writer = new Thread(() -> {
+            try (out) {
+                writeTo(out);
+            } catch (IOException | RuntimeException e) {
+                pipe.failure = e;
+            }
+        }, "zip-" + source.getName());
+        writer.setDaemon(true);
+        writer.start();
+        return pipe;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    private static class ZipPipe extends PipedInputStream {
+        private volatile Exception failure;
+
+        ZipPipe() {
+            super(64 * 1024);
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            return checked(super.read());
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            return checked(super.read(b, off, len));
+        }
+
+        private int checked(int read) throws IOException {
+            if (read == -1 && failure != null) {
+                throw new IOException("Could not zip the artifact", failure);
+            }
+            return read;
+        }
+    }
+}
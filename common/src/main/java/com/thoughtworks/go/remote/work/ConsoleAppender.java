@@ -18,5 +18,5 @@ package com.thoughtworks.go.remote.work;
 import java.io.IOException;
 
 public interface ConsoleAppender {
-    void append(String content) throws IOException;
+    void append(byte[] content) throws IOException;
 }
@@ -17,35 +17,55 @@ package com.thoughtworks.go.remote.work;
 
 import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.command.TaggedStreamConsumer;
-import org.apache.commons.collections4.queue.CircularFifoQueue;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-import static java.lang.String.format;
-
+/**
+ * Understands sending the console output of a job to the server every so often.
+ * <p>
+ * Lines are kept as bytes in the charset of the console log. Once more than {@link #MAX_BUFFERED_BYTES} of them are
+ * waiting, because the job prints faster than the server takes them or the server cannot be reached, they are spilled
+ * to a file rather than dropped, and sent from there first. What has been taken to be sent is held on to until the
+ * server has accepted it, and no more than about {@link #MAX_UPLOAD_BYTES} is sent at a time.
+ */
 public final class ConsoleOutputTransmitter implements TaggedStreamConsumer, Runnable {
     private static final Logger LOGGER = LoggerFactory.getLogger(ConsoleOutputTransmitter.class);
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    static final int MAX_BUFFERED_BYTES = 1024 * 1024;
+    static final int MAX_UPLOAD_BYTES = 1024 * 1024;
 
-    private final CircularFifoQueue buffer = new CircularFifoQueue(10 * 1024); // maximum 10k lines
     private final ConsoleAppender consoleAppender;
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+    private final Charset charset;
     private final ScheduledThreadPoolExecutor executor;
 
-    public ConsoleOutputTransmitter(ConsoleAppender consoleAppender) {
-        this(consoleAppender, new SystemEnvironment().getConsolePublishInterval(), new ScheduledThreadPoolExecutor(1));
+    // guards the buffer, the spill and the last timestamp, which the job's output is written into
+    private final Object bufferLock = new Object();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private Spill spill;
+    private long timestampMillis = Long.MIN_VALUE;
+    private String timestamp;
+
+    // guards what has been taken to be sent, so that flushes do not overtake one another
+    private final Object flushLock = new Object();
+    private byte[] unsent;
+
+    public ConsoleOutputTransmitter(ConsoleAppender consoleAppender, Charset charset) {
+        this(consoleAppender, charset, new SystemEnvironment().getConsolePublishInterval(), new ScheduledThreadPoolExecutor(1));
     }
 
-    protected ConsoleOutputTransmitter(ConsoleAppender consoleAppender, Integer consolePublishInterval,
+    protected ConsoleOutputTransmitter(ConsoleAppender consoleAppender, Charset charset, Integer consolePublishInterval,
                                        ScheduledThreadPoolExecutor scheduledThreadPoolExecutor) {
         this.consoleAppender = consoleAppender;
+        this.charset = charset;
         this.executor = scheduledThreadPoolExecutor;
         executor.scheduleAtFixedRate(this, 0L, consolePublishInterval, TimeUnit.SECONDS);
 
@@ -58,12 +78,42 @@ public final class ConsoleOutputTransmitter implements TaggedStreamConsumer, Run
 
     @Override
     public void taggedConsumeLine(String tag, String line) {
-        synchronized (buffer) {
-            if (null == tag) tag = "  ";
-            String date = dateFormat.format(new Date());
-            String prepend = format("%s|%s", tag, date);
-            String multilineJoin = "\n" + prepend + " ";
-            buffer.add(format("%s %s", prepend, line).replaceAll("\n", multilineJoin));
+        if (null == tag) tag = "  ";
+        synchronized (bufferLock) {
+            String prepend = tag + "|" + timestamp(System.currentTimeMillis()) + " ";
+            StringBuilder formatted = new StringBuilder(prepend.length() + line.length() + 1).append(prepend);
+            int start = 0;
+            for (int newline = line.indexOf('\n'); newline >= 0; newline = line.indexOf('\n', start)) {
+                formatted.append(line, start, newline + 1).append(prepend);
+                start = newline + 1;
+            }
+            formatted.append(line, start, line.length()).append('\n');
+
+            byte[] bytes = formatted.toString().getBytes(charset);
+            buffer.write(bytes, 0, bytes.length);
+            if (buffer.size() > MAX_BUFFERED_BYTES) {
+                spillBuffer();
+            }
+        }
+    }
+
+    private String timestamp(long millis) {
+        if (millis != timestampMillis) {
+            timestampMillis = millis;
+            timestamp = TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(millis));
+        }
+        return timestamp;
+    }
+
+    private void spillBuffer() {
+        try {
+            if (spill == null) {
+                spill = new Spill();
+            }
+            spill.write(buffer);
+            buffer.reset();
+        } catch (IOException e) {
+            LOGGER.warn("Could not spill console output to disk, keeping it in memory", e);
         }
     }
 
@@ -77,30 +127,34 @@ public final class ConsoleOutputTransmitter implements TaggedStreamConsumer, Run
     }
 
     public void flushToServer() {
-        if (buffer.isEmpty()) {
-            return;
+        synchronized (flushLock) {
+            try {
+                while (unsent != null || (unsent = takeNextUpload()) != null) {
+                    consoleAppender.append(unsent);
+                    unsent = null;
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not send console output to server", e);
+            }
         }
+    }
 
-        List sent = new ArrayList();
-        try {
-            synchronized (buffer) {
-                while (!buffer.isEmpty()) {
-                    sent.add(buffer.remove());
+    private byte[] takeNextUpload() throws IOException {
+        synchronized (bufferLock) {
+            if (spill != null) {
+                byte[] spilled = spill.read(MAX_UPLOAD_BYTES);
+                if (spilled.length > 0) {
+                    return spilled;
                 }
+                spill.delete();
+                spill = null;
             }
-            StringBuilder result = new StringBuilder();
-            for (Object string : sent) {
-                result.append(string);
-                result.append("\n");
-            }
-            consoleAppender.append(result.toString());
-        } catch (IOException e) {
-            LOGGER.warn("Could not send console output to server", e);
-            synchronized (buffer) {
-                sent.addAll(buffer);
-                buffer.clear();
-                buffer.addAll(sent);
+            if (buffer.size() == 0) {
+                return null;
             }
+            byte[] buffered = buffer.toByteArray();
+            buffer.reset();
+            return buffered;
         }
     }
 
@@ -108,5 +162,46 @@ public final class ConsoleOutputTransmitter implements TaggedStreamConsumer, Run
     public void stop() {
         flushToServer();
         executor.shutdown();
+        synchronized (bufferLock) {
+            if (spill != null) {
+                spill.delete();
+                spill = null;
+            }
+        }
+    }
+
+    private static class Spill {
+        private final File file;
+        private final OutputStream out;
+        private long sent;
+
+        private Spill() throws IOException {
+            file = File.createTempFile("console", ".log");
+            file.deleteOnExit();
+            out = new FileOutputStream(file, true);
+        }
+
+        private void write(ByteArrayOutputStream bytes) throws IOException {
+            bytes.writeTo(out);
+        }
+
+        private byte[] read(int maxBytes) throws IOException {
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                byte[] bytes = new byte[(int) Math.min(maxBytes, in.length() - sent)];
+                in.seek(sent);
+                in.readFully(bytes);
+                sent += bytes.length;
+                return bytes;
+            }
+        }
+
+        private void delete() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close spilled console output {}", file, e);
+            }
+            FileUtils.deleteQuietly(file);
+        }
     }
 }
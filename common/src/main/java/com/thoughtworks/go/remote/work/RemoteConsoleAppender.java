@@ -16,14 +16,16 @@
 package com.thoughtworks.go.remote.work;
 
 import com.thoughtworks.go.agent.HttpService;
+import org.apache.http.HttpHeaders;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
 
 public class RemoteConsoleAppender implements ConsoleAppender {
 
@@ -31,27 +33,38 @@ public class RemoteConsoleAppender implements ConsoleAppender {
 
     private String consoleUri;
     private HttpService httpService;
-    private final Charset charset;
 
-    public RemoteConsoleAppender(String consoleUri, HttpService httpService, Charset charset) {
+    public RemoteConsoleAppender(String consoleUri, HttpService httpService) {
         this.consoleUri = consoleUri;
         this.httpService = httpService;
-        this.charset = charset;
     }
 
     @Override
-    public void append(String content) throws IOException {
+    public void append(byte[] content) throws IOException {
         HttpPut putMethod = new HttpPut(consoleUri);
         try {
             LOGGER.debug("Appending console to URL -> {}", consoleUri);
-            StringEntity entity = new StringEntity(content, charset);
-            putMethod.setEntity(entity);
-            HttpService.setSizeHeader(putMethod, entity.getContentLength());
+            putMethod.setEntity(new ByteArrayEntity(gzip(content)));
+            putMethod.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            HttpService.setSizeHeader(putMethod, content.length);
             try (CloseableHttpResponse response = httpService.execute(putMethod)) {
-                LOGGER.debug("Got {}", response.getStatusLine().getStatusCode());
+                int statusCode = response.getStatusLine().getStatusCode();
+                LOGGER.debug("Got {}", statusCode);
+                // so that the console output is kept, and sent again on the next attempt
+                if (statusCode < 200 || statusCode >= 300) {
+                    throw new IOException(String.format("Failed to append console output to %s, the server responded with %s", consoleUri, response.getStatusLine()));
+                }
             }
         } finally {
             putMethod.releaseConnection();
         }
     }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(content);
+        }
+        return compressed.toByteArray();
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.domain;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.thoughtworks.go.domain.ConsoleLogIndex.LINES_PER_ENTRY;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsoleLogIndexTest {
+    private Path log;
+    private Path indexFile;
+    private ConsoleLogIndex index;
+
+    @BeforeEach
+    public void setUp(@TempDir Path tempDir) throws IOException {
+        log = Files.createFile(tempDir.resolve("console.log"));
+        indexFile = tempDir.resolve("index").resolve("console.idx");
+        index = new ConsoleLogIndex(log, indexFile);
+    }
+
+    @Test
+    public void positionIsStartOfFileWhenIndexDoesNotExist() throws IOException {
+        append(lines(0, 3 * LINES_PER_ENTRY, "\n"));
+
+        ConsoleLogIndex.Position position = index.positionFor(2500L);
+
+        assertEquals(0L, position.byteOffset());
+        assertEquals(0L, position.line());
+    }
+
+    @Test
+    public void rebuildIndexesEveryNthLine() throws IOException {
+        append(lines(0, 3 * LINES_PER_ENTRY + 10, "\n"));
+
+        index.rebuild();
+
+        assertTrue(index.exists());
+        assertEquals(3 * Long.BYTES, Files.size(indexFile));
+        assertLineStartsAt(index.positionFor(2 * LINES_PER_ENTRY + 5), 2 * LINES_PER_ENTRY);
+    }
+
+    @Test
+    public void updateExtendsIndexAsLogIsAppended() throws IOException {
+        append(lines(0, LINES_PER_ENTRY - 1, "\n"));
+        index.update();
+
+        assertTrue(index.exists());
+        assertEquals(0L, Files.size(indexFile));
+
+        append(lines(LINES_PER_ENTRY - 1, 2 * LINES_PER_ENTRY + 1, "\n"));
+        index.update();
+
+        assertEquals(2 * Long.BYTES, Files.size(indexFile));
+        assertLineStartsAt(index.positionFor(LINES_PER_ENTRY), LINES_PER_ENTRY);
+        assertLineStartsAt(index.positionFor(5 * LINES_PER_ENTRY), 2 * LINES_PER_ENTRY);
+    }
+
+    @Test
+    public void treatsCarriageReturnsAsLineTerminatorsLikeBufferedReader() throws IOException {
+        append(lines(0, LINES_PER_ENTRY / 2, "\r"));
+        append(lines(LINES_PER_ENTRY / 2, LINES_PER_ENTRY + 1, "\r\n"));
+
+        index.update();
+
+        assertLineStartsAt(index.positionFor(LINES_PER_ENTRY), LINES_PER_ENTRY);
+    }
+
+    @Test
+    public void doesNotIndexTrailingCarriageReturnUntilNextByteIsKnown() throws IOException {
+        append(lines(0, LINES_PER_ENTRY, "\r"));
+        index.update();
+
+        assertEquals(0L, Files.size(indexFile));
+
+        append("\nnext\n");
+        index.update();
+
+        ConsoleLogIndex.Position position = index.positionFor(LINES_PER_ENTRY);
+        assertEquals(Long.BYTES, Files.size(indexFile));
+        assertEquals(LINES_PER_ENTRY, position.line());
+        assertEquals(Files.size(log) - "next\n".length(), position.byteOffset());
+    }
+
+    @Test
+    public void ignoresIndexThatPointsBeyondTheLog() throws IOException {
+        append(lines(0, 2 * LINES_PER_ENTRY, "\n"));
+        index.rebuild();
+        Files.write(log, "truncated\n".getBytes(StandardCharsets.UTF_8));
+
+        ConsoleLogIndex.Position position = index.positionFor(LINES_PER_ENTRY);
+
+        assertEquals(0L, position.byteOffset());
+        assertEquals(0L, position.line());
+    }
+
+    @Test
+    public void supportsOnlyAsciiCompatibleCharsets() {
+        assertTrue(ConsoleLogIndex.supports(StandardCharsets.UTF_8));
+        assertTrue(ConsoleLogIndex.supports(StandardCharsets.ISO_8859_1));
+        assertFalse(ConsoleLogIndex.supports(StandardCharsets.UTF_16));
+    }
+
+    private void assertLineStartsAt(ConsoleLogIndex.Position position, long expectedLine) throws IOException {
+        assertEquals(expectedLine, position.line());
+        byte[] bytes = Files.readAllBytes(log);
+        String text = new String(bytes, (int) position.byteOffset(), bytes.length - (int) position.byteOffset(), StandardCharsets.UTF_8);
+        assertTrue(text.startsWith("line " + expectedLine + "\r") || text.startsWith("line " + expectedLine + "\n"), text);
+    }
+
+    private String lines(int from, int to, String terminator) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            builder.append("line ").append(i).append(terminator);
+        }
+        return builder.toString();
+    }
+
+    private void append(String text) throws IOException {
+        Files.write(log, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
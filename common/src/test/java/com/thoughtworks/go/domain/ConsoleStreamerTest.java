@@ -18,9 +18,11 @@ package com.thoughtworks.go.domain;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -81,6 +83,87 @@ public class ConsoleStreamerTest {
         }
     }
 
+    @Test
+    public void streamSeeksUsingIndexWhenAvailable() throws Exception {
+        String[] lines = new String[2 * ConsoleLogIndex.LINES_PER_ENTRY + 2];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "line " + i;
+        }
+        File log = makeConsoleFile(lines);
+        ConsoleLogIndex index = new ConsoleLogIndex(log.toPath(), new File(log.getPath() + ".idx").toPath());
+        index.rebuild();
+        final List<String> actual = new ArrayList<>();
+
+        try (ConsoleStreamer console = new ConsoleStreamer(log.toPath(), 2L * ConsoleLogIndex.LINES_PER_ENTRY - 1, index)) {
+            console.stream(actual::add);
+            assertArrayEquals(new String[]{"line 1999", "line 2000", "line 2001"}, actual.toArray());
+            assertEquals(3L, console.totalLinesConsumed());
+        } finally {
+            Files.deleteIfExists(new File(log.getPath() + ".idx").toPath());
+        }
+    }
+
+    @Test
+    public void streamBytesNormalizesLineTerminators() throws Exception {
+        File log = makeConsoleFile("first\r\nsecond\rthird\nfourth");
+
+        try (ConsoleStreamer console = new ConsoleStreamer(log.toPath(), 1L)) {
+            assertEquals("second\nthird\nfourth\n", streamBytes(console, Long.MAX_VALUE));
+            assertEquals(3L, console.totalLinesConsumed());
+        }
+    }
+
+    @Test
+    public void streamBytesStopsAfterMaxLinesAndContinuesWithAppendedContent() throws Exception {
+        File log = makeConsoleFile("first", "second", "third\r");
+
+        try (ConsoleStreamer console = new ConsoleStreamer(log.toPath(), 0L)) {
+            assertEquals("first\nsecond\n", streamBytes(console, 2L));
+            assertEquals("third\n", streamBytes(console, Long.MAX_VALUE));
+
+            Files.write(log.toPath(), "\nfourth\n".getBytes(), StandardOpenOption.APPEND);
+
+            assertEquals("fourth\n", streamBytes(console, Long.MAX_VALUE));
+            assertEquals(4L, console.totalLinesConsumed());
+        }
+    }
+
+    @Test
+    public void streamBytesProducesSameLinesAsStream() throws Exception {
+        File log = makeConsoleFile("a\r\r\nb", "", "c\rd\n\n");
+        final StringBuilder expected = new StringBuilder();
+
+        try (ConsoleStreamer console = new ConsoleStreamer(log.toPath(), 2L)) {
+            console.stream(line -> expected.append(line).append('\n'));
+        }
+
+        try (ConsoleStreamer console = new ConsoleStreamer(log.toPath(), 2L)) {
+            assertEquals(expected.toString(), streamBytes(console, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void streamBytesSplitsLinesLongerThanItsBufferAcrossChunksButEndsWithAWholeLine() throws Exception {
+        String longLine = StringUtils.repeat('x', 100 * 1024);
+        File log = makeConsoleFile(longLine, "short");
+        final List<String> chunks = new ArrayList<>();
+
+        try (ConsoleStreamer console = new ConsoleStreamer(log.toPath(), 0L)) {
+            console.streamBytes(bytes -> chunks.add(new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining())), Long.MAX_VALUE);
+        }
+
+        assertTrue(chunks.size() > 1);
+        assertFalse(chunks.get(0).contains("\n"));
+        assertTrue(chunks.get(chunks.size() - 1).endsWith("short\n"));
+        assertEquals(longLine + "\nshort\n", String.join("", chunks));
+    }
+
+    private String streamBytes(ConsoleStreamer console, long maxLines) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        console.streamBytes(bytes -> out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()), maxLines);
+        return out.toString();
+    }
+
     private File makeConsoleFile(String... message) throws IOException {
         File console = File.createTempFile("console", ".log");
         console.deleteOnExit();
@@ -15,7 +15,10 @@
  */
 package com.thoughtworks.go.domain;
 
+import com.thoughtworks.go.agent.HttpService;
+import com.thoughtworks.go.util.IllegalPathException;
 import com.thoughtworks.go.util.TempDirUtils;
+import com.thoughtworks.go.util.TestingClock;
 import com.thoughtworks.go.util.ZipUtil;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
@@ -23,6 +26,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -172,6 +176,61 @@ public class DirHandlerTest {
         assertArtifactWasSaved("fetch_dest");
     }
 
+    @Test
+    public void shouldFetchTheFilesOfADirectoryOneByOneResumingThoseFetchedInPart() throws Exception {
+        String files = "http://server/remoting/files/p/1/s/1/j/fetch_dest";
+        HttpService httpService = mock(HttpService.class);
+        when(httpService.download(eq(files + ".json"), any())).thenAnswer(invocation -> {
+            ((DownloadHandler) invocation.getArgument(1)).handle(stream("[{\"name\": \"first\", \"type\": \"file\"}, " +
+                    "{\"name\": \"under_dir\", \"type\": \"folder\", \"files\": [{\"name\": \"second\", \"type\": \"file\"}]}]"));
+            return 200;
+        });
+        when(httpService.download(eq(files + "/first"), any())).thenAnswer(invocation -> {
+            ResumableDownloadHandler handler = invocation.getArgument(1);
+            assertThat(handler.bytesAlreadyFetched(), is(6L));
+            handler.handleRemaining(stream("File"));
+            return 206;
+        });
+        when(httpService.download(eq(files + "/under_dir/second"), any())).thenAnswer(invocation -> {
+            ((DownloadHandler) invocation.getArgument(1)).handle(stream("Second File"));
+            return 200;
+        });
+        FileUtils.writeStringToFile(new File(agentDest, "fetch_dest/first.part"), "First ", UTF_8);
+        when(checksums.md5For("fetch_dest/first")).thenReturn(DigestUtils.md5Hex("First File"));
+        when(checksums.md5For("fetch_dest/under_dir/second")).thenReturn(DigestUtils.md5Hex("Second File"));
+        dirHandler.useArtifactMd5Checksums(checksums);
+
+        dirHandler.fetchFiles(new DownloadAction(httpService, goPublisher, new TestingClock(), 2), "http://server", "p/1/s/1/j/fetch_dest");
+
+        assertThat(goPublisher.getMessage(), containsString(String.format("Saved artifact to [%s] after verifying the integrity of its contents.", agentDest)));
+        assertThat(new File(agentDest, "fetch_dest/first.part").exists(), is(false));
+        assertArtifactWasSaved("under_dir");
+    }
+
+    @Test
+    public void shouldNotFetchAFileListedOutsideTheDestination() throws Exception {
+        String files = "http://server/remoting/files/p/1/s/1/j/fetch_dest";
+        HttpService httpService = mock(HttpService.class);
+        when(httpService.download(eq(files + ".json"), any())).thenAnswer(invocation -> {
+            ((DownloadHandler) invocation.getArgument(1)).handle(stream("[{\"name\": \"..\", \"type\": \"folder\", \"files\": [{\"name\": \"escaped\", \"type\": \"file\"}]}]"));
+            return 200;
+        });
+
+        try {
+            dirHandler.fetchFiles(new DownloadAction(httpService, goPublisher, new TestingClock(), 2), "http://server", "p/1/s/1/j/fetch_dest");
+            fail("should have refused to fetch a file outside the destination");
+        } catch (IllegalPathException e) {
+            assertThat(e.getMessage(), containsString("../escaped"));
+        }
+
+        verify(httpService, never()).download(eq(files + "/../escaped"), any());
+        assertThat(new File(agentDest, "escaped").exists(), is(false));
+    }
+
+    private ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(UTF_8));
+    }
+
     private File createZip(String subDirectoryName) throws IOException {
         File first = artifactDest.resolve("first").toFile();
         FileUtils.writeStringToFile(first, "First File", UTF_8);
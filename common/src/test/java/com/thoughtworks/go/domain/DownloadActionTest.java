@@ -122,7 +122,7 @@ public class DownloadActionTest {
         }
 
         @Override
-        public int download(String url, FetchHandler handler) {
+        public int download(String url, DownloadHandler handler) {
             timesCalled += 1;
             if (timesCalled < count) {
                 return SC_ACCEPTED;
@@ -155,7 +155,7 @@ public class DownloadActionTest {
         }
 
         @Override
-        public int download(String url, FetchHandler handler) throws IOException {
+        public int download(String url, DownloadHandler handler) throws IOException {
             timesCalled += 1;
             if (timesCalled <= count) {
                 throw new SocketException("Connection Reset");
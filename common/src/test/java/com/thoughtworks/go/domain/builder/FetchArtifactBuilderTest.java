@@ -224,7 +224,7 @@ public class FetchArtifactBuilderTest {
             super(null, null);
         }
         @Override
-        public int download(String url, FetchHandler handler) throws IOException {
+        public int download(String url, DownloadHandler handler) throws IOException {
             try (FileInputStream stream = new FileInputStream(zip)) {
                 handler.handle(stream);
             }
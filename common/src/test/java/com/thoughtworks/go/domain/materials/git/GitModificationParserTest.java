@@ -15,7 +15,11 @@
  */
 package com.thoughtworks.go.domain.materials.git;
 
+import com.thoughtworks.go.domain.materials.ModifiedAction;
+import com.thoughtworks.go.domain.materials.ModifiedFile;
 import com.thoughtworks.go.util.DateUtils;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import org.junit.jupiter.api.Test;
@@ -102,4 +106,32 @@ public class GitModificationParserTest {
                 parser.getModifications().get(1).getComment(),
                 is("My Comment 2"));
     }
+
+    @Test
+    public void shouldAddFilesChangedByEachCommit() {
+        simulateOneComment();
+        parser.processLine("");
+        parser.processLine("    My Comment 1");
+        parser.processLine("    ");
+        parser.processLine("    M\tnot a file");
+        parser.processLine("");
+        parser.processLine("D\ta");
+        parser.processLine("A\tdir/with space");
+        parser.processLine("");
+        simulateOneComment();
+        parser.processLine("");
+        parser.processLine("    My Comment 2");
+        parser.processLine("");
+        parser.processLine("M100\tb");
+        simulateOneComment();
+        parser.processLine("");
+        parser.processLine("    Merge");
+
+        assertThat(parser.getModifications().get(0).getComment(), is("My Comment 1\n\nM\tnot a file"));
+        assertThat(parser.getModifications().get(0).getModifiedFiles(), contains(
+                new ModifiedFile("a", null, ModifiedAction.deleted),
+                new ModifiedFile("dir/with space", null, ModifiedAction.added)));
+        assertThat(parser.getModifications().get(1).getModifiedFiles(), contains(new ModifiedFile("b", null, ModifiedAction.modified)));
+        assertThat(parser.getModifications().get(2).getModifiedFiles(), is(empty()));
+    }
 }
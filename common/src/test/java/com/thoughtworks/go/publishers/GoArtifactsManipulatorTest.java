@@ -26,13 +26,13 @@ import com.thoughtworks.go.util.CachedDigestUtils;
 import com.thoughtworks.go.util.ReflectionUtil;
 import com.thoughtworks.go.util.TempDirUtils;
 import com.thoughtworks.go.work.DefaultGoPublisher;
-import org.apache.commons.collections4.queue.CircularFifoQueue;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -71,15 +71,16 @@ public class GoArtifactsManipulatorTest {
     public void shouldBombWithErrorWhenStatusCodeReturnedIsRequestEntityTooLarge() throws IOException {
         when(httpService.upload(any(String.class), eq(tempFile.length()), any(File.class), any(Properties.class))).thenReturn(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
 
-        CircularFifoQueue buffer = ReflectionUtil.getField(ReflectionUtil.getField(goPublisher, "consoleOutputTransmitter"), "buffer");
-        synchronized (buffer) {
+        Object transmitter = ReflectionUtil.getField(goPublisher, "consoleOutputTransmitter");
+        ByteArrayOutputStream buffer = ReflectionUtil.getField(transmitter, "buffer");
+        synchronized (ReflectionUtil.<Object>getField(transmitter, "bufferLock")) {
             try {
                 goArtifactsManipulatorStub.publish(goPublisher, "some_dest", tempFile, jobIdentifier);
                 fail("should have thrown request entity too large error");
             } catch (RuntimeException e) {
                 String expectedMessage = "Artifact upload for file " + tempFile.getAbsolutePath() + " (Size: "+ tempFile.length() +") was denied by the server. This usually happens when server runs out of disk space.";
                 assertThat(e.getMessage(), is("java.lang.RuntimeException: " + expectedMessage + ".  HTTP return code is 413"));
-                assertThat(buffer.toString().contains(expectedMessage), is(true));
+                assertThat(buffer.toString(UTF_8).contains(expectedMessage), is(true));
             }
         }
     }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.publishers;
+
+import com.thoughtworks.go.util.GoConstants;
+import com.thoughtworks.go.util.ZipUtil;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class StreamingZipEntityTest {
+    @Test
+    public void shouldZipTheSourceFollowedByTheChecksumsOfItsFiles(@TempDir Path tempDir) throws Exception {
+        File source = tempDir.resolve("dist").toFile();
+        FileUtils.writeStringToFile(new File(source, "a.txt"), "a", UTF_8);
+        FileUtils.writeStringToFile(new File(source, "lib/b.txt"), "b", UTF_8);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        StreamingZipEntity entity = new StreamingZipEntity(new ZipUtil(), source, name -> "dest/" + name);
+        entity.writeTo(body);
+
+        List<String> entries = new ArrayList<>();
+        Properties checksums = new Properties();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+            for (ZipEntry zipEntry = zip.getNextEntry(); zipEntry != null; zipEntry = zip.getNextEntry()) {
+                entries.add(zipEntry.getName());
+                if (zipEntry.getName().equals(GoConstants.CHECKSUM_ZIP_ENTRY)) {
+                    checksums.load(new ByteArrayInputStream(IOUtils.toByteArray(zip)));
+                }
+            }
+        }
+
+        assertThat(entity.isChunked()).isTrue();
+        assertThat(entries).contains("dist/a.txt", "dist/lib/b.txt").last().isEqualTo(GoConstants.CHECKSUM_ZIP_ENTRY);
+        assertThat(checksums).containsOnly(
+                entry("dest/dist/a.txt", DigestUtils.md5Hex("a")),
+                entry("dest/dist/lib/b.txt", DigestUtils.md5Hex("b")));
+    }
+
+    @Test
+    public void shouldAlsoMakeTheZipWhenItsContentIsRead(@TempDir Path tempDir) throws Exception {
+        File source = tempDir.resolve("dist").toFile();
+        FileUtils.writeStringToFile(new File(source, "a.txt"), "a", UTF_8);
+
+        StreamingZipEntity entity = new StreamingZipEntity(new ZipUtil(), source, name -> name);
+
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(entity.getContent())) {
+            for (ZipEntry zipEntry = zip.getNextEntry(); zipEntry != null; zipEntry = zip.getNextEntry()) {
+                entries.add(zipEntry.getName());
+            }
+        }
+
+        assertThat(entries).contains("dist/a.txt").last().isEqualTo(GoConstants.CHECKSUM_ZIP_ENTRY);
+    }
+}
@@ -20,6 +20,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
@@ -39,7 +41,7 @@ public class ConsoleOutputTransmitterPerformanceTest {
     @Test
     public void shouldNotBlockPublisherWhenSendingToServer() throws InterruptedException {
         SlowResource resource = new SlowResource();
-        final ConsoleOutputTransmitter transmitter = new ConsoleOutputTransmitter(resource);
+        final ConsoleOutputTransmitter transmitter = new ConsoleOutputTransmitter(resource, StandardCharsets.UTF_8);
 
         int numberToSend = 4;
         int actuallySent = transmitData(transmitter, numberToSend);
@@ -24,9 +24,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
-import static org.hamcrest.Matchers.containsString;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -39,7 +41,7 @@ public class ConsoleOutputTransmitterTest {
     @BeforeEach
     public void setup() throws Exception {
         new SystemEnvironment().setProperty(SystemEnvironment.INTERVAL, "60"); // so the thread does not wake up
-        transmitter = new ConsoleOutputTransmitter(consoleAppender, 0, mock(ScheduledThreadPoolExecutor.class));
+        transmitter = new ConsoleOutputTransmitter(consoleAppender, UTF_8, 0, mock(ScheduledThreadPoolExecutor.class));
     }
 
     @AfterEach
@@ -50,7 +52,7 @@ public class ConsoleOutputTransmitterTest {
     @Test
     public void shouldFlushContentsInBufferToServerInOneGo() throws Exception {
 
-        ArgumentCaptor<String> requestArgumentCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<byte[]> requestArgumentCaptor = ArgumentCaptor.forClass(byte[].class);
         doNothing().when(consoleAppender).append(requestArgumentCaptor.capture());
 
         transmitter.consumeLine("first line");
@@ -58,15 +60,62 @@ public class ConsoleOutputTransmitterTest {
 
         transmitter.flushToServer();
 
-        verify(consoleAppender).append(any(String.class));
-        assertThat(requestArgumentCaptor.getValue(), containsString("first line\n"));
-        assertThat(requestArgumentCaptor.getValue(), containsString("second line\n"));
+        verify(consoleAppender).append(any(byte[].class));
+        assertThat(new String(requestArgumentCaptor.getValue(), UTF_8), containsString("first line\n"));
+        assertThat(new String(requestArgumentCaptor.getValue(), UTF_8), containsString("second line\n"));
     }
 
     @Test
     public void shouldNotFlushToServerWhenBufferIsEmpty() throws Exception {
         transmitter.flushToServer();
 
-        verify(consoleAppender, never()).append(any(String.class));
+        verify(consoleAppender, never()).append(any(byte[].class));
+    }
+
+    @Test
+    public void shouldPrefixEveryLineOfMultilineOutputWithTheTagAndTimestamp() throws Exception {
+        ArgumentCaptor<byte[]> requestArgumentCaptor = ArgumentCaptor.forClass(byte[].class);
+        doNothing().when(consoleAppender).append(requestArgumentCaptor.capture());
+
+        transmitter.taggedConsumeLine("##", "first\nsecond");
+        transmitter.flushToServer();
+
+        String sent = new String(requestArgumentCaptor.getValue(), UTF_8);
+        assertThat(sent, matchesPattern("##\\|\\d{2}:\\d{2}:\\d{2}\\.\\d{3} first\n##\\|\\d{2}:\\d{2}:\\d{2}\\.\\d{3} second\n"));
+    }
+
+    @Test
+    public void shouldSendWhatCouldNotBeSentBeforeAnythingElse() throws Exception {
+        ArgumentCaptor<byte[]> requestArgumentCaptor = ArgumentCaptor.forClass(byte[].class);
+        doThrow(new IOException("server down")).doNothing().when(consoleAppender).append(requestArgumentCaptor.capture());
+
+        transmitter.consumeLine("first line");
+        transmitter.flushToServer();
+        transmitter.consumeLine("second line");
+        transmitter.flushToServer();
+
+        assertThat(requestArgumentCaptor.getAllValues().size(), is(3));
+        assertThat(new String(requestArgumentCaptor.getAllValues().get(1), UTF_8), containsString("first line\n"));
+        assertThat(new String(requestArgumentCaptor.getAllValues().get(2), UTF_8), containsString("second line\n"));
+    }
+
+    @Test
+    public void shouldSpillOutputToDiskRatherThanDropItWhenTooMuchIsWaitingToBeSent() throws Exception {
+        StringBuilder sent = new StringBuilder();
+        doAnswer(invocation -> sent.append(new String(invocation.getArgument(0, byte[].class), UTF_8))).when(consoleAppender).append(any(byte[].class));
+
+        String line = "x".repeat(1000);
+        int lines = 3 * ConsoleOutputTransmitter.MAX_BUFFERED_BYTES / line.length();
+        for (int i = 0; i < lines; i++) {
+            transmitter.consumeLine(i + line);
+        }
+        transmitter.flushToServer();
+
+        verify(consoleAppender, atLeast(3)).append(any(byte[].class));
+        String[] sentLines = sent.toString().split("\n");
+        assertThat(sentLines.length, is(lines));
+        for (int i = 0; i < lines; i++) {
+            assertThat(sentLines[i], endsWith(" " + i + line));
+        }
     }
 }
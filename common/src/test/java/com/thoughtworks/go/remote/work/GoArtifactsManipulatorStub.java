@@ -65,7 +65,7 @@ public class GoArtifactsManipulatorStub extends GoArtifactsManipulator {
 
     public ConsoleOutputTransmitter createConsoleOutputTransmitter(JobIdentifier jobIdentifier,
                                                                    AgentIdentifier agentIdentifier, Charset consoleLogCharset) {
-        return new ConsoleOutputTransmitter(consoleOuts::add);
+        return new ConsoleOutputTransmitter(content -> consoleOuts.add(new String(content, consoleLogCharset)), consoleLogCharset);
     }
 
     public List<UploadEntry> uploadEntries() {
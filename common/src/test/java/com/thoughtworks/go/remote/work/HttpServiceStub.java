@@ -15,7 +15,7 @@
  */
 package com.thoughtworks.go.remote.work;
 
-import com.thoughtworks.go.domain.FetchHandler;
+import com.thoughtworks.go.domain.DownloadHandler;
 import com.thoughtworks.go.agent.HttpService;
 
 import javax.servlet.http.HttpServletResponse;
@@ -50,7 +50,7 @@ public class HttpServiceStub extends HttpService {
     }
 
     @Override
-    public int download(String url, FetchHandler handler) {
+    public int download(String url, DownloadHandler handler) {
         throw new UnsupportedOperationException("download not implemented");
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.remote.work;
+
+import com.thoughtworks.go.agent.HttpService;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RemoteConsoleAppenderTest {
+    private HttpService httpService;
+    private CloseableHttpResponse response;
+    private RemoteConsoleAppender appender;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        httpService = mock(HttpService.class);
+        response = mock(CloseableHttpResponse.class);
+        when(httpService.execute(any(HttpPut.class))).thenReturn(response);
+        appender = new RemoteConsoleAppender("http://go-server/console", httpService);
+    }
+
+    @Test
+    public void shouldAppendConsoleOutputWhenTheServerAcceptsIt() {
+        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+
+        assertThatCode(() -> appender.append("output".getBytes(UTF_8))).doesNotThrowAnyException();
+    }
+
+    @Test
+    public void shouldFailSoThatTheOutputIsSentAgainWhenTheServerDoesNotAcceptIt() {
+        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 503, "Service Unavailable"));
+
+        assertThatThrownBy(() -> appender.append("output".getBytes(UTF_8)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("503");
+    }
+}
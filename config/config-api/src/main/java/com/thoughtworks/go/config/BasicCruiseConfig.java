@@ -156,6 +156,29 @@ public class BasicCruiseConfig implements CruiseConfig {
         resetAllPipelineConfigsCache();
     }
 
+    @Override
+    public CruiseConfig mergedWith(List<PartialConfig> partList, boolean forEdit) {
+        if (strategy instanceof MergeStrategy)
+            throw new RuntimeException("cannot merge partials to already merged configuration");
+
+        BasicCruiseConfig merged = new BasicCruiseConfig();
+        ((BasicStrategy) merged.strategy).origin = strategy.getOrigin();
+        merged.serverConfig = serverConfig;
+        merged.elasticConfig = elasticConfig;
+        merged.packageRepositories = packageRepositories;
+        merged.scms = scms;
+        merged.configRepos = configRepos;
+        merged.artifactStores = artifactStores;
+        merged.secretConfigs = secretConfigs;
+        merged.groups = groups;
+        merged.templatesConfig = templatesConfig;
+        merged.environments = environments;
+        merged.md5 = md5;
+        merged.partials = partials;
+        merged.merge(partList, forEdit);
+        return merged;
+    }
+
     private List<PartialConfig> removePartialsThatDoNotCorrespondToTheCurrentConfigReposList(List<PartialConfig> partList) {
         List<Object> notToBeMerged = new ArrayList<>();
         for (PartialConfig partialConfig : partList) {
@@ -275,6 +275,10 @@ public class ConfigSaveValidationContext implements ValidationContext {
 
     @Override
     public MaterialConfigs getAllMaterialsByFingerPrint(String fingerprint) {
+        // the config is the same all the way down from the context it was first found in, and so are its materials
+        if (parentContext != null && parentContext.getFirstOfType(CruiseConfig.class) != null) {
+            return parentContext.getAllMaterialsByFingerPrint(fingerprint);
+        }
         if (fingerprintToMaterials == null || fingerprintToMaterials.isEmpty()) {
             primeForMaterialValidations();
         }
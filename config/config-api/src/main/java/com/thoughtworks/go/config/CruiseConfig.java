@@ -42,6 +42,13 @@ public interface CruiseConfig extends Validatable, ConfigOriginTraceable {
 
     void merge(List<PartialConfig> partList, boolean forEdit);
 
+    /**
+     * Merges the partials into a copy of this configuration, leaving it as it is. The copy shares everything but its
+     * top level collections with this configuration, so neither is to be changed afterwards; clone this configuration
+     * and merge into the clone when they are.
+     */
+    CruiseConfig mergedWith(List<PartialConfig> partList, boolean forEdit);
+
     @PostConstruct
     void initializeServer();
 
@@ -173,8 +173,7 @@ public class PipelineConfigSaveValidationContext implements ValidationContext {
 
     @Override
     public MaterialConfigs getAllMaterialsByFingerPrint(String fingerprint) {
-        initMaterialConfigMap();
-        return materialConfigsFingerprintMap.get(fingerprint);
+        return materialConfigFingerprintMap().get(fingerprint);
     }
 
     @Override
@@ -215,7 +214,31 @@ public class PipelineConfigSaveValidationContext implements ValidationContext {
         return getDependencies().keySet();
     }
 
+    /**
+     * @return the pipelines which depend on the given pipeline, directly or through other pipelines
+     */
+    public Set<CaseInsensitiveString> getPipelinesDownstreamOf(CaseInsensitiveString pipelineName) {
+        Map<CaseInsensitiveString, Set<CaseInsensitiveString>> downstreams = getDownstreams();
+        Set<CaseInsensitiveString> found = new LinkedHashSet<>();
+        Deque<CaseInsensitiveString> pending = new ArrayDeque<>(downstreams.getOrDefault(pipelineName, Collections.emptySet()));
+        while (!pending.isEmpty()) {
+            CaseInsensitiveString downstream = pending.poll();
+            if (!downstream.equals(pipelineName) && found.add(downstream)) {
+                pending.addAll(downstreams.getOrDefault(downstream, Collections.emptySet()));
+            }
+        }
+        return found;
+    }
+
+    // the indexes of the whole config are built once, by the context the rest of the chain was created from
+    private boolean sharesConfigWithParent() {
+        return parentContext != null && parentContext.cruiseConfig == cruiseConfig;
+    }
+
     private Hashtable<CaseInsensitiveString, Node> getDependencies() {
+        if (sharesConfigWithParent()) {
+            return parentContext.getDependencies();
+        }
         if (dependencies == null) {
             dependencies = new Hashtable<>();
             for (PipelineConfig pipeline : cruiseConfig.getAllPipelineConfigs()) {
@@ -225,7 +248,23 @@ public class PipelineConfigSaveValidationContext implements ValidationContext {
         return dependencies;
     }
 
+    private Map<CaseInsensitiveString, Set<CaseInsensitiveString>> getDownstreams() {
+        if (sharesConfigWithParent()) {
+            return parentContext.getDownstreams();
+        }
+        if (downstreams == null) {
+            downstreams = new HashMap<>();
+            getDependencies().forEach((pipelineName, node) -> {
+                for (Node.DependencyNode dependency : node.getDependencies()) {
+                    downstreams.computeIfAbsent(dependency.getPipelineName(), upstream -> new LinkedHashSet<>()).add(pipelineName);
+                }
+            });
+        }
+        return downstreams;
+    }
+
     private Hashtable<CaseInsensitiveString, Node> dependencies;
+    private Map<CaseInsensitiveString, Set<CaseInsensitiveString>> downstreams;
 
     public PipelineGroups getGroups() {
         return cruiseConfig.getGroups();
@@ -235,10 +274,14 @@ public class PipelineConfigSaveValidationContext implements ValidationContext {
         return isPipelineBeingCreated;
     }
 
-    private void initMaterialConfigMap() {
+    private MaterialConfigFingerprintMap materialConfigFingerprintMap() {
+        if (sharesConfigWithParent()) {
+            return parentContext.materialConfigFingerprintMap();
+        }
         if (materialConfigsFingerprintMap == null) {
             materialConfigsFingerprintMap = new MaterialConfigFingerprintMap(cruiseConfig);
         }
+        return materialConfigsFingerprintMap;
     }
 
     private static class MaterialConfigFingerprintMap {
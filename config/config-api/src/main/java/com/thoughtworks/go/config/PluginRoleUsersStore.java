@@ -20,11 +20,13 @@ import com.google.common.collect.SetMultimap;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.collect.Multimaps.synchronizedSetMultimap;
 
 public class PluginRoleUsersStore {
     private final SetMultimap<PluginRoleConfig, RoleUser> roleToUsersMappings = synchronizedSetMultimap(HashMultimap.create());
+    private final AtomicLong version = new AtomicLong();
 
     private PluginRoleUsersStore() {
 
@@ -35,7 +37,9 @@ public class PluginRoleUsersStore {
     }
 
     public void assignRole(String user, PluginRoleConfig pluginRoleConfig) {
-        roleToUsersMappings.put(pluginRoleConfig, new RoleUser(user));
+        if (roleToUsersMappings.put(pluginRoleConfig, new RoleUser(user))) {
+            version.incrementAndGet();
+        }
     }
 
     public List<RoleUser> usersInRole(PluginRoleConfig pluginRoleConfig) {
@@ -51,7 +55,9 @@ public class PluginRoleUsersStore {
     }
 
     public void remove(PluginRoleConfig pluginRole) {
-        roleToUsersMappings.removeAll(pluginRole);
+        if (!roleToUsersMappings.removeAll(pluginRole).isEmpty()) {
+            version.incrementAndGet();
+        }
     }
 
     public void remove(Collection<PluginRoleConfig> pluginRoles) {
@@ -65,11 +71,21 @@ public class PluginRoleUsersStore {
         synchronized (roleToUsersMappings) {
             Set<PluginRoleConfig> pluginRoles = new HashSet<>(roleToUsersMappings.keySet());
             for (PluginRoleConfig pluginRole : pluginRoles) {
-                roleToUsersMappings.get(pluginRole).remove(roleUser);
+                if (roleToUsersMappings.get(pluginRole).remove(roleUser)) {
+                    version.incrementAndGet();
+                }
             }
         }
     }
 
+    /**
+     * @return a number that changes whenever a user is added to or removed from a plugin role, so that whatever is
+     * derived from role memberships can tell when it has to be worked out again
+     */
+    public long version() {
+        return version.get();
+    }
+
     protected Set<PluginRoleConfig> pluginRoles() {
         return new HashSet<>(roleToUsersMappings.keySet());
     }
@@ -77,6 +93,7 @@ public class PluginRoleUsersStore {
     @TestOnly
     public void clearAll() {
         roleToUsersMappings.clear();
+        version.incrementAndGet();
     }
 
     private static class PluginRoleUsersStoreHolder {
@@ -198,6 +198,25 @@ public class BasicCruiseConfigTest extends CruiseConfigTestBase {
         assertThat(cruiseConfig.getAllPipelineNames().contains(new CaseInsensitiveString("pipeline_in_repo2")), is(true));
     }
 
+    @Test
+    public void shouldMergePartialsIntoACopySharingTheElementsOfTheConfig() {
+        BasicCruiseConfig cruiseConfig = GoConfigMother.configWithPipelines("p1", "p2");
+        ConfigRepoConfig repoConfig = ConfigRepoConfig.createConfigRepoConfig(gitMaterialConfig("url1"), "plugin", "id-1");
+        cruiseConfig.setConfigRepos(new ConfigReposConfig(repoConfig));
+        PartialConfig partialConfig = PartialConfigMother.withPipeline("pipeline_in_repo", new RepoConfigOrigin(repoConfig, "repo_r1"));
+
+        CruiseConfig merged = cruiseConfig.mergedWith(List.of(partialConfig), true);
+
+        assertThat(merged.isLocal(), is(false));
+        assertThat(merged.getAllPipelineNames().contains(new CaseInsensitiveString("pipeline_in_repo")), is(true));
+        assertThat(merged.getPipelineConfigByName(new CaseInsensitiveString("p1")), sameInstance(cruiseConfig.getPipelineConfigByName(new CaseInsensitiveString("p1"))));
+        assertThat(merged.server(), sameInstance(cruiseConfig.server()));
+        assertThat(merged.getMd5(), is(cruiseConfig.getMd5()));
+
+        assertThat(cruiseConfig.isLocal(), is(true));
+        assertThat(cruiseConfig.getAllPipelineNames().contains(new CaseInsensitiveString("pipeline_in_repo")), is(false));
+    }
+
     @Test
     public void shouldReturnAListOfPipelineNamesAssociatedWithOneTemplate() {
         ArrayList<CaseInsensitiveString> pipelinesAssociatedWithATemplate = new ArrayList<>();
@@ -113,6 +113,32 @@ class PipelineConfigSaveValidationContextTest {
         assertThat(context.getDependencyMaterialsFor(new CaseInsensitiveString("junk")).getDependencies().isEmpty()).isTrue();
     }
 
+    @Test
+    void shouldGetPipelinesDownstreamOfAPipeline() {
+        BasicCruiseConfig cruiseConfig = GoConfigMother.configWithPipelines("p1", "p2", "p3", "p4");
+        PipelineConfig p2 = cruiseConfig.getPipelineConfigByName(new CaseInsensitiveString("p2"));
+        p2.addMaterialConfig(new DependencyMaterialConfig(new CaseInsensitiveString("p1"), new CaseInsensitiveString("stage")));
+        PipelineConfig p3 = cruiseConfig.getPipelineConfigByName(new CaseInsensitiveString("p3"));
+        p3.addMaterialConfig(new DependencyMaterialConfig(new CaseInsensitiveString("p2"), new CaseInsensitiveString("stage")));
+        PipelineConfigSaveValidationContext context = PipelineConfigSaveValidationContext.forChain(true, "group", cruiseConfig);
+
+        assertThat(context.getPipelinesDownstreamOf(new CaseInsensitiveString("p1"))).containsExactlyInAnyOrder(new CaseInsensitiveString("p2"), new CaseInsensitiveString("p3"));
+        assertThat(context.getPipelinesDownstreamOf(new CaseInsensitiveString("p2"))).containsExactly(new CaseInsensitiveString("p3"));
+        assertThat(context.getPipelinesDownstreamOf(new CaseInsensitiveString("p3"))).isEmpty();
+        assertThat(context.getPipelinesDownstreamOf(new CaseInsensitiveString("p4"))).isEmpty();
+    }
+
+    @Test
+    void shouldShareTheMaterialsOfTheConfigWithTheContextsOfItsChildren() {
+        BasicCruiseConfig cruiseConfig = GoConfigMother.configWithPipelines("p1", "p2");
+        PipelineConfig p1 = cruiseConfig.getPipelineConfigByName(new CaseInsensitiveString("p1"));
+        PipelineConfigSaveValidationContext context = PipelineConfigSaveValidationContext.forChain(true, "group", cruiseConfig);
+        PipelineConfigSaveValidationContext childContext = context.withParent(p1).withParent(p1.getFirstStageConfig());
+        String fingerprint = p1.materialConfigs().first().getFingerprint();
+
+        assertThat(childContext.getAllMaterialsByFingerPrint(fingerprint)).isSameAs(context.getAllMaterialsByFingerPrint(fingerprint));
+    }
+
     @Test
     void shouldGetParentDisplayName() {
         assertThat(PipelineConfigSaveValidationContext.forChain(true, "group", new PipelineConfig()).getParentDisplayName()).isEqualTo("pipeline");
@@ -80,4 +80,24 @@ public class PluginRoleUsersStoreTest {
         assertThat(pluginRoleUsersStore.usersInRole(pluginRoleSpaceTiger), hasSize(0));
         assertThat(pluginRoleUsersStore.usersInRole(pluginRoleBlackBird), hasSize(1));
     }
+
+    @Test
+    public void version_ShouldChangeOnlyWhenRoleMembershipsChange() {
+        PluginRoleConfig pluginRoleConfig = new PluginRoleConfig("spacetiger", "ldap");
+
+        long initial = pluginRoleUsersStore.version();
+        pluginRoleUsersStore.assignRole("wing-commander", pluginRoleConfig);
+        long afterAssigning = pluginRoleUsersStore.version();
+        pluginRoleUsersStore.assignRole("wing-commander", pluginRoleConfig);
+
+        assertThat(afterAssigning, is(not(initial)));
+        assertThat(pluginRoleUsersStore.version(), is(afterAssigning));
+
+        pluginRoleUsersStore.revokeAllRolesFor("wing-commander");
+        long afterRevoking = pluginRoleUsersStore.version();
+        pluginRoleUsersStore.revokeAllRolesFor("wing-commander");
+
+        assertThat(afterRevoking, is(not(afterAssigning)));
+        assertThat(pluginRoleUsersStore.version(), is(afterRevoking));
+    }
 }
@@ -27,9 +27,11 @@ import com.thoughtworks.go.util.ClonerFactory;
 // Thing is BasicCruiseConfig.groups is a type of ArrayList.
 // ArrayList.elementData is a transient field which doesn't get cloned, causing NullPointerExceptions when `groups` is accessed from the cloned object.
 // This is one place to mark all the classes to be ignored during clone.
+// Immutable classes that configs are full of are shared by clones instead of being copied.
 public class GoConfigCloner extends Cloner {
     public GoConfigCloner() {
         nullInsteadOfClone(BasicCruiseConfig.DO_NOT_CLONE_CLASSES);
+        registerImmutable(CaseInsensitiveString.class);
         ClonerFactory.applyFixes(this);
     }
 }
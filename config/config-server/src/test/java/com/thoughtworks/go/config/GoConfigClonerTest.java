@@ -38,6 +38,16 @@ public class GoConfigClonerTest {
         assertEquals(dupe, original);
     }
 
+    @Test
+    public void shouldShareCaseInsensitiveStringsWithTheClone() {
+        PipelineConfig original = PipelineConfigMother.pipelineConfig("pipeline");
+
+        PipelineConfig cloned = new GoConfigCloner().deepClone(original);
+
+        assertThat(cloned, is(not(sameInstance(original))));
+        assertThat(cloned.name(), sameInstance(original.name()));
+    }
+
     @Test
     public void shouldNotCloneAllPipelineConfigs() {
         BasicCruiseConfig config = GoConfigMother.configWithPipelines("p1", "p2");
@@ -28,6 +28,7 @@ import com.thoughtworks.go.domain.materials.svn.MaterialUrl;
 import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
 import com.thoughtworks.go.util.GoConstants;
 import com.thoughtworks.go.util.command.*;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.http.client.utils.URIBuilder;
 import org.slf4j.Logger;
@@ -46,6 +47,7 @@ import static com.thoughtworks.go.util.FileUtil.createParentFolderIfNotExist;
 import static com.thoughtworks.go.util.FileUtil.deleteDirectoryNoisily;
 import static com.thoughtworks.go.util.command.ProcessOutputStreamConsumer.inMemoryConsumer;
 import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.defaultString;
 import static org.apache.commons.lang3.StringUtils.isAllBlank;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -310,6 +312,25 @@ public class GitMaterial extends ScmMaterial implements PasswordAwareMaterial {
         return gitMaterial;
     }
 
+    /**
+     * @return whether this material can be polled out of a working copy shared by all materials of the repository,
+     * which only has plain branches fetched into it
+     */
+    public boolean canPollFromSharedRepository() {
+        return !isSubmoduleFolder() && !RefSpecHelper.hasRefSpec(refSpecOrBranch);
+    }
+
+    /**
+     * @return a key that is the same for all materials fetching the same repository as the same user
+     */
+    public String sharedRepositoryKey() {
+        return DigestUtils.sha256Hex(url.originalArgument() + "\n" + defaultString(userName));
+    }
+
+    public GitCommand sharedRepositoryCommand(File sharedWorkingDir) {
+        return new GitCommand(getFingerprint(), sharedWorkingDir, refSpecOrBranch, false, secrets());
+    }
+
     public String effectiveLocalBranch() {
         return localBranch(isBlank(refSpecOrBranch) ? GitMaterialConfig.DEFAULT_BRANCH : refSpecOrBranch);
     }
@@ -36,7 +36,6 @@ import java.util.regex.Pattern;
 
 import static com.thoughtworks.go.config.materials.git.GitMaterial.UNSHALLOW_TRYOUT_STEP;
 import static com.thoughtworks.go.config.materials.git.RefSpecHelper.REFS_HEADS;
-import static com.thoughtworks.go.domain.materials.ModifiedAction.parseGitAction;
 import static com.thoughtworks.go.util.DateUtils.formatRFC822;
 import static com.thoughtworks.go.util.ExceptionUtils.bomb;
 import static com.thoughtworks.go.util.command.ProcessOutputStreamConsumer.inMemoryConsumer;
@@ -51,7 +50,6 @@ public class GitCommand extends SCMCommand {
 
     private static final Pattern GIT_SUBMODULE_STATUS_PATTERN = Pattern.compile("^.[0-9a-fA-F]{40} (.+?)( \\(.+\\))?$");
     private static final Pattern GIT_SUBMODULE_URL_PATTERN = Pattern.compile("^submodule\\.(.+)\\.url (.+)$");
-    private static final Pattern GIT_DIFF_TREE_PATTERN = Pattern.compile("^(.)\\s+(.+)$");
 
     private final File workingDir;
     private final List<SecretString> secrets;
@@ -160,6 +158,20 @@ public class GitCommand extends SCMCommand {
         return gitLog("--date=iso", "--pretty=medium", "--no-decorate", "--no-color", format("%s..%s", revision.getRevision(), remoteBranch()));
     }
 
+    /**
+     * Like {@link #latestModification()}, for a repository the branch has already been fetched into
+     */
+    public List<Modification> latestFetchedModification() {
+        return log("-1", "--date=iso", "--no-decorate", "--pretty=medium", "--no-color", remoteBranch());
+    }
+
+    /**
+     * Like {@link #modificationsSince(Revision)}, for a repository the branch has already been fetched into
+     */
+    public List<Modification> fetchedModificationsSince(Revision revision) {
+        return log("--date=iso", "--pretty=medium", "--no-decorate", "--no-color", format("%s..%s", revision.getRevision(), remoteBranch()));
+    }
+
     public void resetWorkingDir(ConsoleOutputStreamConsumer outputStreamConsumer, Revision revision, boolean shallow) {
         log(outputStreamConsumer, "Reset working directory %s", workingDir);
         cleanAllUnversionedFiles(outputStreamConsumer);
@@ -260,6 +272,41 @@ public class GitCommand extends SCMCommand {
         runOrBomb(gitCmd);
     }
 
+    /**
+     * Creates an empty repository, for {@link #fetchBranches} to fetch branches into. The remote is stored without any
+     * credentials in the url; they are only ever passed to {@link #fetchBranches}.
+     */
+    public int initWithRemote(ConsoleOutputStreamConsumer outputStreamConsumer, String url) {
+        return runCascade(outputStreamConsumer,
+                git().withArgs("init", "--quiet").withArg(workingDir.getAbsolutePath()),
+                git_C().withArgs("remote", "add", "origin").withArg(new UrlArgument(new UrlArgument(url).withoutCredentials()))
+        );
+    }
+
+    /**
+     * Fetches the given branches, and only those, in one go. They are fetched from the url given rather than from the
+     * configured remote, so that the credentials in it are not stored in the repository.
+     */
+    public void fetchBranches(ConsoleOutputStreamConsumer outputStreamConsumer, String url, Collection<String> branches) {
+        log(outputStreamConsumer, "Fetching changes to %d branch(es)", branches.size());
+        UrlArgument urlArgument = new UrlArgument(url);
+        CommandLine gitFetch = gitWd().withArg("fetch").withArg(urlArgument).withArgs("--prune", "--recurse-submodules=no");
+        for (String branchToFetch : branches) {
+            gitFetch.withArg(format("+%s%s:refs/remotes/origin/%s", REFS_HEADS, branchToFetch, branchToFetch));
+        }
+
+        int result = run(gitFetch, outputStreamConsumer);
+        if (result != 0) {
+            throw new RuntimeException(format("git fetch failed for [%s]", urlArgument.forDisplay()));
+        }
+        gc(outputStreamConsumer);
+    }
+
+    public boolean isRevisionInRemoteBranch(Revision revision) {
+        CommandLine gitCmd = gitWd().withArgs("merge-base", "--is-ancestor", revision.getRevision(), remoteBranch());
+        return run(gitCmd, inMemoryConsumer()) == 0;
+    }
+
     public void fetch(ConsoleOutputStreamConsumer outputStreamConsumer) {
         log(outputStreamConsumer, "Fetching changes");
         CommandLine gitFetch = gitWd().withArgs("fetch", "origin", "--prune", "--recurse-submodules=no");
@@ -404,44 +451,16 @@ public class GitCommand extends SCMCommand {
             throw new RuntimeException(format("Working directory: %s\n%s", workingDir, outputStreamConsumer.getStdError()), e);
         }
 
-        CommandLine gitCmd = gitWd().withArg("log").withArgs(args);
-        ConsoleResult result = runOrBomb(gitCmd);
-
-        GitModificationParser parser = new GitModificationParser();
-        List<Modification> mods = parser.parse(result.output());
-        for (Modification mod : mods) {
-            addModifiedFiles(mod);
-        }
-        return mods;
+        return log(args);
     }
 
-    private void addModifiedFiles(Modification mod) {
-        ConsoleResult consoleResult = diffTree(mod.getRevision());
-        List<String> result = consoleResult.output();
-
-        for (String resultLine : result) {
-            // First line is the node
-            if (resultLine.equals(mod.getRevision())) {
-                continue;
-            }
-
-            Matcher m = matchResultLine(resultLine);
-            if (!m.find()) {
-                bomb("Unable to parse git-diff-tree output line: " + consoleResult.replaceSecretInfo(resultLine) + "\n"
-                        + "From output:\n"
-                        + consoleResult.outputForDisplayAsString());
-            }
-            mod.createModifiedFile(m.group(2), null, parseGitAction(m.group(1).charAt(0)));
-        }
-    }
-
-    private ConsoleResult diffTree(String node) {
-        CommandLine gitCmd = gitWd().withArgs("diff-tree", "--name-status", "--root", "-r", node);
-        return runOrBomb(gitCmd);
-    }
-
-    private Matcher matchResultLine(String resultLine) {
-        return GIT_DIFF_TREE_PATTERN.matcher(resultLine);
+    private List<Modification> log(String... args) {
+        // files changed are listed after each commit, so that one process is enough however many commits there are.
+        // Renamed files are listed as deleted and added.
+        CommandLine gitCmd = gitWd().withArg("log").withArgs(args).withArgs("--name-status", "--no-renames");
+        GitModificationParser parser = new GitModificationParser();
+        runOrBomb(gitCmd, parser::processLine);
+        return parser.getModifications();
     }
 
     private void checkoutAllModifiedFilesInSubmodules(ConsoleOutputStreamConsumer outputStreamConsumer) {
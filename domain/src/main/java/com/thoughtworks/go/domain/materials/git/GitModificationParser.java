@@ -24,6 +24,12 @@ import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static com.thoughtworks.go.domain.materials.ModifiedAction.parseGitAction;
+
+/**
+ * Understands the output of {@code git log --pretty=medium}, with the files changed by each commit when it is run
+ * with {@code --name-status}. Lines can be handed over as they are read from git, from any thread.
+ */
 public class GitModificationParser {
     private LinkedList<Modification> modifications = new LinkedList<>();
     private static final String SPACES = "\\s+";
@@ -36,19 +42,20 @@ public class GitModificationParser {
     private static final Pattern AUTHOR_PATTERN = Pattern.compile("^Author:"+ SPACES + AUTHOR + "$");
     private static final Pattern DATE_PATTERN = Pattern.compile("^Date:" + SPACES + DATE + "$");
     private static final Pattern COMMENT_PATTERN = Pattern.compile("^" + COMMENT_INDENT + COMMENT_TEXT + "$");
+    private static final Pattern CHANGED_FILE_PATTERN = Pattern.compile("^([A-Z])[0-9]*\t(.+)$");
 
-    public List<Modification> parse(List<String> output) {
+    public synchronized List<Modification> parse(List<String> output) {
         for (String line : output) {
             processLine(line);
         }
         return modifications;
     }
 
-    public List<Modification> getModifications() {
+    public synchronized List<Modification> getModifications() {
         return modifications;
     }
 
-    public void processLine(String line) {
+    public synchronized void processLine(String line) {
         Matcher matcher = COMMIT_PATTERN.matcher(line);
         if (matcher.matches()) {
             modifications.add(new Modification("", "", null, null, matcher.group(1)));
@@ -68,5 +75,9 @@ public class GitModificationParser {
             if (!comment.isEmpty()) comment += "\n";
             last.setComment(comment + commentMatcher.group(1));
        }
+        Matcher changedFileMatcher = CHANGED_FILE_PATTERN.matcher(line);
+        if (changedFileMatcher.matches() && !modifications.isEmpty()) {
+            modifications.getLast().createModifiedFile(changedFileMatcher.group(2), null, parseGitAction(changedFileMatcher.group(1).charAt(0)));
+        }
     }
 }
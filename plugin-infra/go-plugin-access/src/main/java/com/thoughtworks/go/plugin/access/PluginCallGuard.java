@@ -0,0 +1,207 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.plugin.access;
+
+import com.thoughtworks.go.plugin.access.artifact.ArtifactExtensionConstants;
+import com.thoughtworks.go.plugin.access.pluggabletask.TaskExtension;
+import com.thoughtworks.go.plugin.access.scm.SCMExtension;
+import com.thoughtworks.go.util.SystemEnvironment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Understands keeping track of how long the calls to each plugin take, and keeping a slow plugin from holding up
+ * the threads calling it. A plugin can be limited to a number of calls in progress at a time, beyond which calls to
+ * it are turned down, and callers can be made to give up on a call that takes too long. A call given up on still
+ * counts as in progress until the plugin returns from it.
+ * <p>
+ * Requests which take as long as the work they ask for, such as running a task or publishing an artifact, are never
+ * given up on. Since every call given up on holds a thread until the plugin returns from it, a plugin is always
+ * limited to a number of calls in progress when calls can be given up on, which bounds the threads making them.
+ */
+public class PluginCallGuard {
+    static final long[] LATENCY_BUCKETS_IN_MILLIS = {10, 50, 100, 500, 1_000, 5_000, 10_000, 30_000};
+    static final int DEFAULT_MAX_CONCURRENT_CALLS_WITH_TIMEOUT = 20;
+    static final Set<String> LONG_RUNNING_REQUESTS = Set.of(
+            TaskExtension.EXECUTION_REQUEST,
+            SCMExtension.REQUEST_CHECKOUT,
+            ArtifactExtensionConstants.REQUEST_PUBLISH_ARTIFACT,
+            ArtifactExtensionConstants.REQUEST_FETCH_ARTIFACT);
+
+    private static final PluginCallGuard INSTANCE = new PluginCallGuard(
+            new SystemEnvironment().get(SystemEnvironment.PLUGIN_MAX_CONCURRENT_CALLS),
+            new SystemEnvironment().get(SystemEnvironment.PLUGIN_CALL_TIMEOUT_IN_MILLIS));
+
+    private final int maxConcurrentCalls;
+    private final long callTimeoutInMillis;
+    private final ConcurrentMap<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> callsInProgress = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, CallStatistics>> statistics = new ConcurrentHashMap<>();
+    private volatile ExecutorService executor;
+
+    PluginCallGuard(int maxConcurrentCalls, long callTimeoutInMillis) {
+        this.maxConcurrentCalls = maxConcurrentCalls <= 0 && callTimeoutInMillis > 0 ? DEFAULT_MAX_CONCURRENT_CALLS_WITH_TIMEOUT : maxConcurrentCalls;
+        this.callTimeoutInMillis = callTimeoutInMillis;
+    }
+
+    public static PluginCallGuard getInstance() {
+        return INSTANCE;
+    }
+
+    public <T> T call(String pluginId, String requestName, Callable<T> call) throws Exception {
+        CallStatistics callStatistics = statistics.computeIfAbsent(pluginId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(requestName, name -> new CallStatistics());
+        Semaphore bulkhead = maxConcurrentCalls > 0 ? bulkheads.computeIfAbsent(pluginId, id -> new Semaphore(maxConcurrentCalls)) : null;
+        if (bulkhead != null && !bulkhead.tryAcquire()) {
+            callStatistics.rejected.increment();
+            throw new RuntimeException(format("Plugin with id '%s' is already handling %d requests, not sending it a '%s' request", pluginId, maxConcurrentCalls, requestName));
+        }
+
+        AtomicInteger inProgress = callsInProgress.computeIfAbsent(pluginId, id -> new AtomicInteger());
+        inProgress.incrementAndGet();
+        Callable<T> timedCall = () -> {
+            long start = System.nanoTime();
+            try {
+                return call.call();
+            } catch (Exception | Error e) {
+                callStatistics.failed.increment();
+                throw e;
+            } finally {
+                callStatistics.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                inProgress.decrementAndGet();
+                if (bulkhead != null) {
+                    bulkhead.release();
+                }
+            }
+        };
+
+        if (callTimeoutInMillis <= 0 || LONG_RUNNING_REQUESTS.contains(requestName)) {
+            return timedCall.call();
+        }
+        return callWithTimeout(pluginId, requestName, timedCall, callStatistics);
+    }
+
+    private <T> T callWithTimeout(String pluginId, String requestName, Callable<T> call, CallStatistics callStatistics) throws Exception {
+        Future<T> future = executor().submit(call);
+        try {
+            return future.get(callTimeoutInMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            callStatistics.timedOut.increment();
+            future.cancel(true);
+            throw new RuntimeException(format("Plugin with id '%s' did not respond to a '%s' request within %d milliseconds", pluginId, requestName, callTimeoutInMillis));
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private ExecutorService executor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    // bounded by the calls each plugin may have in progress, which are always limited when calls time out
+                    executor = Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable, "plugin-call-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    public Map<String, Object> statistics() {
+        Map<String, Object> json = new TreeMap<>();
+        statistics.forEach((pluginId, requests) -> {
+            Map<String, Object> pluginJson = new LinkedHashMap<>();
+            pluginJson.put("Calls In Progress", callsInProgress.getOrDefault(pluginId, new AtomicInteger()).get());
+            new TreeMap<>(requests).forEach((requestName, callStatistics) -> pluginJson.put(requestName, callStatistics.asJson()));
+            json.put(pluginId, pluginJson);
+        });
+        return json;
+    }
+
+    public Map<String, Object> settings() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Maximum Concurrent Calls Per Plugin", maxConcurrentCalls > 0 ? maxConcurrentCalls : "unlimited");
+        json.put("Call Timeout (ms)", callTimeoutInMillis > 0 ? callTimeoutInMillis : "none");
+        return json;
+    }
+
+    private static class CallStatistics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAccumulator longestTime = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] latencies = new LongAdder[LATENCY_BUCKETS_IN_MILLIS.length + 1];
+
+        private CallStatistics() {
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LongAdder();
+            }
+        }
+
+        private void record(long millis) {
+            calls.increment();
+            totalTime.add(millis);
+            longestTime.accumulate(millis);
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS_IN_MILLIS.length && millis > LATENCY_BUCKETS_IN_MILLIS[bucket]) {
+                bucket++;
+            }
+            latencies[bucket].increment();
+        }
+
+        private Map<String, Object> asJson() {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("Calls", calls.sum());
+            json.put("Failed", failed.sum());
+            json.put("Timed Out", timedOut.sum());
+            json.put("Turned Down", rejected.sum());
+            json.put("Average Time (ms)", calls.sum() == 0 ? 0 : totalTime.sum() / calls.sum());
+            json.put("Longest Time (ms)", longestTime.get());
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < LATENCY_BUCKETS_IN_MILLIS.length; i++) {
+                histogram.put("<= " + LATENCY_BUCKETS_IN_MILLIS[i] + " ms", latencies[i].sum());
+            }
+            histogram.put("> " + LATENCY_BUCKETS_IN_MILLIS[LATENCY_BUCKETS_IN_MILLIS.length - 1] + " ms", latencies[LATENCY_BUCKETS_IN_MILLIS.length].sum());
+            json.put("Time Taken", histogram);
+            return json;
+        }
+    }
+}
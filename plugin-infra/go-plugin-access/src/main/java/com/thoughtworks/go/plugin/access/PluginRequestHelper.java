@@ -29,11 +29,17 @@ public class PluginRequestHelper {
     protected PluginManager pluginManager;
     private List<String> goSupportedVersions;
     private String extensionName;
+    private final PluginCallGuard pluginCallGuard;
 
     public PluginRequestHelper(PluginManager pluginManager, List<String> goSupportedVersions, String extensionName) {
+        this(pluginManager, goSupportedVersions, extensionName, PluginCallGuard.getInstance());
+    }
+
+    PluginRequestHelper(PluginManager pluginManager, List<String> goSupportedVersions, String extensionName, PluginCallGuard pluginCallGuard) {
         this.pluginManager = pluginManager;
         this.goSupportedVersions = goSupportedVersions;
         this.extensionName = extensionName;
+        this.pluginCallGuard = pluginCallGuard;
     }
 
     public <T> T submitRequest(String pluginId, String requestName, PluginInteractionCallback<T> pluginInteractionCallback) {
@@ -46,7 +52,7 @@ public class PluginRequestHelper {
             apiRequest.setRequestBody(pluginInteractionCallback.requestBody(resolvedExtensionVersion));
             apiRequest.setRequestParams(pluginInteractionCallback.requestParams(resolvedExtensionVersion));
             apiRequest.setRequestHeaders(pluginInteractionCallback.requestHeaders(resolvedExtensionVersion));
-            GoPluginApiResponse response = pluginManager.submitTo(pluginId, extensionName, apiRequest);
+            GoPluginApiResponse response = pluginCallGuard.call(pluginId, requestName, () -> pluginManager.submitTo(pluginId, extensionName, apiRequest));
             if (response == null) {
                 throw new RuntimeException("The plugin sent a null response");
             }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.plugin.access;
+
+import com.thoughtworks.go.plugin.access.artifact.ArtifactExtensionConstants;
+import com.thoughtworks.go.plugin.access.pluggabletask.TaskExtension;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PluginCallGuardTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldKeepTrackOfTheCallsToEachPlugin() throws Exception {
+        PluginCallGuard guard = new PluginCallGuard(0, 0);
+
+        assertThat(guard.call("plugin-1", "get-icon", () -> "icon")).isEqualTo("icon");
+        guard.call("plugin-1", "get-icon", () -> "icon");
+        assertThatThrownBy(() -> guard.call("plugin-1", "validate", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+
+        Map<String, Object> plugin = pluginStatistics(guard, "plugin-1");
+        assertThat(plugin).containsEntry("Calls In Progress", 0);
+        assertThat(requestStatistics(plugin, "get-icon")).containsEntry("Calls", 2L).containsEntry("Failed", 0L);
+        assertThat(requestStatistics(plugin, "validate")).containsEntry("Calls", 1L).containsEntry("Failed", 1L);
+        assertThat((Map<String, Long>) requestStatistics(plugin, "get-icon").get("Time Taken")).containsEntry("<= 10 ms", 2L);
+    }
+
+    @Test
+    void shouldTurnDownCallsToAPluginAlreadyHandlingAsManyCallsAsItIsAllowedTo() throws Exception {
+        PluginCallGuard guard = new PluginCallGuard(1, 0);
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch pluginResponds = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slowCall = executor.submit(() -> guard.call("plugin-1", "check-connection", () -> {
+                callStarted.countDown();
+                pluginResponds.await();
+                return "ok";
+            }));
+            callStarted.await();
+
+            assertThatThrownBy(() -> guard.call("plugin-1", "check-connection", () -> "ok"))
+                    .hasMessage("Plugin with id 'plugin-1' is already handling 1 requests, not sending it a 'check-connection' request");
+            assertThat(guard.call("plugin-2", "check-connection", () -> "ok")).isEqualTo("ok");
+
+            pluginResponds.countDown();
+            assertThat(slowCall.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+            assertThat(guard.call("plugin-1", "check-connection", () -> "ok")).isEqualTo("ok");
+            assertThat(requestStatistics(pluginStatistics(guard, "plugin-1"), "check-connection")).containsEntry("Calls", 2L).containsEntry("Turned Down", 1L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldGiveUpOnACallThatTakesLongerThanAllowed() {
+        PluginCallGuard guard = new PluginCallGuard(0, 50);
+
+        assertThatThrownBy(() -> guard.call("plugin-1", "check-connection", () -> {
+            Thread.sleep(5_000);
+            return "ok";
+        })).hasMessage("Plugin with id 'plugin-1' did not respond to a 'check-connection' request within 50 milliseconds");
+
+        assertThat(requestStatistics(pluginStatistics(guard, "plugin-1"), "check-connection")).containsEntry("Timed Out", 1L);
+    }
+
+    @Test
+    void shouldNeverGiveUpOnRequestsThatTakeAsLongAsTheWorkTheyAskFor() throws Exception {
+        PluginCallGuard guard = new PluginCallGuard(0, 50);
+
+        assertThat(guard.call("plugin-1", TaskExtension.EXECUTION_REQUEST, () -> {
+            Thread.sleep(200);
+            return "done";
+        })).isEqualTo("done");
+        assertThat(guard.call("plugin-1", ArtifactExtensionConstants.REQUEST_FETCH_ARTIFACT, () -> {
+            Thread.sleep(200);
+            return "fetched";
+        })).isEqualTo("fetched");
+
+        assertThat(requestStatistics(pluginStatistics(guard, "plugin-1"), TaskExtension.EXECUTION_REQUEST)).containsEntry("Timed Out", 0L);
+    }
+
+    @Test
+    void shouldLimitTheCallsInProgressToAPluginWhenCallsCanBeGivenUpOn() {
+        assertThat(new PluginCallGuard(0, 50).settings()).containsEntry("Maximum Concurrent Calls Per Plugin", PluginCallGuard.DEFAULT_MAX_CONCURRENT_CALLS_WITH_TIMEOUT);
+        assertThat(new PluginCallGuard(5, 50).settings()).containsEntry("Maximum Concurrent Calls Per Plugin", 5);
+        assertThat(new PluginCallGuard(0, 0).settings()).containsEntry("Maximum Concurrent Calls Per Plugin", "unlimited");
+    }
+
+    @Test
+    void shouldPassOnTheFailureOfACallMadeWithATimeout() {
+        PluginCallGuard guard = new PluginCallGuard(0, 5_000);
+
+        assertThatThrownBy(() -> guard.call("plugin-1", "validate", () -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> pluginStatistics(PluginCallGuard guard, String pluginId) {
+        return (Map<String, Object>) guard.statistics().get(pluginId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> requestStatistics(Map<String, Object> pluginStatistics, String requestName) {
+        return (Map<String, Object>) pluginStatistics.get(requestName);
+    }
+}
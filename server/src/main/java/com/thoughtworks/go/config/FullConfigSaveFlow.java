@@ -39,7 +39,6 @@ public abstract class FullConfigSaveFlow {
     protected final CachedGoPartials cachedGoPartials;
     protected final GoConfigFileWriter fileWriter;
     protected final ConfigElementImplementationRegistry configElementImplementationRegistry;
-    protected final GoConfigCloner cloner = new GoConfigCloner();
     protected final Logger LOGGER = LoggerFactory.getLogger(getClass().getName());
 
     public FullConfigSaveFlow(MagicalGoConfigXmlLoader loader, MagicalGoConfigXmlWriter writer,
@@ -127,8 +126,7 @@ public abstract class FullConfigSaveFlow {
         if (partials.isEmpty()) return;
 
         LOGGER.debug("[Config Save] Updating GoConfigHolder with mergedCruiseConfigForEdit: Starting.");
-        CruiseConfig mergedCruiseConfigForEdit = cloner.deepClone(validatedConfigHolder.configForEdit);
-        mergedCruiseConfigForEdit.merge(partials, true);
+        CruiseConfig mergedCruiseConfigForEdit = validatedConfigHolder.configForEdit.mergedWith(partials, true);
         validatedConfigHolder.mergedConfigForEdit = mergedCruiseConfigForEdit;
         LOGGER.debug("[Config Save] Updating GoConfigHolder with mergedCruiseConfigForEdit: Done.");
     }
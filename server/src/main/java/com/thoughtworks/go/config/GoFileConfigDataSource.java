@@ -493,8 +493,7 @@ public class GoFileConfigDataSource {
                 CruiseConfig mergedCruiseConfigForEdit = modifiedConfig;
                 if (!partials.isEmpty()) {
                     LOGGER.debug("[Config Save] Updating GoConfigHolder with mergedCruiseConfigForEdit: Starting.");
-                    mergedCruiseConfigForEdit = cloner.deepClone(modifiedConfig);
-                    mergedCruiseConfigForEdit.merge(partials, true);
+                    mergedCruiseConfigForEdit = modifiedConfig.mergedWith(partials, true);
                     LOGGER.debug("[Config Save] Updating GoConfigHolder with mergedCruiseConfigForEdit: Done.");
                 }
                 return new EntityConfigSaveResult<>(updatingCommand.getPreprocessedEntityConfig(), new GoConfigHolder(preprocessedConfig, modifiedConfig, mergedCruiseConfigForEdit));
@@ -534,8 +533,7 @@ public class GoFileConfigDataSource {
 
     private void updateMergedConfigForEdit(GoConfigHolder validatedConfigHolder, List<PartialConfig> partialConfigs) {
         if (partialConfigs.isEmpty()) return;
-        CruiseConfig mergedCruiseConfigForEdit = cloner.deepClone(validatedConfigHolder.configForEdit);
-        mergedCruiseConfigForEdit.merge(partialConfigs, true);
+        CruiseConfig mergedCruiseConfigForEdit = validatedConfigHolder.configForEdit.mergedWith(partialConfigs, true);
         validatedConfigHolder.mergedConfigForEdit = mergedCruiseConfigForEdit;
     }
 
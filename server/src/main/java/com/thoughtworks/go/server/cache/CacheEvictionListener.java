@@ -20,11 +20,13 @@ import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.event.CacheEventListener;
 
+import java.util.function.BiConsumer;
+
 public class CacheEvictionListener implements CacheEventListener {
-    private final GoCache goCache;
+    private final BiConsumer<String, Object> onEviction;
 
-    public CacheEvictionListener(GoCache goCache) {
-        this.goCache = goCache;
+    public CacheEvictionListener(BiConsumer<String, Object> onEviction) {
+        this.onEviction = onEviction;
     }
 
     @Override
@@ -53,7 +55,7 @@ public class CacheEvictionListener implements CacheEventListener {
     }
 
     private void removeCompositeKeyFromParentCache(Element element) {
-        goCache.removeAssociations((String) element.getKey(), element);
+        onEviction.accept((String) element.getObjectKey(), element.getObjectValue());
     }
 
     @Override
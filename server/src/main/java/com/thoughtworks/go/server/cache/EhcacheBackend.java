@@ -0,0 +1,90 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.cache;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Understands keeping cache entries on the heap, in an Ehcache bounded either by number of entries or by their
+ * estimated size in bytes.
+ */
+public class EhcacheBackend implements GoCacheBackend {
+    private final Ehcache ehCache;
+
+    public EhcacheBackend(Ehcache ehCache) {
+        this.ehCache = ehCache;
+    }
+
+    public Ehcache ehcache() {
+        return ehCache;
+    }
+
+    @Override
+    public Object get(String key) {
+        Element element = ehCache.get(key);
+        return element == null ? null : element.getObjectValue();
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        ehCache.put(new Element(key, value));
+    }
+
+    @Override
+    public boolean remove(String key) {
+        return ehCache.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        ehCache.removeAll();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> keys() {
+        return ehCache.getKeys();
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return ehCache.isKeyInCache(key);
+    }
+
+    @Override
+    public void onEviction(BiConsumer<String, Object> listener) {
+        ehCache.getCacheEventNotificationService().registerListener(new CacheEvictionListener(listener));
+    }
+
+    @Override
+    public Map<String, Object> statistics() {
+        // Ehcache statistics are reported for every cache manager by the CacheInformationProvider
+        return new LinkedHashMap<>();
+    }
+
+    @Override
+    public void dispose() {
+        Optional.ofNullable(ehCache.getCacheManager())
+            .ifPresent(cm -> cm.removeCache(ehCache.getName()));
+    }
+}
@@ -15,11 +15,11 @@
  */
 package com.thoughtworks.go.server.cache;
 
+import com.google.common.util.concurrent.Striped;
 import com.thoughtworks.go.domain.NullUser;
 import com.thoughtworks.go.domain.PersistentObject;
 import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
 import net.sf.ehcache.Ehcache;
-import net.sf.ehcache.Element;
 import net.sf.ehcache.config.CacheConfiguration;
 import net.sf.ehcache.event.CacheEventListener;
 import org.apache.commons.lang3.StringUtils;
@@ -29,36 +29,51 @@ import org.slf4j.LoggerFactory;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 
 import javax.annotation.PreDestroy;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 
 import static com.thoughtworks.go.util.ExceptionUtils.bomb;
 
 /**
- * Understands storing and retrieving objects from an underlying LRU cache
+ * Understands storing and retrieving objects from an underlying LRU cache, kept by a {@link GoCacheBackend}
+ * <p>
+ * Changes to a key and its family of sub keys are serialized by a lock from a fixed table of lock stripes. A thread
+ * never waits for a stripe while holding another one: entries evicted or expired while a thread holds a stripe have
+ * their associations removed once that thread lets go of its stripes.
  */
 public class GoCache {
     public static final String SUB_KEY_DELIMITER = "!_#$#_!";
     private static final Logger LOGGER = LoggerFactory.getLogger(GoCache.class);
+    private static final int LOCK_STRIPES = 256;
     private final ThreadLocal<Boolean> doNotServeForTransaction = new ThreadLocal<>();
 
-    private final Ehcache ehCache;
+    private final GoCacheBackend backend;
     private final TransactionSynchronizationManager transactionSynchronizationManager;
 
     private final Set<Class<? extends PersistentObject>> nullObjectClasses;
 
+    private final Striped<Lock> keyLocks = Striped.lock(LOCK_STRIPES);
+    private final ThreadLocal<Integer> keyLocksHeld = ThreadLocal.withInitial(() -> 0);
+    private final ThreadLocal<Deque<Runnable>> deferredAssociationRemovals = ThreadLocal.withInitial(ArrayDeque::new);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder lockContentions = new LongAdder();
+
     static class KeyList extends HashSet<String> {
     }
 
     @TestOnly
     public GoCache(GoCache goCache) {
-        this(goCache.ehCache, goCache.transactionSynchronizationManager);
+        this(goCache.backend, goCache.transactionSynchronizationManager);
     }
 
     public GoCache(Ehcache cache, TransactionSynchronizationManager transactionSynchronizationManager) {
-        this.ehCache = cache;
+        this(new EhcacheBackend(cache), transactionSynchronizationManager);
+    }
+
+    public GoCache(GoCacheBackend backend, TransactionSynchronizationManager transactionSynchronizationManager) {
+        this.backend = backend;
         this.transactionSynchronizationManager = transactionSynchronizationManager;
         this.nullObjectClasses = new HashSet<>();
         nullObjectClasses.add(NullUser.class);
@@ -67,16 +82,15 @@ public class GoCache {
 
     @PreDestroy
     public void destroy() {
-        Optional.ofNullable(ehCache.getCacheManager())
-            .ifPresent(cm -> cm.removeCache(ehCache.getName()));
+        backend.dispose();
     }
 
     public void addListener(CacheEventListener listener) {
-        ehCache.getCacheEventNotificationService().registerListener(listener);
+        ehcache().getCacheEventNotificationService().registerListener(listener);
     }
 
     protected void registerAsCacheEvictionListener() {
-        ehCache.getCacheEventNotificationService().registerListener(new CacheEvictionListener(this));
+        backend.onEviction(this::removeAssociations);
     }
 
     public void stopServingForTransaction() {
@@ -101,12 +115,11 @@ public class GoCache {
             LOGGER.debug("transaction active during cache put for {} = {}", key, value, new IllegalStateException());
             return;
         }
-        ehCache.put(new Element(key, value));
+        backend.put(key, value);
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> getKeys() {
-        return ehCache.getKeys();
+        return backend.keys();
     }
 
     private void logUnsavedPersistentObjectInteraction(Object value, String message) {
@@ -130,15 +143,16 @@ public class GoCache {
         if (doNotServeForTransaction()) {
             return null;
         }
-        return getWithoutTransactionCheck(key);
+        T value = getWithoutTransactionCheck(key);
+        (value == null ? misses : hits).increment();
+        return value;
     }
 
     private <T> T getWithoutTransactionCheck(String key) {
-        Element element = ehCache.get(key);
-        if (element == null) {
+        @SuppressWarnings("unchecked") T value = (T) backend.get(key);
+        if (value == null) {
             return null;
         }
-        @SuppressWarnings("unchecked") T value = (T) element.getObjectValue();
         logUnsavedPersistentObjectInteraction(value, "PersistentObject {} without an id served out of cache.");
         return value;
     }
@@ -148,18 +162,21 @@ public class GoCache {
     }
 
     public void clear() {
-        ehCache.removeAll();
+        backend.clear();
     }
 
     public boolean remove(String key) {
-        synchronized (key.intern()) {
+        Lock lock = lock(key);
+        try {
             Object value = getWithoutTransactionCheck(key);
             if (value instanceof KeyList) {
                 for (String subKey : (KeyList) value) {
-                    ehCache.remove(compositeKey(key, subKey));
+                    backend.remove(compositeKey(key, subKey));
                 }
             }
-            return ehCache.remove(key);
+            return backend.remove(key);
+        } finally {
+            unlock(lock);
         }
     }
 
@@ -168,14 +185,16 @@ public class GoCache {
     }
 
     public void put(String key, String subKey, Object value) {
-        KeyList subKeys;
-        synchronized (key.intern()) {
-            subKeys = subKeyFamily(key);
+        Lock lock = lock(key);
+        try {
+            KeyList subKeys = subKeyFamily(key);
             if (subKeys == null) {
                 subKeys = new KeyList();
                 put(key, subKeys);
             }
             subKeys.add(subKey);
+        } finally {
+            unlock(lock);
         }
         put(compositeKey(key, subKey), value);
     }
@@ -186,30 +205,41 @@ public class GoCache {
         }
     }
 
-    public void removeAssociations(String key, Element element) {
-        if (element.getObjectValue() instanceof KeyList) {
-            synchronized (key.intern()) {
-                for (String subkey : (KeyList) element.getObjectValue()) {
-                    remove(compositeKey(key, subkey));
+    public void removeAssociations(String key, Object value) {
+        if (keyLocksHeld.get() > 0) {
+            deferredAssociationRemovals.get().add(() -> removeAssociations(key, value));
+            return;
+        }
+
+        if (value instanceof KeyList) {
+            Lock lock = lock(key);
+            try {
+                for (String subkey : (KeyList) value) {
+                    backend.remove(compositeKey(key, subkey));
                 }
+            } finally {
+                unlock(lock);
             }
         } else if (key.contains(SUB_KEY_DELIMITER)) {
             String[] parts = StringUtils.splitByWholeSeparator(key, SUB_KEY_DELIMITER);
             String parentKey = parts[0];
             String childKey = parts[1];
-            synchronized (parentKey.intern()) {
-                Element parent = ehCache.get(parentKey);
+            Lock lock = lock(parentKey);
+            try {
+                Object parent = backend.get(parentKey);
                 if (parent == null) {
                     return;
                 }
-                KeyList subKeys = (KeyList) parent.getObjectValue();
+                KeyList subKeys = (KeyList) parent;
                 subKeys.remove(childKey);
+            } finally {
+                unlock(lock);
             }
         }
     }
 
-    public boolean isKeyInCache(Object key) {
-        return ehCache.isKeyInCache(key);
+    public boolean isKeyInCache(String key) {
+        return backend.containsKey(key);
     }
 
     private KeyList subKeyFamily(String parentKey) {
@@ -225,18 +255,74 @@ public class GoCache {
     }
 
     public void remove(String key, String subKey) {
-        synchronized (key.intern()) {
+        Lock lock = lock(key);
+        try {
             KeyList subKeys = subKeyFamily(key);
             if (subKeys == null) {
                 return;
             }
             subKeys.remove(subKey);
-            remove(compositeKey(key, subKey));
+            backend.remove(compositeKey(key, subKey));
+        } finally {
+            unlock(lock);
         }
     }
 
     public CacheConfiguration configuration() {
-        return ehCache.getCacheConfiguration();
+        return ehcache().getCacheConfiguration();
+    }
+
+    public Map<String, Object> backendStatistics() {
+        return backend.statistics();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of times a thread had to wait for the lock of a key because another thread was holding it
+     */
+    public long lockContentionCount() {
+        return lockContentions.sum();
+    }
+
+    public int lockStripes() {
+        return LOCK_STRIPES;
+    }
+
+    private Ehcache ehcache() {
+        EhcacheBackend ehcacheBackend = backend.unwrap(EhcacheBackend.class);
+        if (ehcacheBackend == null) {
+            throw bomb("Cache backend " + backend.getClass().getSimpleName() + " is not backed by Ehcache");
+        }
+        return ehcacheBackend.ehcache();
+    }
+
+    private Lock lock(String key) {
+        Lock lock = keyLocks.get(key);
+        if (!lock.tryLock()) {
+            lockContentions.increment();
+            lock.lock();
+        }
+        keyLocksHeld.set(keyLocksHeld.get() + 1);
+        return lock;
+    }
+
+    private void unlock(Lock lock) {
+        lock.unlock();
+        int held = keyLocksHeld.get() - 1;
+        keyLocksHeld.set(held);
+        if (held == 0) {
+            Deque<Runnable> deferred = deferredAssociationRemovals.get();
+            while (!deferred.isEmpty()) {
+                deferred.poll().run();
+            }
+        }
     }
 
     private interface Predicate {
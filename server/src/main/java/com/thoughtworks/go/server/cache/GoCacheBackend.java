@@ -0,0 +1,64 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Understands where {@link GoCache} keeps its entries. Backends decide what to keep and for how long, and tell
+ * {@link GoCache} about every entry they drop on their own, so that it can keep its sub key families consistent.
+ */
+public interface GoCacheBackend {
+    /**
+     * @return the value stored for the key, or null if there is none
+     */
+    Object get(String key);
+
+    void put(String key, Object value);
+
+    /**
+     * @return true if there was a value stored for the key
+     */
+    boolean remove(String key);
+
+    void clear();
+
+    List<String> keys();
+
+    boolean containsKey(String key);
+
+    /**
+     * Registers a listener called with the key and value of every entry that is evicted or expires. The value may be
+     * null when the backend no longer has it in a usable form.
+     */
+    void onEviction(BiConsumer<String, Object> listener);
+
+    /**
+     * @return runtime information about the backend, for the server support page
+     */
+    Map<String, Object> statistics();
+
+    void dispose();
+
+    /**
+     * @return this backend, or the backend it is layered on top of, if it is of the given type; null otherwise
+     */
+    default <T extends GoCacheBackend> T unwrap(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : null;
+    }
+}
@@ -20,16 +20,25 @@ import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.config.CacheConfiguration;
 import net.sf.ehcache.config.Configuration;
+import net.sf.ehcache.config.MemoryUnit;
 import net.sf.ehcache.config.PersistenceConfiguration;
 import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @Component
 public class GoCacheFactory {
 
     private final CacheConfiguration cacheConfiguration;
+    private final long offHeapMaxBytes;
+    private final int offHeapMinValueBytes;
+    private final List<String> offHeapKeyFamilies;
     private TransactionSynchronizationManager transactionSynchronizationManager;
 
     static {
@@ -38,12 +47,28 @@ public class GoCacheFactory {
 
     public GoCacheFactory(TransactionSynchronizationManager transactionSynchronizationManager,
                           @Value("${cruise.cache.elements.limit}") int maxElementsInMemory,
-                          @Value("${cruise.cache.is.eternal}") boolean eternal) {
+                          @Value("${cruise.cache.is.eternal}") boolean eternal,
+                          @Value("${cruise.cache.heap.max.bytes:0}") long heapMaxBytes,
+                          @Value("${cruise.cache.off.heap.max.bytes:0}") long offHeapMaxBytes,
+                          @Value("${cruise.cache.off.heap.min.value.bytes:65536}") int offHeapMinValueBytes,
+                          @Value("${cruise.cache.off.heap.key.families:}") String offHeapKeyFamilies) {
         this.transactionSynchronizationManager = transactionSynchronizationManager;
-        cacheConfiguration = new CacheConfiguration("goCache", maxElementsInMemory)
+        this.offHeapMaxBytes = offHeapMaxBytes;
+        this.offHeapMinValueBytes = offHeapMinValueBytes;
+        this.offHeapKeyFamilies = Arrays.stream(offHeapKeyFamilies.split(","))
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .collect(Collectors.toList());
+        cacheConfiguration = new CacheConfiguration().name("goCache")
                 .persistence(new PersistenceConfiguration().strategy(PersistenceConfiguration.Strategy.NONE))
                 .eternal(eternal)
                 .memoryStoreEvictionPolicy(MemoryStoreEvictionPolicy.LRU);
+        if (heapMaxBytes > 0) {
+            // bound the heap by the estimated size of the entries rather than by their number
+            cacheConfiguration.maxBytesLocalHeap(heapMaxBytes, MemoryUnit.BYTES);
+        } else {
+            cacheConfiguration.maxEntriesLocalHeap(maxElementsInMemory);
+        }
     }
 
     @Bean(name = "goCache")
@@ -51,7 +76,11 @@ public class GoCacheFactory {
         CacheManager cacheManager = CacheManager.newInstance(new Configuration().name(getClass().getName()));
         Cache cache = new Cache(cacheConfiguration);
         cacheManager.addCache(cache);
-        return new GoCache(cache, transactionSynchronizationManager);
+        GoCacheBackend backend = new EhcacheBackend(cache);
+        if (offHeapMaxBytes > 0 && !offHeapKeyFamilies.isEmpty()) {
+            backend = new OffHeapTier(backend, offHeapMaxBytes, offHeapMinValueBytes, offHeapKeyFamilies);
+        }
+        return new GoCache(backend, transactionSynchronizationManager);
     }
 
 }
@@ -0,0 +1,478 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.cache;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Understands keeping large cache values serialized outside the Java heap, in front of a heap backend that keeps
+ * everything else.
+ * <p>
+ * Serializable values whose serialized form is at least {@code minValueSize} bytes long, and whose key belongs to
+ * one of the key families the tier is given, are stored in direct memory,
+ * split into fixed size blocks handed out from segments that are allocated as the tier fills up, so that storing and
+ * evicting values never fragments the off-heap memory. Values are serialized straight into those blocks, so the size
+ * of a value is only known, and only needs to be known, once it has been stored.
+ * <p>
+ * The tier is split into stripes by key, each with its own lock, blocks and least recently used order. When a stripe
+ * is full, its least recently used values are evicted to make room; a value larger than a stripe is kept on the heap.
+ * If direct memory runs out before the tier reaches its capacity, the tier makes do with what it has allocated so far.
+ * Values read from this tier are deserialized copies, and do not expire. Changing such a copy in place does not
+ * change the cached value, so only families of keys whose values are never changed once cached may be stored here;
+ * values of all other keys are kept on the heap.
+ * <p>
+ * Sub key families are always kept on the heap, as {@link GoCache} changes them in place. So are values of any class
+ * that has once failed to serialize.
+ */
+public class OffHeapTier implements GoCacheBackend {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapTier.class);
+    static final int BLOCK_SIZE = 8 * 1024;
+    private static final int BLOCKS_PER_SEGMENT = 1024;
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_BLOCKS_PER_STRIPE = 128;
+    private static final int INITIAL_HEAD_SIZE = 512;
+
+    private final GoCacheBackend heapTier;
+    private final int minValueSize;
+    private final List<String> keyFamilies;
+    private final Stripe[] stripes;
+    private final Set<Class<?>> notSerializable = ConcurrentHashMap.newKeySet();
+    private final List<BiConsumer<String, Object>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param heapTier     keeps the values that are not worth storing off-heap
+     * @param capacity     the most bytes of direct memory to use
+     * @param minValueSize the smallest serialized value, in bytes, to store off-heap
+     * @param keyFamilies  the prefixes of the keys whose values may be stored off-heap, which must never be changed
+     *                     in place once cached
+     */
+    public OffHeapTier(GoCacheBackend heapTier, long capacity, int minValueSize, Collection<String> keyFamilies) {
+        this.heapTier = heapTier;
+        this.minValueSize = minValueSize;
+        this.keyFamilies = List.copyOf(keyFamilies);
+        int capacityInBlocks = (int) Math.min(capacity / BLOCK_SIZE, Integer.MAX_VALUE);
+        int stripeCount = Math.max(1, Math.min(MAX_STRIPES, capacityInBlocks / MIN_BLOCKS_PER_STRIPE));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(capacityInBlocks / stripeCount + (i < capacityInBlocks % stripeCount ? 1 : 0));
+        }
+    }
+
+    @Override
+    public Object get(String key) {
+        Object value = heapTier.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        byte[] bytes = stripeFor(key).read(key);
+        if (bytes == null) {
+            return null;
+        }
+        hits.increment();
+        return SerializationUtils.deserialize(bytes);
+    }
+
+    @Override
+    public void put(String key, Object value) {
+        Stripe stripe = stripeFor(key);
+        // the value being replaced is dropped first, so that its blocks can be reused and it is never evicted instead
+        stripe.remove(key);
+
+        List<String> evicted = new ArrayList<>();
+        Entry entry = isInKeyFamilies(key) ? serializeOffHeap(stripe, value, evicted) : null;
+        if (entry == null) {
+            heapTier.put(key, value);
+        } else {
+            stripe.install(key, entry);
+            heapTier.remove(key);
+        }
+
+        // listeners may come back to this tier, so they are only told once it is consistent again
+        for (String evictedKey : evicted) {
+            evictions.increment();
+            evictionListeners.forEach(listener -> listener.accept(evictedKey, null));
+        }
+    }
+
+    @Override
+    public boolean remove(String key) {
+        boolean removedFromHeap = heapTier.remove(key);
+        return stripeFor(key).remove(key) || removedFromHeap;
+    }
+
+    @Override
+    public void clear() {
+        heapTier.clear();
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    @Override
+    public List<String> keys() {
+        List<String> keys = new ArrayList<>(heapTier.keys());
+        for (Stripe stripe : stripes) {
+            stripe.addKeysTo(keys);
+        }
+        return keys;
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return heapTier.containsKey(key) || stripeFor(key).containsKey(key);
+    }
+
+    @Override
+    public void onEviction(BiConsumer<String, Object> listener) {
+        heapTier.onEviction(listener);
+        evictionListeners.add(listener);
+    }
+
+    @Override
+    public Map<String, Object> statistics() {
+        Map<String, Object> json = new LinkedHashMap<>(heapTier.statistics());
+        int entries = 0;
+        long bytesStored = 0;
+        long bytesAllocated = 0;
+        long capacity = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                entries += stripe.entries.size();
+                bytesStored += stripe.bytesStored;
+                bytesAllocated += (long) stripe.nextUnusedBlock * BLOCK_SIZE;
+                capacity += (long) stripe.capacityInBlocks * BLOCK_SIZE;
+            }
+        }
+        json.put("Off-heap Entries", entries);
+        json.put("Off-heap Bytes Stored", bytesStored);
+        json.put("Off-heap Bytes Allocated", bytesAllocated);
+        json.put("Off-heap Capacity in Bytes", capacity);
+        json.put("Off-heap Stripes", stripes.length);
+        json.put("Off-heap Hits", hits.sum());
+        json.put("Off-heap Evictions", evictions.sum());
+        return json;
+    }
+
+    @Override
+    public void dispose() {
+        heapTier.dispose();
+        for (Stripe stripe : stripes) {
+            stripe.dispose();
+        }
+    }
+
+    @Override
+    public <T extends GoCacheBackend> T unwrap(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : heapTier.unwrap(type);
+    }
+
+    private boolean isInKeyFamilies(String key) {
+        for (String keyFamily : keyFamilies) {
+            if (key.startsWith(keyFamily)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Stripe stripeFor(String key) {
+        return stripes[Math.floorMod(key.hashCode(), stripes.length)];
+    }
+
+    /**
+     * @return the stored value, or null if it belongs on the heap
+     */
+    private Entry serializeOffHeap(Stripe stripe, Object value, List<String> evicted) {
+        if (value instanceof GoCache.KeyList || !(value instanceof Serializable) || notSerializable.contains(value.getClass())) {
+            return null;
+        }
+
+        BlockOutputStream out = new BlockOutputStream(stripe, evicted);
+        try (ObjectOutputStream objects = new ObjectOutputStream(out)) {
+            objects.writeObject(value);
+        } catch (ValueTooLargeException e) {
+            out.discard();
+            return null;
+        } catch (IOException | RuntimeException e) {
+            out.discard();
+            if (e instanceof NotSerializableException) {
+                notSerializable.add(value.getClass());
+            }
+            LOGGER.debug("Keeping {} on the heap as it cannot be serialized", value.getClass().getName(), e);
+            return null;
+        }
+        return out.entry();
+    }
+
+    /**
+     * Serializes into a small heap buffer until the value turns out to be large enough to be stored off-heap, and
+     * from then on straight into blocks claimed from the stripe.
+     */
+    private class BlockOutputStream extends OutputStream {
+        private final Stripe stripe;
+        private final List<String> evicted;
+        private byte[] head = new byte[Math.min(INITIAL_HEAD_SIZE, Math.max(minValueSize, 1))];
+        private int headLength;
+        private int[] blocks;
+        private int blockCount;
+        private ByteBuffer currentBlock;
+        private int length;
+
+        private BlockOutputStream(Stripe stripe, List<String> evicted) {
+            this.stripe = stripe;
+            this.evicted = evicted;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            if (blocks == null) {
+                if (headLength + count < minValueSize) {
+                    if (headLength + count > head.length) {
+                        head = Arrays.copyOf(head, Math.min(Math.max(head.length * 2, headLength + count), minValueSize));
+                    }
+                    System.arraycopy(bytes, offset, head, headLength, count);
+                    headLength += count;
+                    return;
+                }
+
+                blocks = new int[4];
+                writeToBlocks(head, 0, headLength);
+                head = null;
+            }
+            writeToBlocks(bytes, offset, count);
+        }
+
+        private void writeToBlocks(byte[] bytes, int offset, int count) throws ValueTooLargeException {
+            while (count > 0) {
+                if (currentBlock == null || !currentBlock.hasRemaining()) {
+                    claimBlock();
+                }
+                int written = Math.min(count, currentBlock.remaining());
+                currentBlock.put(bytes, offset, written);
+                offset += written;
+                count -= written;
+                length += written;
+            }
+        }
+
+        private void claimBlock() throws ValueTooLargeException {
+            int block = stripe.claimBlock(blockCount, evicted);
+            if (block < 0) {
+                throw new ValueTooLargeException();
+            }
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            }
+            blocks[blockCount++] = block;
+            currentBlock = stripe.blockAt(block);
+        }
+
+        /**
+         * @return the blocks written, or null if the value is too small to be kept off-heap
+         */
+        private Entry entry() {
+            return blocks == null ? null : new Entry(Arrays.copyOf(blocks, blockCount), length);
+        }
+
+        private void discard() {
+            if (blocks != null) {
+                stripe.free(Arrays.copyOf(blocks, blockCount));
+            }
+        }
+    }
+
+    private static class ValueTooLargeException extends IOException {
+        private ValueTooLargeException() {
+            super("Value does not fit in its stripe of the off-heap tier");
+        }
+    }
+
+    /**
+     * A part of the tier with its own lock. Blocks claimed by a value being serialized belong to that value alone
+     * until it is installed, so they are written to without holding the lock.
+     */
+    private static class Stripe {
+        private int capacityInBlocks;
+        private final List<ByteBuffer> segments = new ArrayList<>();
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private int[] freeBlocks = new int[0];
+        private int freeBlockCount;
+        private int nextUnusedBlock;
+        private long bytesStored;
+
+        private Stripe(int capacityInBlocks) {
+            this.capacityInBlocks = capacityInBlocks;
+        }
+
+        synchronized byte[] read(String key) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+
+            byte[] bytes = new byte[entry.length];
+            for (int i = 0, offset = 0; offset < entry.length; i++, offset += BLOCK_SIZE) {
+                blockAt(entry.blocks[i]).get(bytes, offset, Math.min(BLOCK_SIZE, entry.length - offset));
+            }
+            return bytes;
+        }
+
+        synchronized boolean containsKey(String key) {
+            return entries.containsKey(key);
+        }
+
+        synchronized void addKeysTo(List<String> keys) {
+            keys.addAll(entries.keySet());
+        }
+
+        /**
+         * Hands out a free block, evicting the least recently used values if there is none.
+         *
+         * @param blocksHeld the number of blocks already claimed for the value being serialized
+         * @return the block, or -1 if the value does not fit in the stripe
+         */
+        synchronized int claimBlock(int blocksHeld, List<String> evicted) {
+            if (blocksHeld >= capacityInBlocks) {
+                return -1;
+            }
+
+            Iterator<Map.Entry<String, Entry>> leastRecentlyUsed = entries.entrySet().iterator();
+            while (true) {
+                int block = allocateBlock();
+                if (block >= 0) {
+                    return block;
+                }
+                if (!leastRecentlyUsed.hasNext()) {
+                    return -1;
+                }
+                Map.Entry<String, Entry> eldest = leastRecentlyUsed.next();
+                leastRecentlyUsed.remove();
+                free(eldest.getValue());
+                evicted.add(eldest.getKey());
+            }
+        }
+
+        synchronized void install(String key, Entry entry) {
+            Entry replaced = entries.put(key, entry);
+            if (replaced != null) {
+                free(replaced);
+            }
+            bytesStored += entry.length;
+        }
+
+        synchronized boolean remove(String key) {
+            Entry entry = entries.remove(key);
+            if (entry == null) {
+                return false;
+            }
+            free(entry);
+            return true;
+        }
+
+        synchronized void clear() {
+            new ArrayList<>(entries.keySet()).forEach(this::remove);
+        }
+
+        synchronized void dispose() {
+            entries.clear();
+            segments.clear();
+            freeBlocks = new int[0];
+            freeBlockCount = 0;
+            nextUnusedBlock = 0;
+            bytesStored = 0;
+        }
+
+        synchronized void free(int[] blocks) {
+            if (freeBlocks.length < freeBlockCount + blocks.length) {
+                freeBlocks = Arrays.copyOf(freeBlocks, Math.max(freeBlocks.length * 2, freeBlockCount + blocks.length));
+            }
+            System.arraycopy(blocks, 0, freeBlocks, freeBlockCount, blocks.length);
+            freeBlockCount += blocks.length;
+        }
+
+        private void free(Entry entry) {
+            free(entry.blocks);
+            bytesStored -= entry.length;
+        }
+
+        private int allocateBlock() {
+            if (freeBlockCount > 0) {
+                return freeBlocks[--freeBlockCount];
+            }
+            if (nextUnusedBlock >= capacityInBlocks) {
+                return -1;
+            }
+            if (nextUnusedBlock % BLOCKS_PER_SEGMENT == 0) {
+                int blocksInSegment = Math.min(BLOCKS_PER_SEGMENT, capacityInBlocks - nextUnusedBlock);
+                try {
+                    segments.add(ByteBuffer.allocateDirect(blocksInSegment * BLOCK_SIZE));
+                } catch (OutOfMemoryError e) {
+                    LOGGER.warn("Ran out of direct memory for the off-heap cache; keeping it at {} bytes. Consider raising -XX:MaxDirectMemorySize or lowering cruise.cache.off.heap.max.bytes", (long) nextUnusedBlock * BLOCK_SIZE, e);
+                    capacityInBlocks = nextUnusedBlock;
+                    return -1;
+                }
+            }
+            return nextUnusedBlock++;
+        }
+
+        /**
+         * @return a view of the block, positioned at its start and limited to its end
+         */
+        ByteBuffer blockAt(int block) {
+            ByteBuffer segment;
+            synchronized (this) {
+                segment = segments.get(block / BLOCKS_PER_SEGMENT).duplicate();
+            }
+            int start = (block % BLOCKS_PER_SEGMENT) * BLOCK_SIZE;
+            segment.position(start);
+            segment.limit(start + BLOCK_SIZE);
+            return segment;
+        }
+    }
+
+    private static class Entry {
+        private final int[] blocks;
+        private final int length;
+
+        private Entry(int[] blocks, int length) {
+            this.blocks = blocks;
+            this.length = length;
+        }
+    }
+}
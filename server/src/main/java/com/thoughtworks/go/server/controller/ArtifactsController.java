@@ -33,6 +33,7 @@ import com.thoughtworks.go.server.web.*;
 import com.thoughtworks.go.util.ArtifactLogUtil;
 import com.thoughtworks.go.util.SystemEnvironment;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,12 +47,11 @@ import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static com.thoughtworks.go.util.ArtifactLogUtil.isConsoleOutput;
 import static com.thoughtworks.go.util.GoConstants.*;
@@ -130,7 +130,7 @@ public class ArtifactsController {
                                      @RequestParam(value = "buildId", required = false) Long buildId,
                                      @RequestParam("filePath") String filePath,
                                      @RequestParam(value = "attempt", required = false) Integer attempt,
-                                     MultipartHttpServletRequest request) throws Exception {
+                                     HttpServletRequest request) throws Exception {
         JobIdentifier jobIdentifier;
         if (!headerConstraint.isSatisfied(request)) {
             return ResponseCodeView.create(HttpServletResponse.SC_BAD_REQUEST, "Missing required header 'Confirm'");
@@ -152,44 +152,80 @@ public class ArtifactsController {
                 return FileModelAndView.fileAlreadyExists(filePath);
             }
 
-            MultipartFile multipartFile = multipartFile(request);
-            if (multipartFile == null) {
-                return FileModelAndView.invalidUploadRequest();
+            if (request instanceof MultipartHttpServletRequest) {
+                return saveMultipartArtifact(jobIdentifier, filePath, convertedAttempt, artifact, (MultipartHttpServletRequest) request);
             }
+            if (isZipStream(request)) {
+                return saveStreamedArtifact(jobIdentifier, filePath, convertedAttempt, artifact, request);
+            }
+            return FileModelAndView.invalidUploadRequest();
 
-            boolean success = saveFile(convertedAttempt, artifact, multipartFile, shouldUnzipStream(multipartFile));
+        } catch (IllegalArtifactLocationException e) {
+            return FileModelAndView.forbiddenUrl(filePath);
+        }
+    }
 
-            if (!success) {
-                return FileModelAndView.errorSavingFile(filePath);
-            }
+    private ModelAndView saveMultipartArtifact(JobIdentifier jobIdentifier, String filePath, int convertedAttempt, File artifact, MultipartHttpServletRequest request) throws IOException, IllegalArtifactLocationException {
+        MultipartFile multipartFile = multipartFile(request);
+        if (multipartFile == null) {
+            return FileModelAndView.invalidUploadRequest();
+        }
 
-            success = updateChecksumFile(request, jobIdentifier, filePath);
+        boolean success = saveFile(convertedAttempt, artifact, multipartFile, shouldUnzipStream(multipartFile));
 
-            if (!success) {
-                return FileModelAndView.errorSavingChecksumFile(filePath);
-            }
+        if (!success) {
+            return FileModelAndView.errorSavingFile(filePath);
+        }
 
-            return FileModelAndView.fileCreated(filePath);
+        success = updateChecksumFile(request, jobIdentifier, filePath);
 
-        } catch (IllegalArtifactLocationException e) {
-            return FileModelAndView.forbiddenUrl(filePath);
+        if (!success) {
+            return FileModelAndView.errorSavingChecksumFile(filePath);
+        }
+
+        return FileModelAndView.fileCreated(filePath);
+    }
+
+    private boolean isZipStream(HttpServletRequest request) {
+        return request.getContentType() != null && request.getContentType().startsWith("application/zip");
+    }
+
+    // agents may send a zip as they make it, the checksums of the files in it coming last, in the zip
+    private ModelAndView saveStreamedArtifact(JobIdentifier jobIdentifier, String filePath, int convertedAttempt, File artifact, HttpServletRequest request) throws IOException, IllegalArtifactLocationException {
+        ByteArrayOutputStream checksums = new ByteArrayOutputStream();
+        try (InputStream inputStream = request.getInputStream()) {
+            if (!artifactsService.saveZipStream(artifact, inputStream, checksums, convertedAttempt)) {
+                return FileModelAndView.errorSavingFile(filePath);
+            }
+        }
+
+        if (checksums.size() == 0) {
+            LOGGER.warn("[Artifacts Upload] Checksum file not uploaded for artifact at path '{}'", filePath);
+        } else if (!appendToChecksumFile(jobIdentifier, new ByteArrayInputStream(checksums.toByteArray()))) {
+            return FileModelAndView.errorSavingChecksumFile(filePath);
         }
+
+        return FileModelAndView.fileCreated(filePath);
     }
 
     private boolean updateChecksumFile(MultipartHttpServletRequest request, JobIdentifier jobIdentifier, String filePath) throws IOException, IllegalArtifactLocationException {
         MultipartFile checksumMultipartFile = getChecksumFile(request);
         if (checksumMultipartFile != null) {
-            String checksumFilePath = String.format("%s/%s/%s", artifactsService.findArtifactRoot(jobIdentifier), ArtifactLogUtil.CRUISE_OUTPUT_FOLDER, ArtifactLogUtil.MD5_CHECKSUM_FILENAME);
-            File checksumFile = artifactsService.getArtifactLocation(checksumFilePath);
-            synchronized (checksumFilePath.intern()) {
-                return artifactsService.saveOrAppendFile(checksumFile, checksumMultipartFile.getInputStream());
-            }
+            return appendToChecksumFile(jobIdentifier, checksumMultipartFile.getInputStream());
         } else {
             LOGGER.warn("[Artifacts Upload] Checksum file not uploaded for artifact at path '{}'", filePath);
         }
         return true;
     }
 
+    private boolean appendToChecksumFile(JobIdentifier jobIdentifier, InputStream checksums) throws IllegalArtifactLocationException {
+        String checksumFilePath = String.format("%s/%s/%s", artifactsService.findArtifactRoot(jobIdentifier), ArtifactLogUtil.CRUISE_OUTPUT_FOLDER, ArtifactLogUtil.MD5_CHECKSUM_FILENAME);
+        File checksumFile = artifactsService.getArtifactLocation(checksumFilePath);
+        synchronized (checksumFilePath.intern()) {
+            return artifactsService.saveOrAppendFile(checksumFile, checksums);
+        }
+    }
+
     private boolean saveFile(int convertedAttempt, File artifact, MultipartFile multipartFile, boolean shouldUnzip) throws IOException {
         try (InputStream inputStream = multipartFile.getInputStream()) {
             return artifactsService.saveFile(artifact, inputStream, shouldUnzip, convertedAttempt);
@@ -223,7 +259,7 @@ public class ArtifactsController {
         }
 
         if (isConsoleOutput(filePath)) {
-            return putConsoleOutput(jobIdentifier, request.getInputStream());
+            return putConsoleOutput(jobIdentifier, consoleOutputStream(request));
         } else {
             return putArtifact(jobIdentifier, filePath, request.getInputStream());
         }
@@ -309,6 +345,17 @@ public class ArtifactsController {
         return request.getFile(CHECKSUM_MULTIPART_FILENAME);
     }
 
+    private InputStream consoleOutputStream(HttpServletRequest request) throws IOException {
+        // agents send their console output compressed, along with its uncompressed size. A few bytes of gzip can inflate
+        // to gigabytes, so never inflate more than that size, which is what ArtifactSizeEnforcementFilter checked
+        // against the free disk space.
+        if ("gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+            long declaredSize = NumberUtils.toLong(request.getHeader(GO_ARTIFACT_PAYLOAD_SIZE), 0L);
+            return new SizeLimitedInputStream(new GZIPInputStream(request.getInputStream()), declaredSize);
+        }
+        return request.getInputStream();
+    }
+
     private ModelAndView putConsoleOutput(final JobIdentifier jobIdentifier, final InputStream inputStream) throws Exception {
         File consoleLogFile = consoleService.consoleLogFile(jobIdentifier);
         boolean updated = consoleService.updateConsoleLog(consoleLogFile, inputStream);
@@ -355,4 +402,49 @@ public class ArtifactsController {
             return false;
         }
     }
+
+    /**
+     * Fails the read, rather than quietly truncating, once more than the given number of bytes have been read
+     */
+    private static class SizeLimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long bytesRead;
+
+        SizeLimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long bytes) throws IOException {
+            bytesRead += bytes;
+            if (bytesRead > limit) {
+                throw new IOException(String.format("Console output inflates to more than the %s bytes the agent declared", limit));
+            }
+        }
+    }
 }
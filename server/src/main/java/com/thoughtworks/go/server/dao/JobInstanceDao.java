@@ -28,6 +28,8 @@ public interface JobInstanceDao {
 
     List<JobPlan> orderedScheduledBuilds();
 
+    List<JobPlan> scheduledPlans(List<Long> jobIds);
+
     JobInstances latestCompletedJobs(String pipelineName, String stageName, String jobConfigName, int count);
 
     int getJobHistoryCount(String pipelineName, String stageName, String jobName);
@@ -535,7 +535,32 @@ public class JobInstanceSqlMapDao extends SqlMapClientDaoSupport implements JobI
     @Override
     public List<JobPlan> orderedScheduledBuilds() {
         List<Long> jobIds = getSqlMapClientTemplate().queryForList("scheduledPlanIds");
+        return plansOf(jobIds);
+    }
+
+    @Override
+    public List<JobPlan> scheduledPlans(List<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // a cached plan says nothing about whether its job is still scheduled, so ask the database
+        Set<Long> stillScheduled = new HashSet<>(getSqlMapClientTemplate().queryForList("scheduledJobIdsAmong", arguments("jobIds", jobIds).asMap()));
+        List<Long> scheduledJobIds = new ArrayList<>();
+        for (Long jobId : jobIds) {
+            if (stillScheduled.contains(jobId)) {
+                scheduledJobIds.add(jobId);
+            } else {
+                String cacheKey = cacheKeyForJobPlan(jobId);
+                synchronized (cacheKey) {
+                    goCache.remove(cacheKey);
+                }
+            }
+        }
+        return plansOf(scheduledJobIds);
+    }
 
+    private List<JobPlan> plansOf(List<Long> jobIds) {
         List<JobPlan> plans = new ArrayList<>();
         for (Long jobId : jobIds) {
             String cacheKey = cacheKeyForJobPlan(jobId);
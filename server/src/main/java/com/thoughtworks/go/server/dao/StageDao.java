@@ -87,10 +87,19 @@ public interface StageDao extends JobDurationStrategy {
 
     List<Stage> findStageHistoryForChart(String pipelineName, String stageName, int pageSize, int offset);
 
+    /**
+     * @return a page that is shared with other callers, along with the entries in it, which must not be changed
+     */
     StageHistoryPage findStageHistoryPage(Stage stageIdentifier, int pageSize);
 
+    /**
+     * @return a page that is shared with other callers, along with the entries in it, which must not be changed
+     */
     StageHistoryPage findStageHistoryPageByNumber(String pipelineName, String stageName, int pageNumber, int pageSize);
 
+    /**
+     * @return the stages, which are shared with other callers and must not be changed, in a collection of the caller's own
+     */
     StageInstanceModels findDetailedStageHistoryViaCursor(String pipelineName, String stageName, FeedModifier feedModifier, long cursor, Integer pageSize);
 
     List<StageIdentifier> findFailedStagesBetween(String pipelineName, String stageName, double fromNaturalOrder, double toNaturalOrder);
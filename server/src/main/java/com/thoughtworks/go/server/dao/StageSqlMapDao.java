@@ -53,6 +53,7 @@ import org.springframework.transaction.support.TransactionSynchronizationAdapter
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -441,19 +442,20 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
         try {
             String subKey = format("%s-%s-%s", cursor, pageSize, feedModifier.suffix());
             String key = cacheKeyForStageHistoryViaCursor(pipelineName, stageName);
-            StageInstanceModels stageInstanceModels = (StageInstanceModels) goCache.get(key, subKey);
-            if (stageInstanceModels == null) {
-                stageInstanceModels = new StageInstanceModels();
+            // the cached history is shared by all requests for it, only the collection handed out is their own
+            @SuppressWarnings("unchecked") List<StageInstanceModel> detailedStageHistory = (List<StageInstanceModel>) goCache.get(key, subKey);
+            if (detailedStageHistory == null) {
                 Map<String, Object> args = arguments("pipelineName", pipelineName)
                     .and("stageName", stageName)
                     .and("suffix", feedModifier.suffix())
                     .and("cursor", cursor)
                     .and("limit", pageSize).asMap();
-                List<StageInstanceModel> detailedStageHistory = getSqlMapClientTemplate().queryForList("getStageHistoryViaCursor", args);
-                stageInstanceModels.addAll(detailedStageHistory);
-                goCache.put(key, subKey, stageInstanceModels);
+                detailedStageHistory = Collections.unmodifiableList(getSqlMapClientTemplate().queryForList("getStageHistoryViaCursor", args));
+                goCache.put(key, subKey, detailedStageHistory);
             }
-            return cloner.deepClone(stageInstanceModels);
+            StageInstanceModels stageInstanceModels = new StageInstanceModels();
+            stageInstanceModels.addAll(detailedStageHistory);
+            return stageInstanceModels;
         } finally {
             readWriteLock.releaseReadLock(mutex);
         }
@@ -492,7 +494,7 @@ public class StageSqlMapDao extends SqlMapClientDaoSupport implements StageDao,
                 stageHistoryPage = new StageHistoryPage(stageHistoryEntries, pagination, findImmediateChronologicallyForwardStageHistoryEntry(stageHistoryEntries.get(0)));
                 goCache.put(key, subKey, stageHistoryPage);
             }
-            return cloner.deepClone(stageHistoryPage);
+            return stageHistoryPage;
         } finally {
             readWriteLock.releaseReadLock(mutex);
         }
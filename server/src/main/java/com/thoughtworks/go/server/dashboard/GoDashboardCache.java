@@ -19,54 +19,53 @@ import com.thoughtworks.go.config.CaseInsensitiveString;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /* Understands how to cache dashboard statuses, for every pipeline. */
 @Component
 public class GoDashboardCache {
     private final TimeStampBasedCounter timeStampBasedCounter;
     /**
-     * Assumption: The put() and replaceAllEntriesInCacheWith() methods, which change this cache,
-     * will always be called from the same thread (queueProcessor in GoDashboardActivityListener). Even get() will be.
-     * So, not surrounding it with a synchronizedMap. Also, uses {@link LinkedHashMap} to preserve insertion order. That
-     * order is not very important in this case, but it comes for free (almost) because of the map.
+     * Assumption: The put(), remove() and replaceAllEntriesInCacheWith() methods, which change this cache,
+     * will always be called from the same thread (queueProcessor in GoDashboardActivityListener). So, they do not
+     * synchronize. Every change publishes a new snapshot, which shares everything but the changed segment with the
+     * previous one, for readers to use without locking.
      */
-    private LinkedHashMap<CaseInsensitiveString, GoDashboardPipeline> cache;
     private volatile GoDashboardPipelines dashboardPipelines;
+    private long layoutVersion;
 
     @Autowired
     public GoDashboardCache(TimeStampBasedCounter timeStampBasedCounter) {
         this.timeStampBasedCounter = timeStampBasedCounter;
-        cache = new LinkedHashMap<>();
-        dashboardPipelines = new GoDashboardPipelines(new HashMap<>(), timeStampBasedCounter);
+        dashboardPipelines = new GoDashboardPipelines(new LinkedHashMap<>(), timeStampBasedCounter, layoutVersion);
     }
 
     public void put(GoDashboardPipeline pipeline) {
-        cache.put(pipeline.name(), pipeline);
-        cacheHasChanged();
+        GoDashboardPipeline existing = dashboardPipelines.find(pipeline.name());
+        if (existing == null || !Objects.equals(existing.groupName(), pipeline.groupName()) || !Objects.equals(existing.permissions(), pipeline.permissions())) {
+            layoutVersion++;
+        }
+        dashboardPipelines = dashboardPipelines.with(pipeline, timeStampBasedCounter, layoutVersion);
     }
 
     public void remove(CaseInsensitiveString pipelineName) {
-        cache.remove(pipelineName);
+        if (dashboardPipelines.find(pipelineName) != null) {
+            layoutVersion++;
+            dashboardPipelines = dashboardPipelines.without(pipelineName, timeStampBasedCounter, layoutVersion);
+        }
     }
 
     public void replaceAllEntriesInCacheWith(List<GoDashboardPipeline> newPipelinesToCache) {
-        cache.clear();
-        cache.putAll(createMapFor(newPipelinesToCache));
-        cacheHasChanged();
+        dashboardPipelines = dashboardPipelines.replacedWith(createMapFor(newPipelinesToCache), timeStampBasedCounter, ++layoutVersion);
     }
 
     public GoDashboardPipelines allEntries() {
         return dashboardPipelines;
     }
 
-    private void cacheHasChanged() {
-        dashboardPipelines = new GoDashboardPipelines(new HashMap<>(cache), timeStampBasedCounter);
-    }
-
     private Map<CaseInsensitiveString, GoDashboardPipeline> createMapFor(List<GoDashboardPipeline> pipelines) {
         Map<CaseInsensitiveString, GoDashboardPipeline> result = new LinkedHashMap<>();
         for (GoDashboardPipeline pipeline : pipelines) {
@@ -17,32 +17,174 @@ package com.thoughtworks.go.server.dashboard;
 
 import com.thoughtworks.go.config.CaseInsensitiveString;
 
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.*;
 
+/**
+ * Understands an immutable snapshot of the dashboard statuses of every pipeline.
+ * <p>
+ * Pipelines are spread over a fixed number of segments, so that a snapshot with one pipeline added, replaced or
+ * removed only copies the segment that pipeline is in, and shares every other segment with this snapshot.
+ * <p>
+ * Snapshots also remember the most recently removed pipelines, with the time stamp they were removed at, so that
+ * clients which have seen an earlier snapshot can be told what is gone.
+ */
 public class GoDashboardPipelines {
-    private HashMap<CaseInsensitiveString, GoDashboardPipeline> pipelines;
-    private long lastUpdatedTimeStamp;
+    private static final int SEGMENTS = 64;
+    private static final int MAX_TRACKED_REMOVALS = 1000;
+
+    private final Map<CaseInsensitiveString, GoDashboardPipeline>[] segments;
+    private final long lastUpdatedTimeStamp;
+    private final long layoutVersion;
+    private final List<Removal> removals;
+    private final long removalsTrackedSince;
 
     public GoDashboardPipelines(HashMap<CaseInsensitiveString, GoDashboardPipeline> pipelines, TimeStampBasedCounter timeStampBasedCounter) {
-        this.pipelines = pipelines;
-        this.lastUpdatedTimeStamp = timeStampBasedCounter.getNext();
+        this(pipelines, timeStampBasedCounter, 0);
+    }
+
+    GoDashboardPipelines(Map<CaseInsensitiveString, GoDashboardPipeline> pipelines, TimeStampBasedCounter timeStampBasedCounter, long layoutVersion) {
+        this(emptySegments(), timeStampBasedCounter.getNext(), layoutVersion, List.of(), 0);
+        for (Map.Entry<CaseInsensitiveString, GoDashboardPipeline> entry : pipelines.entrySet()) {
+            Map<CaseInsensitiveString, GoDashboardPipeline> segment = segments[segmentFor(entry.getKey())];
+            if (segment.isEmpty()) {
+                segment = segments[segmentFor(entry.getKey())] = new HashMap<>();
+            }
+            segment.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private GoDashboardPipelines(Map<CaseInsensitiveString, GoDashboardPipeline>[] segments, long lastUpdatedTimeStamp, long layoutVersion,
+                                 List<Removal> removals, long removalsTrackedSince) {
+        this.segments = segments;
+        this.lastUpdatedTimeStamp = lastUpdatedTimeStamp;
+        this.layoutVersion = layoutVersion;
+        this.removals = removals;
+        // nothing is known about what was removed before the very first snapshot
+        this.removalsTrackedSince = removalsTrackedSince == 0 ? lastUpdatedTimeStamp : removalsTrackedSince;
     }
 
     public long lastUpdatedTimeStamp() {
         return lastUpdatedTimeStamp;
     }
 
+    /**
+     * @return a number that changes whenever pipelines are added or removed, or move to another group or get other
+     * permissions; anything derived only from which pipelines there are, their groups and permissions holds for as
+     * long as it does not change
+     */
+    public long layoutVersion() {
+        return layoutVersion;
+    }
+
     public Collection<GoDashboardPipeline> getPipelines() {
-        return pipelines.values();
+        List<GoDashboardPipeline> pipelines = new ArrayList<>();
+        for (Map<CaseInsensitiveString, GoDashboardPipeline> segment : segments) {
+            pipelines.addAll(segment.values());
+        }
+        return Collections.unmodifiableList(pipelines);
     }
 
     public GoDashboardPipeline find(CaseInsensitiveString name) {
-        return pipelines.get(name);
+        return segments[segmentFor(name)].get(name);
     }
 
     public boolean isEmpty() {
-        return pipelines.isEmpty();
+        for (Map<CaseInsensitiveString, GoDashboardPipeline> segment : segments) {
+            if (!segment.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the pipelines removed after the given time stamp that are still gone, or nothing if pipelines may have
+     * been removed since then that this snapshot no longer remembers
+     */
+    public Optional<List<GoDashboardPipeline>> removedSince(long timeStamp) {
+        if (timeStamp < removalsTrackedSince) {
+            return Optional.empty();
+        }
+
+        List<GoDashboardPipeline> removed = new ArrayList<>();
+        for (Removal removal : removals) {
+            if (removal.removedAt > timeStamp && find(removal.pipeline.name()) == null) {
+                removed.add(removal.pipeline);
+            }
+        }
+        return Optional.of(removed);
+    }
+
+    GoDashboardPipelines with(GoDashboardPipeline pipeline, TimeStampBasedCounter timeStampBasedCounter, long layoutVersion) {
+        CaseInsensitiveString name = pipeline.name();
+        Map<CaseInsensitiveString, GoDashboardPipeline>[] copy = segments.clone();
+        Map<CaseInsensitiveString, GoDashboardPipeline> segment = new HashMap<>(segments[segmentFor(name)]);
+        segment.put(name, pipeline);
+        copy[segmentFor(name)] = segment;
+        return new GoDashboardPipelines(copy, timeStampBasedCounter.getNext(), layoutVersion, removals, removalsTrackedSince);
+    }
+
+    GoDashboardPipelines without(CaseInsensitiveString name, TimeStampBasedCounter timeStampBasedCounter, long layoutVersion) {
+        if (find(name) == null) {
+            return this;
+        }
+        Map<CaseInsensitiveString, GoDashboardPipeline>[] copy = segments.clone();
+        Map<CaseInsensitiveString, GoDashboardPipeline> segment = new HashMap<>(segments[segmentFor(name)]);
+        GoDashboardPipeline removed = segment.remove(name);
+        copy[segmentFor(name)] = segment;
+        long timeStamp = timeStampBasedCounter.getNext();
+        return withRemovals(new GoDashboardPipelines(copy, timeStamp, layoutVersion, removals, removalsTrackedSince), List.of(removed));
+    }
+
+    GoDashboardPipelines replacedWith(Map<CaseInsensitiveString, GoDashboardPipeline> pipelines, TimeStampBasedCounter timeStampBasedCounter, long layoutVersion) {
+        GoDashboardPipelines replacement = new GoDashboardPipelines(pipelines, timeStampBasedCounter, layoutVersion);
+        List<GoDashboardPipeline> removed = new ArrayList<>();
+        for (GoDashboardPipeline pipeline : getPipelines()) {
+            if (!pipelines.containsKey(pipeline.name())) {
+                removed.add(pipeline);
+            }
+        }
+        return withRemovals(new GoDashboardPipelines(replacement.segments, replacement.lastUpdatedTimeStamp, layoutVersion, removals, removalsTrackedSince), removed);
+    }
+
+    private static GoDashboardPipelines withRemovals(GoDashboardPipelines snapshot, List<GoDashboardPipeline> removed) {
+        if (removed.isEmpty()) {
+            return snapshot;
+        }
+
+        List<Removal> removals = new ArrayList<>(snapshot.removals);
+        removed.forEach(pipeline -> removals.add(new Removal(pipeline, snapshot.lastUpdatedTimeStamp)));
+
+        long removalsTrackedSince = snapshot.removalsTrackedSince;
+        if (removals.size() > MAX_TRACKED_REMOVALS) {
+            List<Removal> forgotten = removals.subList(0, removals.size() - MAX_TRACKED_REMOVALS);
+            removalsTrackedSince = forgotten.get(forgotten.size() - 1).removedAt;
+            forgotten.clear();
+        }
+
+        return new GoDashboardPipelines(snapshot.segments, snapshot.lastUpdatedTimeStamp, snapshot.layoutVersion,
+                Collections.unmodifiableList(removals), removalsTrackedSince);
     }
-}
 
+    private static int segmentFor(CaseInsensitiveString name) {
+        int hash = name.hashCode();
+        return (hash ^ (hash >>> 16)) & (SEGMENTS - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<CaseInsensitiveString, GoDashboardPipeline>[] emptySegments() {
+        Map<CaseInsensitiveString, GoDashboardPipeline>[] segments = new Map[SEGMENTS];
+        Arrays.fill(segments, Collections.emptyMap());
+        return segments;
+    }
+
+    private static class Removal {
+        private final GoDashboardPipeline pipeline;
+        private final long removedAt;
+
+        private Removal(GoDashboardPipeline pipeline, long removedAt) {
+            this.pipeline = pipeline;
+            this.removedAt = removedAt;
+        }
+    }
+}
@@ -31,51 +31,65 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Understands a sorted collection of PipelineMaterialModification
+ * <p>
+ * The runs of every pipeline are kept, and locked, separately: loading new runs only holds up lookups for the
+ * pipelines that actually got new runs, and only while those runs are being added.
+ * <p>
+ * Every run added is also kept in a {@link PipelineTimelineSnapshot}, so that at startup only the runs after the
+ * snapshot have to be loaded from the database.
  */
 @Component
 public class PipelineTimeline {
     private static final Logger LOGGER = LoggerFactory.getLogger(PipelineTimeline.class);
 
-    private final Map<CaseInsensitiveString, TreeSet<PipelineTimelineEntry>> naturalOrderPmm;
-    private final Map<CaseInsensitiveString, ArrayList<PipelineTimelineEntry>> scheduleOrderPmm;
+    private final Map<CaseInsensitiveString, PipelineRuns> runsByPipeline = new ConcurrentHashMap<>();
     private volatile long maximumId;
     private final PipelineRepository pipelineRepository;
     private TransactionTemplate transactionTemplate;
     private TransactionSynchronizationManager transactionSynchronizationManager;
     private TimelineUpdateListener[] listeners;
-    private final ReadWriteLock naturalOrderLock = new ReentrantReadWriteLock();
-    private final ReadWriteLock scheduleOrderLock = new ReentrantReadWriteLock();
+    private final PipelineTimelineSnapshot snapshot;
+    private final Lock updateLock = new ReentrantLock();
     private final Cloner cloner = ClonerFactory.instance();
 
+    public PipelineTimeline(PipelineRepository pipelineRepository, TransactionTemplate transactionTemplate, TransactionSynchronizationManager transactionSynchronizationManager,
+                            TimelineUpdateListener... listeners) {
+        this(pipelineRepository, transactionTemplate, transactionSynchronizationManager, new PipelineTimelineSnapshot((File) null), listeners);
+    }
+
     @Autowired
     public PipelineTimeline(PipelineRepository pipelineRepository, TransactionTemplate transactionTemplate, TransactionSynchronizationManager transactionSynchronizationManager,
-                            @Autowired(required = false) TimelineUpdateListener... listeners) {
+                            PipelineTimelineSnapshot snapshot, @Autowired(required = false) TimelineUpdateListener... listeners) {
         this.pipelineRepository = pipelineRepository;
         this.transactionTemplate = transactionTemplate;
         this.transactionSynchronizationManager = transactionSynchronizationManager;
+        this.snapshot = snapshot;
         this.listeners = ArrayUtils.nullToEmpty(listeners, TimelineUpdateListener[].class);
-        naturalOrderPmm = new HashMap<>();
-        scheduleOrderPmm = new HashMap<>();
         maximumId = -1;
     }
 
     @TestOnly
     public Collection<PipelineTimelineEntry> getEntriesFor(String pipelineName) {
-        naturalOrderLock.readLock().lock();
+        PipelineRuns runs = runsByPipeline.get(new CaseInsensitiveString(pipelineName));
+        if (runs == null) {
+            return Collections.unmodifiableCollection(new TreeSet<>());
+        }
+        runs.lock.readLock().lock();
         try {
-            TreeSet<PipelineTimelineEntry> tree = naturalOrderPmm.get(new CaseInsensitiveString(pipelineName));
-            if (tree == null) {
-                tree = new TreeSet<>();
-            }
-            return Collections.unmodifiableCollection(cloner.deepClone(tree));
+            return Collections.unmodifiableCollection(cloner.deepClone(runs.naturalOrder));
         } finally {
-            naturalOrderLock.readLock().unlock();
+            runs.lock.readLock().unlock();
         }
     }
 
@@ -85,16 +99,12 @@ public class PipelineTimeline {
 
     public void add(PipelineTimelineEntry pipelineTimelineEntry) {
         CaseInsensitiveString pipelineName = new CaseInsensitiveString(pipelineTimelineEntry.getPipelineName());
-        initializedNaturalOrderCollection(pipelineName).add(pipelineTimelineEntry);
-        initializedScheduleOrderCollection(pipelineName).add(pipelineTimelineEntry);
-        pipelineTimelineEntry.setInsertedBefore(naturalOrderAfter(pipelineTimelineEntry));
-        pipelineTimelineEntry.setInsertedAfter(naturalOrderBefore(pipelineTimelineEntry));
-        pipelineTimelineEntry.updateNaturalOrder();
+        runsByPipeline.computeIfAbsent(pipelineName, name -> new PipelineRuns()).add(pipelineTimelineEntry);
         updateMaximumId(pipelineTimelineEntry.getId());
     }
 
     public void update() {
-        acquireAllWriteLocks();
+        updateLock.lock();
         try {
             final long maximumIdBeforeUpdate = maximumId;
             transactionTemplate.execute(transactionStatus -> {
@@ -105,6 +115,7 @@ public class PipelineTimeline {
                         if (STATUS_ROLLED_BACK == status) {
                             rollbackTempEntries();
                         } else if (STATUS_COMMITTED == status) {
+                            snapshot.append(newlyAddedEntries);
                             notifyListeners(newlyAddedEntries);
                         }
                     }
@@ -117,9 +128,10 @@ public class PipelineTimeline {
                     }
 
                     private void rollbackNewEntryFor(PipelineTimelineEntry entry) {
-                        CaseInsensitiveString pipelineName = new CaseInsensitiveString(entry.getPipelineName());
-                        initializedNaturalOrderCollection(pipelineName).remove(entry);
-                        initializedScheduleOrderCollection(pipelineName).remove(entry);
+                        PipelineRuns runs = runsByPipeline.get(new CaseInsensitiveString(entry.getPipelineName()));
+                        if (runs != null) {
+                            runs.remove(entry);
+                        }
                     }
 
 
@@ -128,25 +140,10 @@ public class PipelineTimeline {
                 return null;
             });
         } finally {
-            releaseAllWriteLocks();
+            updateLock.unlock();
         }
     }
 
-
-    // --------------------------------------------------------
-    // These methods should acquire and release lock in corresponding order.
-    private void acquireAllWriteLocks() {
-        naturalOrderLock.writeLock().lock();
-        scheduleOrderLock.writeLock().lock();
-    }
-
-    //Release in the reverse of the acquired order.
-    private void releaseAllWriteLocks() {
-        scheduleOrderLock.writeLock().unlock();
-        naturalOrderLock.writeLock().unlock();
-    }
-    // --------------------------------------------------------
-
     private void notifyListeners(List<PipelineTimelineEntry> newEntries) {
         Map<CaseInsensitiveString, PipelineTimelineEntry> pipelineToOldestEntry = new HashMap<>();
         for (PipelineTimelineEntry challenger : newEntries) {
@@ -159,10 +156,14 @@ public class PipelineTimeline {
 
         for (TimelineUpdateListener listener : listeners) {
             for (Map.Entry<CaseInsensitiveString, PipelineTimelineEntry> entry : pipelineToOldestEntry.entrySet()) {
+                PipelineRuns runs = runsByPipeline.get(entry.getKey());
+                runs.lock.readLock().lock();
                 try {
-                    listener.added(entry.getValue(), naturalOrderPmm.get(entry.getKey()));
+                    listener.added(entry.getValue(), runs.naturalOrder);
                 } catch (Exception e) {
                     LOGGER.warn("Ignoring exception when notifying listener: {}", listener, e);
+                } finally {
+                    runs.lock.readLock().unlock();
                 }
             }
         }
@@ -172,12 +173,59 @@ public class PipelineTimeline {
      * This is called on system init and is called by Spring. Hence, this is not done in a transaction. At any other time, the method update should be used
      */
     public void updateTimelineOnInit() {
-        acquireAllWriteLocks();
+        updateLock.lock();
         try {
-            pipelineRepository.updatePipelineTimeline(this, new ArrayList<>());
+            boolean loadedSnapshot = loadSnapshot();
+            List<PipelineTimelineEntry> loadedEntries = new ArrayList<>();
+            pipelineRepository.updatePipelineTimeline(this, loadedEntries);
+            if (loadedSnapshot) {
+                snapshot.append(loadedEntries);
+            } else {
+                snapshot.write(loadedEntries);
+            }
         } finally {
-            releaseAllWriteLocks();
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Replays the runs in the snapshot, as long as the last of them is still in the database. If the snapshot cannot be
+     * used, the timeline is left empty, to be loaded from the database in full.
+     */
+    private boolean loadSnapshot() {
+        if (!snapshot.isEnabled()) {
+            return false;
+        }
+        List<PipelineTimelineEntry> entries;
+        try {
+            entries = snapshot.read();
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring the pipeline timeline snapshot, the timeline will be loaded from the database", e);
+            return false;
         }
+        if (entries.isEmpty()) {
+            return false;
+        }
+
+        PipelineTimelineEntry last = entries.get(entries.size() - 1);
+        if (!pipelineRepository.hasPipelineInstance(last.getId(), last.getPipelineName())) {
+            LOGGER.warn("Ignoring the pipeline timeline snapshot, its last run {}/{} (id {}) is not in the database. The timeline will be loaded from the database",
+                last.getPipelineName(), last.getCounter(), last.getId());
+            return false;
+        }
+
+        try {
+            for (PipelineTimelineEntry entry : entries) {
+                add(entry);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Ignoring the pipeline timeline snapshot, the timeline will be loaded from the database", e);
+            runsByPipeline.clear();
+            maximumId = -1;
+            return false;
+        }
+        LOGGER.info("Loaded {} runs from the pipeline timeline snapshot", entries.size());
+        return true;
     }
 
     /**
@@ -186,21 +234,11 @@ public class PipelineTimeline {
      * @return PMM which was before the pipeline with this id at the time of insertion of the PTE with the id or null if there was nothing before this pipeline during insertion
      */
     public PipelineTimelineEntry runBefore(long id, final CaseInsensitiveString pipelineName) {
-        naturalOrderLock.readLock().lock();
-        try {
-            TreeSet<PipelineTimelineEntry> treeForPipeline = naturalOrderPmm.get(pipelineName);
-            if (treeForPipeline == null) {
-                return null;
-            }
-            for (PipelineTimelineEntry pipelineTimelineEntry : treeForPipeline) {
-                if (id == pipelineTimelineEntry.getId()) {
-                    return pipelineTimelineEntry.insertedAfter();
-                }
-            }
-            throw new RuntimeException("Cannot find pipeline with id: " + id);
-        } finally {
-            naturalOrderLock.readLock().unlock();
+        PipelineRuns runs = runsByPipeline.get(pipelineName);
+        if (runs == null) {
+            return null;
         }
+        return runs.find(id).insertedAfter();
     }
 
     /**
@@ -209,56 +247,24 @@ public class PipelineTimeline {
      * @return PMM which was after the pipeline with this id at the time of insertion of the PTE with the id or null if there was nothing after this pipeline during insertion
      */
     public PipelineTimelineEntry runAfter(long id, final CaseInsensitiveString pipelineName) {
-        naturalOrderLock.readLock().lock();
-        try {
-            TreeSet<PipelineTimelineEntry> treeForPipeline = naturalOrderPmm.get(pipelineName);
-            if (treeForPipeline == null) {
-                return null;
-            }
-            for (PipelineTimelineEntry pipelineTimelineEntry : treeForPipeline) {
-                if (id == pipelineTimelineEntry.getId()) {
-                    return pipelineTimelineEntry.insertedBefore();
-                }
-            }
-            throw new RuntimeException("Cannot find pipeline with id: " + id);
-        } finally {
-            naturalOrderLock.readLock().unlock();
+        PipelineRuns runs = runsByPipeline.get(pipelineName);
+        if (runs == null) {
+            return null;
         }
+        return runs.find(id).insertedBefore();
     }
 
     private void updateMaximumId(long id) {
         maximumId = Math.max(id, maximumId);
     }
 
-    private TreeSet<PipelineTimelineEntry> initializedNaturalOrderCollection(final CaseInsensitiveString pipelineName) {
-        if (!naturalOrderPmm.containsKey(pipelineName)) {
-            naturalOrderPmm.put(pipelineName, new TreeSet<>());
-        }
-        return naturalOrderPmm.get(pipelineName);
-    }
-
-    private ArrayList<PipelineTimelineEntry> initializedScheduleOrderCollection(final CaseInsensitiveString pipelineName) {
-        if (!scheduleOrderPmm.containsKey(pipelineName)) {
-            scheduleOrderPmm.put(pipelineName, new ArrayList<>());
-        }
-        return scheduleOrderPmm.get(pipelineName);
-    }
-
-    private PipelineTimelineEntry naturalOrderAfter(PipelineTimelineEntry pipelineTimelineEntry) {
-        naturalOrderLock.readLock().lock();
-        try {
-            return naturalOrderPmm.get(new CaseInsensitiveString(pipelineTimelineEntry.getPipelineName())).higher(pipelineTimelineEntry);
-        } finally {
-            naturalOrderLock.readLock().unlock();
-        }
-    }
-
     PipelineTimelineEntry naturalOrderBefore(PipelineTimelineEntry pipelineTimelineEntry) {
-        naturalOrderLock.readLock().lock();
+        PipelineRuns runs = runsByPipeline.get(new CaseInsensitiveString(pipelineTimelineEntry.getPipelineName()));
+        runs.lock.readLock().lock();
         try {
-            return naturalOrderPmm.get(new CaseInsensitiveString(pipelineTimelineEntry.getPipelineName())).lower(pipelineTimelineEntry);
+            return runs.naturalOrder.lower(pipelineTimelineEntry);
         } finally {
-            naturalOrderLock.readLock().unlock();
+            runs.lock.readLock().unlock();
         }
     }
 
@@ -267,40 +273,50 @@ public class PipelineTimeline {
      */
     @TestOnly
     public void clearWhichIsEvilAndShouldNotBeUsedInRealWorld() {
-        acquireAllWriteLocks();
+        updateLock.lock();
         try {
-            naturalOrderPmm.clear();
-            scheduleOrderPmm.clear();
+            runsByPipeline.clear();
+            snapshot.delete();
         } finally {
-            releaseAllWriteLocks();
+            updateLock.unlock();
         }
     }
 
     public int instanceCount(CaseInsensitiveString pipelineName) {
-        scheduleOrderLock.readLock().lock();
+        PipelineRuns runs = runsByPipeline.get(pipelineName);
+        if (runs == null) {
+            return 0;
+        }
+        runs.lock.readLock().lock();
         try {
-            ArrayList<PipelineTimelineEntry> instances = scheduleOrderPmm.get(pipelineName);
-            return instances == null ? 0 : instances.size();
+            return runs.scheduleOrder.size();
         } finally {
-            scheduleOrderLock.readLock().unlock();
+            runs.lock.readLock().unlock();
         }
     }
 
     public PipelineTimelineEntry instanceFor(CaseInsensitiveString pipelineName, int index) {
-        scheduleOrderLock.readLock().lock();
+        PipelineRuns runs = runsByPipeline.get(pipelineName);
+        if (runs == null) {
+            return null;
+        }
+        runs.lock.readLock().lock();
         try {
-            ArrayList<PipelineTimelineEntry> instances = scheduleOrderPmm.get(pipelineName);
-            return instances == null ? null : instances.get(index);
+            return runs.scheduleOrder.get(index);
         } finally {
-            scheduleOrderLock.readLock().unlock();
+            runs.lock.readLock().unlock();
         }
     }
 
 
     public PipelineTimelineEntry getEntryFor(CaseInsensitiveString pipelineName, Integer pipelineCounter) {
-        scheduleOrderLock.readLock().lock();
+        PipelineRuns runs = runsByPipeline.get(pipelineName);
+        if (runs == null) {
+            return null;
+        }
+        runs.lock.readLock().lock();
         try {
-            ArrayList<PipelineTimelineEntry> instances = scheduleOrderPmm.get(pipelineName);
+            ArrayList<PipelineTimelineEntry> instances = runs.scheduleOrder;
             for (int i = instances.size() - 1; i >= 0; i--) {
                 PipelineTimelineEntry instance = instances.get(i);
                 if (instance.getCounter() == pipelineCounter) {
@@ -309,8 +325,78 @@ public class PipelineTimeline {
             }
             return null;
         } finally {
-            scheduleOrderLock.readLock().unlock();
+            runs.lock.readLock().unlock();
         }
     }
 
+    /**
+     * The runs of one pipeline, both in natural order and in the order they were scheduled in. Since runs are loaded
+     * in the order of their ids, the ids of the scheduled runs are also kept in a sorted array, so that finding a
+     * run by id is a binary search rather than a walk through every run of the pipeline.
+     */
+    private static class PipelineRuns {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final TreeSet<PipelineTimelineEntry> naturalOrder = new TreeSet<>();
+        private final ArrayList<PipelineTimelineEntry> scheduleOrder = new ArrayList<>();
+        private long[] scheduledIds = new long[8];
+        private boolean scheduledInIdOrder = true;
+
+        private void add(PipelineTimelineEntry entry) {
+            lock.writeLock().lock();
+            try {
+                naturalOrder.add(entry);
+                int size = scheduleOrder.size();
+                if (size > 0 && scheduledIds[size - 1] > entry.getId()) {
+                    scheduledInIdOrder = false;
+                }
+                if (size == scheduledIds.length) {
+                    scheduledIds = Arrays.copyOf(scheduledIds, size * 2);
+                }
+                scheduledIds[size] = entry.getId();
+                scheduleOrder.add(entry);
+
+                entry.setInsertedBefore(naturalOrder.higher(entry));
+                entry.setInsertedAfter(naturalOrder.lower(entry));
+                entry.updateNaturalOrder();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void remove(PipelineTimelineEntry entry) {
+            lock.writeLock().lock();
+            try {
+                naturalOrder.remove(entry);
+                int index = scheduleOrder.indexOf(entry);
+                if (index >= 0) {
+                    scheduleOrder.remove(index);
+                    System.arraycopy(scheduledIds, index + 1, scheduledIds, index, scheduleOrder.size() - index);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private PipelineTimelineEntry find(long id) {
+            lock.readLock().lock();
+            try {
+                int index = scheduledInIdOrder ? Arrays.binarySearch(scheduledIds, 0, scheduleOrder.size(), id) : indexOf(id);
+                if (index < 0) {
+                    throw new RuntimeException("Cannot find pipeline with id: " + id);
+                }
+                return scheduleOrder.get(index);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int indexOf(long id) {
+            for (int i = 0; i < scheduleOrder.size(); i++) {
+                if (scheduledIds[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
 }
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.domain;
+
+import com.thoughtworks.go.domain.PipelineTimelineEntry;
+import com.thoughtworks.go.server.service.ArtifactsDirHolder;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Understands keeping the runs of the pipeline timeline on disk, so that the timeline can be loaded at startup without
+ * querying every run from the database.
+ * <p>
+ * Runs are appended in the order they were added to the timeline, each as a record with its own checksum. Replaying
+ * them in that order rebuilds exactly the timeline that wrote them. A torn or corrupt record ends the snapshot there:
+ * what is read is always a prefix of the runs added, so the remaining runs are loaded from the database from the
+ * last id read onwards.
+ * <p>
+ * The snapshot is kept in the artifacts directory, and only when {@link SystemEnvironment#PIPELINE_TIMELINE_SNAPSHOT}
+ * is turned on.
+ */
+@Component
+public class PipelineTimelineSnapshot {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineTimelineSnapshot.class);
+    static final String PIPELINE_TIMELINE_SNAPSHOT = ".pipeline-timeline.snapshot";
+
+    static final int MAGIC = 0x474f544c;
+    static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private static final byte NO_DATE = 0;
+    private static final byte DATE = 1;
+    private static final byte TIMESTAMP = 2;
+
+    private final ArtifactsDirHolder artifactsDirHolder;
+    private final boolean enabled;
+    private File file;
+
+    @Autowired
+    public PipelineTimelineSnapshot(SystemEnvironment systemEnvironment, ArtifactsDirHolder artifactsDirHolder) {
+        this.artifactsDirHolder = artifactsDirHolder;
+        this.enabled = systemEnvironment.get(SystemEnvironment.PIPELINE_TIMELINE_SNAPSHOT);
+    }
+
+    /**
+     * @param file where to keep the snapshot, or null to not keep one
+     */
+    public PipelineTimelineSnapshot(File file) {
+        this.artifactsDirHolder = null;
+        this.enabled = file != null;
+        this.file = file;
+    }
+
+    /**
+     * @return true if a snapshot is kept; not until the artifacts directory is known
+     */
+    public boolean isEnabled() {
+        if (enabled && file == null && artifactsDirHolder != null && artifactsDirHolder.getArtifactsDir() != null) {
+            file = new File(artifactsDirHolder.getArtifactsDir(), PIPELINE_TIMELINE_SNAPSHOT);
+        }
+        return enabled && file != null;
+    }
+
+    /**
+     * @return the runs in the snapshot, in the order they were added to the timeline; empty if there is no snapshot
+     * @throws IOException if the snapshot cannot be read, or was written in a different format
+     */
+    public List<PipelineTimelineEntry> read() throws IOException {
+        List<PipelineTimelineEntry> entries = new ArrayList<>();
+        if (!isEnabled() || !file.exists()) {
+            return entries;
+        }
+
+        long validLength = HEADER_SIZE;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a pipeline timeline snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException(String.format("Pipeline timeline snapshot %s has format version %s, expected %s", file, version, FORMAT_VERSION));
+            }
+
+            EntryReader reader = new EntryReader();
+            byte[] record;
+            while ((record = nextRecord(in)) != null) {
+                entries.add(reader.read(new DataInputStream(new ByteArrayInputStream(record))));
+                validLength += RECORD_HEADER_SIZE + record.length;
+            }
+        }
+
+        if (validLength < file.length()) {
+            LOGGER.warn("Dropping the last {} bytes of pipeline timeline snapshot {}, which were not completely written", file.length() - validLength, file);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Adds runs, which must have been added to the timeline after every run already in the snapshot. If they cannot
+     * be written, the snapshot is deleted rather than left with a gap.
+     */
+    public void append(Collection<PipelineTimelineEntry> entries) {
+        if (!isEnabled() || entries.isEmpty()) {
+            return;
+        }
+        try {
+            boolean isNew = !file.exists() || file.length() == 0;
+            if (isNew) {
+                Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+                if (isNew) {
+                    writeHeader(out);
+                }
+                writeRecords(out, entries);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not add to pipeline timeline snapshot {}, deleting it", file, e);
+            delete();
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the given runs, in the order they were added to the timeline
+     */
+    public void write(Collection<PipelineTimelineEntry> entries) {
+        if (!isEnabled()) {
+            return;
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                writeHeader(out);
+                writeRecords(out, entries);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not write pipeline timeline snapshot {}", file, e);
+            tempFile.delete();
+            delete();
+        }
+    }
+
+    public void delete() {
+        if (isEnabled() && file.exists() && !file.delete()) {
+            LOGGER.warn("Could not delete pipeline timeline snapshot {}", file);
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+    }
+
+    private static void writeRecords(DataOutputStream out, Collection<PipelineTimelineEntry> entries) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(buffer);
+        CRC32 crc = new CRC32();
+        for (PipelineTimelineEntry entry : entries) {
+            buffer.reset();
+            writeEntry(record, entry);
+            crc.reset();
+            crc.update(buffer.toByteArray(), 0, buffer.size());
+            out.writeInt(buffer.size());
+            out.writeInt((int) crc.getValue());
+            buffer.writeTo(out);
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, PipelineTimelineEntry entry) throws IOException {
+        writeString(out, entry.getPipelineName());
+        out.writeLong(entry.getId());
+        out.writeInt(entry.getCounter());
+        out.writeDouble(entry.naturalOrder());
+        Map<String, List<PipelineTimelineEntry.Revision>> revisions = entry.revisions();
+        out.writeInt(revisions.size());
+        for (Map.Entry<String, List<PipelineTimelineEntry.Revision>> material : revisions.entrySet()) {
+            writeString(out, material.getKey());
+            out.writeInt(material.getValue().size());
+            for (PipelineTimelineEntry.Revision revision : material.getValue()) {
+                out.writeLong(revision.id);
+                writeDate(out, revision.date);
+                writeString(out, revision.revision);
+                writeString(out, revision.folder);
+            }
+        }
+    }
+
+    private static void writeDate(DataOutputStream out, Date date) throws IOException {
+        if (date == null) {
+            out.writeByte(NO_DATE);
+        } else if (date instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(date.getTime());
+            out.writeInt(((Timestamp) date).getNanos());
+        } else {
+            out.writeByte(DATE);
+            out.writeLong(date.getTime());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @return the next complete record with a matching checksum, or null if there is none
+     */
+    private static byte[] nextRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || length > MAX_RECORD_SIZE) {
+                return null;
+            }
+            byte[] record = new byte[length];
+            in.readFully(record);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            return (int) crc.getValue() == checksum ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Shares revisions and strings between the runs it reads, the way they are shared when the timeline is loaded
+     * from the database.
+     */
+    private static class EntryReader {
+        private final Map<Long, Map<String, PipelineTimelineEntry.Revision>> revisionsByModificationId = new HashMap<>();
+        private final Map<String, String> strings = new HashMap<>();
+
+        private PipelineTimelineEntry read(DataInputStream in) throws IOException {
+            String pipelineName = readString(in);
+            long id = in.readLong();
+            int counter = in.readInt();
+            double naturalOrder = in.readDouble();
+            int materials = in.readInt();
+            Map<String, List<PipelineTimelineEntry.Revision>> revisions = new HashMap<>();
+            for (int i = 0; i < materials; i++) {
+                String fingerprint = readString(in);
+                int count = in.readInt();
+                List<PipelineTimelineEntry.Revision> materialRevisions = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    materialRevisions.add(readRevision(in));
+                }
+                revisions.put(fingerprint, materialRevisions);
+            }
+            return new PipelineTimelineEntry(pipelineName, id, counter, revisions, naturalOrder);
+        }
+
+        private PipelineTimelineEntry.Revision readRevision(DataInputStream in) throws IOException {
+            long modificationId = in.readLong();
+            Date date = readDate(in);
+            String revision = readString(in);
+            String folder = readString(in);
+            Map<String, PipelineTimelineEntry.Revision> revisionsByFolder = revisionsByModificationId.computeIfAbsent(modificationId, modId -> new HashMap<>());
+            return revisionsByFolder.computeIfAbsent(folder, f -> new PipelineTimelineEntry.Revision(date, revision, f, modificationId));
+        }
+
+        private Date readDate(DataInputStream in) throws IOException {
+            byte type = in.readByte();
+            if (type == NO_DATE) {
+                return null;
+            }
+            long time = in.readLong();
+            if (type == TIMESTAMP) {
+                Timestamp timestamp = new Timestamp(time);
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            }
+            return new Date(time);
+        }
+
+        private String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            return strings.computeIfAbsent(value, v -> v);
+        }
+    }
+}
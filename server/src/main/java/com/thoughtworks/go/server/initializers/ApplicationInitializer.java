@@ -36,6 +36,7 @@ import com.thoughtworks.go.server.service.support.ResourceMonitoring;
 import com.thoughtworks.go.server.service.support.toggle.FeatureToggleService;
 import com.thoughtworks.go.server.service.support.toggle.Toggles;
 import com.thoughtworks.go.server.util.ServletHelper;
+import com.thoughtworks.go.server.websocket.ConsoleLogSender;
 import com.thoughtworks.go.service.ConfigRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -71,6 +72,7 @@ public class ApplicationInitializer implements ApplicationListener<ContextRefres
     @Autowired private GoDiskSpaceMonitor goDiskSpaceMonitor;
     @Autowired private ArtifactsService artifactsService;
     @Autowired private ConsoleService consoleService;
+    @Autowired private ConsoleLogSender consoleLogSender;
     @Autowired private ConfigElementImplementationRegistrar configElementImplementationRegistrar;
     @Autowired private ConfigCipherUpdater configCipherUpdater;
     @Autowired private RailsAssetsService railsAssetsService;
@@ -120,6 +122,7 @@ public class ApplicationInitializer implements ApplicationListener<ContextRefres
 
             //console logs
             consoleService.initialize();
+            consoleLogSender.initialize();
 
             //change listener
             environmentConfigService.initialize();
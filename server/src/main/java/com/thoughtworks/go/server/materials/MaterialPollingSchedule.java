@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.materials;
+
+import com.thoughtworks.go.domain.materials.Material;
+import com.thoughtworks.go.server.persistence.MaterialRepository;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.joda.time.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Understands how often each material should be polled, going by how often it has changed.
+ * <p>
+ * Every time a material has been polled, the times of its latest modifications give how long it takes, on average, for
+ * it to change. The material is then polled about {@link #POLLS_PER_CHANGE} times in that period, never more often than
+ * the material update interval nor less often than {@link SystemEnvironment#MDU_MAX_POLLING_INTERVAL_IN_MILLIS}, so that
+ * materials which rarely change do not take up as much of the material update queue as those which change all the time.
+ * That maximum defaults to the material update interval itself, which polls every material at that interval as before.
+ * Materials that are due are polled in the order in which they are expected to change next, which is taken to be the
+ * average time between their changes after they were last polled.
+ */
+@Component
+public class MaterialPollingSchedule {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaterialPollingSchedule.class);
+    static final int HISTORY_SIZE = 10;
+    static final int POLLS_PER_CHANGE = 10;
+
+    private final MaterialRepository materialRepository;
+    private final long minInterval;
+    private final long maxInterval;
+    private final ConcurrentMap<Material, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder pollsFindingChanges = new LongAdder();
+    private final LongAdder pollsNotDue = new LongAdder();
+
+    @Autowired
+    public MaterialPollingSchedule(MaterialRepository materialRepository, SystemEnvironment systemEnvironment) {
+        this.materialRepository = materialRepository;
+        this.minInterval = systemEnvironment.getMaterialUpdateIdleInterval();
+        this.maxInterval = Math.max(minInterval, systemEnvironment.get(SystemEnvironment.MDU_MAX_POLLING_INTERVAL_IN_MILLIS));
+    }
+
+    /**
+     * @return those of the materials that are due to be polled, the one expected to change first coming first
+     */
+    public List<Material> due(Collection<Material> materials) {
+        long now = DateTimeUtils.currentTimeMillis();
+        Map<Material, Long> due = new LinkedHashMap<>();
+        for (Material material : materials) {
+            Entry entry = entries.get(material);
+            if (entry == null || now - entry.polledAt >= entry.interval) {
+                due.put(material, entry == null ? 0 : entry.expectedChangeAt);
+            } else {
+                pollsNotDue.increment();
+                LOGGER.debug("[Material Update] Skipping update of material {} which has been last updated at {}, and is polled every {}ms", material, new Date(entry.polledAt), entry.interval);
+            }
+        }
+        List<Material> ordered = new ArrayList<>(due.keySet());
+        ordered.sort(Comparator.comparingLong(due::get));
+        return ordered;
+    }
+
+    /**
+     * Works out when the material should next be polled, now that it has been.
+     */
+    public void polled(Material material) {
+        long now = DateTimeUtils.currentTimeMillis();
+        List<Date> changes = maxInterval > minInterval ? materialRepository.latestModificationTimes(material, HISTORY_SIZE) : Collections.emptyList();
+        Entry entry = changes.isEmpty() ? new Entry(now, minInterval, 0, 0) : entryFor(now, changes);
+
+        Entry previous = entries.put(material, entry);
+        if (previous != null && entry.latestChangeAt != previous.latestChangeAt) {
+            pollsFindingChanges.increment();
+        }
+    }
+
+    public Map<String, Object> statistics() {
+        long longest = 0;
+        long shortest = 0;
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            longest = Math.max(longest, entry.interval);
+            shortest = shortest == 0 ? entry.interval : Math.min(shortest, entry.interval);
+            total += entry.interval;
+        }
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Materials Scheduled", entries.size());
+        json.put("Minimum Polling Interval (ms)", minInterval);
+        json.put("Maximum Polling Interval (ms)", maxInterval);
+        json.put("Shortest Polling Interval In Use (ms)", shortest);
+        json.put("Longest Polling Interval In Use (ms)", longest);
+        json.put("Average Polling Interval In Use (ms)", entries.isEmpty() ? 0 : total / entries.size());
+        json.put("Polls Finding New Changes", pollsFindingChanges.sum());
+        json.put("Polls Put Off As Not Due", pollsNotDue.sum());
+        return json;
+    }
+
+    private Entry entryFor(long now, List<Date> changes) {
+        long latestChangeAt = changes.get(0).getTime();
+        long earliestChangeAt = changes.get(changes.size() - 1).getTime();
+        // counting the time since the latest change, so that a material which has stopped changing slows down
+        long averageTimeBetweenChanges = Math.max(0, now - earliestChangeAt) / changes.size();
+        long interval = Math.min(maxInterval, Math.max(minInterval, averageTimeBetweenChanges / POLLS_PER_CHANGE));
+        return new Entry(now, interval, latestChangeAt, now + averageTimeBetweenChanges);
+    }
+
+    private static class Entry {
+        private final long polledAt;
+        private final long interval;
+        private final long latestChangeAt;
+        private final long expectedChangeAt;
+
+        private Entry(long polledAt, long interval, long latestChangeAt, long expectedChangeAt) {
+            this.polledAt = polledAt;
+            this.interval = interval;
+            this.latestChangeAt = latestChangeAt;
+            this.expectedChangeAt = expectedChangeAt;
+        }
+    }
+}
@@ -53,6 +53,7 @@ public class MaterialUpdateListener implements GoMessageListener<MaterialUpdateM
 
         if (maintenanceModeService.isMaintenanceMode()) {
             LOGGER.debug("[Maintenance Mode] GoCD server is in 'maintenance' mode, skip performing MDU for material {}.", material);
+            mduPerformanceLogger.skippedMDU(message.trackingId(), material);
             channel.post(new MaterialUpdateSkippedMessage(material, message.trackingId()));
             return;
         }
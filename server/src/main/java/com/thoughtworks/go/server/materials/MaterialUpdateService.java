@@ -22,6 +22,7 @@ import com.thoughtworks.go.config.materials.PluggableSCMMaterial;
 import com.thoughtworks.go.config.materials.dependency.DependencyMaterial;
 import com.thoughtworks.go.config.materials.git.GitMaterial;
 import com.thoughtworks.go.config.materials.svn.SvnMaterial;
+import com.thoughtworks.go.config.remote.ConfigRepoConfig;
 import com.thoughtworks.go.domain.materials.Material;
 import com.thoughtworks.go.domain.materials.MaterialConfig;
 import com.thoughtworks.go.listener.ConfigChangedListener;
@@ -83,6 +84,7 @@ public class MaterialUpdateService implements GoMessageListener<MaterialUpdateCo
     private final PostCommitHookMaterialTypeResolver postCommitHookMaterialType;
     private final MDUPerformanceLogger mduPerformanceLogger;
     private final MaterialConfigConverter materialConfigConverter;
+    private final SharedGitRepositories sharedGitRepositories;
     private final Set<MaterialSource> materialSources = new HashSet<>();
     private final Set<MaterialUpdateCompleteListener> materialUpdateCompleteListeners = new HashSet<>();
     public static final String TYPE = "post_commit_hook_material_type";
@@ -94,7 +96,8 @@ public class MaterialUpdateService implements GoMessageListener<MaterialUpdateCo
                                  ServerHealthService serverHealthService, PostCommitHookMaterialTypeResolver postCommitHookMaterialType,
                                  MDUPerformanceLogger mduPerformanceLogger, MaterialConfigConverter materialConfigConverter,
                                  DependencyMaterialUpdateQueue dependencyMaterialUpdateQueue, MaintenanceModeService maintenanceModeService,
-                                 SecretParamResolver secretParamResolver, ExponentialBackoffService exponentialBackoffService) {
+                                 SecretParamResolver secretParamResolver, ExponentialBackoffService exponentialBackoffService,
+                                 SharedGitRepositories sharedGitRepositories) {
         this.watchList = watchList;
         this.goConfigService = goConfigService;
         this.systemEnvironment = systemEnvironment;
@@ -108,6 +111,7 @@ public class MaterialUpdateService implements GoMessageListener<MaterialUpdateCo
         this.maintenanceModeService = maintenanceModeService;
         this.secretParamResolver = secretParamResolver;
         this.exponentialBackoffService = exponentialBackoffService;
+        this.sharedGitRepositories = sharedGitRepositories;
         completed.addListener(this);
     }
 
@@ -193,8 +197,17 @@ public class MaterialUpdateService implements GoMessageListener<MaterialUpdateCo
         if (inProgressSince == null || !material.isAutoUpdate()) {
             LOGGER.debug("[Material Update] Starting update of material {}", material);
             try {
+                sharedGitRepositories.updateRequested(material);
                 long trackingId = mduPerformanceLogger.materialSentToUpdateQueue(material);
-                queueFor(material).post(new MaterialUpdateMessage(material, trackingId));
+                boolean posted = false;
+                try {
+                    queueFor(material).post(new MaterialUpdateMessage(material, trackingId));
+                    posted = true;
+                } finally {
+                    if (!posted) {
+                        mduPerformanceLogger.materialNotSentToUpdateQueue(trackingId, material);
+                    }
+                }
 
                 return true;
             } catch (RuntimeException e) {
@@ -260,6 +273,15 @@ public class MaterialUpdateService implements GoMessageListener<MaterialUpdateCo
                 serverHealthService.removeByScope(currentScope);
             }
         }
+        sharedGitRepositories.removeUnused(materialsPolledFor(newCruiseConfig));
+    }
+
+    private Set<Material> materialsPolledFor(CruiseConfig cruiseConfig) {
+        Set<MaterialConfig> materialConfigs = new HashSet<>(cruiseConfig.getAllUniqueMaterials());
+        for (ConfigRepoConfig configRepo : cruiseConfig.getConfigRepos()) {
+            materialConfigs.add(configRepo.getRepo());
+        }
+        return materialConfigConverter.toMaterials(materialConfigs);
     }
 
     protected EntityConfigChangedListener<PipelineConfig> pipelineConfigChangedListener() {
@@ -27,42 +27,33 @@ import com.thoughtworks.go.listener.ConfigChangedListener;
 import com.thoughtworks.go.listener.EntityConfigChangedListener;
 import com.thoughtworks.go.server.service.GoConfigService;
 import com.thoughtworks.go.server.service.MaterialConfigConverter;
-import com.thoughtworks.go.util.SystemEnvironment;
-import org.joda.time.DateTimeUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Date;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
- * Provides a list of unique SCMMaterials to be updated which will be consumed by MaterialUpdateService
+ * Provides a list of unique SCMMaterials to be updated which will be consumed by MaterialUpdateService, in the order
+ * {@link MaterialPollingSchedule} would have them polled
  */
 
 @Component
 public class SCMMaterialSource extends EntityConfigChangedListener<ConfigRepoConfig> implements ConfigChangedListener, MaterialSource, MaterialUpdateCompleteListener {
-    private static final Logger LOGGER = LoggerFactory.getLogger(SCMMaterialSource.class);
-
     private final GoConfigService goConfigService;
-    private ConcurrentMap<Material, Long> materialLastUpdateTimeMap = new ConcurrentHashMap<>();
     private final MaterialConfigConverter materialConfigConverter;
     private final MaterialUpdateService materialUpdateService;
-    private final long materialUpdateInterval;
+    private final MaterialPollingSchedule pollingSchedule;
     private Set<Material> schedulableMaterials;
 
     @Autowired
-    public SCMMaterialSource(GoConfigService goConfigService, SystemEnvironment systemEnvironment,
-                             MaterialConfigConverter materialConfigConverter, MaterialUpdateService materialUpdateService) {
+    public SCMMaterialSource(GoConfigService goConfigService, MaterialConfigConverter materialConfigConverter,
+                             MaterialUpdateService materialUpdateService, MaterialPollingSchedule pollingSchedule) {
         this.goConfigService = goConfigService;
         this.materialConfigConverter = materialConfigConverter;
         this.materialUpdateService = materialUpdateService;
-        this.materialUpdateInterval = systemEnvironment.getMaterialUpdateIdleInterval();
+        this.pollingSchedule = pollingSchedule;
     }
 
     public void initialize() {
@@ -81,13 +72,13 @@ public class SCMMaterialSource extends EntityConfigChangedListener<ConfigRepoCon
     public Set<Material> materialsForUpdate() {
         updateSchedulableMaterials(false);
 
-        return materialsWithUpdateIntervalElapsed();
+        return new LinkedHashSet<>(pollingSchedule.due(schedulableMaterials));
     }
 
     @Override
     public void onMaterialUpdate(Material material) {
         if (!(material instanceof DependencyMaterial)) {
-            updateLastUpdateTimeForScmMaterial(material);
+            pollingSchedule.polled(material);
         }
     }
 
@@ -111,33 +102,6 @@ public class SCMMaterialSource extends EntityConfigChangedListener<ConfigRepoCon
         };
     }
 
-    private Set<Material> materialsWithUpdateIntervalElapsed() {
-        Set<Material> materialsForUpdate = new HashSet<>();
-        for (Material material : schedulableMaterials) {
-            if (hasUpdateIntervalElapsedForScmMaterial(material)) {
-                materialsForUpdate.add(material);
-            }
-        }
-
-        return materialsForUpdate;
-    }
-
-    boolean hasUpdateIntervalElapsedForScmMaterial(Material material) {
-        Long lastMaterialUpdateTime = materialLastUpdateTimeMap.get(material);
-        if (lastMaterialUpdateTime != null) {
-            boolean shouldUpdateMaterial = (DateTimeUtils.currentTimeMillis() - lastMaterialUpdateTime) >= materialUpdateInterval;
-            if (LOGGER.isDebugEnabled() && !shouldUpdateMaterial) {
-                LOGGER.debug("[Material Update] Skipping update of material {} which has been last updated at {}", material, new Date(lastMaterialUpdateTime));
-            }
-            return shouldUpdateMaterial;
-        }
-        return true;
-    }
-
-    private void updateLastUpdateTimeForScmMaterial(Material material) {
-        materialLastUpdateTimeMap.put(material, DateTimeUtils.currentTimeMillis());
-    }
-
     private void updateSchedulableMaterials(boolean forceLoad) {
         if (forceLoad || schedulableMaterials == null) {
             schedulableMaterials = materialConfigConverter.toMaterials(goConfigService.getSchedulableSCMMaterials());
@@ -16,11 +16,13 @@
 package com.thoughtworks.go.server.materials;
 
 import com.thoughtworks.go.config.materials.SubprocessExecutionContext;
+import com.thoughtworks.go.config.materials.git.GitMaterial;
 import com.thoughtworks.go.domain.MaterialInstance;
 import com.thoughtworks.go.domain.MaterialRevisions;
 import com.thoughtworks.go.domain.materials.Material;
 import com.thoughtworks.go.domain.materials.Modification;
 import com.thoughtworks.go.domain.materials.Modifications;
+import com.thoughtworks.go.server.perf.MDUPerformanceLogger;
 import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.service.MaterialService;
 import org.slf4j.Logger;
@@ -39,30 +41,47 @@ class ScmMaterialUpdater implements MaterialUpdater {
     private final LegacyMaterialChecker materialChecker;
     private final SubprocessExecutionContext subprocessExecutionContext;
     private final MaterialService materialService;
+    private final MDUPerformanceLogger mduPerformanceLogger;
+    private final SharedGitRepositories sharedGitRepositories;
 
     @Autowired
     ScmMaterialUpdater(MaterialRepository materialRepository, LegacyMaterialChecker materialChecker,
-                       SubprocessExecutionContext subprocessExecutionContext, MaterialService materialService) {
+                       SubprocessExecutionContext subprocessExecutionContext, MaterialService materialService,
+                       MDUPerformanceLogger mduPerformanceLogger, SharedGitRepositories sharedGitRepositories) {
         this.materialRepository = materialRepository;
         this.materialChecker = materialChecker;
         this.subprocessExecutionContext = subprocessExecutionContext;
         this.materialService = materialService;
+        this.mduPerformanceLogger = mduPerformanceLogger;
+        this.sharedGitRepositories = sharedGitRepositories;
     }
 
     @Override
     public void insertLatestOrNewModifications(Material material, MaterialInstance materialInstance, File folder, Modifications list) {
-        List<Modification> newChanges = list.isEmpty() ?
-                materialChecker.findLatestModification(folder, material, subprocessExecutionContext) :
-                materialService.modificationsSince(material, folder, list.latestRevision(material), subprocessExecutionContext);
+        List<Modification> newChanges = findModifications(material, folder, list);
         if (newChanges.isEmpty()) {
             LOGGER.debug("[Material Update] Did not find any new modifications for material '{}' with flyweight '{}' using working directory '{}'", material, material.getFingerprint(), folder.getAbsolutePath());
         } else {
             LOGGER.info("[Material Update] Found '{}' modifications for material '{}' with flyweight '{}' using working directory '{}'", newChanges.size(), material, material.getFingerprint(), folder.getAbsolutePath());
 
-            materialRepository.saveModifications(materialInstance, newChanges);
+            long start = System.currentTimeMillis();
+            int rows = materialRepository.saveModifications(materialInstance, newChanges);
+            mduPerformanceLogger.savedModifications(material, newChanges.size(), rows, System.currentTimeMillis() - start);
         }
     }
 
+    private List<Modification> findModifications(Material material, File folder, Modifications list) {
+        if (sharedGitRepositories.canPoll(material)) {
+            GitMaterial gitMaterial = (GitMaterial) material;
+            return list.isEmpty() ?
+                    sharedGitRepositories.latestModification(gitMaterial) :
+                    sharedGitRepositories.modificationsSince(gitMaterial, list.latestRevision(material));
+        }
+        return list.isEmpty() ?
+                materialChecker.findLatestModification(folder, material, subprocessExecutionContext) :
+                materialService.modificationsSince(material, folder, list.latestRevision(material), subprocessExecutionContext);
+    }
+
     @Override
     public void addNewMaterialWithModifications(Material material, File folder) {
         MaterialRevisions materialRevisions = materialRepository.findLatestModification(material);
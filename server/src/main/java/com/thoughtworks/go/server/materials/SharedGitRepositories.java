@@ -0,0 +1,212 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.materials;
+
+import com.thoughtworks.go.config.materials.git.GitMaterial;
+import com.thoughtworks.go.domain.materials.Material;
+import com.thoughtworks.go.domain.materials.Modification;
+import com.thoughtworks.go.domain.materials.Revision;
+import com.thoughtworks.go.domain.materials.git.GitCommand;
+import com.thoughtworks.go.server.persistence.MaterialRepository;
+import com.thoughtworks.go.util.SystemEnvironment;
+import com.thoughtworks.go.util.command.InMemoryStreamConsumer;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.thoughtworks.go.util.FileUtil.createParentFolderIfNotExist;
+import static com.thoughtworks.go.util.command.ProcessOutputStreamConsumer.inMemoryConsumer;
+import static java.lang.String.format;
+
+/**
+ * Understands polling the git materials of a repository out of one working copy, rather than one working copy each.
+ * <p>
+ * Every update of such a material that is asked for adds its branch to those the working copy has to fetch. The first
+ * update to get to the working copy fetches all of them at once, and the updates of the other branches then find their
+ * branch fetched since they were asked for, so that pipelines building many branches of a repository cost one fetch.
+ */
+@Component
+public class SharedGitRepositories {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedGitRepositories.class);
+
+    private final MaterialRepository materialRepository;
+    private final SystemEnvironment systemEnvironment;
+    private final AtomicLong ticks = new AtomicLong();
+    private final ConcurrentMap<String, SharedRepository> repositories = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SharedGitRepositories(MaterialRepository materialRepository, SystemEnvironment systemEnvironment) {
+        this.materialRepository = materialRepository;
+        this.systemEnvironment = systemEnvironment;
+    }
+
+    public boolean canPoll(Material material) {
+        return systemEnvironment.get(SystemEnvironment.MDU_SHARE_GIT_REPOSITORIES)
+                && !systemEnvironment.get(SystemEnvironment.GO_SERVER_SHALLOW_CLONE)
+                && material instanceof GitMaterial
+                && ((GitMaterial) material).canPollFromSharedRepository();
+    }
+
+    /**
+     * Remembers that an update of the material has been asked for, so that its branch is fetched along with the others
+     * the next time its repository is fetched.
+     */
+    public void updateRequested(Material material) {
+        if (canPoll(material)) {
+            GitMaterial gitMaterial = (GitMaterial) material;
+            repositoryFor(gitMaterial).requested(gitMaterial.getBranch());
+        }
+    }
+
+    public List<Modification> latestModification(GitMaterial material) {
+        return repositoryFor(material).fetch(material).latestFetchedModification();
+    }
+
+    public List<Modification> modificationsSince(GitMaterial material, Revision revision) {
+        GitCommand git = repositoryFor(material).fetch(material);
+        if (git.isRevisionInRemoteBranch(revision)) {
+            return git.fetchedModificationsSince(revision);
+        }
+        return git.latestFetchedModification();
+    }
+
+    /**
+     * Deletes the working copies that none of the given materials can be polled from, such as those of repositories
+     * no longer in the config.
+     */
+    public void removeUnused(Collection<Material> materials) {
+        Set<String> used = new HashSet<>();
+        for (Material material : materials) {
+            if (canPoll(material)) {
+                used.add(((GitMaterial) material).sharedRepositoryKey());
+            }
+        }
+
+        Set<String> unused = new HashSet<>(repositories.keySet());
+        unused.addAll(materialRepository.sharedRepositoryKeysOnDisk());
+        unused.removeAll(used);
+        for (String key : unused) {
+            repositories.compute(key, (k, repository) -> {
+                if (repository == null) {
+                    deleteWorkingCopy(materialRepository.sharedFolderFor(k));
+                } else {
+                    repository.delete();
+                }
+                return null;
+            });
+        }
+    }
+
+    private static void deleteWorkingCopy(File workingDir) {
+        LOGGER.info("[Material Update] Deleting working copy {}, which is no longer shared by any material", workingDir);
+        FileUtils.deleteQuietly(workingDir);
+    }
+
+    private SharedRepository repositoryFor(GitMaterial material) {
+        return repositories.computeIfAbsent(material.sharedRepositoryKey(), key -> new SharedRepository(materialRepository.sharedFolderFor(material)));
+    }
+
+    private class SharedRepository {
+        private final File workingDir;
+        // when an update of each branch was last asked for, and when the last fetch of each branch started, in ticks
+        private final Map<String, Long> requested = new HashMap<>();
+        private final Map<String, Long> fetched = new HashMap<>();
+
+        private SharedRepository(File workingDir) {
+            this.workingDir = workingDir;
+        }
+
+        synchronized void delete() {
+            deleteWorkingCopy(workingDir);
+            requested.clear();
+            fetched.clear();
+        }
+
+        synchronized void requested(String branch) {
+            requested.put(branch, ticks.incrementAndGet());
+        }
+
+        synchronized GitCommand fetch(GitMaterial material) {
+            String branch = material.getBranch();
+            GitCommand git = material.sharedRepositoryCommand(workingDir);
+            long requestedAt = requested.computeIfAbsent(branch, b -> ticks.incrementAndGet());
+            if (fetched.getOrDefault(branch, 0L) > requestedAt) {
+                return git;
+            }
+
+            InMemoryStreamConsumer output = inMemoryConsumer();
+            boolean created = initIfRequired(git, material, output);
+            long startedAt = ticks.incrementAndGet();
+            Set<String> branches = pendingBranches();
+            try {
+                try {
+                    git.fetchBranches(output, material.urlForCommandLine(), branches);
+                } catch (RuntimeException e) {
+                    if (branches.size() == 1) {
+                        throw e;
+                    }
+                    // one of the other branches may be gone; they will each be fetched on their own instead
+                    LOGGER.warn("[Material Update] Could not fetch {} branches of {} at once, fetching {} alone", branches.size(), material.getUriForDisplay(), branch);
+                    requested.keySet().removeIf(other -> !other.equals(branch) && branches.contains(other));
+                    branches.clear();
+                    branches.add(branch);
+                    git.fetchBranches(output, material.urlForCommandLine(), branches);
+                }
+            } catch (RuntimeException e) {
+                if (created) {
+                    FileUtils.deleteQuietly(workingDir);
+                }
+                throw new RuntimeException(format("Remote branch %s not found, or it could not be fetched into %s\n%s", branch, workingDir, output.getStdError()), e);
+            }
+            branches.forEach(fetchedBranch -> fetched.put(fetchedBranch, startedAt));
+            return git;
+        }
+
+        private Set<String> pendingBranches() {
+            Set<String> pending = new TreeSet<>();
+            requested.forEach((branch, requestedAt) -> {
+                if (fetched.getOrDefault(branch, 0L) < requestedAt) {
+                    pending.add(branch);
+                }
+            });
+            return pending;
+        }
+
+        private boolean initIfRequired(GitCommand git, GitMaterial material, InMemoryStreamConsumer output) {
+            if (new File(workingDir, ".git").isDirectory()) {
+                return false;
+            }
+            LOGGER.debug("[Material Update] Creating working copy {} shared by the materials of {}", workingDir, material.getUriForDisplay());
+            FileUtils.deleteQuietly(workingDir);
+            createParentFolderIfNotExist(workingDir);
+            fetched.clear();
+            int returnValue = git.initWithRemote(output, material.getUrl());
+            if (returnValue != 0) {
+                FileUtils.deleteQuietly(workingDir);
+                throw new RuntimeException(format("Failed to create git working copy %s\n%s", workingDir, output.getStdError()));
+            }
+            return true;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.thoughtworks.go.server.messaging;
 import com.thoughtworks.go.server.messaging.activemq.JMSMessageListenerAdapter;
 
 import javax.jms.JMSException;
+import java.util.Map;
 
 public interface MessagingService {
     MessageSender createSender(String topic);
@@ -32,4 +33,9 @@ public interface MessagingService {
 
     MessageSender createQueueSender(String queueName);
 
+    /**
+     * @return how many messages each topic and queue has had, and how long they took to be taken
+     */
+    Map<String, Object> statistics();
+
 }
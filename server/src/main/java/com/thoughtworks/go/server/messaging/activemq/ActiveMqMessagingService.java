@@ -27,17 +27,18 @@ import org.apache.activemq.broker.BrokerService;
 import org.apache.activemq.broker.ConnectionContext;
 import org.apache.activemq.broker.region.Destination;
 import org.apache.activemq.broker.region.Subscription;
+import org.apache.activemq.broker.region.DestinationStatistics;
 import org.apache.activemq.command.ActiveMQQueue;
 import org.apache.activemq.util.BrokerSupport;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
 
 import javax.jms.*;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static com.thoughtworks.go.util.ExceptionUtils.bomb;
 
-@Component
 public class ActiveMqMessagingService implements MessagingService {
 
     private static final String BROKER_NAME = "go-server";
@@ -49,7 +50,6 @@ public class ActiveMqMessagingService implements MessagingService {
     private final SystemEnvironment systemEnvironment;
     private ServerHealthService serverHealthService;
 
-    @Autowired
     public ActiveMqMessagingService(DaemonThreadStatsCollector daemonThreadStatsCollector, SystemEnvironment systemEnvironment, ServerHealthService serverHealthService) throws Exception {
         this.daemonThreadStatsCollector = daemonThreadStatsCollector;
         this.systemEnvironment = systemEnvironment;
@@ -139,6 +139,26 @@ public class ActiveMqMessagingService implements MessagingService {
         }
     }
 
+    @Override
+    public Map<String, Object> statistics() {
+        Map<String, Object> json = new TreeMap<>();
+        try {
+            broker.getBroker().getDestinationMap().forEach((destination, brokerDestination) -> {
+                DestinationStatistics statistics = brokerDestination.getDestinationStatistics();
+                Map<String, Object> destinationJson = new LinkedHashMap<>();
+                destinationJson.put("Waiting", statistics.getMessages().getCount());
+                destinationJson.put("Sent", statistics.getEnqueues().getCount());
+                destinationJson.put("Received", statistics.getDequeues().getCount());
+                destinationJson.put("Expired", statistics.getExpired().getCount());
+                destinationJson.put("Average Processing Time (ms)", (long) statistics.getProcessTime().getAverageTime());
+                json.put((destination.isTopic() ? "Topic " : "Queue ") + destination.getPhysicalName(), destinationJson);
+            });
+        } catch (Exception e) {
+            throw bomb(e);
+        }
+        return json;
+    }
+
     @Override
     public void stop() throws JMSException {
         connection.close();
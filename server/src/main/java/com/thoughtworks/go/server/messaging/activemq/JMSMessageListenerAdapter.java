@@ -35,16 +35,16 @@ import static com.thoughtworks.go.serverhealth.HealthStateScope.GLOBAL;
 public class JMSMessageListenerAdapter implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(JMSMessageListenerAdapter.class);
 
-    private final MessageConsumer consumer;
+    private final MessageSource source;
     private final GoMessageListener listener;
     private final DaemonThreadStatsCollector daemonThreadStatsCollector;
     private SystemEnvironment systemEnvironment;
     private ServerHealthService serverHealthService;
     public Thread thread;
 
-    private JMSMessageListenerAdapter(MessageConsumer consumer, GoMessageListener listener, DaemonThreadStatsCollector daemonThreadStatsCollector,
+    private JMSMessageListenerAdapter(MessageSource source, GoMessageListener listener, DaemonThreadStatsCollector daemonThreadStatsCollector,
                                       SystemEnvironment systemEnvironment, ServerHealthService serverHealthService) {
-        this.consumer = consumer;
+        this.source = source;
         this.listener = listener;
         this.daemonThreadStatsCollector = daemonThreadStatsCollector;
         this.systemEnvironment = systemEnvironment;
@@ -67,20 +67,19 @@ public class JMSMessageListenerAdapter implements Runnable {
     }
 
     public void stop() throws JMSException {
-        consumer.close();
+        source.close();
     }
 
     protected boolean runImpl() {
         try {
-            Message message = consumer.receive();
+            GoMessage message = source.receive();
             if (message == null) {
                 LOG.debug("Message consumer was closed.");
                 return true;
             }
 
-            ObjectMessage omessage = (ObjectMessage) message;
             daemonThreadStatsCollector.captureStats(thread.getId());
-            listener.onMessage((GoMessage) omessage.getObject());
+            listener.onMessage(message);
         } catch (JMSException e) {
             slowDownAndWarnAboutPossibleProblems(e);
         } catch (Exception e) {
@@ -107,7 +106,34 @@ public class JMSMessageListenerAdapter implements Runnable {
 
     public static JMSMessageListenerAdapter startListening(MessageConsumer consumer, GoMessageListener listener, DaemonThreadStatsCollector daemonThreadStatsCollector, SystemEnvironment systemEnvironment, ServerHealthService serverHealthService)
             throws JMSException {
-        return new JMSMessageListenerAdapter(consumer, listener, daemonThreadStatsCollector, systemEnvironment, serverHealthService);
+        return startListening(new MessageSource() {
+            @Override
+            public GoMessage receive() throws JMSException {
+                Message message = consumer.receive();
+                return message == null ? null : (GoMessage) ((ObjectMessage) message).getObject();
+            }
+
+            @Override
+            public void close() throws JMSException {
+                consumer.close();
+            }
+        }, listener, daemonThreadStatsCollector, systemEnvironment, serverHealthService);
+    }
+
+    public static JMSMessageListenerAdapter startListening(MessageSource source, GoMessageListener listener, DaemonThreadStatsCollector daemonThreadStatsCollector, SystemEnvironment systemEnvironment, ServerHealthService serverHealthService) {
+        return new JMSMessageListenerAdapter(source, listener, daemonThreadStatsCollector, systemEnvironment, serverHealthService);
+    }
+
+    /**
+     * Understands giving a listener the messages sent to it, one at a time.
+     */
+    public interface MessageSource {
+        /**
+         * @return the next message, waiting for one to be sent if need be, or null once no more will be
+         */
+        GoMessage receive() throws JMSException;
+
+        void close() throws JMSException;
     }
 
 }
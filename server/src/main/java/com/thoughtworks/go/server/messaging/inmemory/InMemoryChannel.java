@@ -0,0 +1,126 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.inmemory;
+
+import com.thoughtworks.go.server.messaging.GoMessage;
+import com.thoughtworks.go.server.messaging.activemq.JMSMessageListenerAdapter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.thoughtworks.go.util.ExceptionUtils.bomb;
+
+/**
+ * Understands handing the messages sent to it to the listeners taking them from it, each message to one listener only,
+ * in the order they were sent. It holds as many messages as it was made to, after which sending waits for listeners to
+ * take some.
+ */
+class InMemoryChannel implements InMemoryDestination, JMSMessageListenerAdapter.MessageSource {
+    private static final Envelope CLOSED = new Envelope(null, 0, 0);
+
+    private final BlockingQueue<Envelope> messages;
+    private volatile boolean closed;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder totalWait = new LongAdder();
+    private final LongAccumulator longestWait = new LongAccumulator(Math::max, 0);
+
+    InMemoryChannel(int capacity) {
+        this.messages = new LinkedBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public void send(GoMessage message, long timeToLive) {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            messages.put(new Envelope(message, now, timeToLive > 0 ? now + timeToLive : Long.MAX_VALUE));
+            sent.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw bomb(e);
+        }
+    }
+
+    @Override
+    public GoMessage receive() {
+        try {
+            while (true) {
+                Envelope envelope = messages.take();
+                if (envelope == CLOSED) {
+                    // leave it for the other listeners, so that they stop too
+                    messages.offer(CLOSED);
+                    return null;
+                }
+                long now = System.currentTimeMillis();
+                if (now > envelope.expiresAt) {
+                    expired.increment();
+                    continue;
+                }
+                received.increment();
+                totalWait.add(now - envelope.sentAt);
+                longestWait.accumulate(now - envelope.sentAt);
+                return envelope.message;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        messages.clear();
+        messages.offer(CLOSED);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public Map<String, Object> statistics() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Waiting", closed ? 0 : messages.size());
+        json.put("Sent", sent.sum());
+        json.put("Received", received.sum());
+        json.put("Expired", expired.sum());
+        json.put("Average Wait (ms)", received.sum() == 0 ? 0 : totalWait.sum() / received.sum());
+        json.put("Longest Wait (ms)", longestWait.get());
+        return json;
+    }
+
+    private static class Envelope {
+        private final GoMessage message;
+        private final long sentAt;
+        private final long expiresAt;
+
+        private Envelope(GoMessage message, long sentAt, long expiresAt) {
+            this.message = message;
+            this.sentAt = sentAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
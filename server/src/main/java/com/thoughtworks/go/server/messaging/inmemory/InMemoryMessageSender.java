@@ -0,0 +1,46 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.inmemory;
+
+import com.thoughtworks.go.server.messaging.GoMessage;
+import com.thoughtworks.go.server.messaging.GoTextMessage;
+import com.thoughtworks.go.server.messaging.MessageSender;
+
+import java.util.function.Supplier;
+
+public class InMemoryMessageSender implements MessageSender {
+    // the destination a queue sender sends to goes away when the queue is removed, and comes back when it is used again
+    private final Supplier<InMemoryDestination> destination;
+
+    InMemoryMessageSender(Supplier<InMemoryDestination> destination) {
+        this.destination = destination;
+    }
+
+    @Override
+    public void sendMessage(GoMessage goMessage) {
+        destination.get().send(goMessage, 0);
+    }
+
+    @Override
+    public void sendMessage(GoMessage goMessage, long timeToLive) {
+        destination.get().send(goMessage, timeToLive);
+    }
+
+    @Override
+    public void sendText(String message) {
+        destination.get().send(new GoTextMessage(message), 0);
+    }
+}
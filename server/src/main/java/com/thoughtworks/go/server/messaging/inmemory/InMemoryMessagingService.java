@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.inmemory;
+
+import com.thoughtworks.go.server.messaging.GoMessageListener;
+import com.thoughtworks.go.server.messaging.MessageSender;
+import com.thoughtworks.go.server.messaging.MessagingService;
+import com.thoughtworks.go.server.messaging.activemq.JMSMessageListenerAdapter;
+import com.thoughtworks.go.server.service.support.DaemonThreadStatsCollector;
+import com.thoughtworks.go.serverhealth.ServerHealthService;
+import com.thoughtworks.go.util.SystemEnvironment;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Understands passing messages between the threads of the server through queues in memory, rather than through a
+ * message broker. Messages are handed to listeners as they were sent, without being copied or serialized.
+ */
+public class InMemoryMessagingService implements MessagingService {
+    private final DaemonThreadStatsCollector daemonThreadStatsCollector;
+    private final SystemEnvironment systemEnvironment;
+    private final ServerHealthService serverHealthService;
+    private final int capacity;
+
+    private final ConcurrentMap<String, InMemoryTopic> topics = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, InMemoryChannel> queues = new ConcurrentHashMap<>();
+
+    public InMemoryMessagingService(DaemonThreadStatsCollector daemonThreadStatsCollector, SystemEnvironment systemEnvironment, ServerHealthService serverHealthService) {
+        this.daemonThreadStatsCollector = daemonThreadStatsCollector;
+        this.systemEnvironment = systemEnvironment;
+        this.serverHealthService = serverHealthService;
+        this.capacity = systemEnvironment.get(SystemEnvironment.IN_MEMORY_MESSAGING_CAPACITY);
+    }
+
+    @Override
+    public MessageSender createSender(String topic) {
+        return new InMemoryMessageSender(() -> topic(topic));
+    }
+
+    @Override
+    public JMSMessageListenerAdapter addListener(String topic, GoMessageListener listener) {
+        return JMSMessageListenerAdapter.startListening(topic(topic).subscribe(), listener, daemonThreadStatsCollector, systemEnvironment, serverHealthService);
+    }
+
+    @Override
+    public MessageSender createQueueSender(String queueName) {
+        return new InMemoryMessageSender(() -> queue(queueName));
+    }
+
+    @Override
+    public JMSMessageListenerAdapter addQueueListener(String queueName, GoMessageListener listener) {
+        return JMSMessageListenerAdapter.startListening(queue(queueName), listener, daemonThreadStatsCollector, systemEnvironment, serverHealthService);
+    }
+
+    @Override
+    public void removeQueue(String queueName) {
+        InMemoryChannel queue = queues.remove(queueName);
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    @Override
+    public void stop() {
+        topics.values().forEach(InMemoryTopic::close);
+        topics.clear();
+        queues.values().forEach(InMemoryChannel::close);
+        queues.clear();
+    }
+
+    @Override
+    public Map<String, Object> statistics() {
+        Map<String, Object> json = new TreeMap<>();
+        topics.forEach((name, topic) -> json.put("Topic " + name, topic.statistics()));
+        queues.forEach((name, queue) -> json.put("Queue " + name, queue.statistics()));
+        return json;
+    }
+
+    private InMemoryTopic topic(String name) {
+        return topics.computeIfAbsent(name, n -> new InMemoryTopic(capacity));
+    }
+
+    private InMemoryChannel queue(String name) {
+        return queues.computeIfAbsent(name, n -> new InMemoryChannel(capacity));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.inmemory;
+
+import com.thoughtworks.go.server.messaging.GoMessage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Understands handing every message sent to it to each of the listeners subscribed to it at the time.
+ */
+class InMemoryTopic implements InMemoryDestination {
+    private final int capacity;
+    private final List<InMemoryChannel> subscribers = new CopyOnWriteArrayList<>();
+
+    InMemoryTopic(int capacity) {
+        this.capacity = capacity;
+    }
+
+    InMemoryChannel subscribe() {
+        subscribers.removeIf(InMemoryChannel::isClosed);
+        InMemoryChannel subscriber = new InMemoryChannel(capacity);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    @Override
+    public void send(GoMessage message, long timeToLive) {
+        for (InMemoryChannel subscriber : subscribers) {
+            subscriber.send(message, timeToLive);
+        }
+    }
+
+    void close() {
+        subscribers.forEach(InMemoryChannel::close);
+        subscribers.clear();
+    }
+
+    @Override
+    public Map<String, Object> statistics() {
+        List<InMemoryChannel> current = new ArrayList<>(subscribers);
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Subscribers", current.size());
+        for (int i = 0; i < current.size(); i++) {
+            json.put("Subscriber " + (i + 1), current.get(i).statistics());
+        }
+        return json;
+    }
+}
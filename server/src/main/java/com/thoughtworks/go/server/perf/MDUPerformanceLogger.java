@@ -19,10 +19,32 @@ import com.thoughtworks.go.domain.materials.Material;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs what happens to each material update, and keeps count of how long updates wait in the queue and how they end,
+ * for the support page to show how saturated material updates are.
+ */
 @Component
 public class MDUPerformanceLogger {
     private PerformanceLogger performanceLogger;
-    private static long currentTrackingId = 0;
+    private static final AtomicLong currentTrackingId = new AtomicLong();
+
+    // when each update still waiting to be picked up was queued
+    private final ConcurrentMap<Long, Long> queuedAt = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder totalWaitInMillis = new LongAdder();
+    private final AtomicLong longestWaitInMillis = new AtomicLong();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
 
     @Autowired
     public MDUPerformanceLogger(PerformanceLogger performanceLogger) {
@@ -30,26 +52,71 @@ public class MDUPerformanceLogger {
     }
 
     public long materialSentToUpdateQueue(Material material) {
-        long trackingId = currentTrackingId++;
+        long trackingId = currentTrackingId.getAndIncrement();
+        queuedAt.put(trackingId, System.currentTimeMillis());
 
         performanceLogger.log("MDU-QUEUE-PUT {} {} {}", trackingId, material.getFingerprint(), material.getDisplayName());
         return trackingId;
     }
 
+    public void materialNotSentToUpdateQueue(long trackingId, Material material) {
+        queuedAt.remove(trackingId);
+        performanceLogger.log("MDU-QUEUE-FAIL {} {} {}", trackingId, material.getFingerprint(), material.getDisplayName());
+    }
+
     public void pickedUpMaterialForMDU(long trackingId, Material material) {
+        Long queuedTime = queuedAt.remove(trackingId);
+        if (queuedTime != null) {
+            long wait = System.currentTimeMillis() - queuedTime;
+            totalWaitInMillis.add(wait);
+            longestWaitInMillis.accumulateAndGet(wait, Math::max);
+        }
+        started.increment();
+        running.incrementAndGet();
         performanceLogger.log("MDU-START {} {} {}", trackingId, material.getFingerprint(), material.getDisplayName());
     }
 
     public void postingMessageAboutMDUCompletion(long trackingId, Material material) {
+        completed.increment();
+        running.decrementAndGet();
         performanceLogger.log("MDU-DONE {} {} {}", trackingId, material.getFingerprint(), material.getDisplayName());
     }
 
     public void postingMessageAboutMDUFailure(long trackingId, Material material) {
+        failed.increment();
+        running.decrementAndGet();
         performanceLogger.log("MDU-FAIL {} {} {}", trackingId, material.getFingerprint(), material.getDisplayName());
     }
 
+    public void skippedMDU(long trackingId, Material material) {
+        queuedAt.remove(trackingId);
+        skipped.increment();
+        performanceLogger.log("MDU-SKIP {} {} {}", trackingId, material.getFingerprint(), material.getDisplayName());
+    }
+
+    public void savedModifications(Material material, int modifications, int rows, long durationInMillis) {
+        long rowsPerSecond = durationInMillis == 0 ? rows * 1000L : rows * 1000L / durationInMillis;
+        performanceLogger.log("MDU-SAVE-MODIFICATIONS {} {} {} {} {} {}", material.getFingerprint(), material.getDisplayName(), modifications, rows, durationInMillis, rowsPerSecond);
+    }
+
     public void completionMessageForMaterialReceived(long trackingId, Material material) {
         performanceLogger.log("MDU-QUEUE-REMOVE {} {} {}", trackingId, material.getFingerprint(), material.getDisplayName());
     }
 
+    public Map<String, Object> statistics() {
+        long now = System.currentTimeMillis();
+        long oldestQueuedAt = queuedAt.values().stream().mapToLong(Long::longValue).min().orElse(now);
+        long startedCount = started.sum();
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Updates Waiting In Queue", queuedAt.size());
+        json.put("Updates Running", running.get());
+        json.put("Longest Current Wait (ms)", now - oldestQueuedAt);
+        json.put("Average Wait Before Starting (ms)", startedCount == 0 ? 0 : totalWaitInMillis.sum() / startedCount);
+        json.put("Longest Wait Before Starting (ms)", longestWaitInMillis.get());
+        json.put("Updates Completed", completed.sum());
+        json.put("Updates Failed", failed.sum());
+        json.put("Updates Skipped", skipped.sum());
+        return json;
+    }
 }
@@ -19,6 +19,7 @@ import com.thoughtworks.go.config.CaseInsensitiveString;
 import com.thoughtworks.go.config.materials.AbstractMaterial;
 import com.thoughtworks.go.config.materials.MaterialConfigs;
 import com.thoughtworks.go.config.materials.Materials;
+import com.thoughtworks.go.config.materials.git.GitMaterial;
 import com.thoughtworks.go.domain.*;
 import com.thoughtworks.go.domain.materials.*;
 import com.thoughtworks.go.domain.materials.dependency.DependencyMaterialInstance;
@@ -36,6 +37,7 @@ import com.thoughtworks.go.server.util.CollectionUtil;
 import com.thoughtworks.go.server.util.Pagination;
 import com.thoughtworks.go.util.SystemEnvironment;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.hibernate.*;
 import org.hibernate.criterion.*;
 import org.hibernate.type.LongType;
@@ -67,6 +69,7 @@ import static org.hibernate.criterion.Restrictions.isNull;
 @Component
 public class MaterialRepository extends HibernateDaoSupport {
     private static final Logger LOGGER = LoggerFactory.getLogger(MaterialRepository.class.getName());
+    private static final String SHARED_GIT_FOLDER_PREFIX = "shared-git-";
 
     private final GoCache goCache;
     private final TransactionSynchronizationManager transactionSynchronizationManager;
@@ -418,6 +421,11 @@ public class MaterialRepository extends HibernateDaoSupport {
         return (MaterialRepository.class.getName() + "_materialModificationsWithPagination_" + materialInstance.getId()).intern();
     }
 
+    String latestModificationTimesKey(MaterialInstance materialInstance) {
+        // we intern() it because we might synchronize on the returned String
+        return (MaterialRepository.class.getName() + "_latestModificationTimes_" + materialInstance.getId()).intern();
+    }
+
     String materialModificationsWithPaginationSubKey(Pagination pagination) {
         return String.format("%s-%s", pagination.getOffset(), pagination.getPageSize());
     }
@@ -709,6 +717,18 @@ public class MaterialRepository extends HibernateDaoSupport {
         });
     }
 
+    private void removeCachedModificationTimesFor(final MaterialInstance materialInstance) {
+        transactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                String key = latestModificationTimesKey(materialInstance);
+                synchronized (key) {
+                    goCache.remove(key);
+                }
+            }
+        });
+    }
+
     Modifications cachedModifications(MaterialInstance materialInstance) {
         return goCache.get(latestMaterialModificationsKey(materialInstance));
     }
@@ -749,9 +769,12 @@ public class MaterialRepository extends HibernateDaoSupport {
         }
     }
 
-    public void saveModifications(MaterialInstance materialInstance, List<Modification> newChanges) {
+    /**
+     * @return the number of rows inserted, modified files included
+     */
+    public int saveModifications(MaterialInstance materialInstance, List<Modification> newChanges) {
         if (newChanges.isEmpty()) {
-            return;
+            return 0;
         }
         List<Modification> list = new ArrayList<>(newChanges);
         Collections.reverse(list);
@@ -759,10 +782,16 @@ public class MaterialRepository extends HibernateDaoSupport {
             modification.setMaterialInstance(materialInstance);
         }
 
+        int rowsInserted = 0;
         try {
             checkAndRemoveDuplicates(materialInstance, newChanges, list);
-            for (Modification modification : list) {
-                getHibernateTemplate().saveOrUpdate(modification);
+            if (shouldInsertInBatches(list)) {
+                rowsInserted = insertInBatches(list);
+            } else {
+                for (Modification modification : list) {
+                    getHibernateTemplate().saveOrUpdate(modification);
+                    rowsInserted += 1 + modification.getModifiedFiles().size();
+                }
             }
         } catch (Exception e) {
             String message = "Cannot save modification: ";
@@ -772,6 +801,24 @@ public class MaterialRepository extends HibernateDaoSupport {
         removeLatestCachedModification(materialInstance);
         removeCachedModificationCountFor(materialInstance);
         removeCachedModificationsFor(materialInstance);
+        removeCachedModificationTimesFor(materialInstance);
+        return rowsInserted;
+    }
+
+    private boolean shouldInsertInBatches(List<Modification> modifications) {
+        return modifications.size() >= new SystemEnvironment().get(SystemEnvironment.MODIFICATIONS_BULK_INSERT_THRESHOLD)
+            && modifications.stream().noneMatch(Modification::hasId);
+    }
+
+    private int insertInBatches(List<Modification> modifications) {
+        ModificationBatchInserter inserter = new ModificationBatchInserter(new SystemEnvironment().get(SystemEnvironment.MODIFICATIONS_BULK_INSERT_BATCH_SIZE));
+        return getHibernateTemplate().execute(session -> {
+            // anything Hibernate has not written yet, like a new material instance, has to be there before these rows
+            session.flush();
+            int[] rowsInserted = new int[1];
+            session.doWork(connection -> rowsInserted[0] = inserter.insert(connection, modifications));
+            return rowsInserted[0];
+        });
     }
 
     private void checkAndRemoveDuplicates(MaterialInstance materialInstance,
@@ -780,20 +827,23 @@ public class MaterialRepository extends HibernateDaoSupport {
         if (!new SystemEnvironment().get(SystemEnvironment.CHECK_AND_REMOVE_DUPLICATE_MODIFICATIONS)) {
             return;
         }
-        DetachedCriteria criteria = DetachedCriteria.forClass(Modification.class);
-        criteria.setProjection(Projections.projectionList().add(Projections.property("revision")));
-        criteria.add(Restrictions.eq("materialInstance.id", materialInstance.getId()));
         ArrayList<String> revisions = new ArrayList<>();
         for (Modification modification : newChanges) {
             revisions.add(modification.getRevision());
         }
-        criteria.add(Restrictions.in("revision", revisions));
-        @SuppressWarnings("unchecked") List<String> matchingRevisionsFromDb = (List<String>) getHibernateTemplate().findByCriteria(criteria);
+
+        // looked up in chunks, as databases limit how many values an IN clause may have
+        Set<String> matchingRevisionsFromDb = new LinkedHashSet<>();
+        for (List<String> chunk : ListUtils.partition(revisions, 1000)) {
+            DetachedCriteria criteria = DetachedCriteria.forClass(Modification.class);
+            criteria.setProjection(Projections.projectionList().add(Projections.property("revision")));
+            criteria.add(Restrictions.eq("materialInstance.id", materialInstance.getId()));
+            criteria.add(Restrictions.in("revision", chunk));
+            @SuppressWarnings("unchecked") List<String> matches = (List<String>) getHibernateTemplate().findByCriteria(criteria);
+            matchingRevisionsFromDb.addAll(matches);
+        }
         if (!matchingRevisionsFromDb.isEmpty()) {
-            for (final String revision : matchingRevisionsFromDb) {
-                Modification modification = list.stream().filter(item -> item.getRevision().equals(revision)).findFirst().orElse(null);
-                list.remove(modification);
-            }
+            list.removeIf(item -> matchingRevisionsFromDb.contains(item.getRevision()));
         }
         if (!newChanges.isEmpty() && list.isEmpty()) {
             LOGGER.debug("All modifications already exist in db [{}]", revisions);
@@ -980,6 +1030,35 @@ public class MaterialRepository extends HibernateDaoSupport {
         return modifications;
     }
 
+    /**
+     * @return when the latest modifications of the material were made, latest first. They are cached until new
+     * modifications of the material are saved, so that asking after every poll does not query the database.
+     */
+    public List<Date> latestModificationTimes(Material material, int count) {
+        MaterialInstance materialInstance = findMaterialInstance(material);
+        if (materialInstance == null) {
+            return Collections.emptyList();
+        }
+        String key = latestModificationTimesKey(materialInstance);
+        String subKey = String.valueOf(count);
+        @SuppressWarnings("unchecked") List<Date> modifiedTimes = (List<Date>) goCache.get(key, subKey);
+        if (modifiedTimes == null) {
+            synchronized (key) {
+                modifiedTimes = (List<Date>) goCache.get(key, subKey);
+                if (modifiedTimes == null) {
+                    modifiedTimes = getHibernateTemplate().execute(session -> {
+                        Query q = session.createQuery("SELECT modifiedTime FROM Modification WHERE materialId = ? AND modifiedTime IS NOT NULL ORDER BY id DESC");
+                        q.setMaxResults(count);
+                        q.setLong(0, materialInstance.getId());
+                        return new ArrayList<Date>(q.list());
+                    });
+                    goCache.put(key, subKey, modifiedTimes);
+                }
+            }
+        }
+        return modifiedTimes;
+    }
+
     public Long latestModificationRunByPipeline(final CaseInsensitiveString pipelineName, final Material material) {
         final long materialId = findMaterialInstance(material).getId();
         String key = cacheKeyForLatestPmrForPipelineKey(materialId, pipelineName.toLower());
@@ -1025,6 +1104,31 @@ public class MaterialRepository extends HibernateDaoSupport {
         return new File(new File("pipelines", "flyweight"), materialInstance.getFlyweightName());
     }
 
+    /**
+     * @return the working copy shared by the git materials of a repository, next to those returned by {@link #folderFor}
+     */
+    public File sharedFolderFor(GitMaterial material) {
+        return sharedFolderFor(material.sharedRepositoryKey());
+    }
+
+    public File sharedFolderFor(String sharedRepositoryKey) {
+        return new File(new File("pipelines", "flyweight"), SHARED_GIT_FOLDER_PREFIX + sharedRepositoryKey);
+    }
+
+    /**
+     * @return the keys of the shared working copies there are folders for
+     */
+    public Set<String> sharedRepositoryKeysOnDisk() {
+        Set<String> keys = new HashSet<>();
+        File[] folders = new File("pipelines", "flyweight").listFiles((dir, name) -> name.startsWith(SHARED_GIT_FOLDER_PREFIX));
+        if (folders != null) {
+            for (File folder : folders) {
+                keys.add(folder.getName().substring(SHARED_GIT_FOLDER_PREFIX.length()));
+            }
+        }
+        return keys;
+    }
+
     public List<Modification> getLatestModificationForEachMaterial() {
         String queryString = "SELECT mods.* " +
             "FROM (" +
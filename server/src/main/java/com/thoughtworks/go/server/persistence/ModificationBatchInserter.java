@@ -0,0 +1,112 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.persistence;
+
+import com.thoughtworks.go.domain.materials.Modification;
+import com.thoughtworks.go.domain.materials.ModifiedFile;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Understands inserting a lot of modifications, and their modified files, with as few round trips to the database
+ * as it takes. Rows go in JDBC batches, and the ids the database generates are set back on the inserted objects, as
+ * Hibernate would have done when saving them one by one.
+ */
+class ModificationBatchInserter {
+    private static final String INSERT_MODIFICATION = "INSERT INTO modifications " +
+            "(revision, comment, emailAddress, modifiedTime, userName, pipelineLabel, pipelineId, additionalData, materialId) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_MODIFIED_FILE = "INSERT INTO modifiedFiles " +
+            "(action, fileName, folderName, modificationId) " +
+            "VALUES (?, ?, ?, ?)";
+    private static final String[] GENERATED_ID = {"id"};
+
+    private final int batchSize;
+
+    ModificationBatchInserter(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the number of rows inserted, modified files included
+     */
+    int insert(Connection connection, List<Modification> modifications) throws SQLException {
+        List<ModifiedFile> modifiedFiles = new ArrayList<>();
+        List<Long> modificationIds = new ArrayList<>();
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_MODIFICATION, GENERATED_ID)) {
+            for (int from = 0; from < modifications.size(); from += batchSize) {
+                List<Modification> batch = modifications.subList(from, Math.min(from + batchSize, modifications.size()));
+                for (Modification modification : batch) {
+                    statement.setString(1, modification.getRevision());
+                    statement.setString(2, modification.getComment());
+                    statement.setString(3, modification.getEmailAddress());
+                    statement.setTimestamp(4, modification.getModifiedTime() == null ? null : new Timestamp(modification.getModifiedTime().getTime()));
+                    statement.setString(5, modification.getUserName());
+                    statement.setString(6, modification.getPipelineLabel());
+                    statement.setObject(7, modification.getPipelineId(), Types.BIGINT);
+                    statement.setString(8, modification.getAdditionalData());
+                    statement.setLong(9, modification.getMaterialInstance().getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+
+                try (ResultSet generatedIds = statement.getGeneratedKeys()) {
+                    for (Modification modification : batch) {
+                        modification.setId(nextId(generatedIds, "modifications"));
+                        for (ModifiedFile modifiedFile : modification.getModifiedFiles()) {
+                            modifiedFile.setModificationId(modification.getId());
+                            modifiedFiles.add(modifiedFile);
+                            modificationIds.add(modification.getId());
+                        }
+                    }
+                }
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_MODIFIED_FILE, GENERATED_ID)) {
+            for (int from = 0; from < modifiedFiles.size(); from += batchSize) {
+                int to = Math.min(from + batchSize, modifiedFiles.size());
+                for (int i = from; i < to; i++) {
+                    ModifiedFile modifiedFile = modifiedFiles.get(i);
+                    statement.setString(1, modifiedFile.getAction() == null ? null : modifiedFile.getAction().name());
+                    statement.setString(2, modifiedFile.getFileName());
+                    statement.setString(3, modifiedFile.getFolderName());
+                    statement.setLong(4, modificationIds.get(i));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+
+                try (ResultSet generatedIds = statement.getGeneratedKeys()) {
+                    for (ModifiedFile modifiedFile : modifiedFiles.subList(from, to)) {
+                        modifiedFile.setId(nextId(generatedIds, "modifiedFiles"));
+                    }
+                }
+            }
+        }
+
+        return modifications.size() + modifiedFiles.size();
+    }
+
+    private static long nextId(ResultSet generatedIds, String table) throws SQLException {
+        if (!generatedIds.next()) {
+            throw new SQLException("The database did not return the ids of all the rows inserted into " + table);
+        }
+        return generatedIds.getLong(1);
+    }
+}
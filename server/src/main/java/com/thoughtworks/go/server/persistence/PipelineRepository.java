@@ -124,6 +124,10 @@ public void updatePipelineTimeline(final PipelineTimeline pipelineTimeline, fina
             }
 
 
+            // the same modifications and materials show up in many runs, so they are shared between entries
+            private final Map<Long, Map<String, PipelineTimelineEntry.Revision>> revisionsByModificationId = new HashMap<>();
+            private final Map<String, String> fingerprints = new HashMap<>();
+
             private List<PipelineTimelineEntry> populateFrom(List<Object[]> matches) {
                 ArrayList<PipelineTimelineEntry> newPipelines = new ArrayList<>();
                 if (matches.isEmpty()) {
@@ -172,7 +176,8 @@ public void updatePipelineTimeline(final PipelineTimeline pipelineTimeline, fina
             }
 
             private PipelineTimelineEntry.Revision rev(Object[] row) {
-                return new PipelineTimelineEntry.Revision(modifiedTime(row), stringRevision(row), folder(row), modId(row));
+                Map<String, PipelineTimelineEntry.Revision> revisionsByFolder = revisionsByModificationId.computeIfAbsent(modId(row), modId -> new HashMap<>());
+                return revisionsByFolder.computeIfAbsent(folder(row), folder -> new PipelineTimelineEntry.Revision(modifiedTime(row), stringRevision(row), folder, modId(row)));
             }
 
             private long pmrId(Object[] row) {
@@ -196,7 +201,8 @@ public void updatePipelineTimeline(final PipelineTimeline pipelineTimeline, fina
             }
 
             private String fingerprint(Object[] row) {
-                return String.valueOf(row[FINGERPRINT]);
+                String fingerprint = String.valueOf(row[FINGERPRINT]);
+                return fingerprints.computeIfAbsent(fingerprint, f -> f);
             }
 
             private String pipelineName(Object[] row) {
@@ -213,6 +219,16 @@ public void updatePipelineTimeline(final PipelineTimeline pipelineTimeline, fina
         });
     }
 
+    public boolean hasPipelineInstance(final long pipelineId, final String pipelineName) {
+        Number count = (Number) getHibernateTemplate().execute(session -> {
+            SQLQuery query = session.createSQLQuery("SELECT COUNT(*) FROM pipelines WHERE id = ? AND name = ?");
+            query.setLong(0, pipelineId);
+            query.setString(1, pipelineName);
+            return query.uniqueResult();
+        });
+        return count != null && count.longValue() > 0;
+    }
+
     private void addEntriesToPipelineTimeline(List<PipelineTimelineEntry> newEntries, PipelineTimeline pipelineTimeline, List<PipelineTimelineEntry> tempEntriesForRollback) {
         for (PipelineTimelineEntry newEntry : newEntries) {
             tempEntriesForRollback.add(newEntry);
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.google.common.util.concurrent.Striped;
+import com.thoughtworks.go.util.ArtifactLogUtil;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Understands keeping artifact files which are the same on disk once, however many jobs uploaded them.
+ * <p>
+ * Every file uploaded is hard linked into a store next to the artifacts, under the sha256 of its content. A file whose
+ * content is in the store already is replaced by a link to the copy there instead, so the artifacts of a job look no
+ * different to anything reading them. The filesystem counts the links to each copy: once the artifacts linked to a copy
+ * have all been purged, only the store links to it, and it is deleted the next time the store is reclaimed.
+ * <p>
+ * The console log and everything else under {@link ArtifactLogUtil#CRUISE_OUTPUT_FOLDER} is appended to in place for as
+ * long as the job runs, so it is never linked.
+ */
+public class ArtifactBlobStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactBlobStore.class);
+    static final String STORE_FOLDER = ".blobs";
+
+    private final ArtifactsDirHolder artifactsDirHolder;
+    private final SystemEnvironment systemEnvironment;
+    // keyed by hash, so that a copy is never reclaimed while it is being linked to
+    private final Striped<Lock> blobLocks = Striped.lock(64);
+
+    public ArtifactBlobStore(ArtifactsDirHolder artifactsDirHolder, SystemEnvironment systemEnvironment) {
+        this.artifactsDirHolder = artifactsDirHolder;
+        this.systemEnvironment = systemEnvironment;
+    }
+
+    public boolean isEnabled() {
+        return systemEnvironment.get(SystemEnvironment.ARTIFACT_DEDUPLICATION);
+    }
+
+    /**
+     * Links the files just written to the copies of them in the store.
+     */
+    public void deduplicate(Collection<File> written) {
+        if (!isEnabled()) {
+            return;
+        }
+        for (File file : written) {
+            Path path = file.toPath();
+            if (!Files.isRegularFile(path) || isCruiseOutput(path)) {
+                continue;
+            }
+            try {
+                link(path);
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.warn("[Artifacts Deduplication] Could not deduplicate artifact {}, leaving it as it is", file, e);
+            }
+        }
+    }
+
+    /**
+     * Gives the file a copy of its own, so that it can be written to without changing the files of other jobs linked
+     * to the same copy.
+     */
+    public void unshare(File file) throws IOException {
+        Path path = file.toPath();
+        if (!Files.isRegularFile(path) || linkCount(path) <= 1) {
+            return;
+        }
+        Path copy = temporarySibling(path);
+        Files.copy(path, copy);
+        Files.move(copy, path, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the copies in the store which no artifact links to any more.
+     */
+    public void reclaim() {
+        Path storeRoot = storeRoot();
+        if (storeRoot == null || !Files.isDirectory(storeRoot)) {
+            return;
+        }
+        int deleted = 0;
+        try (Stream<Path> blobs = Files.walk(storeRoot, 2)) {
+            Iterator<Path> iterator = blobs.filter(Files::isRegularFile).iterator();
+            while (iterator.hasNext()) {
+                Path blob = iterator.next();
+                Lock lock = blobLocks.get(blob.getFileName().toString());
+                lock.lock();
+                try {
+                    if (Files.exists(blob) && linkCount(blob) == 1) {
+                        Files.delete(blob);
+                        deleted++;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.warn("[Artifacts Deduplication] Could not reclaim the unused copies in {}", storeRoot, e);
+        }
+        LOGGER.debug("[Artifacts Deduplication] Deleted {} copies no artifact links to any more", deleted);
+    }
+
+    private void link(Path file) throws IOException {
+        String hash;
+        try (InputStream in = Files.newInputStream(file)) {
+            hash = DigestUtils.sha256Hex(in);
+        }
+        Path blob = blobFor(hash);
+        Files.createDirectories(blob.getParent());
+        Lock lock = blobLocks.get(hash);
+        lock.lock();
+        try {
+            if (!Files.exists(blob)) {
+                Files.createLink(blob, file);
+            } else if (!Files.isSameFile(blob, file)) {
+                Path link = temporarySibling(file);
+                Files.createLink(link, blob);
+                Files.move(link, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isCruiseOutput(Path file) {
+        for (Path parent = file.getParent(); parent != null; parent = parent.getParent()) {
+            if (parent.getFileName() != null && parent.getFileName().toString().equals(ArtifactLogUtil.CRUISE_OUTPUT_FOLDER)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Path storeRoot() {
+        File artifactsDir = artifactsDirHolder.getArtifactsDir();
+        return artifactsDir == null ? null : artifactsDir.toPath().resolve(STORE_FOLDER);
+    }
+
+    private Path blobFor(String hash) {
+        return storeRoot().resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static Path temporarySibling(Path file) {
+        return file.resolveSibling("." + file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    private static int linkCount(Path path) throws IOException {
+        try {
+            return (Integer) Files.getAttribute(path, "unix:nlink");
+        } catch (UnsupportedOperationException e) {
+            // nothing can have been linked where links are not counted
+            return 1;
+        }
+    }
+}
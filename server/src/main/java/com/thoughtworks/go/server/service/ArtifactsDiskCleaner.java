@@ -74,6 +74,8 @@ public class ArtifactsDiskCleaner extends DiskSpaceChecker {
                     }
                     numberOfStagesPurged++;
                     artifactService.purgeArtifactsForStage(stage);
+                    // deduplicated artifacts only free up space once their copies are reclaimed
+                    artifactService.reclaimUnusedArtifactCopies();
                 }
             } while ((availableSpace() < requiredSpace) && !stages.isEmpty());
             if (availableSpace() < requiredSpace) {
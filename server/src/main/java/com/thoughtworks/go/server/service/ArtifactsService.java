@@ -33,6 +33,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
+import java.util.List;
 import java.util.zip.ZipInputStream;
 
 import static com.thoughtworks.go.util.SystemEnvironment.ARTIFACT_COPY_BUFFER_SIZE;
@@ -47,16 +48,23 @@ public class ArtifactsService implements ArtifactUrlReader {
     private final JobResolverService jobResolverService;
     private final StageDao stageDao;
     private final ArtifactDirectoryChooser chooser;
+    private final ArtifactBlobStore blobStore;
+    private final ConsoleService consoleService;
     private final int bufferSize = new SystemEnvironment().get(ARTIFACT_COPY_BUFFER_SIZE);
 
     @Autowired
     public ArtifactsService(JobResolverService jobResolverService, StageDao stageDao,
-                            ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil) {
-        this(jobResolverService, stageDao, artifactsDirHolder, zipUtil, new ArtifactDirectoryChooser());
+                            ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil, ConsoleService consoleService) {
+        this(jobResolverService, stageDao, artifactsDirHolder, zipUtil, consoleService, new ArtifactDirectoryChooser());
     }
 
     protected ArtifactsService(JobResolverService jobResolverService, StageDao stageDao,
-                               ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil, ArtifactDirectoryChooser chooser) {
+                               ArtifactsDirHolder artifactsDirHolder, ZipUtil zipUtil, ConsoleService consoleService, ArtifactDirectoryChooser chooser) {
+        this(jobResolverService, stageDao, artifactsDirHolder, zipUtil, consoleService, chooser, new ArtifactBlobStore(artifactsDirHolder, new SystemEnvironment()));
+    }
+
+    protected ArtifactsService(JobResolverService jobResolverService, StageDao stageDao, ArtifactsDirHolder artifactsDirHolder,
+                               ZipUtil zipUtil, ConsoleService consoleService, ArtifactDirectoryChooser chooser, ArtifactBlobStore blobStore) {
         this.artifactsDirHolder = artifactsDirHolder;
         this.zipUtil = zipUtil;
         this.jobResolverService = jobResolverService;
@@ -64,7 +72,8 @@ public class ArtifactsService implements ArtifactUrlReader {
 
         //This is a Chain of Responsibility to decide which view should be shown for a particular artifact URL
         this.chooser = chooser;
-
+        this.blobStore = blobStore;
+        this.consoleService = consoleService;
     }
 
     public void initialize() {
@@ -73,16 +82,40 @@ public class ArtifactsService implements ArtifactUrlReader {
     }
 
     public boolean saveFile(File dest, InputStream stream, boolean shouldUnzip, int attempt) {
+        return save(dest, attempt, () -> {
+            if (shouldUnzip) {
+                return zipUtil.unzip(new ZipInputStream(IOUtils.buffer(stream, bufferSize)), dest);
+            }
+            blobStore.unshare(dest);
+            try (FileOutputStream out = FileUtils.openOutputStream(dest, true)) {
+                IOUtils.copy(stream, out, bufferSize);
+            }
+            return List.of(dest);
+        });
+    }
+
+    /**
+     * Unzips an artifact as it is streamed in. The checksums sent along with it, as the entry named
+     * {@link GoConstants#CHECKSUM_ZIP_ENTRY}, are copied to the given stream rather than saved as an artifact.
+     */
+    public boolean saveZipStream(File dest, InputStream stream, OutputStream checksums, int attempt) {
+        return save(dest, attempt, () -> zipUtil.unzip(new ZipInputStream(IOUtils.buffer(stream, bufferSize)), dest,
+                GoConstants.CHECKSUM_ZIP_ENTRY, (entry, checksumStream) -> IOUtils.copy(checksumStream, checksums)));
+    }
+
+    /**
+     * Deletes the copies of deduplicated artifacts which no artifact links to any more, once artifacts have been purged.
+     */
+    public void reclaimUnusedArtifactCopies() {
+        blobStore.reclaim();
+    }
+
+    private boolean save(File dest, int attempt, SaveAction action) {
         String destPath = dest.getAbsolutePath();
         try {
             LOGGER.trace("Saving file [{}]", destPath);
-            if (shouldUnzip) {
-                zipUtil.unzip(new ZipInputStream(IOUtils.buffer(stream, bufferSize)), dest);
-            } else {
-                try (FileOutputStream out = FileUtils.openOutputStream(dest, true)) {
-                    IOUtils.copy(stream, out, bufferSize);
-                }
-            }
+            // the files written are kept on disk once, if they are the same as those saved for other jobs
+            blobStore.deduplicate(action.save());
             LOGGER.trace("File [{}] saved.", destPath);
             return true;
         } catch (IOException e) {
@@ -100,10 +133,18 @@ public class ArtifactsService implements ArtifactUrlReader {
         }
     }
 
+    private interface SaveAction {
+        /**
+         * @return the files written
+         */
+        List<File> save() throws IOException;
+    }
+
     public boolean saveOrAppendFile(File dest, InputStream stream) {
         String destPath = dest.getAbsolutePath();
         try {
             LOGGER.trace("Appending file [{}]", destPath);
+            blobStore.unshare(dest);
             try (FileOutputStream out = FileUtils.openOutputStream(dest, true)) {
                 IOUtils.copy(stream, out, bufferSize);
             }
@@ -188,6 +229,8 @@ public class ArtifactsService implements ArtifactUrlReader {
             if (artifacts == null) {  // null if security restricted
                 throw new IOException("Failed to list contents of " + stageRoot);
             }
+            // the console log itself is kept, but its index is dropped; it is rebuilt should anyone seek into the log again
+            consoleService.deleteConsoleLogIndex(new File(new File(jobRoot, ArtifactLogUtil.CRUISE_OUTPUT_FOLDER), ArtifactLogUtil.CONSOLE_LOG_FILE_NAME));
             for (File artifact : artifacts) {
                 if (artifact.isDirectory() && (artifact.getName().equals(ArtifactLogUtil.CRUISE_OUTPUT_FOLDER) || artifact.getName().equals(ArtifactLogUtil.PLUGGABLE_ARTIFACT_METADATA_FOLDER))) {
                     continue;
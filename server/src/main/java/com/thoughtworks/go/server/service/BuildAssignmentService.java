@@ -15,10 +15,12 @@
  */
 package com.thoughtworks.go.server.service;
 
+import com.google.common.util.concurrent.Striped;
 import com.thoughtworks.go.config.*;
 import com.thoughtworks.go.config.exceptions.RecordNotFoundException;
 import com.thoughtworks.go.config.materials.PackageMaterial;
 import com.thoughtworks.go.config.materials.PluggableSCMMaterial;
+import com.thoughtworks.go.config.remote.ConfigRepoConfig;
 import com.thoughtworks.go.domain.*;
 import com.thoughtworks.go.domain.builder.Builder;
 import com.thoughtworks.go.domain.exception.IllegalArtifactLocationException;
@@ -28,6 +30,7 @@ import com.thoughtworks.go.listener.EntityConfigChangedListener;
 import com.thoughtworks.go.plugin.access.exceptions.SecretResolutionFailureException;
 import com.thoughtworks.go.remote.AgentIdentifier;
 import com.thoughtworks.go.remote.work.*;
+import com.thoughtworks.go.server.domain.JobStatusListener;
 import com.thoughtworks.go.server.exceptions.RulesViolationException;
 import com.thoughtworks.go.server.materials.StaleMaterialsOnBuildCause;
 import com.thoughtworks.go.server.messaging.JobStatusMessage;
@@ -47,7 +50,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static com.thoughtworks.go.util.command.EnvironmentVariableContext.GO_ENVIRONMENT_NAME;
 import static java.lang.String.format;
@@ -57,6 +67,14 @@ import static java.util.stream.StreamSupport.stream;
 
 /**
  * Understands how to assign work to agents
+ * <p>
+ * Agents are assigned work concurrently: each assignment holds the read side of {@link #jobPlansLock} (and a lock
+ * for its agent), and claims its job atomically from the {@link ScheduledJobPlans} queue. Replacing or pruning the
+ * queue takes the write side, so it never interleaves with an assignment in progress.
+ * <p>
+ * The queue is kept up to date from job status changes, which only needs to load the plans of newly scheduled jobs,
+ * and is reloaded in full from the database every {@link SystemEnvironment#getScheduledJobsReconciliationInterval()}
+ * in case it has drifted.
  */
 @Service
 public class BuildAssignmentService implements ConfigChangedListener {
@@ -73,7 +91,12 @@ public class BuildAssignmentService implements ConfigChangedListener {
     private TransactionTemplate transactionTemplate;
     private final ScheduledPipelineLoader scheduledPipelineLoader;
 
-    private List<JobPlan> jobPlans = new ArrayList<>();
+    private ScheduledJobPlans jobPlans = new ScheduledJobPlans();
+    private final ReadWriteLock jobPlansLock = new ReentrantReadWriteLock();
+    private final Striped<Lock> agentLocks = Striped.lock(64);
+    private final Queue<Long> scheduledJobIds = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> unscheduledJobIds = new ConcurrentLinkedQueue<>();
+    private long lastReconciledAt;
     private final UpstreamPipelineResolver resolver;
     private final BuilderFactory builderFactory;
     private MaintenanceModeService maintenanceModeService;
@@ -112,6 +135,19 @@ public class BuildAssignmentService implements ConfigChangedListener {
     public void initialize() {
         goConfigService.register(this);
         goConfigService.register(pipelineConfigChangedListener());
+        goConfigService.register(environmentConfigChangedListener());
+        goConfigService.register(configRepoConfigChangedListener());
+        jobInstanceService.registerJobStateChangeListener(scheduledJobsListener());
+    }
+
+    protected JobStatusListener scheduledJobsListener() {
+        return job -> {
+            if (job.getState().isScheduled()) {
+                scheduledJobIds.add(job.getId());
+            } else {
+                unscheduledJobIds.add(job.getId());
+            }
+        };
     }
 
 
@@ -121,20 +157,51 @@ public class BuildAssignmentService implements ConfigChangedListener {
             public void onEntityConfigChange(PipelineConfig pipelineConfig) {
                 LOGGER.info("[Configuration Changed] Removing deleted jobs for pipeline {}.", pipelineConfig.name());
 
-                synchronized (BuildAssignmentService.this) {
+                jobPlansLock.writeLock().lock();
+                try {
                     List<JobPlan> jobsToRemove;
                     if (goConfigService.hasPipelineNamed(pipelineConfig.name())) {
-                        jobsToRemove = getMismatchingJobPlansFromUpdatedPipeline(pipelineConfig, jobPlans);
+                        jobsToRemove = getMismatchingJobPlansFromUpdatedPipeline(pipelineConfig, jobPlans.toList());
                     } else {
-                        jobsToRemove = getAllJobPlansFromDeletedPipeline(pipelineConfig, jobPlans);
+                        jobsToRemove = getAllJobPlansFromDeletedPipeline(pipelineConfig, jobPlans.toList());
                     }
 
                     IterableUtils.forEach(jobsToRemove, o -> removeJob(o));
+                } finally {
+                    jobPlansLock.writeLock().unlock();
                 }
             }
         };
     }
 
+    // registered after the environment config service's listeners, so that it already knows the new environments
+    protected EntityConfigChangedListener<EnvironmentConfig> environmentConfigChangedListener() {
+        return new EntityConfigChangedListener<>() {
+            @Override
+            public void onEntityConfigChange(EnvironmentConfig environmentConfig) {
+                regroupJobPlans();
+            }
+        };
+    }
+
+    protected EntityConfigChangedListener<ConfigRepoConfig> configRepoConfigChangedListener() {
+        return new EntityConfigChangedListener<>() {
+            @Override
+            public void onEntityConfigChange(ConfigRepoConfig configRepoConfig) {
+                regroupJobPlans();
+            }
+        };
+    }
+
+    private void regroupJobPlans() {
+        jobPlansLock.writeLock().lock();
+        try {
+            jobPlans.regroup();
+        } finally {
+            jobPlansLock.writeLock().unlock();
+        }
+    }
+
     private List<JobPlan> getMismatchingJobPlansFromUpdatedPipeline(PipelineConfig pipelineConfig, List<JobPlan> allJobPlans) {
         List<JobPlan> jobsToRemove = new ArrayList<>();
 
@@ -174,16 +241,28 @@ public class BuildAssignmentService implements ConfigChangedListener {
             return new DeniedAgentWork(agent.getUuid());
         }
 
-        synchronized (this) {
-//          check to ensure agent is not disabled after entering the synchronized block
+        Lock agentLock = agentLocks.get(agent.getUuid());
+        agentLock.lock();
+        jobPlansLock.readLock().lock();
+        try {
+//          check to ensure agent is not disabled after acquiring the locks
             if (agent.isDisabled()) {
                 return new DeniedAgentWork(agent.getUuid());
             }
             //check if agent already has assigned build, if so, reschedule it
             scheduleService.rescheduleAbandonedBuildIfNecessary(agent.getAgentIdentifier());
-            final JobPlan job = findMatchingJob(agent);
-            if (job != null) {
-                Work buildWork = createWork(agent, job);
+            final ScheduledJobPlans.Slot slot = findMatchingJob(agent);
+            if (slot != null) {
+                final JobPlan job = slot.jobPlan();
+                Work buildWork = null;
+                try {
+                    buildWork = createWork(agent, job);
+                } finally {
+                    if (buildWork == null || buildWork == NO_WORK) {
+                        // the job may well still be scheduled; if not, the next refresh takes it out of the queue again
+                        jobPlans.putBack(slot);
+                    }
+                }
                 AgentBuildingInfo buildingInfo = new AgentBuildingInfo(job.getIdentifier().buildLocatorForDisplay(),
                         job.getIdentifier().buildLocator());
                 agentService.building(agent.getUuid(), buildingInfo);
@@ -191,36 +270,39 @@ public class BuildAssignmentService implements ConfigChangedListener {
 
                 return buildWork;
             }
+        } finally {
+            jobPlansLock.readLock().unlock();
+            agentLock.unlock();
         }
         return NO_WORK;
     }
 
-    JobPlan findMatchingJob(AgentInstance agent) {
-        List<JobPlan> filteredJobPlans = environmentConfigService.filterJobsByAgent(jobPlans, agent.getUuid());
-        JobPlan match = null;
+    ScheduledJobPlans.Slot findMatchingJob(AgentInstance agent) {
+        String agentUuid = agent.getUuid();
+
         if (!agent.isElastic()) {
-            match = agent.firstMatching(filteredJobPlans);
-        } else {
-            for (JobPlan jobPlan : filteredJobPlans) {
-                try {
-                    if (jobPlan.requiresElasticAgent() && elasticAgentPluginService.shouldAssignWork(agent.elasticAgentMetadata(), environmentConfigService.envForPipeline(jobPlan.getPipelineName()), jobPlan.getElasticProfile(), jobPlan.getClusterProfile(), jobPlan.getIdentifier())) {
-                        match = jobPlan;
-                        break;
-                    }
-                } catch (RulesViolationException | SecretResolutionFailureException e) {
-                    JobInstance instance = jobInstanceService.buildById(jobPlan.getJobId());
-                    JobIdentifier jobIdentifier = jobPlan.getIdentifier();
-                    String failureMessage = format("\nThis job was failed by GoCD. This job is configured to run on an elastic agent, there were errors while resolving secrets for the the associated elastic configurations.\nReasons: %s", e.getMessage());
-                    logToJobConsole(jobIdentifier, failureMessage);
-                    scheduleService.failJob(instance);
-                    jobStatusTopic.post(new JobStatusMessage(jobIdentifier, instance.getState(), agent.getUuid()));
-                }
-            }
+            return jobPlans.claimFirst(agentUuid,
+                    sample -> agent.canRun(sample) && environmentConfigService.canRunPipelineOnAgent(sample.getPipelineName(), agentUuid),
+                    jobPlan -> environmentConfigService.canRunPipelineOnAgent(jobPlan.getPipelineName(), agentUuid));
         }
-        if (match != null) {
-            jobPlans.remove(match);
+
+        return jobPlans.claimFirst(agentUuid,
+                sample -> sample.requiresElasticAgent() && environmentConfigService.canRunPipelineOnAgent(sample.getPipelineName(), agentUuid),
+                jobPlan -> environmentConfigService.canRunPipelineOnAgent(jobPlan.getPipelineName(), agentUuid) && elasticAgentShouldBeAssigned(agent, jobPlan));
+    }
+
+    private boolean elasticAgentShouldBeAssigned(AgentInstance agent, JobPlan jobPlan) {
+        try {
+            return elasticAgentPluginService.shouldAssignWork(agent.elasticAgentMetadata(), environmentConfigService.envForPipeline(jobPlan.getPipelineName()), jobPlan.getElasticProfile(), jobPlan.getClusterProfile(), jobPlan.getIdentifier());
+        } catch (RulesViolationException | SecretResolutionFailureException e) {
+            JobInstance instance = jobInstanceService.buildById(jobPlan.getJobId());
+            JobIdentifier jobIdentifier = jobPlan.getIdentifier();
+            String failureMessage = format("\nThis job was failed by GoCD. This job is configured to run on an elastic agent, there were errors while resolving secrets for the the associated elastic configurations.\nReasons: %s", e.getMessage());
+            logToJobConsole(jobIdentifier, failureMessage);
+            scheduleService.failJob(instance);
+            jobStatusTopic.post(new JobStatusMessage(jobIdentifier, instance.getState(), agent.getUuid()));
+            return false;
         }
-        return match;
     }
 
     public void onTimer() {
@@ -229,34 +311,72 @@ public class BuildAssignmentService implements ConfigChangedListener {
             return;
         }
 
-        reloadJobPlans();
+        long now = System.currentTimeMillis();
+        if (now - lastReconciledAt >= systemEnvironment.getScheduledJobsReconciliationInterval()) {
+            reloadJobPlans();
+            lastReconciledAt = now;
+        } else {
+            refreshJobPlans();
+        }
     }
 
     private void reloadJobPlans() {
-        synchronized (this) {
-            if (jobPlans == null) {
-                jobPlans = jobInstanceService.orderedScheduledBuilds();
-                elasticAgentPluginService.createAgentsFor(jobPlans, new ArrayList<>());
-            } else {
-                List<JobPlan> old = jobPlans;
-                List<JobPlan> newPlan = jobInstanceService.orderedScheduledBuilds();
-                jobPlans = newPlan;
-                elasticAgentPluginService.createAgentsFor(old, newPlan);
+        jobPlansLock.writeLock().lock();
+        try {
+            // everything that happened so far is reflected in the database
+            scheduledJobIds.clear();
+            unscheduledJobIds.clear();
+
+            List<JobPlan> old = jobPlans.elasticJobPlans();
+            jobPlans = new ScheduledJobPlans(jobInstanceService.orderedScheduledBuilds(), environmentConfigService::envForPipeline);
+            elasticAgentPluginService.createAgentsFor(old, jobPlans.elasticJobPlans());
+        } finally {
+            jobPlansLock.writeLock().unlock();
+        }
+    }
+
+    private void refreshJobPlans() {
+        jobPlansLock.writeLock().lock();
+        try {
+            List<JobPlan> old = jobPlans.elasticJobPlans();
+
+            // job ids follow the order in which jobs are scheduled
+            SortedSet<Long> newJobIds = new TreeSet<>();
+            for (Long jobId = scheduledJobIds.poll(); jobId != null; jobId = scheduledJobIds.poll()) {
+                if (!jobPlans.contains(jobId)) {
+                    newJobIds.add(jobId);
+                }
+            }
+            if (!newJobIds.isEmpty()) {
+                jobInstanceService.scheduledPlans(new ArrayList<>(newJobIds)).forEach(jobPlans::add);
+            }
+
+            for (Long jobId = unscheduledJobIds.poll(); jobId != null; jobId = unscheduledJobIds.poll()) {
+                jobPlans.remove(jobId);
             }
+
+            elasticAgentPluginService.createAgentsFor(old, jobPlans.elasticJobPlans());
+        } finally {
+            jobPlansLock.writeLock().unlock();
         }
     }
 
     @Override
     public void onConfigChange(CruiseConfig newCruiseConfig) {
         LOGGER.info("[Configuration Changed] Removing jobs for pipelines that no longer exist in configuration.");
-        synchronized (this) {
+        jobPlansLock.writeLock().lock();
+        try {
             List<JobPlan> jobsToRemove = new ArrayList<>();
-            for (JobPlan jobPlan : jobPlans) {
+            for (JobPlan jobPlan : jobPlans.toList()) {
                 if (!newCruiseConfig.hasBuildPlan(new CaseInsensitiveString(jobPlan.getPipelineName()), new CaseInsensitiveString(jobPlan.getStageName()), jobPlan.getName(), true)) {
                     jobsToRemove.add(jobPlan);
                 }
             }
             IterableUtils.forEach(jobsToRemove, this::removeJob);
+            // pipelines may have moved between environments
+            jobPlans.regroup();
+        } finally {
+            jobPlansLock.writeLock().unlock();
         }
     }
 
@@ -398,7 +518,7 @@ public class BuildAssignmentService implements ConfigChangedListener {
     }
 
     List<JobPlan> jobPlans() {
-        return jobPlans;
+        return jobPlans.toList();
     }
 
     // This method will resolve secrets in all the pluggable scm materials if any
@@ -15,7 +15,9 @@
  */
 package com.thoughtworks.go.server.service;
 
+import com.google.common.util.concurrent.Striped;
 import com.thoughtworks.go.domain.ConsoleConsumer;
+import com.thoughtworks.go.domain.ConsoleLogIndex;
 import com.thoughtworks.go.domain.ConsoleStreamer;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.domain.LocatableEntity;
@@ -24,6 +26,8 @@ import com.thoughtworks.go.server.dao.JobInstanceDao;
 import com.thoughtworks.go.server.view.artifacts.ArtifactDirectoryChooser;
 import com.thoughtworks.go.server.view.artifacts.BuildIdArtifactLocator;
 import com.thoughtworks.go.server.view.artifacts.PathBasedArtifactsLocator;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -32,7 +36,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
-import java.nio.file.Path;
+import java.util.concurrent.locks.Lock;
 
 import static com.thoughtworks.go.util.ArtifactLogUtil.getConsoleOutputFolderAndFileName;
 
@@ -42,11 +46,22 @@ public class ConsoleService {
     public static final Logger LOGGER = LoggerFactory.getLogger(ConsoleService.class);
     private ArtifactDirectoryChooser chooser;
     public static final int DEFAULT_CONSOLE_LOG_LINE_BUFFER_SIZE = 1024;
+    // next to the console logs, in the artifacts directory, but outside of the pipelines in it
+    static final String CONSOLE_LOG_INDEX_FOLDER = ".console-index";
     private ArtifactsDirHolder artifactsDirHolder;
+    private final File consoleLogIndexDir;
+    private final boolean consoleLogIndexSupported;
+    private final Striped<Lock> consoleLogIndexLocks = Striped.lock(64);
 
 
     public ConsoleService(ArtifactDirectoryChooser chooser) {
+        this(chooser, null);
+    }
+
+    ConsoleService(ArtifactDirectoryChooser chooser, File consoleLogIndexDir) {
         this.chooser = chooser;
+        this.consoleLogIndexDir = consoleLogIndexDir;
+        this.consoleLogIndexSupported = ConsoleLogIndex.supports(new SystemEnvironment().consoleLogCharset());
     }
 
     @Autowired
@@ -61,8 +76,98 @@ public class ConsoleService {
     }
 
     public ConsoleConsumer getStreamer(long startingLine, JobIdentifier identifier) throws IllegalArtifactLocationException {
-        Path path = consoleLogFile(identifier).toPath();
-        return new ConsoleStreamer(path, startingLine);
+        File log = consoleLogFile(identifier);
+        return new ConsoleStreamer(log.toPath(), startingLine, indexForReading(log, startingLine));
+    }
+
+    private ConsoleLogIndex indexForReading(File log, long startingLine) {
+        if (!isIndexing() || startingLine < ConsoleLogIndex.LINES_PER_ENTRY) {
+            return null;
+        }
+
+        // the same lock as writers, so that building an index never races an append to the same log
+        Lock lock = consoleLogIndexLocks.get(log.getAbsolutePath());
+        lock.lock();
+        try {
+            ConsoleLogIndex index = consoleLogIndex(log);
+            if (!log.exists()) {
+                // the log was deleted from outside Go; its index is of no use any more
+                index.delete();
+                return null;
+            }
+            if (!index.exists()) {
+                // logs written before indexing existed get their index built once, on first seek
+                index.rebuild();
+            }
+            return index;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to build console log index for [{}]", log.getAbsolutePath(), e);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the index kept for a console log, if any. Called whenever the log itself is purged, since the index
+     * lives outside the artifacts directory and would otherwise be left behind.
+     */
+    public void deleteConsoleLogIndex(File log) {
+        if (consoleLogIndexDir() == null) {
+            return;
+        }
+        Lock lock = consoleLogIndexLocks.get(log.getAbsolutePath());
+        lock.lock();
+        try {
+            consoleLogIndex(log).delete();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete console log index for [{}]", log.getAbsolutePath(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateIndex(File log, boolean isNewLog) {
+        if (!isIndexing()) {
+            return;
+        }
+
+        Lock lock = consoleLogIndexLocks.get(log.getAbsolutePath());
+        lock.lock();
+        try {
+            ConsoleLogIndex index = consoleLogIndex(log);
+            // indexes for older logs that predate indexing are built lazily by readers
+            if (isNewLog || index.exists()) {
+                index.update();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to update console log index for [{}]", log.getAbsolutePath(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ConsoleLogIndex consoleLogIndex(File log) {
+        return new ConsoleLogIndex(log.toPath(), consoleLogIndexFile(log).toPath());
+    }
+
+    private File consoleLogIndexFile(File log) {
+        return new File(consoleLogIndexDir(), DigestUtils.md5Hex(log.getAbsolutePath()) + ".idx");
+    }
+
+    private boolean isIndexing() {
+        return consoleLogIndexSupported && consoleLogIndexDir() != null;
+    }
+
+    // worked out every time, since the artifacts directory can be moved in the server config
+    private File consoleLogIndexDir() {
+        if (consoleLogIndexDir != null) {
+            return consoleLogIndexDir;
+        }
+        if (artifactsDirHolder == null || artifactsDirHolder.getArtifactsDir() == null) {
+            return null;
+        }
+        return new File(artifactsDirHolder.getArtifactsDir(), CONSOLE_LOG_INDEX_FOLDER);
     }
 
     public File consoleLogArtifact(LocatableEntity jobIdentifier) throws IllegalArtifactLocationException {
@@ -91,12 +196,14 @@ public class ConsoleService {
         parentFile.mkdirs();
 
         LOGGER.trace("Updating console log [{}]", dest.getAbsolutePath());
+        boolean isNewLog = dest.length() == 0L;
         try (OutputStream out = new BufferedOutputStream(new FileOutputStream(dest, dest.exists()))) {
             IOUtils.copy(in, out);
         } catch (IOException e) {
             LOGGER.error("Failed to update console log at : [{}]", dest.getAbsolutePath(), e);
             return false;
         }
+        updateIndex(dest, isNewLog);
         LOGGER.trace("Console log [{}] saved.", dest.getAbsolutePath());
         return true;
     }
@@ -110,8 +217,17 @@ public class ConsoleService {
 
             File to = consoleLogArtifact(locatableEntity);
             FileUtils.moveFile(from, to);
+            moveIndex(from, to);
         } catch (IOException | IllegalArtifactLocationException e) {
             throw new RuntimeException(e);
         }
     }
+
+    private void moveIndex(File from, File to) {
+        try {
+            consoleLogIndex(from).moveTo(consoleLogIndexFile(to).toPath());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to move console log index for [{}]; it will be rebuilt when needed", to.getAbsolutePath(), e);
+        }
+    }
 }
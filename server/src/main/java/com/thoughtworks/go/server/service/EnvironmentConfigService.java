@@ -102,7 +102,11 @@ public class EnvironmentConfigService implements ConfigChangedListener, AgentCha
     }
 
     List<JobPlan> filterJobsByAgent(List<JobPlan> jobPlans, String agentUuid) {
-        return jobPlans.stream().filter(jobPlan -> matchers.match(jobPlan.getPipelineName(), agentUuid)).collect(toList());
+        return jobPlans.stream().filter(jobPlan -> canRunPipelineOnAgent(jobPlan.getPipelineName(), agentUuid)).collect(toList());
+    }
+
+    boolean canRunPipelineOnAgent(String pipelineName, String agentUuid) {
+        return matchers.match(pipelineName, agentUuid);
     }
 
     String envForPipeline(String pipelineName) {
@@ -21,6 +21,7 @@ import com.thoughtworks.go.config.security.Permissions;
 import com.thoughtworks.go.config.security.users.AllowedUsers;
 import com.thoughtworks.go.config.security.users.Everyone;
 import com.thoughtworks.go.config.security.users.Users;
+import com.thoughtworks.go.domain.PipelineGroups;
 import com.thoughtworks.go.server.dashboard.*;
 import com.thoughtworks.go.server.domain.Username;
 import com.thoughtworks.go.server.domain.user.DashboardFilter;
@@ -28,6 +29,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 import static com.thoughtworks.go.config.security.util.SecurityConfigUtils.*;
 
@@ -38,6 +42,8 @@ public class GoDashboardService {
     private final GoDashboardCurrentStateLoader dashboardCurrentStateLoader;
     private final GoConfigService goConfigService;
     private GoConfigPipelinePermissionsAuthority permissionsAuthority;
+    private volatile GroupsLayout groupsLayout;
+    private volatile EnvironmentsLayout environmentsLayout;
 
     @Autowired
     public GoDashboardService(GoDashboardCache cache, GoDashboardCurrentStateLoader dashboardCurrentStateLoader, GoConfigPipelinePermissionsAuthority permissionsAuthority, GoConfigService goConfigService) {
@@ -49,12 +55,12 @@ public class GoDashboardService {
 
     public List<GoDashboardEnvironment> allEnvironmentsForDashboard(DashboardFilter filter, Username user) {
         GoDashboardPipelines allPipelines = cache.allEntries();
+        EnvironmentsLayout layout = environmentsLayout(allPipelines);
         List<GoDashboardEnvironment> environments = new ArrayList<>();
 
-        final Users admins = superAdmins();
-
-        goConfigService.getEnvironments().forEach(environment -> {
-            GoDashboardEnvironment env = dashboardEnvironmentFor(environment, filter, user, admins, allPipelines);
+        layout.viewableBy(user).forEach((environment, pipelinesInEnv) -> {
+            GoDashboardEnvironment env = new GoDashboardEnvironment(environment.name, layout.admins, environment.hasDefinedPipelines);
+            addPipelines(env, pipelinesInEnv, filter, allPipelines);
 
             if (env.hasPipelines()) {
                 environments.add(env);
@@ -72,16 +78,36 @@ public class GoDashboardService {
         GoDashboardPipelines allPipelines = cache.allEntries();
         List<GoDashboardPipelineGroup> pipelineGroups = new ArrayList<>();
 
-        goConfigService.groups().accept(group -> {
-            GoDashboardPipelineGroup dashboardPipelineGroup = dashboardPipelineGroupFor(group, filter, user, allPipelines);
+        for (GroupLayout group : groupsLayout(allPipelines).viewableBy(user)) {
+            GoDashboardPipelineGroup dashboardPipelineGroup = new GoDashboardPipelineGroup(group.name, group.permissions, group.hasDefinedPipelines);
+            addPipelines(dashboardPipelineGroup, group.pipelines, filter, allPipelines);
             if (forceIncludeEmptyGroup(allowEmpty, dashboardPipelineGroup, user) || dashboardPipelineGroup.hasPipelines()) {
                 pipelineGroups.add(dashboardPipelineGroup);
             }
-        });
+        }
 
         return pipelineGroups;
     }
 
+    /**
+     * @return the time stamp of the latest change to the dashboard; every pipeline changed after it will have a later
+     * {@link GoDashboardPipeline#getLastUpdatedTimeStamp()}
+     */
+    public long lastUpdatedTimeStamp() {
+        return cache.allEntries().lastUpdatedTimeStamp();
+    }
+
+    /**
+     * @return the names of the pipelines the user could see that were removed from the dashboard after the given time
+     * stamp, or nothing if pipelines removed that long ago are no longer known
+     */
+    public Optional<List<String>> pipelinesRemovedSince(long timeStamp, Username user) {
+        return cache.allEntries().removedSince(timeStamp).map(removed -> removed.stream()
+                .filter(pipeline -> pipeline.canBeViewedBy(user.getUsername().toString()))
+                .map(pipeline -> pipeline.name().toString())
+                .collect(Collectors.toList()));
+    }
+
     public void updateCacheForPipeline(CaseInsensitiveString pipelineName) {
         PipelineConfigs group = goConfigService.findGroupByPipeline(pipelineName);
         if (group == null) {
@@ -105,39 +131,53 @@ public class GoDashboardService {
         return dashboardCurrentStateLoader.hasEverLoadedCurrentState();
     }
 
-    private GoDashboardEnvironment dashboardEnvironmentFor(EnvironmentConfig environment, DashboardFilter filter, Username user, Users allowedUsers, GoDashboardPipelines allPipelines) {
-        List<CaseInsensitiveString> pipelinesInEnv = environment.getPipelineNames();
-        GoDashboardEnvironment env = new GoDashboardEnvironment(environment.name().toString(), allowedUsers, !pipelinesInEnv.isEmpty());
-
-        pipelinesInEnv.forEach(pipelineName -> {
+    private void addPipelines(DashboardGroup dashboardGroup, List<CaseInsensitiveString> pipelineNames, DashboardFilter filter, GoDashboardPipelines allPipelines) {
+        for (CaseInsensitiveString pipelineName : pipelineNames) {
             GoDashboardPipeline pipeline = allPipelines.find(pipelineName);
-
-            if (null != pipeline && pipeline.canBeViewedBy(user.getUsername().toString()) && filter.isPipelineVisible(pipelineName)) {
-                env.addPipeline(pipeline);
+            if (pipeline != null && filter.isPipelineVisible(pipelineName)) {
+                dashboardGroup.addPipeline(pipeline);
             }
-        });
-
-        return env;
+        }
     }
 
-    private GoDashboardPipelineGroup dashboardPipelineGroupFor(PipelineConfigs pipelineGroup, DashboardFilter filter, Username user, GoDashboardPipelines allPipelines) {
-        Permissions groupPermissions = resolvePermissionsForPipelineGroup(pipelineGroup, allPipelines);
-        GoDashboardPipelineGroup goDashboardPipelineGroup = new GoDashboardPipelineGroup(pipelineGroup.getGroup(), groupPermissions, !pipelineGroup.isEmpty());
+    private GroupsLayout groupsLayout(GoDashboardPipelines allPipelines) {
+        PipelineGroups groups = goConfigService.groups();
+        long pluginRolesVersion = PluginRoleUsersStore.instance().version();
 
-        if (goDashboardPipelineGroup.hasPermissions() && goDashboardPipelineGroup.canBeViewedBy(user)) {
-            pipelineGroup.accept(pipelineConfig -> {
-                CaseInsensitiveString pipelineName = pipelineConfig.name();
-                GoDashboardPipeline pipeline = allPipelines.find(pipelineName);
-                if (pipeline != null && filter.isPipelineVisible(pipelineName)) {
-                    goDashboardPipelineGroup.addPipeline(pipeline);
-                }
+        GroupsLayout layout = groupsLayout;
+        if (layout == null || !layout.isFor(groups, allPipelines, pluginRolesVersion)) {
+            List<GroupLayout> groupLayouts = new ArrayList<>();
+            groups.accept(group -> {
+                List<CaseInsensitiveString> pipelinesInGroup = group.getPipelines().stream().map(PipelineConfig::name).collect(Collectors.toList());
+                groupLayouts.add(new GroupLayout(group.getGroup(), resolvePermissionsForPipelineGroup(group, allPipelines), !group.isEmpty(), pipelinesInCache(pipelinesInGroup, allPipelines)));
             });
+            groupsLayout = layout = new GroupsLayout(groups, allPipelines.layoutVersion(), pluginRolesVersion, groupLayouts);
         }
-        return goDashboardPipelineGroup;
+        return layout;
     }
 
-    private Users superAdmins() {
-        final SecurityConfig security = goConfigService.security();
+    private EnvironmentsLayout environmentsLayout(GoDashboardPipelines allPipelines) {
+        EnvironmentsConfig environments = goConfigService.getEnvironments();
+        SecurityConfig security = goConfigService.security();
+        long pluginRolesVersion = PluginRoleUsersStore.instance().version();
+
+        EnvironmentsLayout layout = environmentsLayout;
+        if (layout == null || !layout.isFor(environments, security, allPipelines, pluginRolesVersion)) {
+            List<EnvironmentLayout> environmentLayouts = new ArrayList<>();
+            environments.forEach(environment -> {
+                List<CaseInsensitiveString> pipelinesInEnv = environment.getPipelineNames();
+                environmentLayouts.add(new EnvironmentLayout(environment.name().toString(), !pipelinesInEnv.isEmpty(), pipelinesInCache(pipelinesInEnv, allPipelines), allPipelines));
+            });
+            environmentsLayout = layout = new EnvironmentsLayout(environments, security, allPipelines.layoutVersion(), pluginRolesVersion, superAdmins(security), environmentLayouts);
+        }
+        return layout;
+    }
+
+    private static List<CaseInsensitiveString> pipelinesInCache(List<CaseInsensitiveString> pipelineNames, GoDashboardPipelines allPipelines) {
+        return pipelineNames.stream().filter(pipelineName -> allPipelines.find(pipelineName) != null).collect(Collectors.toList());
+    }
+
+    private Users superAdmins(SecurityConfig security) {
         final Map<String, Collection<String>> rolesToUsersMap = rolesToUsers(security);
         final Set<String> superAdminUsers = namesOf(security.adminsConfig(), rolesToUsersMap);
         final Set<PluginRoleConfig> superAdminPluginRoles = pluginRolesFor(security, security.adminsConfig().getRoles());
@@ -187,4 +227,108 @@ public class GoDashboardService {
         cache.remove(pipelineName);
         dashboardCurrentStateLoader.clearEntryFor(pipelineName);
     }
+
+    /**
+     * What the pipeline groups on the dashboard look like, regardless of the statuses of their pipelines, and which of
+     * them each user gets to see. It holds for as long as the config, the set of pipelines in the cache, their
+     * permissions and plugin role memberships stay the same, so that a dashboard request only has to look at the
+     * pipelines the user can see.
+     */
+    private static class GroupsLayout {
+        private final PipelineGroups groups;
+        private final long pipelinesLayoutVersion;
+        private final long pluginRolesVersion;
+        private final List<GroupLayout> groupLayouts;
+        private final ConcurrentMap<String, List<GroupLayout>> viewableGroupsByUser = new ConcurrentHashMap<>();
+
+        private GroupsLayout(PipelineGroups groups, long pipelinesLayoutVersion, long pluginRolesVersion, List<GroupLayout> groupLayouts) {
+            this.groups = groups;
+            this.pipelinesLayoutVersion = pipelinesLayoutVersion;
+            this.pluginRolesVersion = pluginRolesVersion;
+            this.groupLayouts = groupLayouts;
+        }
+
+        private boolean isFor(PipelineGroups groups, GoDashboardPipelines allPipelines, long pluginRolesVersion) {
+            return this.groups == groups && this.pipelinesLayoutVersion == allPipelines.layoutVersion() && this.pluginRolesVersion == pluginRolesVersion;
+        }
+
+        private List<GroupLayout> viewableBy(Username user) {
+            return viewableGroupsByUser.computeIfAbsent(user.getUsername().toString(), userName -> groupLayouts.stream()
+                    .filter(group -> group.permissions != null && group.permissions.viewers().contains(userName))
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    private static class GroupLayout {
+        private final String name;
+        private final Permissions permissions;
+        private final boolean hasDefinedPipelines;
+        private final List<CaseInsensitiveString> pipelines;
+
+        private GroupLayout(String name, Permissions permissions, boolean hasDefinedPipelines, List<CaseInsensitiveString> pipelines) {
+            this.name = name;
+            this.permissions = permissions;
+            this.hasDefinedPipelines = hasDefinedPipelines;
+            this.pipelines = pipelines;
+        }
+    }
+
+    /**
+     * Same as {@link GroupsLayout}, for environments. Since pipelines of an environment can come from different
+     * groups, what each user gets to see is worked out for every pipeline.
+     */
+    private static class EnvironmentsLayout {
+        private final EnvironmentsConfig environments;
+        private final SecurityConfig security;
+        private final long pipelinesLayoutVersion;
+        private final long pluginRolesVersion;
+        private final Users admins;
+        private final List<EnvironmentLayout> environmentLayouts;
+        private final ConcurrentMap<String, Map<EnvironmentLayout, List<CaseInsensitiveString>>> viewablePipelinesByUser = new ConcurrentHashMap<>();
+
+        private EnvironmentsLayout(EnvironmentsConfig environments, SecurityConfig security, long pipelinesLayoutVersion, long pluginRolesVersion, Users admins, List<EnvironmentLayout> environmentLayouts) {
+            this.environments = environments;
+            this.security = security;
+            this.pipelinesLayoutVersion = pipelinesLayoutVersion;
+            this.pluginRolesVersion = pluginRolesVersion;
+            this.admins = admins;
+            this.environmentLayouts = environmentLayouts;
+        }
+
+        private boolean isFor(EnvironmentsConfig environments, SecurityConfig security, GoDashboardPipelines allPipelines, long pluginRolesVersion) {
+            return this.environments == environments && this.security == security && this.pipelinesLayoutVersion == allPipelines.layoutVersion() && this.pluginRolesVersion == pluginRolesVersion;
+        }
+
+        private Map<EnvironmentLayout, List<CaseInsensitiveString>> viewableBy(Username user) {
+            return viewablePipelinesByUser.computeIfAbsent(user.getUsername().toString(), userName -> {
+                Map<EnvironmentLayout, List<CaseInsensitiveString>> viewable = new LinkedHashMap<>();
+                for (EnvironmentLayout environment : environmentLayouts) {
+                    List<CaseInsensitiveString> pipelines = environment.pipelinesViewableBy(userName);
+                    if (!pipelines.isEmpty()) {
+                        viewable.put(environment, pipelines);
+                    }
+                }
+                return viewable;
+            });
+        }
+    }
+
+    private static class EnvironmentLayout {
+        private final String name;
+        private final boolean hasDefinedPipelines;
+        private final Map<CaseInsensitiveString, Permissions> pipelinePermissions = new LinkedHashMap<>();
+
+        private EnvironmentLayout(String name, boolean hasDefinedPipelines, List<CaseInsensitiveString> pipelines, GoDashboardPipelines allPipelines) {
+            this.name = name;
+            this.hasDefinedPipelines = hasDefinedPipelines;
+            pipelines.forEach(pipelineName -> pipelinePermissions.put(pipelineName, allPipelines.find(pipelineName).permissions()));
+        }
+
+        private List<CaseInsensitiveString> pipelinesViewableBy(String userName) {
+            return pipelinePermissions.entrySet().stream()
+                    .filter(entry -> entry.getValue().viewers().contains(userName))
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        }
+    }
 }
@@ -190,6 +190,13 @@ public class JobInstanceService implements JobPlanLoader, ConfigChangedListener
         return jobInstanceDao.orderedScheduledBuilds();
     }
 
+    /**
+     * @return the plans of those of the given jobs that are still scheduled, in the order given
+     */
+    public List<JobPlan> scheduledPlans(List<Long> jobIds) {
+        return jobInstanceDao.scheduledPlans(jobIds);
+    }
+
     public List<WaitingJobPlan> waitingJobPlans(Username username) {
         List<JobPlan> jobPlans = orderedScheduledBuilds();
         boolean isUserAdmin = securityService.isUserAdmin(username);
@@ -17,30 +17,39 @@ package com.thoughtworks.go.server.service;
 
 import com.thoughtworks.go.config.*;
 import com.thoughtworks.go.config.remote.ConfigRepoConfig;
+import com.thoughtworks.go.domain.MaterialRevision;
 import com.thoughtworks.go.domain.PipelineConfigVisitor;
+import com.thoughtworks.go.domain.materials.Material;
 import com.thoughtworks.go.listener.ConfigChangedListener;
 import com.thoughtworks.go.listener.EntityConfigChangedListener;
 import com.thoughtworks.go.server.domain.Username;
+import com.thoughtworks.go.server.materials.MaterialUpdateCompletedMessage;
+import com.thoughtworks.go.server.materials.MaterialUpdateCompletedTopic;
+import com.thoughtworks.go.server.materials.MaterialUpdateSuccessfulMessage;
 import com.thoughtworks.go.server.messaging.GoMessageListener;
+import com.thoughtworks.go.server.messaging.StageStatusMessage;
+import com.thoughtworks.go.server.messaging.StageStatusTopic;
 import com.thoughtworks.go.server.perf.SchedulingPerformanceLogger;
+import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.scheduling.*;
 import com.thoughtworks.go.server.service.result.OperationResult;
 import com.thoughtworks.go.server.service.result.ServerHealthServiceUpdatingOperationResult;
 import com.thoughtworks.go.serverhealth.HealthStateScope;
 import com.thoughtworks.go.serverhealth.HealthStateType;
 import com.thoughtworks.go.serverhealth.ServerHealthService;
+import com.thoughtworks.go.util.SystemEnvironment;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
+import static java.util.stream.Collectors.joining;
+
 @Service
 public class PipelineScheduler implements ConfigChangedListener, GoMessageListener<ScheduleCheckCompletedMessage> {
     private static final Logger LOGGER = LoggerFactory.getLogger(PipelineScheduler.class);
@@ -52,7 +61,15 @@ public class PipelineScheduler implements ConfigChangedListener, GoMessageListen
     private ScheduleCheckQueue scheduleCheckQueue;
     private ScheduleCheckCompletedTopic scheduleCheckCompletedTopic;
     private SchedulingPerformanceLogger schedulingPerformanceLogger;
+    private MaterialUpdateCompletedTopic materialUpdateCompletedTopic;
+    private StageStatusTopic stageStatusTopic;
+    private MaterialRepository materialRepository;
+    private SystemEnvironment systemEnvironment;
     private final Map<String, ScheduleCheckState> pipelines = new HashMap<>();
+    // pipelines to check on the next tick, in lower case; guarded by pipelines
+    private final Set<String> pipelinesToCheck = new HashSet<>();
+    private final Map<String, String> latestRevisionsByFingerprint = new ConcurrentHashMap<>();
+    private long lastFullCheck;
 
     protected PipelineScheduler() {
     }
@@ -64,7 +81,11 @@ public class PipelineScheduler implements ConfigChangedListener, GoMessageListen
                       BuildCauseProducerService buildCauseProducerService,
                       ScheduleCheckQueue scheduleCheckQueue,
                       ScheduleCheckCompletedTopic scheduleCheckCompletedTopic,
-                      SchedulingPerformanceLogger schedulingPerformanceLogger) {
+                      SchedulingPerformanceLogger schedulingPerformanceLogger,
+                      MaterialUpdateCompletedTopic materialUpdateCompletedTopic,
+                      StageStatusTopic stageStatusTopic,
+                      MaterialRepository materialRepository,
+                      SystemEnvironment systemEnvironment) {
         this.goConfigService = goConfigService;
         this.serverHealthService = serverHealthService;
         this.schedulingChecker = schedulingChecker;
@@ -72,6 +93,10 @@ public class PipelineScheduler implements ConfigChangedListener, GoMessageListen
         this.scheduleCheckQueue = scheduleCheckQueue;
         this.scheduleCheckCompletedTopic = scheduleCheckCompletedTopic;
         this.schedulingPerformanceLogger = schedulingPerformanceLogger;
+        this.materialUpdateCompletedTopic = materialUpdateCompletedTopic;
+        this.stageStatusTopic = stageStatusTopic;
+        this.materialRepository = materialRepository;
+        this.systemEnvironment = systemEnvironment;
     }
 
     public void initialize() {
@@ -79,6 +104,10 @@ public class PipelineScheduler implements ConfigChangedListener, GoMessageListen
         goConfigService.register(pipelineConfigChangedListener());
         goConfigService.register(configRepoConfigChangedListener());
         scheduleCheckCompletedTopic.addListener(this);
+        if (systemEnvironment.getSchedulingFullCheckInterval() > 0) {
+            materialUpdateCompletedTopic.addListener(materialUpdateCompletedListener());
+            stageStatusTopic.addListener(stageStatusListener());
+        }
     }
 
     protected EntityConfigChangedListener<PipelineConfig> pipelineConfigChangedListener() {
@@ -87,8 +116,11 @@ public class PipelineScheduler implements ConfigChangedListener, GoMessageListen
             public void onEntityConfigChange(PipelineConfig pipelineConfig) {
                 synchronized (pipelines) {
                     addPipelineIfNotPresent(pipelineConfig, pipelines);
-                    if (!goConfigService.getAllPipelineConfigs().contains(pipelineConfig)) {
+                    if (goConfigService.getAllPipelineConfigs().contains(pipelineConfig)) {
+                        pipelinesToCheck.add(pipelineConfig.name().toLower());
+                    } else {
                         pipelines.remove(pipelineConfig.name().toString());
+                        pipelinesToCheck.remove(pipelineConfig.name().toLower());
                     }
                 }
             }
@@ -105,6 +137,51 @@ public class PipelineScheduler implements ConfigChangedListener, GoMessageListen
         };
     }
 
+    protected GoMessageListener<MaterialUpdateCompletedMessage> materialUpdateCompletedListener() {
+        return new GoMessageListener<>() {
+            @Override
+            public void onMessage(MaterialUpdateCompletedMessage message) {
+                if (!(message instanceof MaterialUpdateSuccessfulMessage)) {
+                    return;
+                }
+                Material material = message.getMaterial();
+                String fingerprint = material.config().getFingerprint();
+                String latestRevisions = materialRepository.findLatestModification(material).getRevisions().stream()
+                        .map(MaterialRevision::getLatestRevisionString)
+                        .collect(joining(","));
+                if (!latestRevisions.equals(latestRevisionsByFingerprint.put(fingerprint, latestRevisions))) {
+                    LOGGER.debug("[Material Changed] Marking pipelines using material {} to be checked", fingerprint);
+                    markToCheck(goConfigService.pipelinesWithMaterial(fingerprint));
+                }
+            }
+        };
+    }
+
+    protected GoMessageListener<StageStatusMessage> stageStatusListener() {
+        return new GoMessageListener<>() {
+            @Override
+            public void onMessage(StageStatusMessage message) {
+                if (!message.isStageCompleted()) {
+                    return;
+                }
+                // the pipeline may have been waiting on its own lock, and pipelines downstream on this stage
+                String pipelineName = message.getStageIdentifier().getPipelineName();
+                List<CaseInsensitiveString> affected = new ArrayList<>();
+                affected.add(new CaseInsensitiveString(pipelineName));
+                goConfigService.downstreamPipelinesOf(pipelineName).forEach(downstream -> affected.add(downstream.name()));
+                markToCheck(affected);
+            }
+        };
+    }
+
+    private void markToCheck(List<CaseInsensitiveString> pipelineNames) {
+        synchronized (pipelines) {
+            for (CaseInsensitiveString pipelineName : pipelineNames) {
+                pipelinesToCheck.add(pipelineName.toLower());
+            }
+        }
+    }
+
     //NOTE: This is called on a thread by Spring
     public void onTimer() {
         autoProduceBuildCauseAndSave();
@@ -126,8 +203,13 @@ public class PipelineScheduler implements ConfigChangedListener, GoMessageListen
 
     void checkPipelines() {
         synchronized (pipelines) {
+            boolean fullCheck = isFullCheckDue();
             for (Map.Entry<String, ScheduleCheckState> entry : pipelines.entrySet()) {
+                if (!fullCheck && !pipelinesToCheck.contains(entry.getKey().toLowerCase())) {
+                    continue;
+                }
                 if (entry.getValue().equals(ScheduleCheckState.IDLE)) {
+                    pipelinesToCheck.remove(entry.getKey().toLowerCase());
                     long trackingId = schedulingPerformanceLogger.pipelineSentToScheduleCheckQueue(entry.getKey());
 
                     scheduleCheckQueue.post(new ScheduleCheckMessage(entry.getKey(), trackingId));
@@ -141,6 +223,19 @@ public class PipelineScheduler implements ConfigChangedListener, GoMessageListen
         }
     }
 
+    private boolean isFullCheckDue() {
+        long interval = systemEnvironment.getSchedulingFullCheckInterval();
+        if (interval <= 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastFullCheck < interval) {
+            return false;
+        }
+        lastFullCheck = now;
+        return true;
+    }
+
     public void manualProduceBuildCauseAndSave(String pipelineName, Username username, ScheduleOptions scheduleOptions, OperationResult result) {
         LOGGER.info("[Pipeline Schedule] [Requested] Manual trigger of pipeline '{}' requested by {}", pipelineName, CaseInsensitiveString.str(username.getUsername()));
         if (pipelineNotFound(pipelineName, result)) {
@@ -218,6 +313,7 @@ public class PipelineScheduler implements ConfigChangedListener, GoMessageListen
 
             for (String pipelineName : deletedPipeline) {
                 pipelines.remove(pipelineName);
+                pipelinesToCheck.remove(pipelineName.toLowerCase());
             }
         }
     }
@@ -225,6 +321,7 @@ public class PipelineScheduler implements ConfigChangedListener, GoMessageListen
     private void addPipelineIfNotPresent(PipelineConfig pipelineConfig, Map<String, ScheduleCheckState> pipelines) {
         if (!pipelines.containsKey(CaseInsensitiveString.str(pipelineConfig.name()))) {
             pipelines.put(CaseInsensitiveString.str(pipelineConfig.name()), ScheduleCheckState.IDLE);
+            pipelinesToCheck.add(pipelineConfig.name().toLower());
             LOGGER.debug("[Configuration Changed] Marking new pipeline {} as IDLE", pipelineConfig.name());
         }
     }
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.domain.JobPlan;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Understands the queue of scheduled jobs, indexed by what it takes for an agent to run them.
+ * <p>
+ * Jobs are grouped into buckets of jobs that any given agent can either run all of or none of: jobs sharing an
+ * environment, a set of resources, an elastic profile and, for jobs that must run on a specific agent, that agent.
+ * Matching an agent therefore only needs to look at the buckets, and at the jobs of the buckets that match, rather
+ * than at every scheduled job.
+ * <p>
+ * Jobs keep their position in the order they were added in, and are always offered to agents in that order across
+ * buckets. Claiming a job is atomic, so that concurrent agents never get the same job, and a job that could not be
+ * assigned after all is put back in the position it was claimed from.
+ */
+class ScheduledJobPlans {
+    private final Function<String, String> envForPipeline;
+    private final Map<BucketKey, Bucket> buckets = new HashMap<>();
+    private final List<Bucket> sharedBuckets = new ArrayList<>();
+    private final Map<String, List<Bucket>> bucketsByAgent = new HashMap<>();
+    private final Map<Long, Slot> slotsByJobId = new ConcurrentHashMap<>();
+    private long nextPosition;
+
+    ScheduledJobPlans() {
+        this(emptyList(), pipelineName -> null);
+    }
+
+    /**
+     * @param jobPlans        the scheduled jobs, in the order they should be assigned
+     * @param envForPipeline  finds the environment a pipeline belongs to, if any
+     */
+    ScheduledJobPlans(List<JobPlan> jobPlans, Function<String, String> envForPipeline) {
+        this.envForPipeline = envForPipeline;
+        jobPlans.forEach(this::add);
+    }
+
+    /**
+     * Adds a job to the end of the queue. Unlike claiming, adding must not happen concurrently with anything else.
+     */
+    void add(JobPlan jobPlan) {
+        place(jobPlan, nextPosition++);
+    }
+
+    /**
+     * Regroups the jobs into buckets, keeping their positions in the queue. Buckets fix the environment of their jobs
+     * when they are created, so this needs to happen whenever pipelines may have moved between environments. Like
+     * adding, regrouping must not happen concurrently with anything else.
+     */
+    void regroup() {
+        TreeMap<Long, JobPlan> ordered = new TreeMap<>();
+        allBuckets().forEach(bucket -> ordered.putAll(bucket.jobs));
+
+        buckets.clear();
+        sharedBuckets.clear();
+        bucketsByAgent.clear();
+        slotsByJobId.clear();
+
+        ordered.forEach((position, jobPlan) -> place(jobPlan, position));
+    }
+
+    private void place(JobPlan jobPlan, long position) {
+        BucketKey key = new BucketKey(envForPipeline.apply(jobPlan.getPipelineName()), jobPlan);
+
+        Bucket bucket = buckets.computeIfAbsent(key, k -> {
+            Bucket created = new Bucket(jobPlan);
+            if (k.agentUuid == null) {
+                sharedBuckets.add(created);
+            } else {
+                bucketsByAgent.computeIfAbsent(k.agentUuid, uuid -> new ArrayList<>()).add(created);
+            }
+            return created;
+        });
+
+        bucket.jobs.put(position, jobPlan);
+        slotsByJobId.put(jobPlan.getJobId(), new Slot(bucket, position, jobPlan));
+    }
+
+    boolean contains(long jobId) {
+        return slotsByJobId.containsKey(jobId);
+    }
+
+    /**
+     * Claims the first job, in queue order, that an agent can run.
+     *
+     * @param agentUuid     the agent looking for work
+     * @param bucketMatcher tells whether the agent can run a job, given a sample job of a bucket
+     * @param jobMatcher    tells whether the agent should be assigned a particular job of a matching bucket
+     * @return the slot of the claimed job, which is no longer in the queue, or null when there is no match
+     */
+    Slot claimFirst(String agentUuid, Predicate<JobPlan> bucketMatcher, Predicate<JobPlan> jobMatcher) {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+
+        addCursors(cursors, bucketsByAgent.getOrDefault(agentUuid, emptyList()), bucketMatcher);
+        addCursors(cursors, sharedBuckets, bucketMatcher);
+
+        while (!cursors.isEmpty()) {
+            Cursor cursor = cursors.poll();
+            Map.Entry<Long, JobPlan> candidate = cursor.current;
+
+            if (jobMatcher.test(candidate.getValue()) && claim(cursor.bucket, candidate.getKey(), candidate.getValue())) {
+                return new Slot(cursor.bucket, candidate.getKey(), candidate.getValue());
+            }
+
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Puts a claimed job back in the position it was claimed from, for when it could not be assigned after all. This
+     * may happen concurrently with claiming, but the queue must not have been regrouped since the job was claimed.
+     */
+    void putBack(Slot slot) {
+        slotsByJobId.putIfAbsent(slot.jobPlan.getJobId(), slot);
+        slot.bucket.jobs.put(slot.position, slot.jobPlan);
+    }
+
+    boolean remove(long jobId) {
+        Slot slot = slotsByJobId.get(jobId);
+        return slot != null && claim(slot.bucket, slot.position, slot.jobPlan);
+    }
+
+    boolean remove(JobPlan jobPlan) {
+        Slot slot = slotsByJobId.get(jobPlan.getJobId());
+        if (slot != null && slot.jobPlan == jobPlan) {
+            return claim(slot.bucket, slot.position, jobPlan);
+        }
+
+        // not indexed by its id, which only happens if several jobs claim the same id
+        for (Bucket bucket : allBuckets()) {
+            for (Map.Entry<Long, JobPlan> entry : bucket.jobs.entrySet()) {
+                if (entry.getValue() == jobPlan) {
+                    return claim(bucket, entry.getKey(), jobPlan);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a snapshot of the queue, in order
+     */
+    List<JobPlan> toList() {
+        return inOrder(allBuckets());
+    }
+
+    /**
+     * @return a snapshot of the jobs in the queue that need an elastic agent, in order
+     */
+    List<JobPlan> elasticJobPlans() {
+        return inOrder(allBuckets().stream().filter(bucket -> bucket.sample.requiresElasticAgent()).collect(Collectors.toList()));
+    }
+
+    private boolean claim(Bucket bucket, long position, JobPlan jobPlan) {
+        if (!bucket.jobs.remove(position, jobPlan)) {
+            return false;
+        }
+        slotsByJobId.computeIfPresent(jobPlan.getJobId(), (jobId, slot) -> slot.jobPlan == jobPlan ? null : slot);
+        return true;
+    }
+
+    private static List<JobPlan> inOrder(List<Bucket> buckets) {
+        TreeMap<Long, JobPlan> ordered = new TreeMap<>();
+        buckets.forEach(bucket -> ordered.putAll(bucket.jobs));
+        return new ArrayList<>(ordered.values());
+    }
+
+    private List<Bucket> allBuckets() {
+        List<Bucket> all = new ArrayList<>(sharedBuckets);
+        bucketsByAgent.values().forEach(all::addAll);
+        return all;
+    }
+
+    private static void addCursors(PriorityQueue<Cursor> cursors, List<Bucket> buckets, Predicate<JobPlan> bucketMatcher) {
+        for (Bucket bucket : buckets) {
+            if (!bucket.jobs.isEmpty() && bucketMatcher.test(bucket.sample)) {
+                Cursor cursor = new Cursor(bucket);
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+        }
+    }
+
+    private static class Bucket {
+        private final JobPlan sample;
+        private final ConcurrentSkipListMap<Long, JobPlan> jobs = new ConcurrentSkipListMap<>();
+
+        private Bucket(JobPlan sample) {
+            this.sample = sample;
+        }
+    }
+
+    static class Slot {
+        private final Bucket bucket;
+        private final long position;
+        private final JobPlan jobPlan;
+
+        private Slot(Bucket bucket, long position, JobPlan jobPlan) {
+            this.bucket = bucket;
+            this.position = position;
+            this.jobPlan = jobPlan;
+        }
+
+        JobPlan jobPlan() {
+            return jobPlan;
+        }
+    }
+
+    private static class Cursor implements Comparable<Cursor> {
+        private final Bucket bucket;
+        private final Iterator<Map.Entry<Long, JobPlan>> iterator;
+        private Map.Entry<Long, JobPlan> current;
+
+        private Cursor(Bucket bucket) {
+            this.bucket = bucket;
+            this.iterator = bucket.jobs.entrySet().iterator();
+        }
+
+        private boolean advance() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return Long.compare(current.getKey(), other.current.getKey());
+        }
+    }
+
+    private static class BucketKey {
+        private final String env;
+        private final Set<String> resources;
+        private final String elasticProfileId;
+        private final String agentUuid;
+
+        private BucketKey(String env, JobPlan jobPlan) {
+            this.env = env;
+            this.resources = jobPlan.getResources().toResourceConfigs().resourceNames().stream().map(String::toLowerCase).collect(toSet());
+            this.elasticProfileId = jobPlan.requiresElasticAgent() ? jobPlan.getElasticProfile().getId() : null;
+            this.agentUuid = jobPlan.getAgentUuid();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            BucketKey that = (BucketKey) o;
+            return Objects.equals(env, that.env) &&
+                    resources.equals(that.resources) &&
+                    Objects.equals(elasticProfileId, that.elasticProfileId) &&
+                    Objects.equals(agentUuid, that.agentUuid);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(env, resources, elasticProfileId, agentUuid);
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.thoughtworks.go.server.service;
 
+import com.google.common.base.Ticker;
 import com.thoughtworks.go.config.*;
 import com.thoughtworks.go.config.elastic.ClusterProfile;
 import com.thoughtworks.go.config.elastic.ElasticProfile;
@@ -28,6 +29,7 @@ import com.thoughtworks.go.domain.scm.SCM;
 import com.thoughtworks.go.plugin.access.secrets.SecretsExtension;
 import com.thoughtworks.go.plugin.domain.secrets.Secret;
 import com.thoughtworks.go.remote.work.BuildAssignment;
+import com.thoughtworks.go.util.SystemEnvironment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,12 +50,19 @@ public class SecretParamResolver {
     private SecretsExtension secretsExtension;
     private GoConfigService goConfigService;
     private RulesService rulesService;
+    private final SecretsLookupCache secretsLookupCache;
 
     @Autowired
-    public SecretParamResolver(SecretsExtension secretsExtension, GoConfigService goConfigService, RulesService rulesService) {
+    public SecretParamResolver(SecretsExtension secretsExtension, GoConfigService goConfigService, RulesService rulesService, SystemEnvironment systemEnvironment) {
+        this(secretsExtension, goConfigService, rulesService, systemEnvironment, Ticker.systemTicker());
+    }
+
+    SecretParamResolver(SecretsExtension secretsExtension, GoConfigService goConfigService, RulesService rulesService, SystemEnvironment systemEnvironment, Ticker ticker) {
         this.secretsExtension = secretsExtension;
         this.goConfigService = goConfigService;
         this.rulesService = rulesService;
+        this.secretsLookupCache = new SecretsLookupCache(systemEnvironment.get(SystemEnvironment.SECRETS_CACHE_TTL_IN_MILLIS),
+                systemEnvironment.get(SystemEnvironment.SECRETS_CACHE_MAX_ENTRIES), ticker);
     }
 
     public void resolve(List<Material> materials) {
@@ -184,7 +193,8 @@ public class SecretParamResolver {
             final SecretConfig secretConfig = goConfigService.cruiseConfig().getSecretConfigs().find(secretConfigId);
 
             LOGGER.debug("Resolving secret params '{}' using secret config '{}'", secretParamMap.keySet(), secretConfig.getId());
-            List<Secret> resolvedSecrets = secretsExtension.lookupSecrets(secretConfig.getPluginId(), secretConfig, secretParamMap.keySet());
+            List<Secret> resolvedSecrets = secretsLookupCache.lookup(secretConfig, secretParamMap.keySet(),
+                    keys -> secretsExtension.lookupSecrets(secretConfig.getPluginId(), secretConfig, keys));
             LOGGER.debug("Resolved secret size '{}'", resolvedSecrets.size());
 
             LOGGER.debug("Updating secret params '{}' with values.", secretParamMap.keySet());
@@ -193,6 +203,10 @@ public class SecretParamResolver {
         };
     }
 
+    public Map<String, Object> cacheStatistics() {
+        return secretsLookupCache.statistics();
+    }
+
     private Consumer<Secret> assignValue(Map<String, List<SecretParam>> secretParamMap) {
         return secret -> secretParamMap.get(secret.getKey()).forEach(secretParam -> secretParam.setValue(secret.getValue()));
     }
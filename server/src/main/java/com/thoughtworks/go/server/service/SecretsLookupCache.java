@@ -0,0 +1,167 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.thoughtworks.go.config.SecretConfig;
+import com.thoughtworks.go.plugin.domain.secrets.Secret;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Understands remembering the secrets looked up through a secret config for a while, so that they are not looked up
+ * from the plugin on every resolution. Concurrent lookups of the same secrets through the same secret config share a
+ * single call to the plugin, whether remembering is turned on or not.
+ */
+class SecretsLookupCache {
+    private final long timeToLiveInMillis;
+    private final Cache<String, CachedSecret> secrets;
+    private final ConcurrentMap<LookupKey, CompletableFuture<List<Secret>>> lookupsInFlight = new ConcurrentHashMap<>();
+    private final LongAdder pluginLookups = new LongAdder();
+    private final LongAdder sharedLookups = new LongAdder();
+
+    SecretsLookupCache(long timeToLiveInMillis, int maxEntries, Ticker ticker) {
+        this.timeToLiveInMillis = timeToLiveInMillis;
+        this.secrets = CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .expireAfterWrite(Math.max(timeToLiveInMillis, 0), TimeUnit.MILLISECONDS)
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+    }
+
+    List<Secret> lookup(SecretConfig secretConfig, Set<String> keys, Function<Set<String>, List<Secret>> lookupFromPlugin) {
+        List<Secret> found = new ArrayList<>();
+        Set<String> notFound = new TreeSet<>();
+        for (String key : keys) {
+            CachedSecret cached = isEnabled() ? secrets.getIfPresent(cacheKey(secretConfig, key)) : null;
+            // a secret looked up through an older version of the secret config is as good as not found
+            if (cached != null && cached.secretConfig.equals(secretConfig)) {
+                found.add(cached.secret);
+            } else {
+                notFound.add(key);
+            }
+        }
+
+        if (!notFound.isEmpty()) {
+            List<Secret> lookedUp = lookupOnce(secretConfig, notFound, lookupFromPlugin);
+            if (isEnabled()) {
+                lookedUp.forEach(secret -> secrets.put(cacheKey(secretConfig, secret.getKey()), new CachedSecret(secretConfig, secret)));
+            }
+            found.addAll(lookedUp);
+        }
+        return found;
+    }
+
+    Map<String, Object> statistics() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Time To Live (ms)", timeToLiveInMillis);
+        json.put("Entries", secrets.size());
+        json.put("Hits", secrets.stats().hitCount());
+        json.put("Miss", secrets.stats().missCount());
+        json.put("Plugin Lookups", pluginLookups.sum());
+        json.put("Shared Lookups", sharedLookups.sum());
+        return json;
+    }
+
+    private boolean isEnabled() {
+        return timeToLiveInMillis > 0;
+    }
+
+    private List<Secret> lookupOnce(SecretConfig secretConfig, Set<String> keys, Function<Set<String>, List<Secret>> lookupFromPlugin) {
+        LookupKey lookupKey = new LookupKey(secretConfig, keys);
+        CompletableFuture<List<Secret>> lookup = new CompletableFuture<>();
+        CompletableFuture<List<Secret>> lookupInFlight = lookupsInFlight.putIfAbsent(lookupKey, lookup);
+        if (lookupInFlight != null) {
+            sharedLookups.increment();
+            return resultOf(lookupInFlight);
+        }
+
+        try {
+            pluginLookups.increment();
+            List<Secret> lookedUp = lookupFromPlugin.apply(keys);
+            lookup.complete(lookedUp);
+            return lookedUp;
+        } catch (RuntimeException | Error e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            lookupsInFlight.remove(lookupKey, lookup);
+        }
+    }
+
+    private static List<Secret> resultOf(CompletableFuture<List<Secret>> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static String cacheKey(SecretConfig secretConfig, String key) {
+        return secretConfig.getId() + "/" + key;
+    }
+
+    // lookups are only shared through the very same version of the secret config
+    private static class LookupKey {
+        private final SecretConfig secretConfig;
+        private final Set<String> keys;
+
+        private LookupKey(SecretConfig secretConfig, Set<String> keys) {
+            this.secretConfig = secretConfig;
+            this.keys = Set.copyOf(keys);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LookupKey)) {
+                return false;
+            }
+            LookupKey that = (LookupKey) o;
+            return secretConfig.equals(that.secretConfig) && keys.equals(that.keys);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(secretConfig, keys);
+        }
+    }
+
+    private static class CachedSecret {
+        private final SecretConfig secretConfig;
+        private final Secret secret;
+
+        private CachedSecret(SecretConfig secretConfig, Secret secret) {
+            this.secretConfig = secretConfig;
+            this.secret = secret;
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.thoughtworks.go.server.service.support;
 
+import com.thoughtworks.go.server.cache.GoCache;
+import com.thoughtworks.go.server.service.SecretParamResolver;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.config.CacheConfiguration;
@@ -29,8 +31,13 @@ import java.util.Map;
 @Component
 public class CacheInformationProvider implements ServerInfoProvider {
 
+    private final GoCache goCache;
+    private final SecretParamResolver secretParamResolver;
+
     @Autowired
-    public CacheInformationProvider() {
+    public CacheInformationProvider(GoCache goCache, SecretParamResolver secretParamResolver) {
+        this.goCache = goCache;
+        this.secretParamResolver = secretParamResolver;
     }
 
     @Override
@@ -41,6 +48,8 @@ public class CacheInformationProvider implements ServerInfoProvider {
     @Override
     public Map<String, Object> asJson() {
         LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        json.put("GoCache", getGoCacheInformationAsJson());
+        json.put("Secrets", secretParamResolver.cacheStatistics());
 
         for (CacheManager cacheManager : CacheManager.ALL_CACHE_MANAGERS) {
             LinkedHashMap<String, Object> jsonForManager = new LinkedHashMap<>();
@@ -64,6 +73,16 @@ public class CacheInformationProvider implements ServerInfoProvider {
         return "Cache Information";
     }
 
+    public Map<String, Object> getGoCacheInformationAsJson() {
+        LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        json.put("Hits", goCache.hitCount());
+        json.put("Miss", goCache.missCount());
+        json.put("Lock Stripes", goCache.lockStripes());
+        json.put("Lock Contentions", goCache.lockContentionCount());
+        json.putAll(goCache.backendStatistics());
+        return json;
+    }
+
     public Map<String, Object> getCacheRuntimeInformationAsJson(Cache cache) {
         LinkedHashMap<String, Object> json = new LinkedHashMap<>();
         StatisticsGateway statistics = cache.getStatistics();
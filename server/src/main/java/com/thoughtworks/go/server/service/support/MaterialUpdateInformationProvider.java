@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service.support;
+
+import com.thoughtworks.go.server.materials.MaterialPollingSchedule;
+import com.thoughtworks.go.server.perf.MDUPerformanceLogger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class MaterialUpdateInformationProvider implements ServerInfoProvider {
+
+    private final MDUPerformanceLogger mduPerformanceLogger;
+    private final MaterialPollingSchedule pollingSchedule;
+
+    @Autowired
+    public MaterialUpdateInformationProvider(MDUPerformanceLogger mduPerformanceLogger, MaterialPollingSchedule pollingSchedule) {
+        this.mduPerformanceLogger = mduPerformanceLogger;
+        this.pollingSchedule = pollingSchedule;
+    }
+
+    @Override
+    public double priority() {
+        return 8.5;
+    }
+
+    @Override
+    public Map<String, Object> asJson() {
+        LinkedHashMap<String, Object> json = new LinkedHashMap<>();
+        json.put("Queue", mduPerformanceLogger.statistics());
+        json.put("Polling Schedule", pollingSchedule.statistics());
+        return json;
+    }
+
+    @Override
+    public String name() {
+        return "Material Update Information";
+    }
+}
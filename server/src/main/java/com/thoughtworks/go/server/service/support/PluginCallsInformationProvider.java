@@ -0,0 +1,54 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service.support;
+
+import com.thoughtworks.go.plugin.access.PluginCallGuard;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class PluginCallsInformationProvider implements ServerInfoProvider {
+
+    private final PluginCallGuard pluginCallGuard;
+
+    public PluginCallsInformationProvider() {
+        this(PluginCallGuard.getInstance());
+    }
+
+    PluginCallsInformationProvider(PluginCallGuard pluginCallGuard) {
+        this.pluginCallGuard = pluginCallGuard;
+    }
+
+    @Override
+    public double priority() {
+        return 14.5;
+    }
+
+    @Override
+    public Map<String, Object> asJson() {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("Settings", pluginCallGuard.settings());
+        json.put("Plugins", pluginCallGuard.statistics());
+        return json;
+    }
+
+    @Override
+    public String name() {
+        return "Plugin Calls Information";
+    }
+}
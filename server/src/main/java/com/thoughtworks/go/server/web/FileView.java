@@ -32,6 +32,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.Deflater;
 
 @Component
@@ -41,6 +43,7 @@ public class FileView implements View, ServletContextAware {
 
     private ServletContext servletContext;
     public static final String NEED_TO_ZIP = "need_to_zip";
+    private static final Pattern RANGE_TO_THE_END = Pattern.compile("^bytes=(\\d{1,18})-$");
 
     private ServletContext getServletContext() {
         return this.servletContext;
@@ -56,14 +59,45 @@ public class FileView implements View, ServletContextAware {
         return "application/octet-stream";
     }
 
-    private void handleFile(File file, boolean needToZip, HttpServletResponse response) throws Exception {
+    private void handleFile(File file, boolean needToZip, HttpServletRequest request, HttpServletResponse response) throws Exception {
         String filename = file.getName();
         seContentType(needToZip, response, filename);
         setHeaders(response, filename);
+        if (!needToZip) {
+            response.setHeader("Accept-Ranges", "bytes");
+            if (outputRemainder(file, request.getHeader("Range"), response)) {
+                return;
+            }
+        }
         setContentLength(needToZip, file, response);
         setOutput(needToZip, file, response);
     }
 
+    // agents resuming the download of a file ask for the rest of it only; any other range gets all of the file
+    private boolean outputRemainder(File file, String rangeHeader, HttpServletResponse response) throws IOException {
+        Matcher range = RANGE_TO_THE_END.matcher(StringUtils.defaultString(rangeHeader));
+        if (!range.matches()) {
+            return false;
+        }
+        long length = file.length();
+        long offset = Long.parseLong(range.group(1));
+        if (offset >= length) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + length);
+            return true;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("Content-Range", String.format("bytes %d-%d/%d", offset, length - 1, length));
+        response.addHeader("Content-Length", Long.toString(length - offset));
+        ServletOutputStream out = response.getOutputStream();
+        try (FileInputStream input = new FileInputStream(file)) {
+            IOUtils.skipFully(input, offset);
+            IOUtils.copy(input, out, 32 * 1024);
+        }
+        out.flush();
+        return true;
+    }
+
     private void setOutput(boolean needToZip, File file, HttpServletResponse response) throws IOException {
         ServletOutputStream out = response.getOutputStream();
         if (needToZip) {
@@ -108,14 +142,14 @@ public class FileView implements View, ServletContextAware {
     public void render(Map map, HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse) throws Exception {
         File file = (File) map.get("targetFile");
         boolean needToZip = map.containsKey(NEED_TO_ZIP);
-        handleFileWithLogging(httpServletResponse, file, needToZip);
+        handleFileWithLogging(httpServletRequest, httpServletResponse, file, needToZip);
     }
 
-    private void handleFileWithLogging(HttpServletResponse httpServletResponse, File file, boolean needToZip) throws Exception {
+    private void handleFileWithLogging(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, File file, boolean needToZip) throws Exception {
         LOGGER.info("[Artifact Download] About to download: {}. ShouldZip? = {}", file.getAbsolutePath(), needToZip);
         long before = System.currentTimeMillis();
 
-        handleFile(file, needToZip, httpServletResponse);
+        handleFile(file, needToZip, httpServletRequest, httpServletResponse);
 
         long timeTaken = System.currentTimeMillis() - before;
         LOGGER.info("[Artifact Download] Finished downloading: {}. ShouldZip? = {}. The time taken is: {}ms", file.getAbsolutePath(), needToZip, timeTaken);
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.websocket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Batches console log bytes into websocket frames of whole lines, gzipping frames that are large enough to benefit.
+ * The frame buffer, compressor and compression buffer are reused between frames, so writers are meant to be pooled
+ * and used by one thread at a time.
+ */
+class ConsoleLogFrameWriter {
+    static final int MIN_GZIP_SIZE = 512;
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private final int frameSize;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private byte[] frame;
+    private int size;
+    private byte[] compressed;
+
+    ConsoleLogFrameWriter(int frameSize) {
+        this.frameSize = frameSize;
+        this.frame = new byte[frameSize];
+        // assume a safe 10:1 compression ratio to avoid having to grow the buffer
+        this.compressed = new byte[Math.max(frameSize / 10, 64)];
+    }
+
+    /**
+     * Appends bytes to the current frame, sending the frame to the socket whenever it fills up. Frames are only ever
+     * cut after a {@code \n}, so clients always receive whole lines.
+     */
+    void write(ByteBuffer bytes, SocketEndpoint socket) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (size == frame.length) {
+                int lineEnd = lastLineEnd();
+
+                if (lineEnd == 0) {
+                    // a single line longer than a frame; let the frame grow to hold it
+                    frame = Arrays.copyOf(frame, frame.length * 2);
+                } else {
+                    socket.send(ByteBuffer.wrap(encode(frame, lineEnd)));
+                    System.arraycopy(frame, lineEnd, frame, 0, size - lineEnd);
+                    size -= lineEnd;
+                }
+            }
+
+            int length = Math.min(bytes.remaining(), frame.length - size);
+            bytes.get(frame, size, length);
+            size += length;
+        }
+    }
+
+    void flush(SocketEndpoint socket) throws IOException {
+        if (size == 0) return;
+
+        socket.send(ByteBuffer.wrap(encode(frame, size)));
+        reset();
+    }
+
+    /**
+     * Discards anything not yet sent, so that the writer can be reused.
+     */
+    void reset() {
+        size = 0;
+
+        if (frame.length > frameSize) {
+            frame = new byte[frameSize];
+        }
+    }
+
+    /**
+     * @return the input, gzipped if it is at least {@link #MIN_GZIP_SIZE} bytes long
+     */
+    byte[] encode(byte[] input, int length) {
+        if (length < MIN_GZIP_SIZE) {
+            return Arrays.copyOf(input, length);
+        }
+
+        deflater.reset();
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+        crc.reset();
+        crc.update(input, 0, length);
+
+        System.arraycopy(GZIP_HEADER, 0, compressed, 0, GZIP_HEADER.length);
+        int compressedLength = GZIP_HEADER.length;
+
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        byte[] result = Arrays.copyOf(compressed, compressedLength + GZIP_TRAILER_SIZE);
+        writeIntLE(result, compressedLength, (int) crc.getValue());
+        writeIntLE(result, compressedLength + 4, length);
+        return result;
+    }
+
+    void end() {
+        deflater.end();
+    }
+
+    private int lastLineEnd() {
+        for (int i = size - 1; i >= 0; i--) {
+            if (frame[i] == '\n') return i + 1;
+        }
+        return 0;
+    }
+
+    private static void writeIntLE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >> 8);
+        bytes[offset + 2] = (byte) (value >> 16);
+        bytes[offset + 3] = (byte) (value >> 24);
+    }
+}
@@ -16,43 +16,66 @@
 package com.thoughtworks.go.server.websocket;
 
 import com.thoughtworks.go.domain.ConsoleConsumer;
+import com.thoughtworks.go.domain.ConsoleLogIndex;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.server.dao.JobInstanceDao;
+import com.thoughtworks.go.server.messaging.GoMessageListener;
+import com.thoughtworks.go.server.messaging.JobStatusMessage;
+import com.thoughtworks.go.server.messaging.JobStatusTopic;
 import com.thoughtworks.go.server.service.ConsoleService;
 import com.thoughtworks.go.server.util.Retryable;
 import com.thoughtworks.go.util.SystemEnvironment;
-import org.apache.commons.io.output.ProxyOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Component
-public class ConsoleLogSender {
+public class ConsoleLogSender implements GoMessageListener<JobStatusMessage> {
     private static final Logger LOGGER = LoggerFactory.getLogger(ConsoleLogSender.class);
 
     private static final int LOG_DOES_NOT_EXIST = 4004;
     private static final int LOG_FILE_DOES_NOT_EXIST = 4410;
     private static final int BUF_SIZE = 1024 * 1024; // 1MB
     private static final int FILL_INTERVAL = 500;
+    private static final int MAX_POOLED_FRAME_WRITERS = 8;
+    private static final byte[] NEWLINE = {'\n'};
+    // safety net for completions that are not announced on the JobStatusTopic, such as cancellations
+    private static final int TICKS_BETWEEN_COMPLETION_CHECKS = 20;
     private final Charset charset;
+    private final boolean sharedTailEnabled;
+    private final boolean byteStreaming;
+    private final BlockingQueue<ConsoleLogFrameWriter> frameWriters = new ArrayBlockingQueue<>(MAX_POOLED_FRAME_WRITERS);
+    private final ConcurrentMap<Long, ConsoleLogTail> tails = new ConcurrentHashMap<>();
 
     private ConsoleService consoleService;
 
     private JobInstanceDao jobInstanceDao;
 
+    private JobStatusTopic jobStatusTopic;
+
     @Autowired
-    ConsoleLogSender(ConsoleService consoleService, JobInstanceDao jobInstanceDao, SystemEnvironment systemEnvironment) {
+    ConsoleLogSender(ConsoleService consoleService, JobInstanceDao jobInstanceDao, JobStatusTopic jobStatusTopic, SystemEnvironment systemEnvironment) {
         this.consoleService = consoleService;
         this.jobInstanceDao = jobInstanceDao;
+        this.jobStatusTopic = jobStatusTopic;
         this.charset = systemEnvironment.consoleLogCharset();
+        this.sharedTailEnabled = systemEnvironment.isConsoleLogSharedTailEnabled();
+        this.byteStreaming = ConsoleLogIndex.supports(charset);
+    }
+
+    public void initialize() {
+        if (sharedTailEnabled) {
+            jobStatusTopic.addListener(this);
+        }
     }
 
     public void process(final SocketEndpoint webSocket, JobIdentifier jobIdentifier, long start) throws Exception {
@@ -76,6 +99,12 @@ public class ConsoleLogSender {
             return;
         }
 
+        if (isRunningBuild && sharedTailEnabled) {
+            // the socket stays open; the shared tail closes it once the job completes
+            subscribeToTail(webSocket, jobIdentifier, start);
+            return;
+        }
+
         try (ConsoleConsumer streamer = consoleService.getStreamer(start, jobIdentifier)) {
             do {
                 start += sendLogs(webSocket, streamer, jobIdentifier);
@@ -105,6 +134,105 @@ public class ConsoleLogSender {
         }
     }
 
+    /**
+     * Catches the socket up to the shared tail of the job's log and subscribes it to all further output. The bulk of
+     * the catch-up happens without holding the tail, so joining does not hold up the other subscribers.
+     */
+    private void subscribeToTail(SocketEndpoint webSocket, JobIdentifier jobIdentifier, long start) throws Exception {
+        try (ConsoleConsumer catchUp = consoleService.getStreamer(start, jobIdentifier)) {
+            start += sendLogs(webSocket, catchUp, jobIdentifier);
+
+            while (true) {
+                ConsoleLogTail tail = tails.computeIfAbsent(jobIdentifier.getBuildId(), id -> new ConsoleLogTail(jobIdentifier));
+
+                synchronized (tail) {
+                    if (tail.isStopped()) {
+                        // lost a race with the tail shutting down; start a new one
+                        continue;
+                    }
+
+                    if (tail.isStarted()) {
+                        publish(tail);
+                        // queued to the new subscriber, so that the tail is not held up while it is sent
+                        SocketEndpoint subscriber = tail.subscribe(webSocket);
+                        long behind = tail.line() - start;
+                        if (behind > 0) {
+                            sendLogs(subscriber, catchUp, jobIdentifier, behind);
+                        }
+                    } else {
+                        tail.startAt(consoleService.getStreamer(start, jobIdentifier), start);
+                        tail.subscribe(webSocket);
+                    }
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            webSocket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Publishes new output of every shared tail to its subscribers, and closes tails whose job has completed or which
+     * no longer have subscribers. Sending to the subscribers does not wait for them, so a slow client does not hold up
+     * any other.
+     */
+    public void onTimer() {
+        for (ConsoleLogTail tail : tails.values()) {
+            synchronized (tail) {
+                try {
+                    if (!tail.isOpen()) {
+                        stopTail(tail);
+                    } else if (tail.tick() % TICKS_BETWEEN_COMPLETION_CHECKS == 0 && detectCompleted(tail.jobIdentifier())) {
+                        tail.markJobCompleted();
+                        finishTail(tail);
+                    } else if (tail.isJobCompleted()) {
+                        finishTail(tail);
+                    } else {
+                        publish(tail);
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("Failed to send log lines for {} to its subscribers", tail.jobIdentifier(), e);
+                    tail.close();
+                    tails.remove(tail.jobIdentifier().getBuildId(), tail);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(JobStatusMessage message) {
+        if (message.getJobState().isCompleted()) {
+            ConsoleLogTail tail = tails.get(message.getJobIdentifier().getBuildId());
+            if (null != tail) {
+                tail.markJobCompleted();
+            }
+        }
+    }
+
+    private void publish(ConsoleLogTail tail) throws IOException {
+        tail.advance(sendLogs(tail, tail.streamer(), tail.jobIdentifier()));
+    }
+
+    private void finishTail(ConsoleLogTail tail) throws Exception {
+        JobIdentifier jobIdentifier = tail.jobIdentifier();
+        publish(tail);
+
+        // the log may have been moved to the artifacts directory after the tail last read it
+        try (ConsoleConsumer remaining = consoleService.getStreamer(tail.line(), jobIdentifier)) {
+            tail.advance(sendLogs(tail, remaining, jobIdentifier));
+        }
+
+        LOGGER.debug("Sent {} log lines for {} from all sources", tail.line(), jobIdentifier);
+        tail.close();
+        tails.remove(jobIdentifier.getBuildId(), tail);
+    }
+
+    private void stopTail(ConsoleLogTail tail) {
+        tail.stop();
+        tails.remove(tail.jobIdentifier().getBuildId(), tail);
+    }
+
     private boolean doesLogExists(JobIdentifier jobIdentifier) {
         return consoleService.doesLogExist(jobIdentifier);
     }
@@ -118,71 +246,55 @@ public class ConsoleLogSender {
     }
 
     private long sendLogs(final SocketEndpoint webSocket, final ConsoleConsumer console, final JobIdentifier jobIdentifier) throws IOException {
-        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUF_SIZE);
-        final OutputStream proxyOutputStream = new AutoFlushingStream(buffer, webSocket, BUF_SIZE);
-        long linesProcessed = console.stream(line -> {
-            try {
-                byte[] bytes = line.getBytes(charset);
-                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(bytes.length);
-                byteArrayOutputStream.write(bytes);
-                byteArrayOutputStream.write('\n');
-                proxyOutputStream.write(byteArrayOutputStream.toByteArray());
-            } catch (IOException e) {
-                LOGGER.error("Failed to send log line {} for {}", console.totalLinesConsumed(), jobIdentifier, e);
-            }
-        });
-
-        flushBuffer(buffer, webSocket);
-        return linesProcessed;
+        return sendLogs(webSocket, console, jobIdentifier, Long.MAX_VALUE);
     }
 
-    private void flushBuffer(ByteArrayOutputStream buffer, SocketEndpoint webSocket) throws IOException {
-        if (buffer.size() == 0) return;
-        webSocket.send(ByteBuffer.wrap(maybeGzipIfLargeEnough(buffer.toByteArray())));
-        buffer.reset();
-    }
+    private long sendLogs(final SocketEndpoint webSocket, final ConsoleConsumer console, final JobIdentifier jobIdentifier, long maxLines) throws IOException {
+        final ConsoleLogFrameWriter writer = borrowFrameWriter();
+        try {
+            long linesProcessed;
+            if (byteStreaming) {
+                linesProcessed = console.streamBytes(bytes -> write(writer, bytes, webSocket, console, jobIdentifier), maxLines);
+            } else {
+                linesProcessed = console.stream(line -> {
+                    write(writer, ByteBuffer.wrap(line.getBytes(charset)), webSocket, console, jobIdentifier);
+                    write(writer, ByteBuffer.wrap(NEWLINE), webSocket, console, jobIdentifier);
+                }, maxLines);
+            }
 
-    byte[] maybeGzipIfLargeEnough(byte[] input) {
-        if (input.length < 512) {
-            return input;
-        }
-        // To avoid having to re-allocate the internal byte array, allocate an initial buffer assuming a safe 10:1 compression ratio
-        final ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream(input.length / 10);
-        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(gzipBytes, 1024 * 8)) {
-            gzipOutputStream.write(input);
-        } catch (IOException e) {
-            LOGGER.error("Could not gzip {}", input);
+            writer.flush(webSocket);
+            return linesProcessed;
+        } finally {
+            releaseFrameWriter(writer);
         }
-        return gzipBytes.toByteArray();
     }
 
-    // Flushes stream just before it becomes larger than `bufSize`
-    private class AutoFlushingStream extends ProxyOutputStream {
-        private final ByteArrayOutputStream buffer;
-        private final SocketEndpoint webSocket;
-        private final int bufSize;
-
-        public AutoFlushingStream(ByteArrayOutputStream buffer, SocketEndpoint webSocket, int bufSize) {
-            super(buffer);
-            this.buffer = buffer;
-            this.webSocket = webSocket;
-            this.bufSize = bufSize;
+    private void write(ConsoleLogFrameWriter writer, ByteBuffer bytes, SocketEndpoint webSocket, ConsoleConsumer console, JobIdentifier jobIdentifier) {
+        try {
+            writer.write(bytes, webSocket);
+        } catch (IOException e) {
+            LOGGER.error("Failed to send log line {} for {}", console.totalLinesConsumed(), jobIdentifier, e);
         }
+    }
 
-        @Override
-        protected void beforeWrite(int n) throws IOException {
-            maybeFlush(n);
-        }
+    private ConsoleLogFrameWriter borrowFrameWriter() {
+        ConsoleLogFrameWriter writer = frameWriters.poll();
+        return (null == writer) ? new ConsoleLogFrameWriter(BUF_SIZE) : writer;
+    }
 
-        @Override
-        protected void afterWrite(int n) throws IOException {
-            maybeFlush(n);
+    private void releaseFrameWriter(ConsoleLogFrameWriter writer) {
+        writer.reset();
+        if (!frameWriters.offer(writer)) {
+            writer.end();
         }
+    }
 
-        private void maybeFlush(int n) throws IOException {
-            if (buffer.size() + n >= bufSize) {
-                flushBuffer(buffer, webSocket);
-            }
+    byte[] maybeGzipIfLargeEnough(byte[] input) {
+        ConsoleLogFrameWriter writer = borrowFrameWriter();
+        try {
+            return writer.encode(input, input.length);
+        } finally {
+            releaseFrameWriter(writer);
         }
     }
 }
@@ -22,6 +22,7 @@ import org.apache.http.client.utils.URLEncodedUtils;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.StatusCode;
 import org.eclipse.jetty.websocket.api.UpgradeRequest;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
@@ -35,6 +36,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @WebSocket
 public class ConsoleLogSocket implements SocketEndpoint {
@@ -100,6 +102,21 @@ public class ConsoleLogSocket implements SocketEndpoint {
         session.getRemote().sendBytes(data);
     }
 
+    @Override
+    public void sendAsync(ByteBuffer data, Consumer<Throwable> done) {
+        session.getRemote().sendBytes(data, new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable failure) {
+                done.accept(failure);
+            }
+
+            @Override
+            public void writeSuccess() {
+                done.accept(null);
+            }
+        });
+    }
+
     @Override
     public void ping() throws IOException {
         session.getRemote().sendString(WebsocketMessages.PING);
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.websocket;
+
+import com.thoughtworks.go.domain.ConsoleConsumer;
+import com.thoughtworks.go.domain.JobIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single reader of a running job's console log, shared by every websocket watching that job. Whatever is sent to
+ * the tail is multicast to all of its subscribers, so the log is read and compressed once per append regardless of
+ * how many clients are watching. Each subscriber is sent its frames asynchronously and one at a time, so a slow
+ * client only ever holds up itself.
+ * <p>
+ * Callers must synchronize on the tail while reading from or changing it.
+ */
+class ConsoleLogTail implements SocketEndpoint {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsoleLogTail.class);
+    private static final long MAX_PENDING_BYTES = 8 * 1024 * 1024;
+    // the client reconnects from the last line it received when closed with this code
+    static final int TOO_FAR_BEHIND = 4004;
+
+    private final JobIdentifier jobIdentifier;
+    private final long maxPendingBytes;
+    private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+    private ConsoleConsumer streamer;
+    private long line;
+    private long ticks;
+    private volatile boolean jobCompleted;
+    private boolean stopped;
+
+    ConsoleLogTail(JobIdentifier jobIdentifier) {
+        this(jobIdentifier, MAX_PENDING_BYTES);
+    }
+
+    ConsoleLogTail(JobIdentifier jobIdentifier, long maxPendingBytes) {
+        this.jobIdentifier = jobIdentifier;
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    JobIdentifier jobIdentifier() {
+        return jobIdentifier;
+    }
+
+    boolean isStarted() {
+        return streamer != null;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    void startAt(ConsoleConsumer streamer, long line) {
+        this.streamer = streamer;
+        this.line = line;
+    }
+
+    ConsoleConsumer streamer() {
+        return streamer;
+    }
+
+    /**
+     * @return the number of lines of the log that have been published to subscribers
+     */
+    long line() {
+        return line;
+    }
+
+    void advance(long lines) {
+        line += lines;
+    }
+
+    long tick() {
+        return ++ticks;
+    }
+
+    /**
+     * @return the subscriber, to which anything sent is queued ahead of whatever the tail sends from now on
+     */
+    SocketEndpoint subscribe(SocketEndpoint socket) {
+        Subscriber subscriber = new Subscriber(socket);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    void markJobCompleted() {
+        jobCompleted = true;
+    }
+
+    boolean isJobCompleted() {
+        return jobCompleted;
+    }
+
+    @Override
+    public void send(ByteBuffer data) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.send(data.duplicate());
+        }
+    }
+
+    @Override
+    public void ping() {
+        // subscribers are kept alive individually by the SocketHealthService
+    }
+
+    /**
+     * @return true as long as at least one subscriber is still connected
+     */
+    @Override
+    public boolean isOpen() {
+        subscribers.removeIf(subscriber -> !subscriber.isOpen());
+        return !subscribers.isEmpty();
+    }
+
+    @Override
+    public void close() {
+        subscribers.forEach(SocketEndpoint::close);
+        stop();
+    }
+
+    @Override
+    public void close(int code, String reason) {
+        subscribers.forEach(subscriber -> subscriber.close(code, reason));
+        stop();
+    }
+
+    void stop() {
+        stopped = true;
+        subscribers.clear();
+
+        if (null != streamer) {
+            try {
+                streamer.close();
+            } catch (Exception e) {
+                LOGGER.warn("Failed to close console log tail for {}", jobIdentifier, e);
+            }
+        }
+    }
+
+    @Override
+    public String key() {
+        return String.format("tail:%s", jobIdentifier);
+    }
+
+    /**
+     * Queues frames for one socket and sends them in order, starting the next send only once the previous one has
+     * completed. A client that falls more than {@code maxPendingBytes} behind is disconnected rather than queued for
+     * without bound.
+     */
+    private class Subscriber implements SocketEndpoint {
+        private final SocketEndpoint socket;
+        private final Deque<ByteBuffer> pending = new ArrayDeque<>();
+        private long pendingBytes;
+        private boolean sending;
+        private Runnable closeWhenSent;
+        private volatile boolean dropped;
+
+        private Subscriber(SocketEndpoint socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void send(ByteBuffer data) {
+            boolean tooFarBehind;
+            synchronized (this) {
+                if (dropped) {
+                    return;
+                }
+                tooFarBehind = pendingBytes + data.remaining() > maxPendingBytes;
+                if (tooFarBehind) {
+                    dropped = true;
+                    pending.clear();
+                } else {
+                    pending.add(data);
+                    pendingBytes += data.remaining();
+                    if (sending) {
+                        return;
+                    }
+                    sending = true;
+                }
+            }
+
+            if (tooFarBehind) {
+                LOGGER.debug("Dropping {} from console log tail for {} as it is too far behind", socket.key(), jobIdentifier);
+                subscribers.remove(this);
+                socket.close(TOO_FAR_BEHIND, "Too far behind the console log; reconnect to resume");
+            } else {
+                sendPending();
+            }
+        }
+
+        private void sendPending() {
+            while (true) {
+                ByteBuffer frame;
+                Runnable close = null;
+                synchronized (this) {
+                    frame = dropped ? null : pending.poll();
+                    if (frame == null) {
+                        sending = false;
+                        close = closeWhenSent;
+                        closeWhenSent = null;
+                    } else {
+                        pendingBytes -= frame.remaining();
+                    }
+                }
+                if (frame == null) {
+                    if (close != null) {
+                        close.run();
+                    }
+                    return;
+                }
+
+                // 0 while sending; 1 if the send completed before sendAsync() returned; 2 if it is still in progress
+                AtomicInteger state = new AtomicInteger();
+                socket.sendAsync(frame, failure -> {
+                    if (failure != null) {
+                        drop(failure);
+                    } else if (!state.compareAndSet(0, 1)) {
+                        // completed later, on another thread; carry on sending from there
+                        sendPending();
+                    }
+                });
+                if (state.compareAndSet(0, 2)) {
+                    return;
+                }
+            }
+        }
+
+        private void drop(Throwable failure) {
+            LOGGER.debug("Dropping {} from console log tail for {} as sending failed", socket.key(), jobIdentifier, failure);
+            dropped = true;
+            subscribers.remove(this);
+            socket.close();
+        }
+
+        @Override
+        public void ping() throws IOException {
+            socket.ping();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !dropped && socket.isOpen();
+        }
+
+        @Override
+        public void close() {
+            closeOnceSent(socket::close);
+        }
+
+        @Override
+        public void close(int code, String reason) {
+            closeOnceSent(() -> socket.close(code, reason));
+        }
+
+        private void closeOnceSent(Runnable close) {
+            synchronized (this) {
+                if (sending) {
+                    // whatever is still queued is the last of the log
+                    closeWhenSent = close;
+                    return;
+                }
+            }
+            close.run();
+        }
+
+        @Override
+        public String key() {
+            return socket.key();
+        }
+    }
+}
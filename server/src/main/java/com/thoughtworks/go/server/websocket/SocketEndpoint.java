@@ -17,10 +17,25 @@ package com.thoughtworks.go.server.websocket;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.function.Consumer;
 
 public interface SocketEndpoint {
     void send(ByteBuffer data) throws IOException;
 
+    /**
+     * Sends without waiting for the data to be written out. {@code done} is called with {@code null} once the data has
+     * been written, or with the reason it could not be.
+     */
+    default void sendAsync(ByteBuffer data, Consumer<Throwable> done) {
+        try {
+            send(data);
+        } catch (IOException e) {
+            done.accept(e);
+            return;
+        }
+        done.accept(null);
+    }
+
     void ping() throws IOException;
 
     boolean isOpen();
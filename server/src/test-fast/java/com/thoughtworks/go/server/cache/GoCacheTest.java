@@ -30,7 +30,13 @@ import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.jupiter.api.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.thoughtworks.go.util.LogFixture.logFixtureFor;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -295,6 +301,52 @@ public class GoCacheTest {
         assertThat(goCache.get(key), is(nullValue()));
     }
 
+    @Test
+    public void shouldCountHitsAndMisses() {
+        goCache.put("someKey", "value");
+
+        goCache.get("someKey");
+        goCache.get("someKey");
+        goCache.get("unknownKey");
+
+        assertThat(goCache.hitCount(), is(2L));
+        assertThat(goCache.missCount(), is(1L));
+    }
+
+    @Test
+    public void shouldNotDeadlockWhenEvictionsHappenWhileChangingSubKeyFamiliesConcurrently() {
+        goCache.configuration().setMaxEntriesLocalHeap(10);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int thread = 0; thread < 8; thread++) {
+                    futures.add(executor.submit(() -> {
+                        Random random = new Random();
+                        for (int i = 0; i < 10000; i++) {
+                            String key = "key" + random.nextInt(50);
+                            String subKey = "subKey" + random.nextInt(5);
+                            switch (random.nextInt(3)) {
+                                case 0:
+                                    goCache.put(key, subKey, "value");
+                                    break;
+                                case 1:
+                                    goCache.remove(key, subKey);
+                                    break;
+                                default:
+                                    goCache.remove(key);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
     private class NonSerializableClass {
     }
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.cache;
+
+import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class OffHeapTierTest {
+    private static final int MIN_VALUE_SIZE = 1024;
+    private static final List<String> ALL_KEYS = List.of("");
+
+    private static CacheManager cacheManager;
+    private EhcacheBackend heapTier;
+    private OffHeapTier offHeapTier;
+
+    @BeforeAll
+    public static void beforeClass() {
+        cacheManager = CacheManager.newInstance(new Configuration().name(OffHeapTierTest.class.getName()));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        Cache cache = new Cache(new CacheConfiguration(getClass().getName(), 100));
+        cacheManager.addCache(cache);
+        heapTier = new EhcacheBackend(cache);
+        offHeapTier = new OffHeapTier(heapTier, 4 * OffHeapTier.BLOCK_SIZE, MIN_VALUE_SIZE, ALL_KEYS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        offHeapTier.dispose();
+    }
+
+    @AfterAll
+    public static void afterClass() {
+        cacheManager.shutdown();
+    }
+
+    @Test
+    public void shouldKeepLargeSerializableValuesOffHeap() {
+        String value = largeValue('a', OffHeapTier.BLOCK_SIZE + 10);
+
+        offHeapTier.put("key", value);
+
+        assertThat(heapTier.containsKey("key")).isFalse();
+        assertThat(offHeapTier.containsKey("key")).isTrue();
+        assertThat(offHeapTier.get("key")).isEqualTo(value);
+        assertThat(offHeapTier.keys()).containsExactly("key");
+    }
+
+    @Test
+    public void shouldKeepSmallUnserializableAndSubKeyFamilyValuesOnTheHeap() {
+        Object unserializable = new Object();
+        GoCache.KeyList subKeys = new GoCache.KeyList();
+        subKeys.add(largeValue('a', MIN_VALUE_SIZE));
+
+        offHeapTier.put("small", "value");
+        offHeapTier.put("unserializable", unserializable);
+        offHeapTier.put("family", subKeys);
+
+        assertThat(heapTier.get("small")).isEqualTo("value");
+        assertThat(heapTier.get("unserializable")).isSameAs(unserializable);
+        assertThat(heapTier.get("family")).isSameAs(subKeys);
+        assertThat(offHeapTier.statistics()).containsEntry("Off-heap Entries", 0);
+    }
+
+    @Test
+    public void shouldKeepValuesOfKeysOutsideTheGivenKeyFamiliesOnTheHeapSoThatChangesToThemAreKept() {
+        offHeapTier = new OffHeapTier(heapTier, 4 * OffHeapTier.BLOCK_SIZE, MIN_VALUE_SIZE, List.of("read-only."));
+        GoCache goCache = new GoCache(offHeapTier, mock(TransactionSynchronizationManager.class));
+        ArrayList<String> mutable = new ArrayList<>(List.of(largeValue('a', MIN_VALUE_SIZE)));
+
+        goCache.put("mutable", mutable);
+        goCache.put("read-only.value", largeValue('b', MIN_VALUE_SIZE));
+        List<String> cached = goCache.get("mutable");
+        cached.add("changed in place");
+
+        List<String> readBack = goCache.get("mutable");
+        assertThat(readBack).containsExactly(largeValue('a', MIN_VALUE_SIZE), "changed in place");
+        assertThat(heapTier.containsKey("mutable")).isTrue();
+        assertThat(heapTier.containsKey("read-only.value")).isFalse();
+        assertThat(offHeapTier.statistics()).containsEntry("Off-heap Entries", 1);
+    }
+
+    @Test
+    public void shouldMoveAValueBetweenTiersWhenItIsReplaced() {
+        offHeapTier.put("key", largeValue('a', MIN_VALUE_SIZE));
+        offHeapTier.put("key", "small");
+
+        assertThat(offHeapTier.get("key")).isEqualTo("small");
+        assertThat(offHeapTier.statistics()).containsEntry("Off-heap Entries", 0);
+
+        String large = largeValue('b', MIN_VALUE_SIZE);
+        offHeapTier.put("key", large);
+
+        assertThat(heapTier.containsKey("key")).isFalse();
+        assertThat(offHeapTier.get("key")).isEqualTo(large);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedValuesWhenFull() {
+        List<String> evicted = new ArrayList<>();
+        offHeapTier.onEviction((key, value) -> evicted.add(key));
+
+        offHeapTier.put("first", largeValue('a', blocks(1)));
+        offHeapTier.put("second", largeValue('b', blocks(1)));
+        offHeapTier.get("first");
+        offHeapTier.put("third", largeValue('c', blocks(3)));
+
+        assertThat(evicted).containsExactly("second");
+        assertThat(offHeapTier.get("second")).isNull();
+        assertThat(offHeapTier.get("first")).isEqualTo(largeValue('a', blocks(1)));
+        assertThat(offHeapTier.get("third")).isEqualTo(largeValue('c', blocks(3)));
+    }
+
+    @Test
+    public void shouldKeepValuesLargerThanTheTierOnTheHeap() {
+        String huge = largeValue('a', blocks(5));
+
+        offHeapTier.put("key", huge);
+
+        assertThat(heapTier.get("key")).isSameAs(huge);
+    }
+
+    @Test
+    public void shouldReuseBlocksOfRemovedValues() {
+        offHeapTier.put("first", largeValue('a', blocks(2)));
+        offHeapTier.put("second", largeValue('b', blocks(2)));
+
+        assertThat(offHeapTier.remove("first")).isTrue();
+        assertThat(offHeapTier.remove("first")).isFalse();
+        offHeapTier.put("third", largeValue('c', blocks(2)));
+
+        assertThat(offHeapTier.get("second")).isEqualTo(largeValue('b', blocks(2)));
+        assertThat(offHeapTier.get("third")).isEqualTo(largeValue('c', blocks(2)));
+        assertThat(offHeapTier.statistics()).containsEntry("Off-heap Evictions", 0L);
+    }
+
+    @Test
+    public void shouldRemoveSubKeysStoredOffHeapWithTheirParentKey() {
+        GoCache goCache = new GoCache(offHeapTier, mock(TransactionSynchronizationManager.class));
+        String value = largeValue('a', MIN_VALUE_SIZE);
+
+        goCache.put("parent", "child", value);
+        assertThat(goCache.get("parent", "child")).isEqualTo(value);
+
+        goCache.remove("parent");
+
+        assertThat(goCache.get("parent", "child")).isNull();
+        assertThat(offHeapTier.keys()).isEmpty();
+    }
+
+    @Test
+    public void shouldNotTryToSerializeValuesOfAClassThatOnceFailedToSerialize() {
+        offHeapTier.put("first", new FailsToSerialize());
+        offHeapTier.put("second", new FailsToSerialize());
+
+        assertThat(FailsToSerialize.attempts).hasValue(1);
+        assertThat(heapTier.containsKey("first")).isTrue();
+        assertThat(heapTier.containsKey("second")).isTrue();
+    }
+
+    @Test
+    public void shouldSplitALargeTierIntoStripesThatEachKeepTheirOwnValues() {
+        offHeapTier = new OffHeapTier(heapTier, 16 * 128 * OffHeapTier.BLOCK_SIZE, MIN_VALUE_SIZE, ALL_KEYS);
+
+        for (int i = 0; i < 100; i++) {
+            offHeapTier.put("key" + i, largeValue((char) ('a' + i % 26), blocks(2)));
+        }
+
+        assertThat(offHeapTier.statistics()).containsEntry("Off-heap Stripes", 16).containsEntry("Off-heap Entries", 100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(offHeapTier.get("key" + i)).isEqualTo(largeValue((char) ('a' + i % 26), blocks(2)));
+        }
+    }
+
+    private static class FailsToSerialize implements Serializable {
+        private static final AtomicInteger attempts = new AtomicInteger();
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            attempts.incrementAndGet();
+            throw new NotSerializableException(getClass().getName());
+        }
+    }
+
+    /**
+     * @return the length of a string that, once serialized, fills up the given number of blocks
+     */
+    private static int blocks(int count) {
+        return count * OffHeapTier.BLOCK_SIZE - 100;
+    }
+
+    private static String largeValue(char c, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -25,6 +25,7 @@ import com.thoughtworks.go.server.service.RestfulService;
 import com.thoughtworks.go.server.web.ArtifactFolderViewFactory;
 import com.thoughtworks.go.server.web.ResponseCodeView;
 import com.thoughtworks.go.util.SystemEnvironment;
+import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
@@ -34,10 +35,15 @@ import org.springframework.web.multipart.MultipartHttpServletRequest;
 import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static com.thoughtworks.go.util.GoConstants.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -85,6 +91,57 @@ public class ArtifactsControllerTest {
         verify(consoleActivityMonitor).consoleUpdatedFor(jobIdentifier);
     }
 
+    @Test
+    public void shouldDecompressConsoleLogPutWithGzipContentEncoding() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write("Testing:".getBytes());
+        }
+        request.setContent(compressed.toByteArray());
+        request.addHeader("Content-Encoding", "gzip");
+        request.addHeader(GO_ARTIFACT_PAYLOAD_SIZE, "8");
+        JobIdentifier jobIdentifier = new JobIdentifier("pipeline", 10, "label-10", "stage", "2", "build", 103L);
+        when(restfulService.findJob("pipeline", "10", "stage", "2", "build", 103L)).thenReturn(jobIdentifier);
+        File artifactFile = new File("junk");
+        when(consoleService.consoleLogFile(jobIdentifier)).thenReturn(artifactFile);
+        when(consoleService.updateConsoleLog(eq(artifactFile), any(InputStream.class))).thenAnswer(invocation -> {
+            assertThat(IOUtils.toString(invocation.getArgument(1, InputStream.class), UTF_8), is("Testing:"));
+            return true;
+        });
+
+        artifactsController.putArtifact("pipeline", "10", "stage", "2", "build", 103L, "cruise-output/console.log", "agent-id", request);
+
+        verify(consoleActivityMonitor).consoleUpdatedFor(jobIdentifier);
+    }
+
+    @Test
+    public void shouldNotInflateConsoleLogPutBeyondTheSizeTheAgentDeclared() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(new byte[1024 * 1024]);
+        }
+        request.setContent(compressed.toByteArray());
+        request.addHeader("Content-Encoding", "gzip");
+        request.addHeader(GO_ARTIFACT_PAYLOAD_SIZE, "8");
+        JobIdentifier jobIdentifier = new JobIdentifier("pipeline", 10, "label-10", "stage", "2", "build", 103L);
+        when(restfulService.findJob("pipeline", "10", "stage", "2", "build", 103L)).thenReturn(jobIdentifier);
+        File artifactFile = new File("junk");
+        when(consoleService.consoleLogFile(jobIdentifier)).thenReturn(artifactFile);
+        when(consoleService.updateConsoleLog(eq(artifactFile), any(InputStream.class))).thenAnswer(invocation -> {
+            try {
+                IOUtils.copy(invocation.getArgument(1, InputStream.class), OutputStream.nullOutputStream());
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+
+        ModelAndView view = artifactsController.putArtifact("pipeline", "10", "stage", "2", "build", 103L, "cruise-output/console.log", "agent-id", request);
+
+        assertThat(((ResponseCodeView) view.getView()).getStatusCode(), is(SC_INTERNAL_SERVER_ERROR));
+        verify(consoleActivityMonitor, never()).consoleUpdatedFor(jobIdentifier);
+    }
+
     @Test
     public void testConsoleOutShouldReturnErrorWhenJobHasBeenCompletedAndLogsNotFound() {
         JobIdentifier jobIdentifier = new JobIdentifier("pipeline", 10, "label-10", "stage", "2", "build", 103L);
@@ -121,6 +178,32 @@ public class ArtifactsControllerTest {
         assertThat(view.getContent(), is("Error saving checksum file for the artifact at path 'some-path'"));
     }
 
+    @Test
+    public void shouldSaveStreamedZipAndAppendTheChecksumsSentInIt() throws Exception {
+        File artifactFile = new File("junk");
+        File checksumFile = new File("checksum");
+        JobIdentifier jobIdentifier = new JobIdentifier("pipeline-1", 1, "1", "stage-1", "2", "job-1", 122L);
+        when(restfulService.findJob("pipeline-1", "1", "stage-1", "2", "job-1", 122L)).thenReturn(jobIdentifier);
+        when(artifactService.findArtifact(any(JobIdentifier.class), eq("some-path"))).thenReturn(artifactFile);
+        when(artifactService.findArtifactRoot(jobIdentifier)).thenReturn("artifacts");
+        when(artifactService.getArtifactLocation(any(String.class))).thenReturn(checksumFile);
+        when(artifactService.saveZipStream(eq(artifactFile), any(InputStream.class), any(OutputStream.class), eq(1))).thenAnswer(invocation -> {
+            invocation.getArgument(2, OutputStream.class).write("checksum-content".getBytes());
+            return true;
+        });
+        when(artifactService.saveOrAppendFile(eq(checksumFile), any(InputStream.class))).thenAnswer(invocation -> {
+            assertThat(IOUtils.toString(invocation.getArgument(1, InputStream.class), UTF_8), is("checksum-content"));
+            return true;
+        });
+        request.setContentType("application/zip");
+        request.setContent("zip".getBytes());
+
+        ModelAndView modelAndView = artifactsController.postArtifact("pipeline-1", "1", "stage-1", "2", "job-1", 122L, "some-path", 1, request);
+
+        assertThat(((ResponseCodeView) modelAndView.getView()).getStatusCode(), is(HttpServletResponse.SC_CREATED));
+        verify(artifactService).saveOrAppendFile(eq(checksumFile), any(InputStream.class));
+    }
+
     @Test
     void shouldFailToPostAndPutWhenStageCounterIsNotAPositiveInteger() throws Exception {
         ModelAndView modelAndView = artifactsController.postArtifact("pipeline-1", "1", "stage-1", "NOT_AN_INTEGER", "job-1", 122L, "some-path", 1, null);
@@ -20,8 +20,11 @@ import com.rits.cloning.Cloner;
 import com.thoughtworks.go.domain.Stage;
 import com.thoughtworks.go.domain.StageIdentifier;
 import com.thoughtworks.go.helper.StageMother;
+import com.thoughtworks.go.presentation.pipelinehistory.JobHistory;
 import com.thoughtworks.go.presentation.pipelinehistory.StageHistoryEntry;
 import com.thoughtworks.go.presentation.pipelinehistory.StageHistoryPage;
+import com.thoughtworks.go.presentation.pipelinehistory.StageInstanceModel;
+import com.thoughtworks.go.presentation.pipelinehistory.StageInstanceModels;
 import com.thoughtworks.go.server.cache.GoCache;
 import com.thoughtworks.go.server.domain.StageIdentity;
 import com.thoughtworks.go.server.service.StubGoCache;
@@ -46,6 +49,7 @@ import java.util.function.Supplier;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.Mockito.*;
 
 class StageSqlMapDaoTest {
@@ -118,6 +122,38 @@ class StageSqlMapDaoTest {
         verify(spy, times(1)).findImmediateChronologicallyForwardStageHistoryEntry(expectedStageHistoryEntriesList.get(0));
     }
 
+    @Test
+    void shouldShareTheCachedStageHistoryPageInsteadOfCloningIt() {
+        Pagination pagination = Pagination.pageByNumber(1, 1, 10);
+        StageSqlMapDao spy = spy(stageSqlMapDao);
+        StageHistoryEntry entry = new StageHistoryEntry(StageMother.passedStageInstance("dev", "java", "pipeline-name"), 1, 10);
+        doReturn(new ArrayList<>(List.of(entry))).when(spy).findStages(pagination, "pipeline-name", "dev");
+        doReturn(null).when(spy).findImmediateChronologicallyForwardStageHistoryEntry(entry);
+
+        StageHistoryPage stageHistoryPage = spy.findStageHistoryPage("pipeline-name", "dev", () -> pagination);
+        StageHistoryPage stageHistoryPageInNextQuery = spy.findStageHistoryPage("pipeline-name", "dev", () -> pagination);
+
+        assertThat(stageHistoryPageInNextQuery, is(sameInstance(stageHistoryPage)));
+        Assertions.assertThatThrownBy(() -> stageHistoryPage.getStages().clear()).isInstanceOf(UnsupportedOperationException.class);
+        verify(spy, times(1)).findStages(pagination, "pipeline-name", "dev");
+        verify(cloner, never()).deepClone(any());
+    }
+
+    @Test
+    void shouldHandOutTheCachedStageHistoryViaCursorInACollectionOfTheCallersOwn() {
+        StageInstanceModel stage = new StageInstanceModel("dev", "1", new JobHistory());
+        doReturn(List.of(stage)).when(sqlMapClientTemplate).queryForList(eq("getStageHistoryViaCursor"), any());
+
+        StageInstanceModels stageHistory = stageSqlMapDao.findDetailedStageHistoryViaCursor("pipeline-name", "dev", FeedModifier.Latest, 0, 10);
+        stageHistory.clear();
+        StageInstanceModels stageHistoryInNextQuery = stageSqlMapDao.findDetailedStageHistoryViaCursor("pipeline-name", "dev", FeedModifier.Latest, 0, 10);
+
+        assertThat(stageHistoryInNextQuery.size(), is(1));
+        assertThat(stageHistoryInNextQuery.get(0), is(sameInstance(stage)));
+        verify(sqlMapClientTemplate, times(1)).queryForList(eq("getStageHistoryViaCursor"), any());
+        verify(cloner, never()).deepClone(any());
+    }
+
     @Test
     void shouldLoadTheStageHistoryEntryNextInTimeFromAGivenStageHistoryEntry() {
         StageIdentifier stageIdentifier = mock(StageIdentifier.class);
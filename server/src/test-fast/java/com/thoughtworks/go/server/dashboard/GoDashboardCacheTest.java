@@ -16,6 +16,7 @@
 package com.thoughtworks.go.server.dashboard;
 
 import com.thoughtworks.go.config.CaseInsensitiveString;
+import com.thoughtworks.go.util.SystemTimeClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -85,6 +86,76 @@ public class GoDashboardCacheTest {
         assertThat(cache.allEntries().find(cis("pipeline5")), is(sameInstance(pipeline5)));
     }
 
+    @Test
+    public void shouldBeAbleToRemoveAPipeline() {
+        cache.put(pipeline("pipeline1"));
+        cache.put(pipeline("pipeline2"));
+
+        cache.remove(cis("pipeline1"));
+
+        assertThat(cache.allEntries().find(cis("pipeline1")), is(nullValue()));
+        assertThat(cache.allEntries().find(cis("pipeline2")), is(notNullValue()));
+        assertThat(cache.allEntries().getPipelines(), hasSize(1));
+    }
+
+    @Test
+    public void shouldNotChangeSnapshotsAlreadyHandedOut() {
+        GoDashboardPipeline pipeline1 = pipeline("pipeline1");
+        cache.put(pipeline1);
+        GoDashboardPipelines snapshot = cache.allEntries();
+
+        cache.put(pipeline("pipeline1"));
+        cache.put(pipeline("pipeline2"));
+        cache.remove(cis("pipeline1"));
+
+        assertThat(snapshot.find(cis("pipeline1")), is(sameInstance(pipeline1)));
+        assertThat(snapshot.find(cis("pipeline2")), is(nullValue()));
+        assertThat(snapshot.getPipelines(), contains(pipeline1));
+    }
+
+    @Test
+    public void shouldChangeLayoutVersionOnlyWhenPipelinesComeAndGoOrChangeGroupsOrPermissions() {
+        cache.put(pipeline("pipeline1", "group1"));
+        long layoutVersion = cache.allEntries().layoutVersion();
+
+        cache.put(pipeline("pipeline1", "group1"));
+        assertThat(cache.allEntries().layoutVersion(), is(layoutVersion));
+
+        cache.put(pipeline("pipeline1", "group2"));
+        assertThat(cache.allEntries().layoutVersion(), is(not(layoutVersion)));
+
+        layoutVersion = cache.allEntries().layoutVersion();
+        cache.remove(cis("pipeline2"));
+        assertThat(cache.allEntries().layoutVersion(), is(layoutVersion));
+
+        cache.remove(cis("pipeline1"));
+        assertThat(cache.allEntries().layoutVersion(), is(not(layoutVersion)));
+        assertThat(cache.allEntries().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldTellWhichPipelinesWereRemovedSinceAGivenTimeStamp() {
+        cache = new GoDashboardCache(new TimeStampBasedCounter(new SystemTimeClock()));
+        long beforeAnything = cache.allEntries().lastUpdatedTimeStamp() - 1;
+        GoDashboardPipeline pipeline1 = pipeline("pipeline1");
+        GoDashboardPipeline pipeline2 = pipeline("pipeline2");
+        cache.put(pipeline1);
+        cache.put(pipeline2);
+        cache.put(pipeline("pipeline3"));
+        long beforeRemovals = cache.allEntries().lastUpdatedTimeStamp();
+
+        cache.remove(cis("pipeline1"));
+        cache.replaceAllEntriesInCacheWith(List.of(pipeline("pipeline3")));
+        long afterRemovals = cache.allEntries().lastUpdatedTimeStamp();
+
+        assertThat(cache.allEntries().removedSince(beforeRemovals).get(), contains(pipeline1, pipeline2));
+        assertThat(cache.allEntries().removedSince(afterRemovals).get(), is(empty()));
+        assertThat(cache.allEntries().removedSince(beforeAnything).isPresent(), is(false));
+
+        cache.put(pipeline("pipeline1"));
+        assertThat(cache.allEntries().removedSince(beforeRemovals).get(), contains(pipeline2));
+    }
+
     private CaseInsensitiveString cis(String value) {
         return new CaseInsensitiveString(value);
     }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.domain;
+
+import com.thoughtworks.go.domain.PipelineTimelineEntry;
+import com.thoughtworks.go.helper.PipelineTimelineEntryMother;
+import com.thoughtworks.go.server.service.ArtifactsDirHolder;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+public class PipelineTimelineSnapshotTest {
+    private final List<String> materials = List.of("git", "svn");
+    private final DateTime now = new DateTime();
+    private File file;
+    private PipelineTimelineSnapshot snapshot;
+
+    @BeforeEach
+    public void setUp(@TempDir Path tempDir) {
+        file = tempDir.resolve("timeline/pipelines.snapshot").toFile();
+        snapshot = new PipelineTimelineSnapshot(file);
+    }
+
+    @Test
+    public void shouldReadBackTheRunsItWasGivenInOrder() throws IOException {
+        PipelineTimelineEntry first = run(1, 1);
+        PipelineTimelineEntry second = run(2, 2);
+        PipelineTimelineEntry third = run(3, 3);
+
+        snapshot.write(List.of(first, second));
+        snapshot.append(List.of(third));
+
+        List<PipelineTimelineEntry> entries = snapshot.read();
+        assertThat(entries).containsExactly(first, second, third);
+        assertThat(entries.get(2).getPipelineName()).isEqualTo("pipeline");
+        assertThat(entries.get(2).getCounter()).isEqualTo(3);
+        assertThat(entries.get(2).naturalOrder()).isEqualTo(3.0);
+        assertThat(entries.get(2).revisions()).isEqualTo(third.revisions());
+    }
+
+    @Test
+    public void shouldKeepTheExactTypeOfModificationTimes() throws IOException {
+        Timestamp modifiedTime = new Timestamp(now.getMillis());
+        modifiedTime.setNanos(123456789);
+        PipelineTimelineEntry run = new PipelineTimelineEntry("pipeline", 1, 1,
+            Map.of("git", List.of(new PipelineTimelineEntry.Revision(modifiedTime, "abc", "folder", 10))), 1.0);
+
+        snapshot.write(List.of(run));
+
+        PipelineTimelineEntry.Revision revision = snapshot.read().get(0).revisions().get("git").get(0);
+        assertThat(revision.date).isInstanceOf(Timestamp.class).isEqualTo(modifiedTime);
+        assertThat(revision.folder).isEqualTo("folder");
+        assertThat(revision.id).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldDropARunThatWasNotCompletelyWrittenAndCarryOnAfterTheLastCompleteOne() throws IOException {
+        snapshot.write(List.of(run(1, 1), run(2, 2)));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        assertThat(snapshot.read()).containsExactly(run(1, 1));
+
+        snapshot.append(List.of(run(2, 2)));
+        assertThat(snapshot.read()).containsExactly(run(1, 1), run(2, 2));
+    }
+
+    @Test
+    public void shouldRefuseASnapshotWrittenInAnotherFormat() throws IOException {
+        file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(PipelineTimelineSnapshot.MAGIC);
+            out.writeInt(PipelineTimelineSnapshot.FORMAT_VERSION + 1);
+        }
+
+        assertThatThrownBy(() -> snapshot.read()).isInstanceOf(IOException.class).hasMessageContaining("format version");
+    }
+
+    @Test
+    public void shouldDoNothingWhenDisabled() throws IOException {
+        PipelineTimelineSnapshot disabled = new PipelineTimelineSnapshot((File) null);
+
+        disabled.write(List.of(run(1, 1)));
+        disabled.append(List.of(run(2, 2)));
+
+        assertThat(disabled.read()).isEmpty();
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    public void shouldKeepTheSnapshotInTheArtifactsDirectoryOnceItIsKnown(@TempDir Path artifactsDir) throws IOException {
+        SystemEnvironment systemEnvironment = mock(SystemEnvironment.class);
+        when(systemEnvironment.get(SystemEnvironment.PIPELINE_TIMELINE_SNAPSHOT)).thenReturn(true);
+        ArtifactsDirHolder artifactsDirHolder = mock(ArtifactsDirHolder.class);
+        PipelineTimelineSnapshot snapshot = new PipelineTimelineSnapshot(systemEnvironment, artifactsDirHolder);
+
+        assertThat(snapshot.isEnabled()).isFalse();
+
+        when(artifactsDirHolder.getArtifactsDir()).thenReturn(artifactsDir.toFile());
+        snapshot.write(List.of(run(1, 1)));
+
+        assertThat(artifactsDir.resolve(PipelineTimelineSnapshot.PIPELINE_TIMELINE_SNAPSHOT)).exists();
+        assertThat(snapshot.read()).containsExactly(run(1, 1));
+    }
+
+    @Test
+    public void shouldNotKeepASnapshotUnlessTurnedOn() {
+        ArtifactsDirHolder artifactsDirHolder = mock(ArtifactsDirHolder.class);
+        PipelineTimelineSnapshot snapshot = new PipelineTimelineSnapshot(new SystemEnvironment(), artifactsDirHolder);
+
+        assertThat(snapshot.isEnabled()).isFalse();
+        verifyNoInteractions(artifactsDirHolder);
+    }
+
+    private PipelineTimelineEntry run(long id, int counter) {
+        PipelineTimelineEntry entry = PipelineTimelineEntryMother.modification(id, materials, List.of(now, now.plusMinutes(counter)), counter, "rev-" + counter);
+        return new PipelineTimelineEntry(entry.getPipelineName(), id, counter, entry.revisions(), counter);
+    }
+}
@@ -25,14 +25,17 @@ import com.thoughtworks.go.server.transaction.TransactionTemplate;
 import org.joda.time.DateTime;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.stubbing.Answer;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionSynchronization;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -84,6 +87,22 @@ public class PipelineTimelineTest {
         assertBeforeAfter(mods, fourth, third, null);
     }
 
+    @Test
+    public void shouldFindRunsByIdWhenTheyAreAddedInIdOrder() {
+        PipelineTimeline mods = new PipelineTimeline(pipelineRepository, transactionTemplate, transactionSynchronizationManager);
+        mods.add(first);
+        mods.add(second);
+        mods.add(third);
+        mods.add(fourth);
+
+        assertBeforeAfter(mods, first, null, null);
+        assertBeforeAfter(mods, second, first, null);
+        assertBeforeAfter(mods, third, second, null);
+        assertBeforeAfter(mods, fourth, third, null);
+        assertThatThrownBy(() -> mods.runBefore(5, new CaseInsensitiveString(pipelineName)))
+            .hasMessage("Cannot find pipeline with id: 5");
+    }
+
     private void assertBeforeAfter(PipelineTimeline mods, PipelineTimelineEntry actual, PipelineTimelineEntry before, PipelineTimelineEntry after) {
         PipelineTimelineEntry actualBefore = mods.runBefore(actual.getId(), new CaseInsensitiveString(pipelineName));
         PipelineTimelineEntry actualAfter = mods.runAfter(actual.getId(), new CaseInsensitiveString(pipelineName));
@@ -207,6 +226,54 @@ public class PipelineTimelineTest {
         assertThat(timeline.maximumId(), is(2L));
     }
 
+    @Test
+    public void updateOnInitShouldLoadTheSnapshotAndOnlyTheRunsAfterItFromTheDatabase(@TempDir Path tempDir) {
+        PipelineTimelineSnapshot snapshot = new PipelineTimelineSnapshot(tempDir.resolve("timeline.snapshot").toFile());
+        PipelineTimeline beforeRestart = new PipelineTimeline(pipelineRepository, transactionTemplate, transactionSynchronizationManager, snapshot);
+        stubPipelineRepository(beforeRestart, true, first, second);
+        beforeRestart.updateTimelineOnInit();
+
+        PipelineTimeline afterRestart = new PipelineTimeline(pipelineRepository, transactionTemplate, transactionSynchronizationManager, snapshot);
+        when(pipelineRepository.hasPipelineInstance(2L, "pipeline")).thenReturn(true);
+        List<Long> loadedAfter = new ArrayList<>();
+        doAnswer(invocation -> {
+            loadedAfter.add(afterRestart.maximumId());
+            afterRestart.add(third);
+            return null;
+        }).when(pipelineRepository).updatePipelineTimeline(eq(afterRestart), anyList());
+
+        afterRestart.updateTimelineOnInit();
+
+        assertThat(loadedAfter, is(List.of(2L)));
+        assertThat(afterRestart.maximumId(), is(3L));
+        assertThat(afterRestart.instanceCount(new CaseInsensitiveString(pipelineName)), is(3));
+        assertThat(afterRestart.runBefore(2L, new CaseInsensitiveString(pipelineName)), is(first));
+        assertThat(afterRestart.runBefore(3L, new CaseInsensitiveString(pipelineName)), is(second));
+        assertThat(afterRestart.runAfter(2L, new CaseInsensitiveString(pipelineName)), is(nullValue()));
+    }
+
+    @Test
+    public void updateOnInitShouldLoadEverythingFromTheDatabaseWhenTheSnapshotIsAheadOfIt(@TempDir Path tempDir) {
+        PipelineTimelineSnapshot snapshot = new PipelineTimelineSnapshot(tempDir.resolve("timeline.snapshot").toFile());
+        PipelineTimeline beforeRestart = new PipelineTimeline(pipelineRepository, transactionTemplate, transactionSynchronizationManager, snapshot);
+        stubPipelineRepository(beforeRestart, true, first, second);
+        beforeRestart.updateTimelineOnInit();
+
+        PipelineTimeline afterRestart = new PipelineTimeline(pipelineRepository, transactionTemplate, transactionSynchronizationManager, snapshot);
+        when(pipelineRepository.hasPipelineInstance(2L, "pipeline")).thenReturn(false);
+        List<Long> loadedAfter = new ArrayList<>();
+        doAnswer(invocation -> {
+            loadedAfter.add(afterRestart.maximumId());
+            afterRestart.add(third);
+            return null;
+        }).when(pipelineRepository).updatePipelineTimeline(eq(afterRestart), anyList());
+
+        afterRestart.updateTimelineOnInit();
+
+        assertThat(loadedAfter, is(List.of(-1L)));
+        assertThat(afterRestart.instanceCount(new CaseInsensitiveString(pipelineName)), is(1));
+    }
+
     @Test
     public void updateShouldLoadNewInstancesFromTheDatabase() {
         stubTransactionSynchronization();
@@ -35,6 +35,7 @@ import com.thoughtworks.go.server.service.*;
 import com.thoughtworks.go.server.service.support.ResourceMonitoring;
 import com.thoughtworks.go.server.service.support.toggle.FeatureToggleService;
 import com.thoughtworks.go.server.service.support.toggle.Toggles;
+import com.thoughtworks.go.server.websocket.ConsoleLogSender;
 import com.thoughtworks.go.service.ConfigRepository;
 import com.thoughtworks.go.util.ReflectionUtil;
 import org.junit.jupiter.api.BeforeEach;
@@ -115,6 +116,8 @@ public class ApplicationInitializerTest {
     @Mock
     private ConsoleService consoleService;
     @Mock
+    private ConsoleLogSender consoleLogSender;
+    @Mock
     private ContextRefreshedEvent contextRefreshedEvent;
     @Mock
     private PipelineConfigService pipelineConfigService;
@@ -162,6 +165,11 @@ public class ApplicationInitializerTest {
         verify(backupService).initialize();
     }
 
+    @Test
+    public void shouldListenForJobCompletionsToCloseSharedConsoleLogTails() {
+        verify(consoleLogSender).initialize();
+    }
+
     @Test
     public void shouldRunConfigCipherUpdaterBeforeInitializationOfOtherConfigRelatedServicesAndDatastores() throws Exception {
         InOrder inOrder = inOrder(configCipherUpdater, configElementImplementationRegistrar, configRepository, goFileConfigDataSource, cachedGoConfig, goConfigService);
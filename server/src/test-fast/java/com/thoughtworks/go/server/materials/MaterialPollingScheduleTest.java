@@ -0,0 +1,168 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.materials;
+
+import com.thoughtworks.go.domain.materials.Material;
+import com.thoughtworks.go.helper.MaterialsMother;
+import com.thoughtworks.go.server.persistence.MaterialRepository;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.joda.time.DateTimeUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class MaterialPollingScheduleTest {
+    private static final long NOW = DAYS.toMillis(365);
+
+    private final Material hot = MaterialsMother.gitMaterial("http://hot.repo");
+    private final Material cold = MaterialsMother.gitMaterial("http://cold.repo");
+    private final Material unknown = MaterialsMother.gitMaterial("http://unknown.repo");
+    private MaterialRepository materialRepository;
+    private SystemEnvironment systemEnvironment;
+    private MaterialPollingSchedule schedule;
+
+    @BeforeEach
+    public void setUp() {
+        materialRepository = mock(MaterialRepository.class);
+        systemEnvironment = new SystemEnvironment();
+        systemEnvironment.setProperty(SystemEnvironment.MATERIAL_UPDATE_IDLE_INTERVAL_PROPERTY, String.valueOf(MINUTES.toMillis(1)));
+        systemEnvironment.set(SystemEnvironment.MDU_MAX_POLLING_INTERVAL_IN_MILLIS, MINUTES.toMillis(10));
+        schedule = new MaterialPollingSchedule(materialRepository, systemEnvironment);
+        DateTimeUtils.setCurrentMillisFixed(NOW);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+        systemEnvironment.clearProperty(SystemEnvironment.MATERIAL_UPDATE_IDLE_INTERVAL_PROPERTY);
+        systemEnvironment.reset(SystemEnvironment.MDU_MAX_POLLING_INTERVAL_IN_MILLIS);
+    }
+
+    @Test
+    public void shouldPollMaterialsThatHaveNotBeenPolledYet() {
+        assertThat(schedule.due(List.of(hot, cold))).containsExactlyInAnyOrder(hot, cold);
+    }
+
+    @Test
+    public void shouldPollMaterialsThatChangeOftenAtTheMaterialUpdateInterval() {
+        when(materialRepository.latestModificationTimes(hot, MaterialPollingSchedule.HISTORY_SIZE)).thenReturn(changes(SECONDS.toMillis(30)));
+
+        schedule.polled(hot);
+
+        assertThat(schedule.due(List.of(hot))).isEmpty();
+        DateTimeUtils.setCurrentMillisFixed(NOW + MINUTES.toMillis(1));
+        assertThat(schedule.due(List.of(hot))).containsExactly(hot);
+    }
+
+    @Test
+    public void shouldPollMaterialsThatRarelyChangeNoLessOftenThanTheMaximumInterval() {
+        when(materialRepository.latestModificationTimes(cold, MaterialPollingSchedule.HISTORY_SIZE)).thenReturn(changes(DAYS.toMillis(3)));
+
+        schedule.polled(cold);
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + MINUTES.toMillis(9));
+        assertThat(schedule.due(List.of(cold))).isEmpty();
+        DateTimeUtils.setCurrentMillisFixed(NOW + MINUTES.toMillis(10));
+        assertThat(schedule.due(List.of(cold))).containsExactly(cold);
+    }
+
+    @Test
+    public void shouldPollMaterialsInBetweenAccordingToHowOftenTheyChange() {
+        when(materialRepository.latestModificationTimes(hot, MaterialPollingSchedule.HISTORY_SIZE)).thenReturn(changes(MINUTES.toMillis(40)));
+
+        schedule.polled(hot);
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + MINUTES.toMillis(3));
+        assertThat(schedule.due(List.of(hot))).isEmpty();
+        DateTimeUtils.setCurrentMillisFixed(NOW + MINUTES.toMillis(4));
+        assertThat(schedule.due(List.of(hot))).containsExactly(hot);
+    }
+
+    @Test
+    public void shouldSlowDownPollingOfMaterialsThatHaveStoppedChanging() {
+        List<Date> burstLongAgo = new ArrayList<>();
+        for (int i = 0; i < MaterialPollingSchedule.HISTORY_SIZE; i++) {
+            burstLongAgo.add(new Date(NOW - DAYS.toMillis(7) - SECONDS.toMillis(i)));
+        }
+        when(materialRepository.latestModificationTimes(hot, MaterialPollingSchedule.HISTORY_SIZE)).thenReturn(burstLongAgo);
+
+        schedule.polled(hot);
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + MINUTES.toMillis(5));
+        assertThat(schedule.due(List.of(hot))).isEmpty();
+    }
+
+    @Test
+    public void shouldPollTheMaterialsExpectedToChangeFirstFirst() {
+        when(materialRepository.latestModificationTimes(hot, MaterialPollingSchedule.HISTORY_SIZE)).thenReturn(changes(SECONDS.toMillis(30)));
+        when(materialRepository.latestModificationTimes(cold, MaterialPollingSchedule.HISTORY_SIZE)).thenReturn(changes(DAYS.toMillis(3)));
+        schedule.polled(cold);
+        schedule.polled(hot);
+
+        DateTimeUtils.setCurrentMillisFixed(NOW + HOURS.toMillis(1));
+
+        assertThat(schedule.due(List.of(cold, hot, unknown))).containsExactly(unknown, hot, cold);
+    }
+
+    @Test
+    public void shouldPollAtTheMaterialUpdateIntervalByDefault() {
+        systemEnvironment.reset(SystemEnvironment.MDU_MAX_POLLING_INTERVAL_IN_MILLIS);
+        schedule = new MaterialPollingSchedule(materialRepository, systemEnvironment);
+
+        schedule.polled(cold);
+
+        verify(materialRepository, never()).latestModificationTimes(any(), anyInt());
+        DateTimeUtils.setCurrentMillisFixed(NOW + MINUTES.toMillis(1));
+        assertThat(schedule.due(List.of(cold))).containsExactly(cold);
+    }
+
+    @Test
+    public void shouldCountPollsThatFindNewChanges() {
+        when(materialRepository.latestModificationTimes(hot, MaterialPollingSchedule.HISTORY_SIZE))
+                .thenReturn(changes(MINUTES.toMillis(1)))
+                .thenReturn(changes(MINUTES.toMillis(1)))
+                .thenReturn(List.of(new Date(NOW)));
+
+        schedule.polled(hot);
+        schedule.polled(hot);
+        schedule.polled(hot);
+
+        assertThat(schedule.statistics())
+                .containsEntry("Materials Scheduled", 1)
+                .containsEntry("Polls Finding New Changes", 1L);
+    }
+
+    /**
+     * @return the times of changes made a given period apart, the latest of them that period ago
+     */
+    private static List<Date> changes(long period) {
+        List<Date> changes = new ArrayList<>();
+        for (int i = 1; i <= MaterialPollingSchedule.HISTORY_SIZE; i++) {
+            changes.add(new Date(NOW - i * period));
+        }
+        return changes;
+    }
+}
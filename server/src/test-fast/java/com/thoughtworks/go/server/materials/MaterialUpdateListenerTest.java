@@ -107,5 +107,6 @@ public class MaterialUpdateListenerTest {
         when(maintenanceModeService.isMaintenanceMode()).thenReturn(true);
         materialUpdateListener.onMessage(new MaterialUpdateMessage(MATERIAL, 10));
         verify(topic).post(new MaterialUpdateSkippedMessage(MATERIAL, 10));
+        verify(mduPerformanceLogger).skippedMDU(10, MATERIAL);
     }
 }
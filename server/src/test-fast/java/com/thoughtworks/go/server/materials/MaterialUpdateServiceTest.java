@@ -68,6 +68,7 @@ import static com.thoughtworks.go.server.materials.BackOffResult.PERMIT;
 import static java.util.Collections.emptyList;
 import static java.util.stream.Collectors.toSet;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.Mockito.*;
 
@@ -106,6 +107,8 @@ public class MaterialUpdateServiceTest {
     private MDUPerformanceLogger mduPerformanceLogger;
     @Mock
     private ExponentialBackoffService exponentialBackoffService;
+    @Mock
+    private SharedGitRepositories sharedGitRepositories;
 
     private static final SvnMaterialConfig MATERIAL_CONFIG = MaterialConfigsMother.svnMaterialConfig();
     private Username username;
@@ -118,7 +121,7 @@ public class MaterialUpdateServiceTest {
     void setUp() {
         service = new MaterialUpdateService(queue, configQueue, completed, watchList, goConfigService, systemEnvironment,
                 serverHealthService, postCommitHookMaterialType, mduPerformanceLogger, materialConfigConverter,
-                dependencyMaterialUpdateQueue, maintenanceModeService, secretParamResolver, exponentialBackoffService);
+                dependencyMaterialUpdateQueue, maintenanceModeService, secretParamResolver, exponentialBackoffService, sharedGitRepositories);
 
         service.registerMaterialSources(scmMaterialSource);
         service.registerMaterialUpdateCompleteListener(scmMaterialSource);
@@ -190,6 +193,16 @@ public class MaterialUpdateServiceTest {
             verify(configQueue, times(0)).post(any(MaterialUpdateMessage.class));
         }
 
+        @Test
+        void shouldStopTrackingTheUpdateWhenItCannotBePosted() {
+            when(mduPerformanceLogger.materialSentToUpdateQueue(svnMaterial)).thenReturn(42L);
+            doThrow(new RuntimeException("queue is full")).when(queue).post(any(MaterialUpdateMessage.class));
+
+            assertThatThrownBy(() -> service.updateMaterial(svnMaterial)).hasMessage("queue is full");
+
+            verify(mduPerformanceLogger).materialNotSentToUpdateQueue(42L, svnMaterial);
+        }
+
         @Test
         void shouldPostUpdateMessageOnConfigQueueForConfigMaterial() {
             when(watchList.hasConfigRepoWithFingerprint(svnMaterial.getFingerprint())).thenReturn(true);
@@ -26,6 +26,7 @@ import com.thoughtworks.go.domain.packagerepository.PackageRepository;
 import com.thoughtworks.go.domain.scm.SCM;
 import com.thoughtworks.go.helper.MaterialsMother;
 import com.thoughtworks.go.listener.EntityConfigChangedListener;
+import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.service.GoConfigService;
 import com.thoughtworks.go.server.service.MaterialConfigConverter;
 import com.thoughtworks.go.serverhealth.ServerHealthService;
@@ -52,6 +53,7 @@ public class SCMMaterialSourceTest {
     private SystemEnvironment systemEnvironment;
     private MaterialConfigConverter materialConfigConverter;
     private MaterialUpdateService materialUpdateService;
+    private MaterialPollingSchedule pollingSchedule;
     private Material svnMaterial = MaterialsMother.svnMaterial();
     private Material gitMaterial = MaterialsMother.gitMaterial("http://my.repo");
 
@@ -62,8 +64,9 @@ public class SCMMaterialSourceTest {
         serverHealthService = mock(ServerHealthService.class);
         materialConfigConverter = mock(MaterialConfigConverter.class);
         materialUpdateService = mock(MaterialUpdateService.class);
+        pollingSchedule = new MaterialPollingSchedule(mock(MaterialRepository.class), systemEnvironment);
 
-        source = new SCMMaterialSource(goConfigService, systemEnvironment, materialConfigConverter, materialUpdateService);
+        source = new SCMMaterialSource(goConfigService, materialConfigConverter, materialUpdateService, pollingSchedule);
     }
 
     @AfterEach
@@ -125,7 +128,7 @@ public class SCMMaterialSourceTest {
                 .thenReturn(emptySet())
                 .thenReturn(Set.of(gitMaterial));
 
-        source = new SCMMaterialSource(goConfigService, systemEnvironment, new MaterialConfigConverter(), materialUpdateService);
+        source = new SCMMaterialSource(goConfigService, new MaterialConfigConverter(), materialUpdateService, pollingSchedule);
         source.initialize();
 
         EntityConfigChangedListener entityConfigChangedListener = captor.getAllValues().get(1);
@@ -152,7 +155,7 @@ public class SCMMaterialSourceTest {
                 .thenReturn(Set.of(gitMaterial));
 
 
-        source = new SCMMaterialSource(goConfigService, systemEnvironment, new MaterialConfigConverter(), materialUpdateService);
+        source = new SCMMaterialSource(goConfigService, new MaterialConfigConverter(), materialUpdateService, pollingSchedule);
         source.initialize();
 
         EntityConfigChangedListener entityConfigChangedListener = captor.getAllValues().get(1);
@@ -178,7 +181,7 @@ public class SCMMaterialSourceTest {
                 .thenReturn(emptySet())
                 .thenReturn(Set.of(gitMaterial));
 
-        source = new SCMMaterialSource(goConfigService, systemEnvironment, new MaterialConfigConverter(), materialUpdateService);
+        source = new SCMMaterialSource(goConfigService, new MaterialConfigConverter(), materialUpdateService, pollingSchedule);
         source.initialize();
 
         EntityConfigChangedListener entityConfigChangedListener = captor.getAllValues().get(1);
@@ -204,7 +207,7 @@ public class SCMMaterialSourceTest {
                 .thenReturn(emptySet())
                 .thenReturn(Set.of(gitMaterial));
 
-        source = new SCMMaterialSource(goConfigService, systemEnvironment, new MaterialConfigConverter(), materialUpdateService);
+        source = new SCMMaterialSource(goConfigService, new MaterialConfigConverter(), materialUpdateService, pollingSchedule);
         source.initialize();
 
         EntityConfigChangedListener entityConfigChangedListener = captor.getAllValues().get(1);
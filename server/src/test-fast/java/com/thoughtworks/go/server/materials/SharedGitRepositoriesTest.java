@@ -0,0 +1,154 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.materials;
+
+import com.thoughtworks.go.config.materials.git.GitMaterial;
+import com.thoughtworks.go.domain.materials.Modification;
+import com.thoughtworks.go.domain.materials.git.GitCommand;
+import com.thoughtworks.go.domain.materials.mercurial.StringRevision;
+import com.thoughtworks.go.helper.MaterialsMother;
+import com.thoughtworks.go.server.persistence.MaterialRepository;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class SharedGitRepositoriesTest {
+    private static final String URL = "https://example.com/repo.git";
+
+    private SharedGitRepositories repositories;
+    private MaterialRepository materialRepository;
+    private GitCommand git;
+    private File workingDir;
+
+    @BeforeEach
+    public void setUp(@TempDir Path tempDir) {
+        workingDir = tempDir.resolve("shared-git-key").toFile();
+        new File(workingDir, ".git").mkdirs();
+        materialRepository = mock(MaterialRepository.class);
+        when(materialRepository.sharedFolderFor(any(GitMaterial.class))).thenReturn(workingDir);
+        git = mock(GitCommand.class);
+        repositories = new SharedGitRepositories(materialRepository, new SystemEnvironment());
+    }
+
+    @Test
+    public void shouldFetchTheBranchesOfAllRequestedUpdatesAtOnce() {
+        GitMaterial master = material("master");
+        GitMaterial feature = material("feature");
+        List<Modification> latest = List.of(new Modification());
+        when(git.latestFetchedModification()).thenReturn(latest);
+
+        repositories.updateRequested(master);
+        repositories.updateRequested(feature);
+
+        assertThat(repositories.latestModification(master)).isSameAs(latest);
+        assertThat(repositories.latestModification(feature)).isSameAs(latest);
+        verify(git).fetchBranches(any(), eq(URL), eq(Set.of("feature", "master")));
+        verifyNoMoreInteractions(ignoreStubs(git));
+    }
+
+    @Test
+    public void shouldFetchAgainWhenAnUpdateIsRequestedAfterTheLastFetch() {
+        GitMaterial master = material("master");
+
+        repositories.updateRequested(master);
+        repositories.latestModification(master);
+        repositories.updateRequested(master);
+        repositories.latestModification(master);
+
+        verify(git, times(2)).fetchBranches(any(), eq(URL), eq(Set.of("master")));
+    }
+
+    @Test
+    public void shouldFetchBranchesOnTheirOwnWhenTheyCannotBeFetchedAtOnce() {
+        GitMaterial master = material("master");
+        GitMaterial gone = material("gone");
+        doThrow(new RuntimeException("couldn't find remote ref")).when(git).fetchBranches(any(), eq(URL), eq(Set.of("gone", "master")));
+        doThrow(new RuntimeException("couldn't find remote ref")).when(git).fetchBranches(any(), eq(URL), eq(Set.of("gone")));
+
+        repositories.updateRequested(master);
+        repositories.updateRequested(gone);
+
+        repositories.latestModification(master);
+        verify(git).fetchBranches(any(), eq(URL), eq(Set.of("master")));
+
+        assertThatThrownBy(() -> repositories.latestModification(gone))
+                .hasMessageContaining("Remote branch gone not found");
+    }
+
+    @Test
+    public void shouldFallBackToTheLatestModificationWhenTheLastKnownRevisionIsNoLongerOnTheBranch() {
+        GitMaterial master = material("master");
+        StringRevision revision = new StringRevision("abc");
+        List<Modification> latest = List.of(new Modification());
+        List<Modification> since = List.of(new Modification(), new Modification());
+        when(git.latestFetchedModification()).thenReturn(latest);
+        when(git.fetchedModificationsSince(revision)).thenReturn(since);
+
+        when(git.isRevisionInRemoteBranch(revision)).thenReturn(true);
+        assertThat(repositories.modificationsSince(master, revision)).isSameAs(since);
+
+        when(git.isRevisionInRemoteBranch(revision)).thenReturn(false);
+        assertThat(repositories.modificationsSince(master, revision)).isSameAs(latest);
+    }
+
+    @Test
+    public void shouldOnlyPollPlainBranchesOfGitMaterials() {
+        assertThat(repositories.canPoll(new GitMaterial(URL, "master"))).isTrue();
+        assertThat(repositories.canPoll(new GitMaterial(URL, "refs/pull/1/head:pr-1"))).isFalse();
+        assertThat(repositories.canPoll(MaterialsMother.hgMaterial())).isFalse();
+
+        GitMaterial submodule = new GitMaterial(URL, "master");
+        submodule.setSubmoduleFolder("sub");
+        assertThat(repositories.canPoll(submodule)).isFalse();
+    }
+
+    @Test
+    public void shouldDeleteTheWorkingCopiesThatNoMaterialIsPolledFromAnyMore(@TempDir Path flyweight) {
+        GitMaterial master = material("master");
+        repositories.latestModification(master);
+        File leftOver = flyweight.resolve("shared-git-old").toFile();
+        leftOver.mkdirs();
+        when(materialRepository.sharedRepositoryKeysOnDisk()).thenReturn(Set.of("old", master.sharedRepositoryKey()));
+        when(materialRepository.sharedFolderFor("old")).thenReturn(leftOver);
+
+        repositories.removeUnused(List.of(master, MaterialsMother.hgMaterial()));
+
+        assertThat(leftOver).doesNotExist();
+        assertThat(workingDir).exists();
+
+        repositories.removeUnused(List.of(MaterialsMother.hgMaterial()));
+
+        assertThat(workingDir).doesNotExist();
+    }
+
+    private GitMaterial material(String branch) {
+        GitMaterial material = spy(new GitMaterial(URL, branch));
+        doReturn(git).when(material).sharedRepositoryCommand(any());
+        return material;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.messaging.inmemory;
+
+import com.thoughtworks.go.server.messaging.GoMessageListener;
+import com.thoughtworks.go.server.messaging.GoMessageQueue;
+import com.thoughtworks.go.server.messaging.GoMessageTopic;
+import com.thoughtworks.go.server.messaging.GoTextMessage;
+import com.thoughtworks.go.server.messaging.activemq.JMSMessageListenerAdapter;
+import com.thoughtworks.go.server.service.support.DaemonThreadStatsCollector;
+import com.thoughtworks.go.serverhealth.ServerHealthService;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class InMemoryMessagingServiceTest {
+    private InMemoryMessagingService messaging;
+
+    @BeforeEach
+    public void setUp() {
+        SystemEnvironment systemEnvironment = mock(SystemEnvironment.class);
+        when(systemEnvironment.get(SystemEnvironment.IN_MEMORY_MESSAGING_CAPACITY)).thenReturn(10);
+        messaging = new InMemoryMessagingService(new DaemonThreadStatsCollector(), systemEnvironment, mock(ServerHealthService.class));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        messaging.stop();
+    }
+
+    @Test
+    public void shouldGiveEveryMessagePostedToATopicToEachOfItsListeners() throws Exception {
+        GoMessageTopic<GoTextMessage> topic = new GoMessageTopic<>(messaging, "topic") {
+        };
+        RecordingListener first = new RecordingListener(2);
+        RecordingListener second = new RecordingListener(2);
+        topic.addListener(first);
+        topic.addListener(second);
+
+        GoTextMessage hello = new GoTextMessage("hello");
+        topic.post(hello);
+        topic.post(new GoTextMessage("world"));
+
+        first.await();
+        second.await();
+        assertThat(first.texts()).containsExactly("hello", "world");
+        assertThat(second.texts()).containsExactly("hello", "world");
+        assertThat(first.received.get(0)).isSameAs(hello);
+    }
+
+    @Test
+    public void shouldGiveEachMessagePostedToAQueueToOneOfItsListeners() throws Exception {
+        GoMessageQueue<GoTextMessage> queue = new GoMessageQueue<>(messaging, "queue") {
+        };
+        CountDownLatch received = new CountDownLatch(5);
+        RecordingListener first = new RecordingListener(received);
+        RecordingListener second = new RecordingListener(received);
+        queue.addListener(first);
+        queue.addListener(second);
+
+        for (int i = 0; i < 5; i++) {
+            queue.post(new GoTextMessage("message " + i));
+        }
+
+        assertThat(received.await(10, SECONDS)).isTrue();
+        assertThat(first.received.size() + second.received.size()).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldDropMessagesWhichHaveOutlivedTheirTimeToLive() throws Exception {
+        GoMessageQueue<GoTextMessage> queue = new GoMessageQueue<>(messaging, "queue") {
+        };
+        queue.post(new GoTextMessage("expired"), 1);
+        queue.post(new GoTextMessage("alive"));
+        Thread.sleep(20);
+
+        RecordingListener listener = new RecordingListener(1);
+        queue.addListener(listener);
+
+        listener.await();
+        assertThat(listener.texts()).containsExactly("alive");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> statistics = (Map<String, Object>) messaging.statistics().get("Queue queue");
+        assertThat(statistics).containsEntry("Sent", 2L).containsEntry("Expired", 1L);
+    }
+
+    @Test
+    public void shouldStopListenersOfAQueueWhenItIsRemoved() throws Exception {
+        GoMessageQueue<GoTextMessage> queue = new GoMessageQueue<>(messaging, "queue") {
+        };
+        JMSMessageListenerAdapter first = queue.addListener(new RecordingListener(1));
+        JMSMessageListenerAdapter second = queue.addListener(new RecordingListener(1));
+
+        queue.stop();
+
+        first.thread.join(SECONDS.toMillis(10));
+        second.thread.join(SECONDS.toMillis(10));
+        assertThat(first.thread.isAlive()).isFalse();
+        assertThat(second.thread.isAlive()).isFalse();
+    }
+
+    private static class RecordingListener implements GoMessageListener<GoTextMessage> {
+        private final List<GoTextMessage> received = new CopyOnWriteArrayList<>();
+        private final CountDownLatch latch;
+
+        private RecordingListener(int expected) {
+            this(new CountDownLatch(expected));
+        }
+
+        private RecordingListener(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void onMessage(GoTextMessage message) {
+            received.add(message);
+            latch.countDown();
+        }
+
+        private void await() throws InterruptedException {
+            assertThat(latch.await(10, SECONDS)).isTrue();
+        }
+
+        private List<String> texts() {
+            return received.stream().map(GoTextMessage::getText).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.util.ArtifactLogUtil;
+import com.thoughtworks.go.util.SystemEnvironment;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ArtifactBlobStoreTest {
+    private File artifactsRoot;
+    private SystemEnvironment systemEnvironment;
+    private ArtifactBlobStore blobStore;
+
+    @BeforeEach
+    public void setUp(@TempDir Path tempDir) {
+        artifactsRoot = tempDir.toFile();
+        ArtifactsDirHolder artifactsDirHolder = mock(ArtifactsDirHolder.class);
+        when(artifactsDirHolder.getArtifactsDir()).thenReturn(artifactsRoot);
+        systemEnvironment = mock(SystemEnvironment.class);
+        when(systemEnvironment.get(SystemEnvironment.ARTIFACT_DEDUPLICATION)).thenReturn(true);
+        blobStore = new ArtifactBlobStore(artifactsDirHolder, systemEnvironment);
+    }
+
+    @Test
+    public void shouldKeepTheSameFileUploadedByTwoJobsOnDiskOnce() throws IOException {
+        File job1 = new File(artifactsRoot, "pipelines/p/1/s/1/job");
+        File job2 = new File(artifactsRoot, "pipelines/p/2/s/1/job");
+        File file1 = write(job1, "dist/app.jar", "the same content");
+        File file2 = write(job2, "dist/app.jar", "the same content");
+        File other = write(job2, "dist/other.jar", "other content");
+
+        blobStore.deduplicate(List.of(file1));
+        blobStore.deduplicate(List.of(file2, other));
+
+        assertThat(Files.isSameFile(file1.toPath(), file2.toPath())).isTrue();
+        assertThat(Files.isSameFile(file1.toPath(), other.toPath())).isFalse();
+        assertThat(FileUtils.readFileToString(file2, UTF_8)).isEqualTo("the same content");
+    }
+
+    @Test
+    public void shouldOnlyLinkTheFilesItIsGiven() throws IOException {
+        File job1 = new File(artifactsRoot, "pipelines/p/1/s/1/job");
+        File job2 = new File(artifactsRoot, "pipelines/p/2/s/1/job");
+        File file1 = write(job1, "dist/app.jar", "the same content");
+        File file2 = write(job2, "dist/app.jar", "the same content");
+        File notUploaded = write(job2, "dist/lib.jar", "the same content");
+
+        blobStore.deduplicate(List.of(file1));
+        blobStore.deduplicate(List.of(file2));
+
+        assertThat(Files.isSameFile(file1.toPath(), notUploaded.toPath())).isFalse();
+    }
+
+    @Test
+    public void shouldNeverLinkTheConsoleOutputOrAnythingElseAppendedToWhileTheJobRuns() throws IOException {
+        File job1 = new File(artifactsRoot, "pipelines/p/1/s/1/job");
+        File job2 = new File(artifactsRoot, "pipelines/p/2/s/1/job");
+        File log1 = write(job1, ArtifactLogUtil.CRUISE_OUTPUT_FOLDER + "/console.log", "the same content");
+        File log2 = write(job2, ArtifactLogUtil.CRUISE_OUTPUT_FOLDER + "/console.log", "the same content");
+
+        blobStore.deduplicate(List.of(log1));
+        blobStore.deduplicate(List.of(log2));
+
+        assertThat(Files.isSameFile(log1.toPath(), log2.toPath())).isFalse();
+        assertThat(new File(artifactsRoot, ArtifactBlobStore.STORE_FOLDER)).doesNotExist();
+    }
+
+    @Test
+    public void shouldGiveAFileACopyOfItsOwnBeforeItIsWrittenTo() throws IOException {
+        File job1 = new File(artifactsRoot, "pipelines/p/1/s/1/job");
+        File job2 = new File(artifactsRoot, "pipelines/p/2/s/1/job");
+        File file1 = write(job1, "log.txt", "the same content");
+        File file2 = write(job2, "log.txt", "the same content");
+        blobStore.deduplicate(List.of(file1));
+        blobStore.deduplicate(List.of(file2));
+
+        blobStore.unshare(file2);
+        FileUtils.writeStringToFile(file2, " and more", UTF_8, true);
+
+        assertThat(Files.isSameFile(file1.toPath(), file2.toPath())).isFalse();
+        assertThat(FileUtils.readFileToString(file1, UTF_8)).isEqualTo("the same content");
+    }
+
+    @Test
+    public void shouldDeleteTheCopiesInTheStoreThatNoArtifactLinksToAnyMoreWhenReclaimed() throws IOException {
+        File job1 = new File(artifactsRoot, "pipelines/p/1/s/1/job");
+        File job2 = new File(artifactsRoot, "pipelines/p/2/s/1/job");
+        File file1 = write(job1, "log.txt", "the same content");
+        File file2 = write(job2, "log.txt", "the same content");
+        File other = write(job2, "other.txt", "other content");
+        blobStore.deduplicate(List.of(file1));
+        blobStore.deduplicate(List.of(file2, other));
+        File store = new File(artifactsRoot, ArtifactBlobStore.STORE_FOLDER);
+
+        FileUtils.deleteQuietly(job1);
+        FileUtils.deleteQuietly(other);
+        blobStore.reclaim();
+        assertThat(blobsIn(store)).isEqualTo(1);
+
+        FileUtils.deleteQuietly(job2);
+        blobStore.reclaim();
+        assertThat(blobsIn(store)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldLeaveArtifactsAsTheyAreWhenDeduplicationIsTurnedOff() throws IOException {
+        when(systemEnvironment.get(SystemEnvironment.ARTIFACT_DEDUPLICATION)).thenReturn(false);
+        File job = new File(artifactsRoot, "pipelines/p/1/s/1/job");
+        File file = write(job, "log.txt", "content");
+
+        blobStore.deduplicate(List.of(file));
+
+        assertThat(new File(artifactsRoot, ArtifactBlobStore.STORE_FOLDER)).doesNotExist();
+    }
+
+    private File write(File jobRoot, String path, String content) throws IOException {
+        File file = new File(jobRoot, path);
+        FileUtils.writeStringToFile(file, content, UTF_8);
+        return file;
+    }
+
+    private long blobsIn(File store) throws IOException {
+        try (Stream<Path> files = Files.walk(store.toPath())) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
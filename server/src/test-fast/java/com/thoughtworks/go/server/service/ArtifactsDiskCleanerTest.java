@@ -29,6 +29,7 @@ import com.thoughtworks.go.util.SystemEnvironment;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
+import org.mockito.InOrder;
 import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
@@ -129,10 +130,33 @@ public class ArtifactsDiskCleanerTest {
 
         verify(artifactService).purgeArtifactsForStage(stageOne);
         verify(artifactService).purgeArtifactsForStage(stageTwo);
+        verify(artifactService, times(2)).reclaimUnusedArtifactCopies();
         verify(configDbStateRepository).flushConfigState();
         verifyNoMoreInteractions(artifactService);
     }
 
+    @Test
+    public void shouldStopDeletingOnceReclaimingTheCopiesOfDeletedArtifactsFreesEnoughDisk() {
+        serverConfig.setPurgeLimits(5.0, 9.0);
+        Stage stageOne = StageMother.passedStageInstance("stage", "build", "pipeline");
+        Stage stageTwo = StageMother.passedStageInstance("another", "job", "with-pipeline");
+
+        when(stageService.oldestStagesWithDeletableArtifacts()).thenReturn(List.of(stageOne, stageTwo));
+        when(diskSpaceChecker.getUsableSpace(goConfigService.artifactsDir())).thenReturn(4 * GoConstants.GIGA_BYTE);
+
+        doAnswer((Answer<Object>) invocation -> {
+            when(diskSpaceChecker.getUsableSpace(goConfigService.artifactsDir())).thenReturn(10 * GoConstants.GIGA_BYTE);
+            return null;
+        }).when(artifactService).reclaimUnusedArtifactCopies();
+
+        artifactsDiskCleaner.deleteOldArtifacts();
+
+        InOrder inOrder = inOrder(artifactService);
+        inOrder.verify(artifactService).purgeArtifactsForStage(stageOne);
+        inOrder.verify(artifactService).reclaimUnusedArtifactCopies();
+        verify(artifactService, never()).purgeArtifactsForStage(stageTwo);
+    }
+
     @Test
     public void shouldDeleteMultiplePagesOfOldestStagesHavingArtifacts() {
         serverConfig.setPurgeLimits(5.0, 9.0);
@@ -167,6 +191,7 @@ public class ArtifactsDiskCleanerTest {
         verify(artifactService).purgeArtifactsForStage(stageThree);
         verify(artifactService).purgeArtifactsForStage(stageFour);
         verify(artifactService).purgeArtifactsForStage(stageFive);
+        verify(artifactService, times(5)).reclaimUnusedArtifactCopies();
 
         verify(stageService, times(4)).oldestStagesWithDeletableArtifacts();
         verify(configDbStateRepository, times(4)).flushConfigState();
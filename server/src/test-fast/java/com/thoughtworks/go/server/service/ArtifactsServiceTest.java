@@ -64,6 +64,7 @@ public class ArtifactsServiceTest {
     private File fakeRoot;
     private JobResolverService resolverService;
     private StageDao stageService;
+    private ConsoleService consoleService;
 
     @BeforeEach
     void setUp() throws IOException {
@@ -71,6 +72,7 @@ public class ArtifactsServiceTest {
         zipUtil = mock(ZipUtil.class);
         resolverService = mock(JobResolverService.class);
         stageService = mock(StageDao.class);
+        consoleService = mock(ConsoleService.class);
 
         fakeRoot = TempDirUtils.createTempDirectoryIn(tempDir, "ArtifactsServiceTest").toFile();
     }
@@ -90,7 +92,7 @@ public class ArtifactsServiceTest {
         final File destFile = new File(logsDir, buildInstanceId + File.separator + LOG_XML_NAME);
 
         assumeArtifactsRoot(logsDir);
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         artifactsService.saveFile(destFile.getParentFile(), stream, true, 1);
 
         verify(zipUtil).unzip(any(ZipInputStream.class), eq(destFile.getParentFile()));
@@ -104,7 +106,7 @@ public class ArtifactsServiceTest {
         String buildInstanceId = "1";
         final File destFile = new File(logsDir, buildInstanceId + File.separator + LOG_XML_NAME);
         assumeArtifactsRoot(logsDir);
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, new ZipUtil());
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, new ZipUtil(), consoleService);
         boolean saved = artifactsService.saveFile(destFile, stream, true, 1);
         assertThat(saved).isFalse();
     }
@@ -122,7 +124,7 @@ public class ArtifactsServiceTest {
         doThrow(ioException).when(zipUtil).unzip(any(ZipInputStream.class), any(File.class));
 
         try (LogFixture logFixture = logFixtureFor(ArtifactsService.class, Level.DEBUG)) {
-            ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+            ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
             artifactsService.saveFile(destFile, stream, true, 1);
             String result;
             synchronized (logFixture) {
@@ -144,7 +146,7 @@ public class ArtifactsServiceTest {
         doThrow(ioException).when(zipUtil).unzip(any(ZipInputStream.class), any(File.class));
 
         try (LogFixture logFixture = logFixtureFor(ArtifactsService.class, Level.DEBUG)) {
-            ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+            ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
             artifactsService.saveFile(destFile, stream, true, PUBLISH_MAX_RETRIES);
             String result;
             synchronized (logFixture) {
@@ -158,7 +160,7 @@ public class ArtifactsServiceTest {
     void shouldConvertArtifactPathToFileSystemLocation() throws Exception {
         File artifactsRoot = TempDirUtils.createRandomDirectoryIn(tempDir).toFile();
         assumeArtifactsRoot(artifactsRoot);
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         File location = artifactsService.getArtifactLocation("foo/bar/baz");
         assertThat(location).isEqualTo(new File(artifactsRoot + "/foo/bar/baz"));
     }
@@ -168,7 +170,7 @@ public class ArtifactsServiceTest {
         File artifactsRoot = TempDirUtils.createRandomDirectoryIn(tempDir).toFile();
         assumeArtifactsRoot(artifactsRoot);
 
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         JobIdentifier identifier = JobIdentifierMother.jobIdentifier("p", 1, "s", "2", "j");
         when(resolverService.actualJobIdentifier(identifier)).thenReturn(identifier);
 
@@ -181,7 +183,7 @@ public class ArtifactsServiceTest {
         File artifactsRoot = TempDirUtils.createRandomDirectoryIn(tempDir).toFile();
         assumeArtifactsRoot(artifactsRoot);
 
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         JobIdentifier identifier = JobIdentifierMother.jobIdentifier("p", 1, "s", "2", "j");
         when(resolverService.actualJobIdentifier(identifier)).thenReturn(identifier);
 
@@ -194,7 +196,7 @@ public class ArtifactsServiceTest {
         File artifactsRoot = TempDirUtils.createRandomDirectoryIn(tempDir).toFile();
         assumeArtifactsRoot(artifactsRoot);
 
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         artifactsService.initialize();
         File artifact = artifactsService.findArtifact(
                 new JobIdentifier("cruise", 1, "1.1", "dev", "2", "linux-firefox", null), "pkg.zip");
@@ -205,7 +207,7 @@ public class ArtifactsServiceTest {
     @DisabledOnOs(OS.WINDOWS)
     void shouldProvideArtifactRootForAJobOnLinux() throws Exception {
         assumeArtifactsRoot(fakeRoot);
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         artifactsService.initialize();
         JobIdentifier oldId = new JobIdentifier("cruise", 1, "1.1", "dev", "2", "linux-firefox", null);
         when(resolverService.actualJobIdentifier(oldId)).thenReturn(new JobIdentifier("cruise", 2, "2.2", "functional", "3", "mac-safari"));
@@ -217,7 +219,7 @@ public class ArtifactsServiceTest {
     @EnabledOnOs(OS.WINDOWS)
     void shouldProvideArtifactRootForAJobOnWindows() throws Exception {
         assumeArtifactsRoot(fakeRoot);
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         artifactsService.initialize();
         JobIdentifier oldId = new JobIdentifier("cruise", 1, "1.1", "dev", "2", "linux-firefox", null);
         when(resolverService.actualJobIdentifier(oldId)).thenReturn(new JobIdentifier("cruise", 1, "1.1", "dev", "2", "linux-firefox", null));
@@ -228,7 +230,7 @@ public class ArtifactsServiceTest {
     @Test
     void shouldProvideArtifactUrlForAJob() throws Exception {
         assumeArtifactsRoot(fakeRoot);
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         JobIdentifier oldId = new JobIdentifier("cruise", 1, "1.1", "dev", "2", "linux-firefox");
         when(resolverService.actualJobIdentifier(oldId)).thenReturn(new JobIdentifier("cruise", 2, "2.2", "functional", "3", "windows-ie"));
         String artifactUrl = artifactsService.findArtifactUrl(oldId);
@@ -240,7 +242,7 @@ public class ArtifactsServiceTest {
         File artifactsRoot = TempDirUtils.createRandomDirectoryIn(tempDir).toFile();
         assumeArtifactsRoot(artifactsRoot);
         willCleanUp(artifactsRoot);
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         artifactsService.initialize();
         File artifact = artifactsService.findArtifact(new JobIdentifier("cruise", -2, "1.1", "dev", "2", "linux-firefox", null), "pkg.zip");
         assertThat(artifact).isEqualTo(new File(artifactsRoot, "pipelines/cruise/1.1/dev/2/linux-firefox/pkg.zip"));
@@ -268,7 +270,7 @@ public class ArtifactsServiceTest {
         FileUtils.writeStringToFile(checksumFile, "foo:25463254625346", UTF_8);
 
 
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         artifactsService.initialize();
         Stage stage = StageMother.createPassedStage("pipeline", 10, "stage", 20, "job", new Date());
         artifactsService.purgeArtifactsForStage(stage);
@@ -281,6 +283,7 @@ public class ArtifactsServiceTest {
         assertThat(new File(artifactsRoot, "pipelines/pipeline/10/stage/20/job/cruise-output/console.log")).exists();
         assertThat(new File(artifactsRoot, "pipelines/pipeline/10/stage/20/job/cruise-output/md5.checksum")).exists();
 
+        verify(consoleService).deleteConsoleLogIndex(argThat(log -> log.getAbsoluteFile().equals(consoleLog.getAbsoluteFile())));
         verify(stageService).markArtifactsDeletedFor(stage);
     }
 
@@ -303,7 +306,7 @@ public class ArtifactsServiceTest {
         File metadataJson = new File(pluggableArtifactMetadataDir, "cd.go.artifact.docker.json");
         FileUtils.writeStringToFile(metadataJson, "{\"image\": \"alpine:foo\", \"digest\": \"sha\"}", UTF_8);
 
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         artifactsService.initialize();
         Stage stage = StageMother.createPassedStage("pipeline", 10, "stage", 20, "job", new Date());
         artifactsService.purgeArtifactsForStage(stage);
@@ -324,7 +327,7 @@ public class ArtifactsServiceTest {
         assumeArtifactsRoot(artifactsRoot);
         willCleanUp(artifactsRoot);
 
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         artifactsService.initialize();
         Stage stage = StageMother.createPassedStage("pipeline", 10, "stage", 20, "job1", new Date());
         File job1Dir = createJobArtifactFolder(artifactsRoot + "/pipelines/pipeline/10/stage/20/job1");
@@ -357,7 +360,7 @@ public class ArtifactsServiceTest {
 
     @Test
     void shouldLogAndIgnoreExceptionsWhenDeletingStageArtifacts() throws IllegalArtifactLocationException {
-        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil);
+        ArtifactsService artifactsService = new ArtifactsService(resolverService, stageService, artifactsDirHolder, zipUtil, consoleService);
         Stage stage = StageMother.createPassedStage("pipeline", 10, "stage", 20, "job", new Date());
 
         ArtifactDirectoryChooser chooser = mock(ArtifactDirectoryChooser.class);
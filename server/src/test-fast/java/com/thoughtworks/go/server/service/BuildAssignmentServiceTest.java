@@ -44,7 +44,6 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentMatchers;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -129,7 +128,7 @@ class BuildAssignmentServiceTest {
         profiles.put(elasticProfile2.getId(), elasticProfile2);
         schedulingContext = new DefaultSchedulingContext("me", new Agents(elasticAgent), profiles);
         lenient().when(jobInstanceService.orderedScheduledBuilds()).thenReturn(jobPlans);
-        lenient().when(environmentConfigService.filterJobsByAgent(ArgumentMatchers.eq(jobPlans), any(String.class))).thenReturn(jobPlans);
+        lenient().when(environmentConfigService.canRunPipelineOnAgent(any(), any())).thenReturn(true);
         lenient().when(environmentConfigService.envForPipeline(any(String.class))).thenReturn("");
         lenient().when(maintenanceModeService.isMaintenanceMode()).thenReturn(false);
     }
@@ -142,7 +141,7 @@ class BuildAssignmentServiceTest {
         when(elasticAgentPluginService.shouldAssignWork(elasticAgentInstance.elasticAgentMetadata(), null, jobPlan.getElasticProfile(), jobPlan.getClusterProfile(), jobPlan.getIdentifier())).thenReturn(true);
         buildAssignmentService.onTimer();
 
-        JobPlan matchingJob = buildAssignmentService.findMatchingJob(elasticAgentInstance);
+        JobPlan matchingJob = findMatchingJob(elasticAgentInstance);
         assertThat(matchingJob).isEqualTo(jobPlan);
         assertThat(buildAssignmentService.jobPlans().size()).isEqualTo(0);
     }
@@ -155,7 +154,7 @@ class BuildAssignmentServiceTest {
         lenient().when(elasticAgentPluginService.shouldAssignWork(elasticAgentInstance.elasticAgentMetadata(), null, jobPlan1.getElasticProfile(), jobPlan1.getClusterProfile(), null)).thenReturn(false);
         buildAssignmentService.onTimer();
 
-        JobPlan matchingJob = buildAssignmentService.findMatchingJob(elasticAgentInstance);
+        JobPlan matchingJob = findMatchingJob(elasticAgentInstance);
         assertThat(matchingJob).isNull();
         assertThat(buildAssignmentService.jobPlans().size()).isEqualTo(1);
     }
@@ -171,7 +170,7 @@ class BuildAssignmentServiceTest {
         when(elasticAgentPluginService.shouldAssignWork(elasticAgentInstance.elasticAgentMetadata(), null, jobPlan2.getElasticProfile(), jobPlan2.getClusterProfile(), jobPlan2.getIdentifier())).thenReturn(true);
         buildAssignmentService.onTimer();
 
-        JobPlan matchingJob = buildAssignmentService.findMatchingJob(elasticAgentInstance);
+        JobPlan matchingJob = findMatchingJob(elasticAgentInstance);
         assertThat(matchingJob).isEqualTo(jobPlan2);
         assertThat(buildAssignmentService.jobPlans().size()).isEqualTo(1);
     }
@@ -187,7 +186,7 @@ class BuildAssignmentServiceTest {
         jobPlans.add(regularJobPlan);
         buildAssignmentService.onTimer();
 
-        JobPlan matchingJob = buildAssignmentService.findMatchingJob(regularAgentInstance);
+        JobPlan matchingJob = findMatchingJob(regularAgentInstance);
         assertThat(matchingJob).isEqualTo(regularJobPlan);
         assertThat(buildAssignmentService.jobPlans().size()).isEqualTo(1);
         verify(elasticAgentPluginService, never()).shouldAssignWork(any(ElasticAgentMetadata.class), any(String.class), any(ElasticProfile.class), any(ClusterProfile.class), any(JobIdentifier.class));
@@ -205,7 +204,7 @@ class BuildAssignmentServiceTest {
         jobPlans.add(regularJobPlan);
         buildAssignmentService.onTimer();
 
-        JobPlan matchingJob = buildAssignmentService.findMatchingJob(regularAgentInstance);
+        JobPlan matchingJob = findMatchingJob(regularAgentInstance);
         assertThat(matchingJob).isNull();
         assertThat(buildAssignmentService.jobPlans().size()).isEqualTo(0);
         verify(elasticAgentPluginService, never()).shouldAssignWork(any(ElasticAgentMetadata.class), any(String.class), any(ElasticProfile.class), any(ClusterProfile.class), any(JobIdentifier.class));
@@ -227,24 +226,17 @@ class BuildAssignmentServiceTest {
         JobPlan jobPlan2 = getJobPlan(pipeline.getName(), pipeline.get(1).name(), pipeline.get(1).getJobs().first());
         JobPlan jobPlan3 = getJobPlan(irrelevantPipeline.getName(), irrelevantPipeline.get(0).name(), irrelevantPipeline.get(0).getJobs().first());
 
-        //need to get hold of original jobPlans in the tests
-        jobPlans = (ArrayList<JobPlan>) buildAssignmentService.jobPlans();
-
-        jobPlans.add(jobPlan1);
-        jobPlans.add(jobPlan2);
-        jobPlans.add(jobPlan3);
+        scheduled(jobPlan1, jobPlan2, jobPlan3);
 
         //delete a stage
         pipeline.remove(1);
 
-        assertThat(jobPlans.size()).isEqualTo(3);
+        assertThat(buildAssignmentService.jobPlans().size()).isEqualTo(3);
 
         when(goConfigService.hasPipelineNamed(pipeline.getName())).thenReturn(true);
         buildAssignmentService.pipelineConfigChangedListener().onEntityConfigChange(pipeline);
 
-        assertThat(jobPlans.size()).isEqualTo(2);
-        assertThat(jobPlans.get(0)).isEqualTo(jobPlan1);
-        assertThat(jobPlans.get(1)).isEqualTo(jobPlan3);
+        assertThat(buildAssignmentService.jobPlans()).containsExactly(jobPlan1, jobPlan3);
     }
 
     @Test
@@ -263,18 +255,56 @@ class BuildAssignmentServiceTest {
         JobPlan jobPlan2 = getJobPlan(pipeline.getName(), pipeline.get(1).name(), pipeline.get(1).getJobs().first());
         JobPlan jobPlan3 = getJobPlan(irrelevantPipeline.getName(), irrelevantPipeline.get(0).name(), irrelevantPipeline.get(0).getJobs().first());
 
-        //need to get hold of original jobPlans in the tests
-        jobPlans = (ArrayList<JobPlan>) buildAssignmentService.jobPlans();
-
-        jobPlans.add(jobPlan1);
-        jobPlans.add(jobPlan2);
-        jobPlans.add(jobPlan3);
+        scheduled(jobPlan1, jobPlan2, jobPlan3);
 
         when(goConfigService.hasPipelineNamed(pipeline.getName())).thenReturn(false);
         buildAssignmentService.pipelineConfigChangedListener().onEntityConfigChange(pipeline);
 
-        assertThat(jobPlans.size()).isEqualTo(1);
-        assertThat(jobPlans.get(0)).isEqualTo(jobPlan3);
+        assertThat(buildAssignmentService.jobPlans()).containsExactly(jobPlan3);
+    }
+
+    @Test
+    void shouldAddNewlyScheduledJobsWithoutReloadingAllScheduledJobs() {
+        when(systemEnvironment.getScheduledJobsReconciliationInterval()).thenReturn(60_000L);
+        JobPlan existing = jobPlanWithId(1L, "existing");
+        JobPlan newlyScheduled = jobPlanWithId(2L, "new");
+        scheduled(existing);
+
+        when(jobInstanceService.scheduledPlans(List.of(2L))).thenReturn(List.of(newlyScheduled));
+        buildAssignmentService.scheduledJobsListener().jobStatusChanged(jobInstanceWithId(2L, JobState.Scheduled));
+        buildAssignmentService.scheduledJobsListener().jobStatusChanged(jobInstanceWithId(2L, JobState.Scheduled));
+        buildAssignmentService.onTimer();
+
+        assertThat(buildAssignmentService.jobPlans()).containsExactly(existing, newlyScheduled);
+        verify(jobInstanceService, times(1)).orderedScheduledBuilds();
+        verify(jobInstanceService, times(1)).scheduledPlans(List.of(2L));
+    }
+
+    @Test
+    void shouldRemoveJobsThatAreNoLongerScheduledWithoutReloadingAllScheduledJobs() {
+        when(systemEnvironment.getScheduledJobsReconciliationInterval()).thenReturn(60_000L);
+        JobPlan cancelled = jobPlanWithId(1L, "cancelled");
+        JobPlan other = jobPlanWithId(2L, "other");
+        scheduled(cancelled, other);
+
+        buildAssignmentService.scheduledJobsListener().jobStatusChanged(jobInstanceWithId(1L, JobState.Completed));
+        buildAssignmentService.onTimer();
+
+        assertThat(buildAssignmentService.jobPlans()).containsExactly(other);
+        verify(jobInstanceService, times(1)).orderedScheduledBuilds();
+        verify(jobInstanceService, never()).scheduledPlans(anyList());
+    }
+
+    @Test
+    void shouldReloadAllScheduledJobsOnEveryTickWhenReconciliationIntervalIsZero() {
+        JobPlan jobPlan = jobPlanWithId(1L, "job");
+        scheduled(jobPlan);
+        jobPlans.clear();
+
+        buildAssignmentService.onTimer();
+
+        assertThat(buildAssignmentService.jobPlans()).isEmpty();
+        verify(jobInstanceService, times(2)).orderedScheduledBuilds();
     }
 
     @Nested
@@ -298,9 +328,10 @@ class BuildAssignmentServiceTest {
 
             when(agentInstance.isRegistered()).thenReturn(true);
             when(agentInstance.getAgent()).thenReturn(mock(Agent.class));
-            when(agentInstance.firstMatching(anyList())).thenReturn(jobPlan1);
+            when(agentInstance.getUuid()).thenReturn("agent_uuid");
+            when(agentInstance.canRun(jobPlan1)).thenReturn(true);
+            scheduled(jobPlan1);
             when(pipeline.getBuildCause()).thenReturn(BuildCause.createNeverRun());
-            when(environmentConfigService.filterJobsByAgent(any(), any())).thenReturn(List.of(jobPlan1));
             when(scheduledPipelineLoader.pipelineWithPasswordAwareBuildCauseByBuildId(anyLong())).thenReturn(pipeline);
             lenient().when(scheduleService.updateAssignedInfo(anyString(), any())).thenReturn(false);
             when(goConfigService.artifactStores()).thenReturn(new ArtifactStores());
@@ -338,9 +369,10 @@ class BuildAssignmentServiceTest {
 
             when(agentInstance.isRegistered()).thenReturn(true);
             when(agentInstance.getAgent()).thenReturn(mock(Agent.class));
-            when(agentInstance.firstMatching(anyList())).thenReturn(jobPlan1);
+            when(agentInstance.getUuid()).thenReturn("agent_uuid");
+            when(agentInstance.canRun(jobPlan1)).thenReturn(true);
+            scheduled(jobPlan1);
             when(pipeline.getBuildCause()).thenReturn(BuildCause.createWithModifications(materialRevisions, "bob"));
-            when(environmentConfigService.filterJobsByAgent(any(), any())).thenReturn(List.of(jobPlan1));
             when(scheduledPipelineLoader.pipelineWithPasswordAwareBuildCauseByBuildId(anyLong())).thenReturn(pipeline);
             lenient().when(scheduleService.updateAssignedInfo(anyString(), any())).thenReturn(false);
             when(goConfigService.artifactStores()).thenReturn(new ArtifactStores());
@@ -372,7 +404,8 @@ class BuildAssignmentServiceTest {
             JobInstance jobInstance = mock(JobInstance.class);
 
             when(agentInstance.isRegistered()).thenReturn(true);
-            when(agentInstance.firstMatching(anyList())).thenReturn(jobPlan1);
+            when(agentInstance.canRun(jobPlan1)).thenReturn(true);
+            scheduled(jobPlan1);
             when(pipeline.getBuildCause()).thenReturn(BuildCause.createWithModifications(materialRevisions, "bob"));
             when(scheduledPipelineLoader.pipelineWithPasswordAwareBuildCauseByBuildId(anyLong())).thenReturn(pipeline);
             when(goConfigService.artifactStores()).thenReturn(new ArtifactStores());
@@ -403,8 +436,8 @@ class BuildAssignmentServiceTest {
             when(jobInstance.getState()).thenReturn(JobState.Completed);
             when(agentInstance.isRegistered()).thenReturn(true);
             when(agentInstance.getUuid()).thenReturn("agent_uuid");
-            when(agentInstance.firstMatching(anyList())).thenReturn(jobPlan1);
-            when(environmentConfigService.filterJobsByAgent(any(), any())).thenReturn(List.of(jobPlan1));
+            when(agentInstance.canRun(jobPlan1)).thenReturn(true);
+            scheduled(jobPlan1);
             when(scheduledPipelineLoader.pipelineWithPasswordAwareBuildCauseByBuildId(anyLong())).thenReturn(pipeline);
             when(scheduleService.updateAssignedInfo(anyString(), any())).thenReturn(false);
             when(environmentConfigService.environmentForPipeline(anyString())).thenReturn(new BasicEnvironmentConfig());
@@ -445,9 +478,10 @@ class BuildAssignmentServiceTest {
 
             when(agentInstance.isRegistered()).thenReturn(true);
             when(agentInstance.getAgent()).thenReturn(mock(Agent.class));
-            when(agentInstance.firstMatching(anyList())).thenReturn(jobPlan1);
+            when(agentInstance.getUuid()).thenReturn("agent_uuid");
+            when(agentInstance.canRun(jobPlan1)).thenReturn(true);
+            scheduled(jobPlan1);
             when(pipeline.getBuildCause()).thenReturn(BuildCause.createWithModifications(materialRevisions, "bob"));
-            when(environmentConfigService.filterJobsByAgent(any(), any())).thenReturn(List.of(jobPlan1));
             when(scheduledPipelineLoader.pipelineWithPasswordAwareBuildCauseByBuildId(anyLong())).thenReturn(pipeline);
             lenient().when(scheduleService.updateAssignedInfo(anyString(), any())).thenReturn(false);
             when(goConfigService.artifactStores()).thenReturn(new ArtifactStores());
@@ -533,7 +567,7 @@ class BuildAssignmentServiceTest {
         buildAssignmentService.onTimer();
 
         assertThatCode(() -> {
-            JobPlan matchingJob = buildAssignmentService.findMatchingJob(elasticAgentInstance);
+            JobPlan matchingJob = findMatchingJob(elasticAgentInstance);
 
             assertThat(matchingJob).isNull();
             assertThat(buildAssignmentService.jobPlans()).containsExactly(jobPlan);
@@ -561,7 +595,7 @@ class BuildAssignmentServiceTest {
         buildAssignmentService.onTimer();
 
         assertThatCode(() -> {
-            JobPlan matchingJob = buildAssignmentService.findMatchingJob(elasticAgentInstance);
+            JobPlan matchingJob = findMatchingJob(elasticAgentInstance);
 
             assertThat(matchingJob).isNull();
             assertThat(buildAssignmentService.jobPlans()).containsExactly(jobPlan);
@@ -574,6 +608,65 @@ class BuildAssignmentServiceTest {
         inOrder.verify(jobStatusTopic).post(new JobStatusMessage(jobPlan.getIdentifier(), JobState.Scheduled, elasticAgentInstance.getUuid()));
     }
 
+    @Test
+    void shouldPutAJobThatCouldNotBeAssignedBackInItsPlaceInTheQueue() {
+        when(systemEnvironment.getScheduledJobsReconciliationInterval()).thenReturn(60_000L);
+        JobPlan first = jobPlanWithId(1L, "first");
+        JobPlan second = jobPlanWithId(2L, "second");
+        scheduled(first, second);
+        when(scheduledPipelineLoader.pipelineWithPasswordAwareBuildCauseByBuildId(1L)).thenThrow(new StaleMaterialsOnBuildCause("stale"));
+
+        assertThat(buildAssignmentService.assignWorkToAgent(regularAgentInstance)).isEqualTo(BuildAssignmentService.NO_WORK);
+        buildAssignmentService.onTimer();
+
+        assertThat(buildAssignmentService.jobPlans()).containsExactly(first, second);
+        verify(jobInstanceService, never()).scheduledPlans(anyList());
+    }
+
+    @Test
+    void shouldRegroupScheduledJobsWhenPipelinesMoveBetweenEnvironments() {
+        JobPlan staying = jobPlanWithId(1L, "staying", "job");
+        JobPlan moving = jobPlanWithId(2L, "moving", "job");
+        scheduled(staying, moving);
+        String agentUuid = regularAgentInstance.getUuid();
+        when(environmentConfigService.envForPipeline("moving")).thenReturn("prod");
+        when(environmentConfigService.canRunPipelineOnAgent("staying", agentUuid)).thenReturn(false);
+        when(environmentConfigService.canRunPipelineOnAgent("moving", agentUuid)).thenReturn(true);
+
+        buildAssignmentService.environmentConfigChangedListener().onEntityConfigChange(new BasicEnvironmentConfig(new CaseInsensitiveString("prod")));
+
+        assertThat(findMatchingJob(regularAgentInstance)).isEqualTo(moving);
+        assertThat(buildAssignmentService.jobPlans()).containsExactly(staying);
+    }
+
+    private JobPlan findMatchingJob(AgentInstance agent) {
+        ScheduledJobPlans.Slot slot = buildAssignmentService.findMatchingJob(agent);
+        return slot == null ? null : slot.jobPlan();
+    }
+
+    private JobPlan jobPlanWithId(long jobId, String jobName) {
+        return jobPlanWithId(jobId, "pipeline", jobName);
+    }
+
+    private JobPlan jobPlanWithId(long jobId, String pipelineName, String jobName) {
+        PipelineConfig pipelineConfig = PipelineConfigMother.pipelineConfig(pipelineName);
+        DefaultJobPlan jobPlan = (DefaultJobPlan) getJobPlan(pipelineConfig.getName(), pipelineConfig.first().name(), new JobConfig(jobName));
+        jobPlan.setJobId(jobId);
+        return jobPlan;
+    }
+
+    private JobInstance jobInstanceWithId(long jobId, JobState state) {
+        JobInstance jobInstance = JobInstanceMother.scheduled("job");
+        jobInstance.setId(jobId);
+        jobInstance.setState(state);
+        return jobInstance;
+    }
+
+    private void scheduled(JobPlan... plans) {
+        jobPlans.addAll(List.of(plans));
+        buildAssignmentService.onTimer();
+    }
+
     private JobPlan getJobPlan(CaseInsensitiveString pipelineName, CaseInsensitiveString stageName, JobConfig job) {
         JobPlan jobPlan = new InstanceFactory().createJobPlan(job, schedulingContext);
 
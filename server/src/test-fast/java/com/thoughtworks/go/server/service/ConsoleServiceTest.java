@@ -17,11 +17,13 @@ package com.thoughtworks.go.server.service;
 
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.helper.JobIdentifierMother;
+import com.thoughtworks.go.server.dao.JobInstanceDao;
 import com.thoughtworks.go.server.view.artifacts.ArtifactDirectoryChooser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -131,4 +133,46 @@ public class ConsoleServiceTest {
         assertThat(finalConsoleLog.exists(), is(true));
     }
 
+    @Test
+    public void shouldKeepTheIndexOfAConsoleLogInTheArtifactsDirectory(@TempDir Path testFolder) throws Exception {
+        File artifactsDir = testFolder.resolve("artifacts").toFile();
+        ArtifactsDirHolder artifactsDirHolder = mock(ArtifactsDirHolder.class);
+        when(artifactsDirHolder.getArtifactsDir()).thenReturn(artifactsDir);
+        File log = testFolder.resolve("console.log").toFile();
+        service = new ConsoleService(artifactsDirHolder, mock(JobInstanceDao.class));
+
+        service.updateConsoleLog(log, new ByteArrayInputStream("line\n".getBytes()));
+
+        assertThat(new File(artifactsDir, ConsoleService.CONSOLE_LOG_INDEX_FOLDER).list().length, is(1));
+    }
+
+    @Test
+    public void shouldDeleteTheIndexOfAConsoleLog(@TempDir Path testFolder) throws Exception {
+        File indexDir = testFolder.resolve("index").toFile();
+        File log = testFolder.resolve("console.log").toFile();
+        service = new ConsoleService(chooser, indexDir);
+
+        service.updateConsoleLog(log, new ByteArrayInputStream("line\n".getBytes()));
+        assertThat(indexDir.list().length, is(1));
+
+        service.deleteConsoleLogIndex(log);
+
+        assertThat(indexDir.list().length, is(0));
+    }
+
+    @Test
+    public void shouldDeleteTheIndexOfAConsoleLogDeletedFromOutside(@TempDir Path testFolder) throws Exception {
+        JobIdentifier jobIdentifier = JobIdentifierMother.anyBuildIdentifier();
+        File indexDir = testFolder.resolve("index").toFile();
+        File log = testFolder.resolve("console.log").toFile();
+        service = new ConsoleService(chooser, indexDir);
+        when(chooser.temporaryConsoleFile(jobIdentifier)).thenReturn(log);
+        when(chooser.findArtifact(jobIdentifier, getConsoleOutputFolderAndFileName())).thenReturn(testFolder.resolve("final_console.log").toFile());
+
+        service.updateConsoleLog(log, new ByteArrayInputStream("line\n".getBytes()));
+        Files.delete(log.toPath());
+        service.getStreamer(5000, jobIdentifier).close();
+
+        assertThat(indexDir.list().length, is(0));
+    }
 }
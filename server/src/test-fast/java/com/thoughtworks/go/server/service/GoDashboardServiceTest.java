@@ -296,6 +296,23 @@ public class GoDashboardServiceTest {
         assertThat(envs.get(0).pipelines(), not(contains("pipeline2")));
     }
 
+    @Test
+    public void allPipelineGroupsForDashboard_shouldWorkOutWhatUsersCanSeeAgainOnlyWhenThePipelinesInTheCacheChange() {
+        configMother.addPipelineWithGroup(config, "group1", "pipeline1", "stage1A", "job1A1");
+        addPipelinesToCache(pipeline("pipeline1", "group1"));
+
+        assertThat(allPipelineGroupsForDashboard(Filters.WILDCARD_FILTER, new Username("user1")).get(0).pipelines(), contains("pipeline1"));
+
+        configMother.addPipelineWithGroup(config, "group1", "pipeline2", "stage1A", "job1A1");
+        addPipelinesToCache(pipeline("pipeline2", "group1"));
+
+        assertThat(allPipelineGroupsForDashboard(Filters.WILDCARD_FILTER, new Username("user1")).get(0).pipelines(), contains("pipeline1"));
+
+        when(pipelines.layoutVersion()).thenReturn(1L);
+
+        assertThat(allPipelineGroupsForDashboard(Filters.WILDCARD_FILTER, new Username("user1")).get(0).pipelines(), containsInAnyOrder("pipeline1", "pipeline2"));
+    }
+
     @Test
     public void shouldRemoveExistingPipelineEntryInCacheWhenPipelineConfigIsRemoved() {
         BasicCruiseConfig config = GoConfigMother.defaultCruiseConfig();
@@ -21,21 +21,35 @@ import com.thoughtworks.go.config.PipelineConfig;
 import com.thoughtworks.go.config.remote.ConfigRepoConfig;
 import com.thoughtworks.go.config.remote.ConfigReposConfig;
 import com.thoughtworks.go.config.remote.PartialConfig;
+import com.thoughtworks.go.config.materials.git.GitMaterial;
 import com.thoughtworks.go.config.remote.RepoConfigOrigin;
+import com.thoughtworks.go.domain.MaterialRevision;
+import com.thoughtworks.go.domain.MaterialRevisions;
+import com.thoughtworks.go.domain.StageIdentifier;
+import com.thoughtworks.go.domain.StageResult;
+import com.thoughtworks.go.domain.StageState;
 import com.thoughtworks.go.domain.materials.MaterialConfig;
 import com.thoughtworks.go.helper.MaterialConfigsMother;
+import com.thoughtworks.go.helper.ModificationsMother;
 import com.thoughtworks.go.helper.PartialConfigMother;
 import com.thoughtworks.go.helper.ScheduleCheckMessageMatcher;
 import com.thoughtworks.go.listener.ConfigChangedListener;
 import com.thoughtworks.go.listener.EntityConfigChangedListener;
 import com.thoughtworks.go.server.domain.Username;
+import com.thoughtworks.go.server.materials.MaterialUpdateCompletedTopic;
+import com.thoughtworks.go.server.materials.MaterialUpdateSuccessfulMessage;
+import com.thoughtworks.go.server.messaging.GoMessageListener;
+import com.thoughtworks.go.server.messaging.StageStatusMessage;
+import com.thoughtworks.go.server.messaging.StageStatusTopic;
 import com.thoughtworks.go.server.perf.SchedulingPerformanceLogger;
+import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.scheduling.*;
 import com.thoughtworks.go.server.service.result.HttpOperationResult;
 import com.thoughtworks.go.server.service.result.OperationResult;
 import com.thoughtworks.go.serverhealth.HealthStateScope;
 import com.thoughtworks.go.serverhealth.HealthStateType;
 import com.thoughtworks.go.serverhealth.ServerHealthService;
+import com.thoughtworks.go.util.SystemEnvironment;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -55,6 +69,10 @@ public class PipelineSchedulerTest {
     private PipelineScheduler scheduler;
     private GoConfigService configService;
     private BuildCauseProducerService buildCauseProducerService;
+    private MaterialUpdateCompletedTopic materialUpdateCompletedTopic;
+    private StageStatusTopic stageStatusTopic;
+    private MaterialRepository materialRepository;
+    private SystemEnvironment systemEnvironment;
 
     @BeforeEach
     public void setUp() {
@@ -65,8 +83,12 @@ public class PipelineSchedulerTest {
         buildCauseProducerService = mock(BuildCauseProducerService.class);
         ScheduleCheckCompletedTopic topic = mock(ScheduleCheckCompletedTopic.class);
         SchedulingPerformanceLogger schedulingPerformanceLogger = mock(SchedulingPerformanceLogger.class);
+        materialUpdateCompletedTopic = mock(MaterialUpdateCompletedTopic.class);
+        stageStatusTopic = mock(StageStatusTopic.class);
+        materialRepository = mock(MaterialRepository.class);
+        systemEnvironment = mock(SystemEnvironment.class);
         scheduler = new PipelineScheduler(configService, serverHealthService, schedulingCheckerService,
-                buildCauseProducerService, queue, topic, schedulingPerformanceLogger);
+                buildCauseProducerService, queue, topic, schedulingPerformanceLogger, materialUpdateCompletedTopic, stageStatusTopic, materialRepository, systemEnvironment);
     }
 
     @Test
@@ -104,6 +126,62 @@ public class PipelineSchedulerTest {
         verify(queue, times(2)).post(ScheduleCheckMessageMatcher.matchScheduleCheckMessage("cruise"));
     }
 
+    @Test
+    public void shouldOnlyCheckPipelinesWhoseMaterialsHaveChangedBetweenFullChecks() {
+        when(systemEnvironment.getSchedulingFullCheckInterval()).thenReturn(60_000L);
+        ArgumentCaptor<GoMessageListener> captor = ArgumentCaptor.forClass(GoMessageListener.class);
+        scheduler.initialize();
+        verify(materialUpdateCompletedTopic).addListener(captor.capture());
+        scheduler.onConfigChange(configWithPipelines("cruise", "mingle"));
+        scheduler.checkPipelines();
+        scheduler.onMessage(new ScheduleCheckCompletedMessage("cruise", 1));
+        scheduler.onMessage(new ScheduleCheckCompletedMessage("mingle", 2));
+        reset(queue);
+
+        scheduler.checkPipelines();
+        verifyNoInteractions(queue);
+
+        GitMaterial material = new GitMaterial("http://example.com/repo.git");
+        String fingerprint = material.config().getFingerprint();
+        when(configService.pipelinesWithMaterial(fingerprint)).thenReturn(List.of(new CaseInsensitiveString("mingle")));
+        when(materialRepository.findLatestModification(material)).thenReturn(new MaterialRevisions(new MaterialRevision(material, ModificationsMother.oneModifiedFile("rev1"))));
+        captor.getValue().onMessage(new MaterialUpdateSuccessfulMessage(material, 3));
+        scheduler.checkPipelines();
+        verify(queue).post(ScheduleCheckMessageMatcher.matchScheduleCheckMessage("mingle"));
+        verifyNoMoreInteractions(queue);
+
+        scheduler.onMessage(new ScheduleCheckCompletedMessage("mingle", 4));
+        reset(queue);
+        captor.getValue().onMessage(new MaterialUpdateSuccessfulMessage(material, 5));
+        scheduler.checkPipelines();
+        verifyNoInteractions(queue);
+    }
+
+    @Test
+    public void shouldCheckPipelineAndItsDownstreamWhenItsStageCompletesEvenIfItWasBusy() {
+        when(systemEnvironment.getSchedulingFullCheckInterval()).thenReturn(60_000L);
+        ArgumentCaptor<GoMessageListener> captor = ArgumentCaptor.forClass(GoMessageListener.class);
+        scheduler.initialize();
+        verify(stageStatusTopic).addListener(captor.capture());
+        BasicCruiseConfig cruiseConfig = configWithPipelines("upstream", "downstream", "other");
+        scheduler.onConfigChange(cruiseConfig);
+        scheduler.checkPipelines();
+        scheduler.onMessage(new ScheduleCheckCompletedMessage("downstream", 1));
+        scheduler.onMessage(new ScheduleCheckCompletedMessage("other", 2));
+        reset(queue);
+
+        when(configService.downstreamPipelinesOf("upstream")).thenReturn(List.of(cruiseConfig.pipelineConfigByName(new CaseInsensitiveString("downstream"))));
+        StageIdentifier stage = new StageIdentifier("upstream", 1, "stage", "1");
+        captor.getValue().onMessage(new StageStatusMessage(stage, StageState.Passed, StageResult.Passed));
+        scheduler.checkPipelines();
+        verify(queue).post(ScheduleCheckMessageMatcher.matchScheduleCheckMessage("downstream"));
+        verifyNoMoreInteractions(queue);
+
+        scheduler.onMessage(new ScheduleCheckCompletedMessage("upstream", 3));
+        scheduler.checkPipelines();
+        verify(queue).post(ScheduleCheckMessageMatcher.matchScheduleCheckMessage("upstream"));
+    }
+
     @Test
     public void shouldAddErrorIfPipelineisNotFound() throws Exception {
         when(configService.hasPipelineNamed(new CaseInsensitiveString("invalid"))).thenReturn(false);
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.thoughtworks.go.domain.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScheduledJobPlansTest {
+
+    @Test
+    void shouldClaimJobsInQueueOrderAcrossBuckets() {
+        JobPlan linux1 = jobPlan(1, "pipeline", "linux", null);
+        JobPlan any1 = jobPlan(2, "pipeline", "", null);
+        JobPlan linux2 = jobPlan(3, "pipeline", "linux", null);
+        JobPlan windows = jobPlan(4, "pipeline", "windows", null);
+        ScheduledJobPlans jobPlans = new ScheduledJobPlans(List.of(linux1, any1, linux2, windows), pipeline -> null);
+
+        assertThat(claimFirst(jobPlans, "agent", canRunOnLinux(), jobPlan -> true)).isEqualTo(linux1);
+        assertThat(claimFirst(jobPlans, "agent", canRunOnLinux(), jobPlan -> true)).isEqualTo(any1);
+        assertThat(claimFirst(jobPlans, "agent", canRunOnLinux(), jobPlan -> true)).isEqualTo(linux2);
+        assertThat(claimFirst(jobPlans, "agent", canRunOnLinux(), jobPlan -> true)).isNull();
+        assertThat(jobPlans.toList()).containsExactly(windows);
+    }
+
+    @Test
+    void shouldOnlyLookAtBucketsTheAgentCanRun() {
+        List<JobPlan> plans = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            plans.add(jobPlan(i, "pipeline", "windows", null));
+        }
+        JobPlan linux = jobPlan(100, "pipeline", "linux", null);
+        plans.add(linux);
+        ScheduledJobPlans jobPlans = new ScheduledJobPlans(plans, pipeline -> null);
+        AtomicInteger jobsLookedAt = new AtomicInteger();
+
+        JobPlan claimed = claimFirst(jobPlans, "agent", canRunOnLinux(), jobPlan -> jobsLookedAt.incrementAndGet() > 0);
+
+        assertThat(claimed).isEqualTo(linux);
+        assertThat(jobsLookedAt.get()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldOfferJobsPinnedToAnAgentOnlyToThatAgent() {
+        JobPlan pinnedToA = jobPlan(1, "pipeline", "", "agent-a");
+        JobPlan pinnedToB = jobPlan(2, "pipeline", "", "agent-b");
+        ScheduledJobPlans jobPlans = new ScheduledJobPlans(List.of(pinnedToA, pinnedToB), pipeline -> null);
+
+        assertThat(claimFirst(jobPlans, "agent-b", sample -> true, jobPlan -> true)).isEqualTo(pinnedToB);
+        assertThat(claimFirst(jobPlans, "agent-b", sample -> true, jobPlan -> true)).isNull();
+        assertThat(claimFirst(jobPlans, "agent-a", sample -> true, jobPlan -> true)).isEqualTo(pinnedToA);
+    }
+
+    @Test
+    void shouldKeepJobsOfDifferentEnvironmentsInSeparateBuckets() {
+        JobPlan uat = jobPlan(1, "uat-pipeline", "", null);
+        JobPlan prod = jobPlan(2, "prod-pipeline", "", null);
+        Map<String, String> envs = Map.of("uat-pipeline", "uat", "prod-pipeline", "prod");
+        ScheduledJobPlans jobPlans = new ScheduledJobPlans(List.of(uat, prod), envs::get);
+
+        JobPlan claimed = claimFirst(jobPlans, "agent", sample -> sample.getPipelineName().equals("prod-pipeline"), jobPlan -> true);
+
+        assertThat(claimed).isEqualTo(prod);
+        assertThat(jobPlans.toList()).containsExactly(uat);
+    }
+
+    @Test
+    void shouldSkipJobsTheAgentShouldNotBeAssignedAndLeaveThemQueued() {
+        JobPlan first = jobPlan(1, "pipeline", "", null);
+        JobPlan second = jobPlan(2, "pipeline", "", null);
+        ScheduledJobPlans jobPlans = new ScheduledJobPlans(List.of(first, second), pipeline -> null);
+
+        assertThat(claimFirst(jobPlans, "agent", sample -> true, jobPlan -> jobPlan == second)).isEqualTo(second);
+        assertThat(jobPlans.toList()).containsExactly(first);
+    }
+
+    @Test
+    void shouldRemoveJobs() {
+        JobPlan first = jobPlan(1, "pipeline", "", null);
+        JobPlan second = jobPlan(2, "pipeline", "linux", null);
+        ScheduledJobPlans jobPlans = new ScheduledJobPlans(List.of(first, second), pipeline -> null);
+
+        assertThat(jobPlans.remove(second)).isTrue();
+        assertThat(jobPlans.remove(second)).isFalse();
+        assertThat(jobPlans.toList()).containsExactly(first);
+    }
+
+    @Test
+    void shouldAddJobsToTheEndOfTheQueue() {
+        JobPlan first = jobPlan(1, "pipeline", "linux", null);
+        JobPlan second = jobPlan(2, "pipeline", "", null);
+        ScheduledJobPlans jobPlans = new ScheduledJobPlans(List.of(first), pipeline -> null);
+
+        jobPlans.add(second);
+
+        assertThat(jobPlans.contains(2L)).isTrue();
+        assertThat(jobPlans.toList()).containsExactly(first, second);
+        assertThat(claimFirst(jobPlans, "agent", sample -> true, jobPlan -> true)).isEqualTo(first);
+        assertThat(jobPlans.contains(1L)).isFalse();
+    }
+
+    @Test
+    void shouldRemoveJobsById() {
+        JobPlan first = jobPlan(1, "pipeline", "", null);
+        JobPlan second = jobPlan(2, "pipeline", "", null);
+        ScheduledJobPlans jobPlans = new ScheduledJobPlans(List.of(first, second), pipeline -> null);
+
+        assertThat(jobPlans.remove(1L)).isTrue();
+        assertThat(jobPlans.remove(1L)).isFalse();
+        assertThat(jobPlans.remove(3L)).isFalse();
+        assertThat(jobPlans.toList()).containsExactly(second);
+    }
+
+    @Test
+    void shouldPutAClaimedJobBackInTheSamePositionOfTheQueue() {
+        JobPlan first = jobPlan(1, "pipeline", "", null);
+        JobPlan second = jobPlan(2, "pipeline", "", null);
+        JobPlan third = jobPlan(3, "pipeline", "linux", null);
+        ScheduledJobPlans jobPlans = new ScheduledJobPlans(List.of(first, second, third), pipeline -> null);
+
+        ScheduledJobPlans.Slot slot = jobPlans.claimFirst("agent", sample -> true, jobPlan -> jobPlan == second);
+        jobPlans.add(jobPlan(4, "pipeline", "", null));
+        jobPlans.putBack(slot);
+
+        assertThat(jobPlans.contains(2L)).isTrue();
+        assertThat(jobPlans.toList()).extracting(JobPlan::getJobId).containsExactly(1L, 2L, 3L, 4L);
+    }
+
+    @Test
+    void shouldRegroupJobsIntoTheirCurrentEnvironmentsKeepingTheirPositions() {
+        JobPlan first = jobPlan(1, "moving-pipeline", "", null);
+        JobPlan second = jobPlan(2, "uat-pipeline", "", null);
+        Map<String, String> envs = new HashMap<>(Map.of("moving-pipeline", "uat", "uat-pipeline", "uat"));
+        ScheduledJobPlans jobPlans = new ScheduledJobPlans(List.of(first, second), envs::get);
+        Predicate<JobPlan> canRunUat = sample -> "uat".equals(envs.get(sample.getPipelineName()));
+
+        envs.put("moving-pipeline", "prod");
+        jobPlans.regroup();
+
+        assertThat(jobPlans.toList()).containsExactly(first, second);
+        assertThat(claimFirst(jobPlans, "agent", canRunUat, jobPlan -> true)).isEqualTo(second);
+        assertThat(claimFirst(jobPlans, "agent", canRunUat, jobPlan -> true)).isNull();
+        assertThat(jobPlans.contains(1L)).isTrue();
+    }
+
+    private static JobPlan claimFirst(ScheduledJobPlans jobPlans, String agentUuid, Predicate<JobPlan> bucketMatcher, Predicate<JobPlan> jobMatcher) {
+        ScheduledJobPlans.Slot slot = jobPlans.claimFirst(agentUuid, bucketMatcher, jobMatcher);
+        return slot == null ? null : slot.jobPlan();
+    }
+
+    private static Predicate<JobPlan> canRunOnLinux() {
+        return sample -> List.of("linux").containsAll(sample.getResources().toResourceConfigs().resourceNames());
+    }
+
+    private static JobPlan jobPlan(long jobId, String pipelineName, String resources, String agentUuid) {
+        JobIdentifier identifier = new JobIdentifier(pipelineName, 1, "1", "stage", "1", "job-" + jobId);
+        return new DefaultJobPlan(new Resources(resources), new ArrayList<>(), jobId, identifier, agentUuid, new EnvironmentVariables(), new EnvironmentVariables(), null, null);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service;
+
+import com.google.common.base.Ticker;
+import com.thoughtworks.go.config.SecretConfig;
+import com.thoughtworks.go.plugin.domain.secrets.Secret;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecretsLookupCacheTest {
+    private final FakeTicker ticker = new FakeTicker();
+    private final SecretConfig secretConfig = new SecretConfig("vault", "cd.go.vault");
+    private final AtomicInteger pluginLookups = new AtomicInteger();
+    private final Function<Set<String>, List<Secret>> plugin = keys -> {
+        pluginLookups.incrementAndGet();
+        return keys.stream().map(key -> new Secret(key, key + "-value")).collect(toList());
+    };
+
+    @Test
+    void shouldLookUpOnlyTheSecretsNotRememberedFromAnEarlierLookup() {
+        SecretsLookupCache cache = new SecretsLookupCache(60_000, 100, ticker);
+        cache.lookup(secretConfig, Set.of("username"), plugin);
+
+        List<Secret> secrets = cache.lookup(secretConfig, Set.of("username", "password"), keys -> {
+            assertThat(keys).containsExactly("password");
+            return plugin.apply(keys);
+        });
+
+        assertThat(secrets).extracting(Secret::getValue).containsExactlyInAnyOrder("username-value", "password-value");
+        assertThat(pluginLookups).hasValue(2);
+        assertThat(cache.statistics()).containsEntry("Hits", 1L).containsEntry("Plugin Lookups", 2L);
+    }
+
+    @Test
+    void shouldLookUpSecretsAgainOnceTheyHaveExpired() {
+        SecretsLookupCache cache = new SecretsLookupCache(60_000, 100, ticker);
+        cache.lookup(secretConfig, Set.of("password"), plugin);
+
+        ticker.advance(59, TimeUnit.SECONDS);
+        cache.lookup(secretConfig, Set.of("password"), plugin);
+        assertThat(pluginLookups).hasValue(1);
+
+        ticker.advance(1, TimeUnit.SECONDS);
+        cache.lookup(secretConfig, Set.of("password"), plugin);
+        assertThat(pluginLookups).hasValue(2);
+    }
+
+    @Test
+    void shouldLookUpSecretsAgainOnceTheSecretConfigHasChanged() {
+        SecretsLookupCache cache = new SecretsLookupCache(60_000, 100, ticker);
+        cache.lookup(secretConfig, Set.of("password"), plugin);
+
+        cache.lookup(new SecretConfig("vault", "cd.go.another-vault"), Set.of("password"), plugin);
+
+        assertThat(pluginLookups).hasValue(2);
+    }
+
+    @Test
+    void shouldLookUpSecretsEveryTimeWhenNotToRememberThem() {
+        SecretsLookupCache cache = new SecretsLookupCache(0, 100, ticker);
+        cache.lookup(secretConfig, Set.of("password"), plugin);
+        cache.lookup(secretConfig, Set.of("password"), plugin);
+
+        assertThat(pluginLookups).hasValue(2);
+        assertThat(cache.statistics()).containsEntry("Entries", 0L);
+    }
+
+    @Test
+    void shouldShareALookupInProgressWithConcurrentLookupsOfTheSameSecrets() throws Exception {
+        SecretsLookupCache cache = new SecretsLookupCache(0, 100, ticker);
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch pluginResponds = new CountDownLatch(1);
+        Function<Set<String>, List<Secret>> slowPlugin = keys -> {
+            lookupStarted.countDown();
+            try {
+                pluginResponds.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return plugin.apply(keys);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Secret>> first = executor.submit(() -> cache.lookup(secretConfig, Set.of("password"), slowPlugin));
+            lookupStarted.await();
+            Future<List<Secret>> second = executor.submit(() -> cache.lookup(secretConfig, Set.of("password"), slowPlugin));
+            while ((Long) cache.statistics().get("Shared Lookups") == 0) {
+                Thread.sleep(10);
+            }
+            pluginResponds.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).extracting(Secret::getValue).containsExactly("password-value");
+            assertThat(second.get(5, TimeUnit.SECONDS)).extracting(Secret::getValue).containsExactly("password-value");
+            assertThat(pluginLookups).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldNotShareALookupInProgressThroughAnotherVersionOfTheSecretConfig() throws Exception {
+        SecretsLookupCache cache = new SecretsLookupCache(0, 100, ticker);
+        SecretConfig changedSecretConfig = new SecretConfig("vault", "cd.go.another-vault");
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch pluginResponds = new CountDownLatch(1);
+        Function<Set<String>, List<Secret>> slowPlugin = keys -> {
+            lookupStarted.countDown();
+            try {
+                pluginResponds.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return plugin.apply(keys);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            Future<List<Secret>> first = executor.submit(() -> cache.lookup(secretConfig, Set.of("password"), slowPlugin));
+            lookupStarted.await();
+
+            cache.lookup(changedSecretConfig, Set.of("password"), plugin);
+            pluginResponds.countDown();
+            first.get(5, TimeUnit.SECONDS);
+
+            assertThat(pluginLookups).hasValue(2);
+            assertThat(cache.statistics()).containsEntry("Shared Lookups", 0L);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class FakeTicker extends Ticker {
+        private final AtomicLong nanos = new AtomicLong();
+
+        void advance(long time, TimeUnit timeUnit) {
+            nanos.addAndGet(timeUnit.toNanos(time));
+        }
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    }
+}
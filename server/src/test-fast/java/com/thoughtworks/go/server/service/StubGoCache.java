@@ -16,6 +16,7 @@
 package com.thoughtworks.go.server.service;
 
 import com.thoughtworks.go.server.cache.GoCache;
+import com.thoughtworks.go.server.cache.GoCacheBackend;
 import com.thoughtworks.go.server.transaction.TestTransactionSynchronizationManager;
 
 import java.util.ArrayList;
@@ -28,7 +29,7 @@ public class StubGoCache extends GoCache {
     private final Map<String, Object> map;
 
     public StubGoCache(final TestTransactionSynchronizationManager transactionSynchronizationManager) {
-        super(null, transactionSynchronizationManager);
+        super((GoCacheBackend) null, transactionSynchronizationManager);
         map = new HashMap<>();
     }
 
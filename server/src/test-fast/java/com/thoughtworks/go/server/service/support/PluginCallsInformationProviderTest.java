@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.service.support;
+
+import com.thoughtworks.go.plugin.access.PluginCallGuard;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PluginCallsInformationProviderTest {
+
+    @Test
+    public void shouldProvideTheSettingsAndTheCallsToEachPlugin() {
+        PluginCallGuard pluginCallGuard = mock(PluginCallGuard.class);
+        Map<String, Object> settings = Map.of("Call Timeout (ms)", 5_000L);
+        Map<String, Object> plugins = Map.of("cd.go.authorization.ldap", Map.of("Calls In Progress", 2));
+        when(pluginCallGuard.settings()).thenReturn(settings);
+        when(pluginCallGuard.statistics()).thenReturn(plugins);
+
+        PluginCallsInformationProvider provider = new PluginCallsInformationProvider(pluginCallGuard);
+
+        assertThat(provider.name()).isEqualTo("Plugin Calls Information");
+        assertThat(provider.asJson())
+                .containsEntry("Settings", settings)
+                .containsEntry("Plugins", plugins);
+    }
+}
@@ -114,6 +114,33 @@ public class FileViewTest {
         assertEquals(mockResponse.getContentAsString(), "hello");
     }
 
+    @Test
+    public void shouldOutputTheRestOfTheFileWhenAskedForTheRangeToItsEnd() throws Exception {
+        Map<String, Object> model = new HashMap<>();
+        model.put("targetFile", file);
+        mockRequest.addHeader("Range", "bytes=2-");
+
+        view.render(model, mockRequest, mockResponse);
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, mockResponse.getStatus());
+        assertEquals("bytes 2-4/5", mockResponse.getHeader("Content-Range"));
+        assertEquals(3, getContentLength(mockResponse));
+        assertEquals("llo", mockResponse.getContentAsString());
+    }
+
+    @Test
+    public void shouldNotOutputAnythingWhenAskedForARangeBeyondTheEndOfTheFile() throws Exception {
+        Map<String, Object> model = new HashMap<>();
+        model.put("targetFile", file);
+        mockRequest.addHeader("Range", "bytes=5-");
+
+        view.render(model, mockRequest, mockResponse);
+
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, mockResponse.getStatus());
+        assertEquals("bytes */5", mockResponse.getHeader("Content-Range"));
+        assertEquals("", mockResponse.getContentAsString());
+    }
+
     @Test
     public void testDefaultContentTypeShouldBeTextPlain() throws Exception {
         assertEquals("application/octet-stream", view.getContentType());
@@ -19,13 +19,18 @@ import com.thoughtworks.go.domain.ConsoleConsumer;
 import com.thoughtworks.go.domain.ConsoleStreamer;
 import com.thoughtworks.go.domain.JobIdentifier;
 import com.thoughtworks.go.domain.exception.IllegalArtifactLocationException;
+import com.thoughtworks.go.domain.JobState;
 import com.thoughtworks.go.server.dao.JobInstanceDao;
+import com.thoughtworks.go.server.messaging.GoMessageListener;
+import com.thoughtworks.go.server.messaging.JobStatusMessage;
+import com.thoughtworks.go.server.messaging.JobStatusTopic;
 import com.thoughtworks.go.server.service.ConsoleService;
 import com.thoughtworks.go.util.SystemEnvironment;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -33,6 +38,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.function.Consumer;
 import java.util.zip.GZIPInputStream;
 
@@ -48,6 +54,7 @@ public class ConsoleLogSenderTest {
     private SocketEndpoint socket;
     private JobIdentifier jobIdentifier;
     private JobInstanceDao jobInstanceDao;
+    private JobStatusTopic jobStatusTopic;
     private SystemEnvironment systemEnvironment;
 
 
@@ -57,10 +64,13 @@ public class ConsoleLogSenderTest {
         jobInstanceDao = mock(JobInstanceDao.class);
         socket = mock(SocketEndpoint.class);
         when(socket.isOpen()).thenReturn(true);
+        doCallRealMethod().when(socket).sendAsync(any(), any());
         systemEnvironment = mock(SystemEnvironment.class);
         when(systemEnvironment.consoleLogCharset()).thenReturn(UTF_8);
-        consoleLogSender = new ConsoleLogSender(consoleService, jobInstanceDao, systemEnvironment);
+        jobStatusTopic = mock(JobStatusTopic.class);
+        consoleLogSender = new ConsoleLogSender(consoleService, jobInstanceDao, jobStatusTopic, systemEnvironment);
         jobIdentifier = mock(JobIdentifier.class);
+        when(jobIdentifier.getBuildId()).thenReturn(42L);
     }
 
     @Test
@@ -162,6 +172,111 @@ public class ConsoleLogSenderTest {
         verify(socket).close();
     }
 
+    @Test
+    public void shouldShareOneTailBetweenSocketsWatchingARunningBuild() throws Exception {
+        consoleLogSender = sharedTailSender();
+        File console = makeConsoleFile("first\n");
+        SocketEndpoint otherSocket = mock(SocketEndpoint.class);
+        when(otherSocket.isOpen()).thenReturn(true);
+        doCallRealMethod().when(otherSocket).sendAsync(any(), any());
+
+        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenReturn(false);
+        when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
+        when(consoleService.getStreamer(anyLong(), eq(jobIdentifier))).
+                thenAnswer(invocation -> new ConsoleStreamer(console.toPath(), invocation.getArgument(0)));
+
+        consoleLogSender.process(socket, jobIdentifier, 0L);
+        consoleLogSender.process(otherSocket, jobIdentifier, 0L);
+
+        ByteBuffer first = ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("first\n".getBytes(UTF_8)));
+        verify(socket).send(first);
+        verify(otherSocket).send(first);
+
+        Files.write(console.toPath(), "second\n".getBytes(UTF_8), StandardOpenOption.APPEND);
+        consoleLogSender.onTimer();
+
+        ByteBuffer second = ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("second\n".getBytes(UTF_8)));
+        verify(socket).send(second);
+        verify(otherSocket).send(second);
+        verify(socket, never()).close();
+        verify(otherSocket, never()).close();
+    }
+
+    @Test
+    public void shouldCatchUpLateSubscriberToTheSharedTail() throws Exception {
+        consoleLogSender = sharedTailSender();
+        File console = makeConsoleFile("first\n");
+        SocketEndpoint lateSocket = mock(SocketEndpoint.class);
+        when(lateSocket.isOpen()).thenReturn(true);
+        doCallRealMethod().when(lateSocket).sendAsync(any(), any());
+
+        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenReturn(false);
+        when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
+        when(consoleService.getStreamer(anyLong(), eq(jobIdentifier))).
+                thenAnswer(invocation -> new ConsoleStreamer(console.toPath(), invocation.getArgument(0)));
+
+        consoleLogSender.process(socket, jobIdentifier, 0L);
+        Files.write(console.toPath(), "second\n".getBytes(UTF_8), StandardOpenOption.APPEND);
+        consoleLogSender.process(lateSocket, jobIdentifier, 1L);
+        Files.write(console.toPath(), "third\n".getBytes(UTF_8), StandardOpenOption.APPEND);
+        consoleLogSender.onTimer();
+
+        verify(socket).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("second\n".getBytes(UTF_8))));
+        verify(lateSocket).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("second\n".getBytes(UTF_8))));
+        verify(socket).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("third\n".getBytes(UTF_8))));
+        verify(lateSocket).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("third\n".getBytes(UTF_8))));
+        verify(lateSocket, never()).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("first\n".getBytes(UTF_8))));
+    }
+
+    @Test
+    public void shouldCloseSharedTailSubscribersWhenJobCompletes() throws Exception {
+        consoleLogSender = sharedTailSender();
+        File console = makeConsoleFile("first\n");
+
+        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenReturn(false);
+        when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
+        when(consoleService.getStreamer(anyLong(), eq(jobIdentifier))).
+                thenAnswer(invocation -> new ConsoleStreamer(console.toPath(), invocation.getArgument(0)));
+
+        consoleLogSender.process(socket, jobIdentifier, 0L);
+        Files.write(console.toPath(), "last\n".getBytes(UTF_8), StandardOpenOption.APPEND);
+
+        consoleLogSender.onMessage(new JobStatusMessage(jobIdentifier, JobState.Completed, "agent"));
+        consoleLogSender.onTimer();
+
+        verify(socket).send(ByteBuffer.wrap(consoleLogSender.maybeGzipIfLargeEnough("last\n".getBytes(UTF_8))));
+        verify(socket).close();
+        verify(jobInstanceDao, times(1)).isJobCompleted(jobIdentifier);
+    }
+
+    @Test
+    public void shouldCloseSharedTailWhenJobCompletionIsAnnouncedOnTheJobStatusTopic() throws Exception {
+        consoleLogSender = sharedTailSender();
+        consoleLogSender.initialize();
+        ArgumentCaptor<GoMessageListener<JobStatusMessage>> listener = ArgumentCaptor.forClass(GoMessageListener.class);
+        verify(jobStatusTopic).addListener(listener.capture());
+
+        File console = makeConsoleFile("first\n");
+        when(jobInstanceDao.isJobCompleted(jobIdentifier)).thenReturn(false);
+        when(consoleService.doesLogExist(jobIdentifier)).thenReturn(true);
+        when(consoleService.getStreamer(anyLong(), eq(jobIdentifier))).
+                thenAnswer(invocation -> new ConsoleStreamer(console.toPath(), invocation.getArgument(0)));
+
+        consoleLogSender.process(socket, jobIdentifier, 0L);
+
+        listener.getValue().onMessage(new JobStatusMessage(jobIdentifier, JobState.Completed, "agent"));
+        consoleLogSender.onTimer();
+
+        verify(socket).close();
+    }
+
+    @Test
+    public void shouldNotListenOnTheJobStatusTopicWithoutSharedTails() {
+        consoleLogSender.initialize();
+
+        verifyNoInteractions(jobStatusTopic);
+    }
+
     @Test
     public void shouldNotGzipContentsLessThan512Bytes() throws Exception {
         byte[] bytes = RandomStringUtils.randomAlphanumeric(511).getBytes(UTF_8);
@@ -183,6 +298,11 @@ public class ConsoleLogSenderTest {
         assertThat(bytes, equalTo(byteArrayOutputStream.toByteArray()));
     }
 
+    private ConsoleLogSender sharedTailSender() {
+        when(systemEnvironment.isConsoleLogSharedTailEnabled()).thenReturn(true);
+        return new ConsoleLogSender(consoleService, jobInstanceDao, jobStatusTopic, systemEnvironment);
+    }
+
     private File makeConsoleFile(String message) throws IOException, IllegalArtifactLocationException {
         File console = File.createTempFile("console", ".log");
         console.deleteOnExit();
@@ -214,6 +334,16 @@ public class ConsoleLogSenderTest {
             return ++count;
         }
 
+        @Override
+        public long stream(Consumer<String> action, long maxLines) throws IOException {
+            return stream(action);
+        }
+
+        @Override
+        public long streamBytes(Consumer<ByteBuffer> action, long maxLines) throws IOException {
+            return stream(line -> action.accept(ByteBuffer.wrap((line + '\n').getBytes(UTF_8))));
+        }
+
         @Override
         public long totalLinesConsumed() {
             return count;
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023 Thoughtworks, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.thoughtworks.go.server.websocket;
+
+import com.thoughtworks.go.domain.JobIdentifier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ConsoleLogTailTest {
+    private ConsoleLogTail tail;
+    private SocketEndpoint stalledSocket;
+    private SocketEndpoint socket;
+
+    @BeforeEach
+    void setUp() {
+        tail = new ConsoleLogTail(mock(JobIdentifier.class), 10);
+        // never completes a send unless told to
+        stalledSocket = mock(SocketEndpoint.class);
+        socket = mock(SocketEndpoint.class);
+        doCallRealMethod().when(socket).sendAsync(any(), any());
+    }
+
+    @Test
+    void shouldKeepSendingToOtherSubscribersWhileOneIsStalled() throws Exception {
+        tail.subscribe(stalledSocket);
+        tail.subscribe(socket);
+
+        tail.send(frame("one\n"));
+        tail.send(frame("two\n"));
+
+        verify(socket).send(frame("one\n"));
+        verify(socket).send(frame("two\n"));
+        verify(stalledSocket, times(1)).sendAsync(any(), any());
+    }
+
+    @Test
+    void shouldSendQueuedFramesInOrderOnceThePreviousSendCompletes() {
+        tail.subscribe(stalledSocket);
+
+        tail.send(frame("one\n"));
+        tail.send(frame("two\n"));
+        completeLastSend();
+
+        verify(stalledSocket).sendAsync(eq(frame("one\n")), any());
+        verify(stalledSocket).sendAsync(eq(frame("two\n")), any());
+    }
+
+    @Test
+    void shouldDisconnectASubscriberThatFallsTooFarBehind() {
+        tail.subscribe(stalledSocket);
+
+        tail.send(frame("one\n"));
+        tail.send(frame("two\n"));
+        tail.send(frame("three\n"));
+        tail.send(frame("four\n"));
+
+        verify(stalledSocket).close(eq(ConsoleLogTail.TOO_FAR_BEHIND), anyString());
+        verify(stalledSocket, times(1)).sendAsync(any(), any());
+    }
+
+    @Test
+    void shouldCloseASubscriberOnlyOnceTheRestOfTheLogHasBeenSent() {
+        tail.subscribe(stalledSocket);
+
+        tail.send(frame("last\n"));
+        tail.close();
+        verify(stalledSocket, never()).close();
+
+        completeLastSend();
+        verify(stalledSocket).close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void completeLastSend() {
+        ArgumentCaptor<Consumer<Throwable>> done = ArgumentCaptor.forClass(Consumer.class);
+        verify(stalledSocket, atLeastOnce()).sendAsync(any(), done.capture());
+        done.getValue().accept(null);
+    }
+
+    private static ByteBuffer frame(String lines) {
+        return ByteBuffer.wrap(lines.getBytes());
+    }
+}
@@ -636,6 +636,19 @@ public class JobInstanceSqlMapDaoIntegrationTest {
         assertThat(jobPlans.get(0).getIdentifier().getRerunOfCounter(), is(savedStage.getCounter()));
     }
 
+    @Test
+    public void shouldNotReturnTheCachedPlanOfAJobThatIsNoLongerScheduled() {
+        JobPlan cachedPlan = jobInstanceDao.orderedScheduledBuilds().get(0);
+        JobInstance jobInstance = jobInstanceDao.buildByIdWithTransitions(cachedPlan.getJobId());
+        jobInstance.cancel();
+        jobInstanceDao.updateStateAndResult(jobInstance);
+        // as if a concurrent lookup had put the plan back in the cache just as the job was cancelled
+        goCache.put(jobInstanceDao.cacheKeyForJobPlan(cachedPlan.getJobId()), cachedPlan);
+
+        assertThat(jobInstanceDao.scheduledPlans(List.of(cachedPlan.getJobId())), is(empty()));
+        assertThat(goCache.get(jobInstanceDao.cacheKeyForJobPlan(cachedPlan.getJobId())), is(nullValue()));
+    }
+
     @Test
     public void shouldGetAllScheduledBuildsInOrder() {
         // in setup, we created 2 scheduled builds
@@ -65,6 +65,7 @@ import static com.thoughtworks.go.util.GoConstants.DEFAULT_APPROVED_BY;
 import static com.thoughtworks.go.util.IBatisUtil.arguments;
 import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(SpringExtension.class)
@@ -621,8 +622,8 @@ public class StageSqlMapDaoIntegrationTest {
         assertThat(stageHistoryPageInNextQuery.getStages()).isEqualTo(stageList);
         assertThat(stageHistoryPageInNextQuery.getPagination()).isEqualTo(Pagination.pageFor(10, 20, 10));
 
-        stageHistoryPage.getStages().get(0).setState(StageState.Failing);
-        assertThat(stageHistoryPageInNextQuery.getStages().get(0).getState()).isEqualTo(StageState.Passed);
+        assertThat(stageHistoryPageInNextQuery).isSameAs(stageHistoryPage);
+        assertThatThrownBy(() -> stageHistoryPage.getStages().add(new StageHistoryEntry(stage, 2, 10))).isInstanceOf(UnsupportedOperationException.class);
 
         verify(mockTemplate, times(1)).queryForList(eq("findStageHistoryPage"), any());
     }
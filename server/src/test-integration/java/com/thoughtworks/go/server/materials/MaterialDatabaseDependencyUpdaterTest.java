@@ -23,6 +23,7 @@ import com.thoughtworks.go.domain.materials.Modification;
 import com.thoughtworks.go.server.cache.GoCache;
 import com.thoughtworks.go.server.dao.DatabaseAccessHelper;
 import com.thoughtworks.go.server.dao.DependencyMaterialSourceDao;
+import com.thoughtworks.go.server.perf.MDUPerformanceLogger;
 import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.service.GoConfigService;
 import com.thoughtworks.go.server.service.MaterialExpansionService;
@@ -59,6 +60,8 @@ import static org.mockito.Mockito.*;
         "classpath:/spring-all-servlet.xml",
 })
 public class MaterialDatabaseDependencyUpdaterTest {
+    @Autowired private MDUPerformanceLogger mduPerformanceLogger;
+    @Autowired private SharedGitRepositories sharedGitRepositories;
     @Autowired private DatabaseAccessHelper dbHelper;
     @Autowired protected MaterialRepository materialRepository;
     @Autowired private GoCache goCache;
@@ -82,7 +85,7 @@ public class MaterialDatabaseDependencyUpdaterTest {
         dependencyMaterialSourceDao = mock(DependencyMaterialSourceDao.class);
         healthService = mock(ServerHealthService.class);
         dependencyMaterialUpdater = new DependencyMaterialUpdater(dependencyMaterialSourceDao, materialRepository);
-        scmMaterialUpdater = new ScmMaterialUpdater(materialRepository, legacyMaterialChecker, subprocessExecutionContext, materialService);
+        scmMaterialUpdater = new ScmMaterialUpdater(materialRepository, legacyMaterialChecker, subprocessExecutionContext, materialService, mduPerformanceLogger, sharedGitRepositories);
         updater = new MaterialDatabaseUpdater(materialRepository, healthService, transactionTemplate, dependencyMaterialUpdater, scmMaterialUpdater, null, null, materialExpansionService, goConfigService);
     }
 
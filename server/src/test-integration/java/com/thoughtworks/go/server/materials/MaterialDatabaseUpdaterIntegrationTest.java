@@ -24,6 +24,7 @@ import com.thoughtworks.go.domain.materials.git.GitTestRepo;
 import com.thoughtworks.go.plugin.access.packagematerial.PackageRepositoryExtension;
 import com.thoughtworks.go.plugin.access.scm.SCMExtension;
 import com.thoughtworks.go.server.dao.DatabaseAccessHelper;
+import com.thoughtworks.go.server.perf.MDUPerformanceLogger;
 import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.service.*;
 import com.thoughtworks.go.server.transaction.TransactionCallback;
@@ -54,6 +55,8 @@ import static org.hamcrest.Matchers.is;
         "classpath:/spring-all-servlet.xml",
 })
 public class MaterialDatabaseUpdaterIntegrationTest {
+    @Autowired private MDUPerformanceLogger mduPerformanceLogger;
+    @Autowired private SharedGitRepositories sharedGitRepositories;
     @Autowired private DatabaseAccessHelper dbHelper;
     @Autowired private MaterialDatabaseUpdater updater;
     @Autowired protected MaterialRepository materialRepository;
@@ -80,7 +83,7 @@ public class MaterialDatabaseUpdaterIntegrationTest {
 
         MaterialService slowMaterialService = new MaterialServiceWhichSlowsDownFirstTimeModificationCheck(materialRepository, goConfigService, securityService, packageRepositoryExtension, scmExtension);
         LegacyMaterialChecker materialChecker = new LegacyMaterialChecker(slowMaterialService, subprocessExecutionContext);
-        ScmMaterialUpdater scmMaterialUpdater = new ScmMaterialUpdater(materialRepository, materialChecker, subprocessExecutionContext, slowMaterialService);
+        ScmMaterialUpdater scmMaterialUpdater = new ScmMaterialUpdater(materialRepository, materialChecker, subprocessExecutionContext, slowMaterialService, mduPerformanceLogger, sharedGitRepositories);
         transactionTemplateWithInvocationCount = new TransactionTemplateWithInvocationCount(transactionTemplate);
         updater = new MaterialDatabaseUpdater(materialRepository, serverHealthService, transactionTemplateWithInvocationCount, dependencyMaterialUpdater,
                 scmMaterialUpdater, packageMaterialUpdater, pluggableSCMMaterialUpdater, materialExpansionService, goConfigService);
@@ -28,6 +28,7 @@ import com.thoughtworks.go.plugin.access.scm.*;
 import com.thoughtworks.go.plugin.access.scm.material.MaterialPollResult;
 import com.thoughtworks.go.plugin.access.scm.revision.SCMRevision;
 import com.thoughtworks.go.server.dao.DatabaseAccessHelper;
+import com.thoughtworks.go.server.perf.MDUPerformanceLogger;
 import com.thoughtworks.go.server.persistence.MaterialRepository;
 import com.thoughtworks.go.server.service.MaterialService;
 import com.thoughtworks.go.server.service.materials.MaterialPoller;
@@ -60,6 +61,10 @@ import static org.mockito.Mockito.*;
         "classpath:/spring-all-servlet.xml",
 })
 public class PluggableSCMMaterialUpdaterIntegrationTest {
+    @Autowired
+    private MDUPerformanceLogger mduPerformanceLogger;
+    @Autowired
+    private SharedGitRepositories sharedGitRepositories;
     @Autowired
     private MaterialRepository materialRepository;
     @Autowired
@@ -119,7 +124,7 @@ public class PluggableSCMMaterialUpdaterIntegrationTest {
         data.put("k1", "v1");
         when(scmExtension.getLatestRevision(any(String.class), any(SCMPropertyConfiguration.class), any(Map.class), any(String.class))).thenReturn(new MaterialPollResult(data, new SCMRevision()));
         mockSCMExtensionInPoller();
-        scmMaterialUpdater = new ScmMaterialUpdater(materialRepository, materialChecker, subprocessExecutionContext, materialService);
+        scmMaterialUpdater = new ScmMaterialUpdater(materialRepository, materialChecker, subprocessExecutionContext, materialService, mduPerformanceLogger, sharedGitRepositories);
         pluggableSCMMaterialUpdater = new PluggableSCMMaterialUpdater(materialRepository, scmMaterialUpdater, transactionTemplate);
 
         transactionTemplate.execute(transactionStatus -> {
@@ -144,7 +149,7 @@ public class PluggableSCMMaterialUpdaterIntegrationTest {
         newData.put("k2", "v2");
         when(scmExtension.latestModificationSince(any(String.class), any(SCMPropertyConfiguration.class), any(Map.class), any(String.class), any(SCMRevision.class))).thenReturn(new MaterialPollResult(newData, new SCMRevision()));
         mockSCMExtensionInPoller();
-        scmMaterialUpdater = new ScmMaterialUpdater(materialRepository, materialChecker, subprocessExecutionContext, materialService);
+        scmMaterialUpdater = new ScmMaterialUpdater(materialRepository, materialChecker, subprocessExecutionContext, materialService, mduPerformanceLogger, sharedGitRepositories);
         pluggableSCMMaterialUpdater = new PluggableSCMMaterialUpdater(materialRepository, scmMaterialUpdater, transactionTemplate);
 
         transactionTemplate.execute(transactionStatus -> {
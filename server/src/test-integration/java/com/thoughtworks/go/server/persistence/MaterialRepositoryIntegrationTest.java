@@ -62,6 +62,7 @@ import com.thoughtworks.go.server.transaction.TransactionSynchronizationManager;
 import com.thoughtworks.go.server.transaction.TransactionTemplate;
 import com.thoughtworks.go.server.util.Pagination;
 import com.thoughtworks.go.util.SerializationTester;
+import com.thoughtworks.go.util.SystemEnvironment;
 import com.thoughtworks.go.util.TestUtils;
 import com.thoughtworks.go.util.TimeProvider;
 import com.thoughtworks.go.util.json.JsonHelper;
@@ -1183,6 +1184,40 @@ public class MaterialRepositoryIntegrationTest {
         }
     }
 
+    @Test
+    public void shouldInsertModificationsAndModifiedFilesInBatchesWhenThereAreManyOfThem() {
+        SystemEnvironment systemEnvironment = new SystemEnvironment();
+        systemEnvironment.set(SystemEnvironment.MODIFICATIONS_BULK_INSERT_THRESHOLD, 2);
+        systemEnvironment.set(SystemEnvironment.MODIFICATIONS_BULK_INSERT_BATCH_SIZE, 2);
+        try {
+            GitMaterial material = new GitMaterial(UUID.randomUUID().toString(), "branch");
+            final MaterialInstance materialInstance = repo.findOrCreateFrom(material);
+            transactionTemplate.execute(status -> repo.saveModifications(materialInstance, getModifications(2)));
+
+            final List<Modification> modifications = getModifications(5);
+            modifications.get(2).createModifiedFile("file1", "folder1", ModifiedAction.added);
+            modifications.get(2).createModifiedFile("file2", "folder2", ModifiedAction.deleted);
+            modifications.get(4).createModifiedFile("file3", null, ModifiedAction.modified);
+
+            int rowsInserted = transactionTemplate.execute(status -> repo.saveModifications(materialInstance, modifications));
+
+            assertThat(rowsInserted, is(3 + 3));
+            Modifications fromDb = repo.getModificationsFor(materialInstance, Pagination.pageByNumber(1, 10, 10));
+            assertThat(fromDb.size(), is(5));
+            for (Modification modification : modifications) {
+                assertThat(fromDb.containsRevisionFor(modification), is(true));
+            }
+            Modification withFiles = repo.findModificationWithRevision(material, "r2");
+            assertThat(withFiles.getId(), is(modifications.get(2).getId()));
+            assertThat(withFiles.getModifiedFiles(), containsInAnyOrder(
+                new ModifiedFile("file1", "folder1", ModifiedAction.added),
+                new ModifiedFile("file2", "folder2", ModifiedAction.deleted)));
+        } finally {
+            System.clearProperty(SystemEnvironment.MODIFICATIONS_BULK_INSERT_THRESHOLD.propertyName());
+            System.clearProperty(SystemEnvironment.MODIFICATIONS_BULK_INSERT_BATCH_SIZE.propertyName());
+        }
+    }
+
     @Test
     public void shouldNotBlowUpReportErrorIfAnAttemptIsMadeToInsertOnlyDuplicateModificationsForAGivenMaterial() {
         final MaterialInstance materialInstance = repo.findOrCreateFrom(new GitMaterial(UUID.randomUUID().toString(), "branch"));